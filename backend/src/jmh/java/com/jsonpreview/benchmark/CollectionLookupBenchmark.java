@@ -0,0 +1,56 @@
+package com.jsonpreview.benchmark;
+
+import com.jsonpreview.dto.RequestSummaryDto;
+import com.jsonpreview.model.PostmanItem;
+import com.jsonpreview.service.PostmanParserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request lookup by name and the request listing, on a loaded collection of growing size.
+ * Lookups cycle through names spread over the whole collection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollectionLookupBenchmark {
+
+    private static final int NAMES = 1024;
+
+    @Param({ "100", "10000", "50000" })
+    public int requests;
+
+    private PostmanParserService parser;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = SyntheticCollections.parser(DataSize.ofGigabytes(1));
+        parser.parseCollection(SyntheticCollections.file("collection.json",
+            SyntheticCollections.collection(requests, "http://localhost:8080")), "benchmark");
+        names = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = SyntheticCollections.requestName((int) ((long) i * requests / NAMES));
+        }
+    }
+
+    @Benchmark
+    public PostmanItem findRequestByName() {
+        String name = names[next];
+        next = (next + 1) % NAMES;
+        return parser.findRequestByName(name);
+    }
+
+    @Benchmark
+    public List<RequestSummaryDto> getAllRequests() {
+        return parser.getAllRequests();
+    }
+}
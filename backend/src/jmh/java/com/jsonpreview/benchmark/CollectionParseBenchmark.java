@@ -0,0 +1,45 @@
+package com.jsonpreview.benchmark;
+
+import com.jsonpreview.service.CollectionSnapshot;
+import com.jsonpreview.service.PostmanParserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PostmanParserService#parseCollection} on generated collections, through the
+ * mapped (whole tree on the heap) and streaming (spooled to disk, index only) ingest paths.
+ * Each upload replaces the previous one under the same id, releasing it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CollectionParseBenchmark {
+
+    @Param({ "100", "1000", "10000", "50000" })
+    public int requests;
+
+    @Param({ "mapped", "streaming" })
+    public String ingest;
+
+    private PostmanParserService parser;
+    private MultipartFile file;
+
+    @Setup
+    public void setUp() {
+        parser = SyntheticCollections.parser(ingest.equals("streaming") ? DataSize.ofBytes(0) : DataSize.ofGigabytes(1));
+        file = SyntheticCollections.file("collection.json",
+            SyntheticCollections.collection(requests, "http://localhost:8080"));
+    }
+
+    @Benchmark
+    public CollectionSnapshot parseCollection() throws IOException {
+        return parser.parseCollection(file, "benchmark");
+    }
+}
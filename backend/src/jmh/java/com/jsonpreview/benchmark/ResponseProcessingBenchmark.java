@@ -0,0 +1,121 @@
+package com.jsonpreview.benchmark;
+
+import com.jsonpreview.JsonPreviewApplication;
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import com.jsonpreview.service.ApiExecutionService;
+import com.jsonpreview.service.PostmanParserService;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole executions through {@link ApiExecutionService#executeRequest} against a local stub
+ * server returning a JSON payload, so the figures are dominated by reading the response
+ * and turning it into an {@link ApiResponseDto} in each {@code execution.response-body}
+ * mode. Writing the DTO out to the client is not included.
+ *
+ * The services run in an application context without the web server, on the default
+ * classic engine; caching and coalescing are off so every invocation reaches the stub.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Without TCP_NODELAY the stub's separate head and body writes stall on delayed ACKs
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class ResponseProcessingBenchmark {
+
+    @Param({ "bytes", "tree" })
+    public String responseBody;
+
+    @Param({ "1", "64", "1024" })
+    public int payloadKb;
+
+    private HttpServer stub;
+    private ExecutorService stubExecutor;
+    private ConfigurableApplicationContext context;
+    private ApiExecutionService executionService;
+    private ExecuteRequestDto request;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] payload = payload(payloadKb * 1024);
+        stubExecutor = Executors.newFixedThreadPool(4);
+        stub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        stub.setExecutor(stubExecutor);
+        stub.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        });
+        stub.start();
+
+        context = new SpringApplicationBuilder(JsonPreviewApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties("spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "execution.response-body=" + responseBody,
+                        "execution.cache.enabled=false",
+                        "execution.coalescing.enabled=false",
+                        "history.enabled=false")
+            .run();
+        executionService = context.getBean(ApiExecutionService.class);
+
+        String baseUrl = "http://127.0.0.1:" + stub.getAddress().getPort();
+        PostmanParserService parser = context.getBean(PostmanParserService.class);
+        parser.parseCollection(SyntheticCollections.file("collection.json",
+            SyntheticCollections.collection(1, baseUrl)), "benchmark");
+        parser.parseEnvironment(SyntheticCollections.file("environment.json",
+            SyntheticCollections.environment(0)), "benchmark");
+        request = new ExecuteRequestDto();
+        request.setCollectionId("benchmark");
+        request.setRequestName(SyntheticCollections.requestName(0));
+        request.setParameters(Map.of("userId", "42"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        stub.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public ApiResponseDto executeRequest() {
+        return executionService.executeRequest(request);
+    }
+
+    private static byte[] payload(int targetLength) {
+        StringBuilder sb = new StringBuilder(targetLength + 128);
+        sb.append('[');
+        for (int i = 0; sb.length() < targetLength; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(i)
+              .append(",\"name\":\"item-").append(i).append('"')
+              .append(",\"active\":").append(i % 3 != 0)
+              .append(",\"score\":").append(i * 0.25)
+              .append(",\"tags\":[\"alpha\",\"beta\"],\"note\":\"lorem ipsum dolor sit amet\"}");
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
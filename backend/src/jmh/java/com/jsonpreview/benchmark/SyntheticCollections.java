@@ -0,0 +1,129 @@
+package com.jsonpreview.benchmark;
+
+import com.jsonpreview.service.CollectionRegistry;
+import com.jsonpreview.service.HotPathMetrics;
+import com.jsonpreview.service.PostmanParserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Generated Postman collections and environments, an in-memory {@link MultipartFile} to
+ * upload them with, and a parser service wired up outside Spring.
+ */
+final class SyntheticCollections {
+
+    // Requests per folder
+    private static final int FOLDER_SIZE = 50;
+
+    private SyntheticCollections() {
+    }
+
+    static String requestName(int i) {
+        return "Request " + i;
+    }
+
+    /**
+     * A v2.1 collection of {@code requests} requests in folders of 50, each with headers,
+     * query parameters and a templated JSON body, all pointing at {@code baseUrl}.
+     */
+    static byte[] collection(int requests, String baseUrl) {
+        StringBuilder sb = new StringBuilder(requests * 700);
+        sb.append("{\"info\":{\"name\":\"Synthetic ").append(requests)
+          .append("\",\"schema\":\"https://schema.getpostman.com/json/collection/v2.1.0/collection.json\"},\"item\":[");
+        for (int i = 0; i < requests; i++) {
+            if (i % FOLDER_SIZE == 0) {
+                if (i > 0) sb.append("]},");
+                sb.append("{\"name\":\"Folder ").append(i / FOLDER_SIZE).append("\",\"item\":[");
+            } else {
+                sb.append(',');
+            }
+            String method = i % 2 == 0 ? "GET" : "POST";
+            sb.append("{\"name\":\"").append(requestName(i)).append("\",\"request\":{\"method\":\"").append(method)
+              .append("\",\"header\":[{\"key\":\"Authorization\",\"value\":\"Bearer {{token}}\"},")
+              .append("{\"key\":\"X-Request-Id\",\"value\":\"req-").append(i).append("\"}],")
+              .append("\"url\":{\"raw\":\"").append(baseUrl).append("/items/").append(i).append("?limit={{limit}}&user=${userId}\",")
+              .append("\"query\":[{\"key\":\"limit\",\"value\":\"{{limit}}\"},{\"key\":\"user\",\"value\":\"${userId}\"}]}");
+            if (method.equals("POST")) {
+                sb.append(",\"body\":{\"mode\":\"raw\",\"raw\":\"{\\\"id\\\":").append(i)
+                  .append(",\\\"owner\\\":\\\"{{owner}}\\\",\\\"user\\\":\\\"${userId}\\\",")
+                  .append("\\\"note\\\":\\\"lorem ipsum dolor sit amet\\\"}\"}");
+            }
+            sb.append("}}");
+        }
+        if (requests > 0) sb.append("]}");
+        return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An environment of {@code size} variables {@code env0..}, plus the ones the
+     * collection's requests use.
+     */
+    static byte[] environment(int size) {
+        StringBuilder sb = new StringBuilder(size * 64 + 256);
+        sb.append("{\"name\":\"Synthetic ").append(size).append("\",\"values\":[")
+          .append("{\"key\":\"token\",\"value\":\"secret-token\",\"enabled\":true},")
+          .append("{\"key\":\"limit\",\"value\":\"100\",\"enabled\":true},")
+          .append("{\"key\":\"owner\",\"value\":\"benchmark\",\"enabled\":true}");
+        for (int i = 0; i < size; i++) {
+            sb.append(",{\"key\":\"env").append(i).append("\",\"value\":\"value-").append(i).append("\",\"enabled\":true}");
+        }
+        return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A parser with its own registry, large enough that nothing is evicted; uploads above
+     * {@code streamingThreshold} take the streaming path.
+     */
+    static PostmanParserService parser(DataSize streamingThreshold) {
+        CollectionRegistry registry = new CollectionRegistry(DataSize.ofGigabytes(8));
+        return new PostmanParserService(registry, new HotPathMetrics(new SimpleMeterRegistry(), 500), streamingThreshold);
+    }
+
+    static MultipartFile file(String name, byte[] content) {
+        return new InMemoryFile(name, content);
+    }
+
+    private static final class InMemoryFile implements MultipartFile {
+        private final String name;
+        private final byte[] content;
+
+        InMemoryFile(String name, byte[] content) {
+            this.name = name;
+            this.content = content;
+        }
+
+        @Override
+        public String getName() { return "file"; }
+
+        @Override
+        public String getOriginalFilename() { return name; }
+
+        @Override
+        public String getContentType() { return "application/json"; }
+
+        @Override
+        public boolean isEmpty() { return content.length == 0; }
+
+        @Override
+        public long getSize() { return content.length; }
+
+        @Override
+        public byte[] getBytes() { return content; }
+
+        @Override
+        public InputStream getInputStream() { return new ByteArrayInputStream(content); }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.write(dest.toPath(), content);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.jsonpreview.benchmark;
+
+import com.jsonpreview.service.PostmanParserService;
+import com.jsonpreview.service.VariableTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original one-{@code String.replace}-per-variable substitution with
+ * {@link VariableTemplate} rendering, for growing environments and body sizes, and
+ * {@link PostmanParserService#replaceVariables} and template rendering against an uploaded environment.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VariableSubstitutionBenchmark {
+
+    @Param({ "10", "300" })
+    public int envSize;
+
+    @Param({ "1", "16", "200" })
+    public int bodyKb;
+
+    private Map<String, String> environment;
+    private Map<String, String> parameters;
+    private String body;
+    private VariableTemplate template;
+    private PostmanParserService parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        environment = new HashMap<>();
+        for (int i = 0; i < envSize; i++) {
+            environment.put("env" + i, "value-" + i);
+        }
+        parameters = new HashMap<>();
+        parameters.put("userId", "42");
+        parameters.put("limit", "100");
+
+        body = syntheticBody(bodyKb * 1024, envSize);
+        template = VariableTemplate.compile(body);
+
+        parser = SyntheticCollections.parser(DataSize.ofGigabytes(1));
+        parser.parseEnvironment(SyntheticCollections.file("environment.json",
+            SyntheticCollections.environment(envSize)), "benchmark");
+    }
+
+    static String syntheticBody(int targetLength, int envSize) {
+        StringBuilder sb = new StringBuilder(targetLength + 64);
+        sb.append('[');
+        int i = 0;
+        while (sb.length() < targetLength) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(i)
+              .append(",\"owner\":\"{{env").append(i % envSize).append("}}\"")
+              .append(",\"user\":\"${userId}\",\"page\":\"{{limit}}\"")
+              .append(",\"note\":\"lorem ipsum dolor sit amet\"}");
+            i++;
+        }
+        return sb.append(']').toString();
+    }
+
+    @Benchmark
+    public String legacyReplace() {
+        return legacyReplaceVariables(body, environment, parameters);
+    }
+
+    @Benchmark
+    public String templateRender() {
+        return template.render(environment, parameters);
+    }
+
+    @Benchmark
+    public String templateCompileAndRender() {
+        return VariableTemplate.compile(body).render(environment, parameters);
+    }
+
+    @Benchmark
+    public String serviceReplaceVariables() {
+        return parser.replaceVariables(body, parameters);
+    }
+
+    @Benchmark
+    public String serviceRenderTemplate() {
+        return template.render(parser.getEnvironmentVariables("benchmark"), parameters);
+    }
+
+    // Copy of PostmanParserService.replaceVariables before templates were introduced
+    static String legacyReplaceVariables(String input, Map<String, String> envVars, Map<String, String> parameters) {
+        String result = input;
+        for (Map.Entry<String, String> entry : envVars.entrySet()) {
+            result = result.replace("{{" + entry.getKey() + "}}", entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            result = result.replace("{{" + entry.getKey() + "}}", entry.getValue());
+            result = result.replace("${" + entry.getKey() + "}", entry.getValue());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package com.jsonpreview.config;
+
+import com.jsonpreview.service.ExecutionTimer;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.async.AsyncExecChainHandler;
+import org.apache.hc.client5.http.classic.ExecChainHandler;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.nio.AsyncConnectionEndpoint;
+import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.config.Lookup;
+import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.reactor.ConnectionInitiator;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.concurrent.Future;
+
+/**
+ * Client hooks that feed the {@link ExecutionTimer} of the exchange in progress. Each
+ * one does nothing for an exchange that isn't timed.
+ */
+final class ConnectionTiming {
+
+    private ConnectionTiming() {
+    }
+
+    /**
+     * Marks the connection as ready; runs between connection setup and the request.
+     */
+    static final ExecChainHandler CONNECTION_READY = (request, scope, chain) -> {
+        ExecutionTimer timer = ExecutionTimer.of(scope.clientContext);
+        if (timer != null) timer.connectionReady();
+        return chain.proceed(request, scope);
+    };
+
+    static final AsyncExecChainHandler ASYNC_CONNECTION_READY = (request, entityProducer, scope, chain, callback) -> {
+        ExecutionTimer timer = ExecutionTimer.of(scope.clientContext);
+        if (timer != null) timer.connectionReady();
+        chain.proceed(request, entityProducer, scope, callback);
+    };
+
+    /**
+     * System resolver timing lookups made for the classic exchange on the calling thread.
+     */
+    static final class Dns implements DnsResolver {
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            long start = System.nanoTime();
+            try {
+                return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            } finally {
+                ExecutionTimer timer = ExecutionTimer.current();
+                if (timer != null) timer.addDns(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String resolveCanonicalHostname(String host) throws UnknownHostException {
+            return SystemDefaultDnsResolver.INSTANCE.resolveCanonicalHostname(host);
+        }
+    }
+
+    static final class PlainSockets extends PlainConnectionSocketFactory {
+
+        @Override
+        public Socket connectSocket(TimeValue connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                ExecutionTimer timer = ExecutionTimer.of(context);
+                if (timer != null) timer.addConnect(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * TLS sockets; the handshake, done while connecting, is reported apart from the TCP connect.
+     */
+    static final class TlsSockets extends SSLConnectionSocketFactory {
+
+        TlsSockets(SSLContext sslContext) {
+            super(sslContext);
+        }
+
+        @Override
+        public Socket connectSocket(Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, Timeout connectTimeout, Object attachment,
+                                    HttpContext context) throws IOException {
+            ExecutionTimer timer = ExecutionTimer.of(context);
+            long start = System.nanoTime();
+            long handshakes = timer != null ? timer.getTlsNanos() : 0;
+            try {
+                return super.connectSocket(socket, host, remoteAddress, localAddress, connectTimeout, attachment, context);
+            } finally {
+                if (timer != null) {
+                    timer.addConnect(System.nanoTime() - start - (timer.getTlsNanos() - handshakes));
+                }
+            }
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, Object attachment,
+                                          HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.createLayeredSocket(socket, target, port, attachment, context);
+            } finally {
+                ExecutionTimer timer = ExecutionTimer.of(context);
+                if (timer != null) timer.addTls(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Async connection manager reporting the connections it opens, DNS and TLS included.
+     */
+    static final class AsyncConnections extends PoolingAsyncClientConnectionManager {
+
+        AsyncConnections(Lookup<TlsStrategy> tlsStrategies) {
+            super(tlsStrategies, PoolConcurrencyPolicy.STRICT, PoolReusePolicy.LIFO, null, null, null);
+        }
+
+        @Override
+        public Future<AsyncConnectionEndpoint> connect(AsyncConnectionEndpoint endpoint, ConnectionInitiator initiator,
+                                                       Timeout connectTimeout, Object attachment, HttpContext context,
+                                                       FutureCallback<AsyncConnectionEndpoint> callback) {
+            ExecutionTimer timer = ExecutionTimer.of(context);
+            if (timer == null) {
+                return super.connect(endpoint, initiator, connectTimeout, attachment, context, callback);
+            }
+            long start = System.nanoTime();
+            return super.connect(endpoint, initiator, connectTimeout, attachment, context,
+                new FutureCallback<AsyncConnectionEndpoint>() {
+                    @Override
+                    public void completed(AsyncConnectionEndpoint connected) {
+                        timer.addConnect(System.nanoTime() - start);
+                        if (callback != null) callback.completed(connected);
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        if (callback != null) callback.failed(e);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        if (callback != null) callback.cancelled();
+                    }
+                });
+        }
+    }
+}
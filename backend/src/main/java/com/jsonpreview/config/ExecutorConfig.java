@@ -0,0 +1,76 @@
+package com.jsonpreview.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for fan-out request execution: the shared one for batches and runners, and
+ * one of their own for load tests on the classic engine, so a load test can keep its
+ * {@code load-test.max-in-flight} blocking calls going without taking threads from them.
+ *
+ * Both use a virtual-thread-per-task executor when the runtime provides one (Java 21+), so
+ * blocked upstream calls cost no platform threads. On Java 17 the request executor falls
+ * back to a fixed pool of {@code batch.max-parallelism} daemon threads, and the load test
+ * executor to daemon threads started on demand, up to what the running tests may have in
+ * flight. Callers bound concurrency with their own permits either way.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorConfig.class);
+
+    @Bean(destroyMethod = "shutdownNow")
+    @Primary
+    public ExecutorService requestExecutor(@Value("${batch.max-parallelism:64}") int maxParallelism) {
+        ExecutorService virtual = virtualThreads();
+        if (virtual != null) {
+            logger.info("Request executor uses virtual threads");
+            return virtual;
+        }
+        logger.info("Virtual threads unavailable, request executor uses {} platform threads", maxParallelism);
+        return Executors.newFixedThreadPool(maxParallelism, daemonThreads("request-exec-"));
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService loadTestExecutor(@Value("${load-test.max-running:4}") int maxRunning,
+                                            @Value("${load-test.max-in-flight:1000}") int maxInFlight) {
+        ExecutorService virtual = virtualThreads();
+        if (virtual != null) {
+            return virtual;
+        }
+        // Threads only exist while calls are in flight; the tests' own permits keep them under the maximum
+        return new ThreadPoolExecutor(0, maxRunning * maxInFlight, 60, TimeUnit.SECONDS,
+                                      new SynchronousQueue<>(), daemonThreads("load-test-exec-"));
+    }
+
+    private static ExecutorService virtualThreads() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
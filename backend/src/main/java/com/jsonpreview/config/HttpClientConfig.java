@@ -0,0 +1,184 @@
+package com.jsonpreview.config;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.config.Registry;
+import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.net.ssl.SSLContext;
+import java.net.URISyntaxException;
+import java.util.Map;
+
+/**
+ * Shared, pooled HTTP client for upstream executions, configured from {@code http.client.*}.
+ *
+ * All TLS connections use one {@link SSLContext}, so its client session cache lets new
+ * connections to a host resume an earlier TLS session instead of doing a full handshake.
+ * The context is created for the client rather than taken from {@code SSLContext.getDefault()},
+ * so its session cache settings do not leak into every other TLS user in the JVM.
+ */
+@Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class HttpClientConfig {
+
+    @Bean
+    public SSLContext upstreamSslContext(HttpClientProperties properties) {
+        SSLContext sslContext = SSLContexts.createDefault();
+        sslContext.getClientSessionContext().setSessionCacheSize(properties.getTlsSessionCacheSize());
+        sslContext.getClientSessionContext().setSessionTimeout((int) properties.getTlsSessionTimeout().toSeconds());
+        return sslContext;
+    }
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager upstreamConnectionManager(HttpClientProperties properties,
+                                                                       SSLContext upstreamSslContext) {
+        // Built by hand rather than through the builder, which has no way to replace the
+        // plain socket factory, so that connect and TLS handshake times can be recorded
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+            .register(URIScheme.HTTP.id, new ConnectionTiming.PlainSockets())
+            .register(URIScheme.HTTPS.id, new ConnectionTiming.TlsSockets(upstreamSslContext))
+            .build();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+            socketFactories, PoolConcurrencyPolicy.STRICT, PoolReusePolicy.LIFO, null, null,
+            new ConnectionTiming.Dns(), null);
+        connectionManager.setMaxTotal(properties.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxPerRoute());
+        connectionManager.setDefaultConnectionConfig(connectionConfig(properties));
+
+        for (Map.Entry<String, Integer> limit : properties.getRouteLimits().entrySet()) {
+            connectionManager.setMaxPerRoute(toRoute(limit.getKey()), limit.getValue());
+        }
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient upstreamHttpClient(HttpClientProperties properties,
+                                                  PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return HttpClients.custom()
+            .setConnectionManager(upstreamConnectionManager)
+            .setDefaultRequestConfig(requestConfig(properties))
+            .addExecInterceptorBefore(ChainElement.MAIN_TRANSPORT.name(), "connection-ready",
+                                      ConnectionTiming.CONNECTION_READY)
+            .evictIdleConnections(TimeValue.of(properties.getIdleEviction()))
+            .evictExpiredConnections()
+            .build();
+    }
+
+    @Bean
+    public HttpClientPoolMetrics httpClientPoolMetrics(HttpClientProperties properties,
+                                                       PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return new HttpClientPoolMetrics("classic", upstreamConnectionManager, properties.getMetricsMaxRoutes());
+    }
+
+    /**
+     * Non-blocking client used when {@code execution.engine=async}: a few I/O reactor
+     * threads drive every in-flight exchange, and TLS upstreams that offer HTTP/2 through
+     * ALPN are spoken to over HTTP/2 ({@code http.client.version-policy}).
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "execution.engine", havingValue = "async")
+    static class AsyncEngineConfig {
+
+        @Bean(destroyMethod = "close")
+        public PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager(HttpClientProperties properties,
+                                                                                 SSLContext upstreamSslContext) {
+            // Built by hand, like the classic one, to time the connections it opens
+            Registry<TlsStrategy> tlsStrategies = RegistryBuilder.<TlsStrategy>create()
+                .register(URIScheme.HTTPS.id, ClientTlsStrategyBuilder.create()
+                    .setSslContext(upstreamSslContext)
+                    .build())
+                .build();
+            PoolingAsyncClientConnectionManager connectionManager = new ConnectionTiming.AsyncConnections(tlsStrategies);
+            connectionManager.setDefaultTlsConfig(TlsConfig.custom()
+                .setVersionPolicy(properties.getVersionPolicy())
+                .build());
+            connectionManager.setMaxTotal(properties.getMaxTotal());
+            connectionManager.setDefaultMaxPerRoute(properties.getMaxPerRoute());
+            connectionManager.setDefaultConnectionConfig(connectionConfig(properties));
+
+            for (Map.Entry<String, Integer> limit : properties.getRouteLimits().entrySet()) {
+                connectionManager.setMaxPerRoute(toRoute(limit.getKey()), limit.getValue());
+            }
+            return connectionManager;
+        }
+
+        @Bean(initMethod = "start", destroyMethod = "close")
+        public CloseableHttpAsyncClient upstreamAsyncHttpClient(HttpClientProperties properties,
+                                                                PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager) {
+            IOReactorConfig.Builder reactor = IOReactorConfig.custom();
+            if (properties.getIoThreads() > 0) {
+                reactor.setIoThreadCount(properties.getIoThreads());
+            }
+            return HttpAsyncClients.custom()
+                .setConnectionManager(upstreamAsyncConnectionManager)
+                .setIOReactorConfig(reactor.build())
+                .setDefaultRequestConfig(requestConfig(properties))
+                .addExecInterceptorBefore(ChainElement.MAIN_TRANSPORT.name(), "connection-ready",
+                                          ConnectionTiming.ASYNC_CONNECTION_READY)
+                .evictIdleConnections(TimeValue.of(properties.getIdleEviction()))
+                .evictExpiredConnections()
+                .build();
+        }
+
+        @Bean
+        public HttpClientPoolMetrics asyncHttpClientPoolMetrics(HttpClientProperties properties,
+                                                                PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager) {
+            return new HttpClientPoolMetrics("async", upstreamAsyncConnectionManager, properties.getMetricsMaxRoutes());
+        }
+    }
+
+    private static ConnectionConfig connectionConfig(HttpClientProperties properties) {
+        return ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+            .setSocketTimeout(Timeout.of(properties.getResponseTimeout()))
+            .setTimeToLive(TimeValue.of(properties.getTimeToLive()))
+            .setValidateAfterInactivity(TimeValue.of(properties.getValidateAfterInactivity()))
+            .build();
+    }
+
+    private static RequestConfig requestConfig(HttpClientProperties properties) {
+        return RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.of(properties.getConnectionRequestTimeout()))
+            .setResponseTimeout(Timeout.of(properties.getResponseTimeout()))
+            .build();
+    }
+
+    /**
+     * Route for a {@code scheme://host[:port]} key, with the scheme's default port filled in
+     * the same way the client normalizes targets before leasing.
+     */
+    static HttpRoute toRoute(String key) {
+        try {
+            HttpHost host = HttpHost.create(key);
+            boolean secure = "https".equalsIgnoreCase(host.getSchemeName());
+            int port = host.getPort() > 0 ? host.getPort() : (secure ? 443 : 80);
+            return new HttpRoute(new HttpHost(host.getSchemeName(), host.getHostName(), port), null, secure);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid http.client.route-limits key: " + key, e);
+        }
+    }
+}
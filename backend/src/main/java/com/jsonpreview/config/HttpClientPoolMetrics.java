@@ -0,0 +1,96 @@
+package com.jsonpreview.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Connection pool gauges for an upstream HTTP client, tagged with the pool name
+ * ({@code classic} or {@code async}).
+ *
+ * {@code httpclient.pool.*} reports the whole pool and {@code httpclient.pool.route.*}
+ * each route ({@code route} tag). A growing {@code pending} count means executions are
+ * waiting for a connection rather than for the upstream. Routes only exist once used,
+ * so the route gauges are refreshed periodically: routes the pool has dropped (no leased,
+ * idle or pending connections left) lose their gauges, and at most {@code maxRoutes}
+ * routes are reported at a time, so the {@code route} tag stays bounded however many
+ * hosts are called.
+ */
+public class HttpClientPoolMetrics implements MeterBinder {
+
+    private final String pool;
+    private final ConnPoolControl<HttpRoute> connectionManager;
+    private final int maxRoutes;
+    // Guarded by this; only touched by bindTo and the refresh
+    private final Map<HttpRoute, List<Meter>> routeMeters = new HashMap<>();
+    private volatile MeterRegistry registry;
+
+    public HttpClientPoolMetrics(String pool, ConnPoolControl<HttpRoute> connectionManager, int maxRoutes) {
+        this.pool = pool;
+        this.connectionManager = connectionManager;
+        this.maxRoutes = maxRoutes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        totalGauge(registry, "httpclient.pool.leased", PoolStats::getLeased, "Connections currently in use");
+        totalGauge(registry, "httpclient.pool.pending", PoolStats::getPending, "Requests waiting for a connection");
+        totalGauge(registry, "httpclient.pool.available", PoolStats::getAvailable, "Idle connections ready for reuse");
+        totalGauge(registry, "httpclient.pool.max", PoolStats::getMax, "Maximum connections in the pool");
+        refreshRoutes();
+    }
+
+    private void totalGauge(MeterRegistry registry, String name, Function<PoolStats, Integer> stat, String description) {
+        Gauge.builder(name, connectionManager, cm -> stat.apply(cm.getTotalStats()))
+            .tag("pool", pool)
+            .description(description)
+            .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${http.client.metrics-refresh:PT15S}")
+    public synchronized void refreshRoutes() {
+        MeterRegistry meterRegistry = this.registry;
+        if (meterRegistry == null) return;
+
+        Set<HttpRoute> routes = connectionManager.getRoutes();
+        for (Iterator<Map.Entry<HttpRoute, List<Meter>>> it = routeMeters.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<HttpRoute, List<Meter>> registered = it.next();
+            if (!routes.contains(registered.getKey())) {
+                registered.getValue().forEach(meterRegistry::remove);
+                it.remove();
+            }
+        }
+        for (HttpRoute route : routes) {
+            if (routeMeters.size() >= maxRoutes) break;
+            if (!routeMeters.containsKey(route)) {
+                String tag = route.getTargetHost().toURI();
+                routeMeters.put(route, List.of(
+                    routeGauge(meterRegistry, route, tag, "httpclient.pool.route.leased", PoolStats::getLeased),
+                    routeGauge(meterRegistry, route, tag, "httpclient.pool.route.pending", PoolStats::getPending),
+                    routeGauge(meterRegistry, route, tag, "httpclient.pool.route.available", PoolStats::getAvailable),
+                    routeGauge(meterRegistry, route, tag, "httpclient.pool.route.max", PoolStats::getMax)));
+            }
+        }
+    }
+
+    private Meter routeGauge(MeterRegistry registry, HttpRoute route, String tag, String name,
+                             Function<PoolStats, Integer> stat) {
+        return Gauge.builder(name, connectionManager, cm -> stat.apply(cm.getStats(route)))
+            .tag("pool", pool)
+            .tag("route", tag)
+            .register(registry);
+    }
+}
@@ -0,0 +1,83 @@
+package com.jsonpreview.config;
+
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connection pool and timeout settings for the upstream HTTP client ({@code http.client.*}).
+ */
+@ConfigurationProperties(prefix = "http.client")
+public class HttpClientProperties {
+
+    private int maxTotal = 200;
+    private int maxPerRoute = 50;
+
+    // Per-route overrides keyed by scheme://host[:port], e.g. http.client.route-limits[https://api.example.com]=100
+    private Map<String, Integer> routeLimits = new LinkedHashMap<>();
+
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration responseTimeout = Duration.ofSeconds(60);
+    // How long an execution may wait for a pooled connection before failing
+    private Duration connectionRequestTimeout = Duration.ofSeconds(30);
+
+    private Duration idleEviction = Duration.ofSeconds(30);
+    private Duration timeToLive = Duration.ofMinutes(5);
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+
+    private int tlsSessionCacheSize = 1000;
+    private Duration tlsSessionTimeout = Duration.ofHours(1);
+
+    // Async engine only: I/O reactor threads (0 = one per CPU) and HTTP/1.1 vs HTTP/2 selection
+    private int ioThreads = 0;
+    private HttpVersionPolicy versionPolicy = HttpVersionPolicy.NEGOTIATE;
+
+    // Most routes given their own httpclient.pool.route.* gauges at a time
+    private int metricsMaxRoutes = 100;
+
+    // Getters and Setters
+    public int getMaxTotal() { return maxTotal; }
+    public void setMaxTotal(int maxTotal) { this.maxTotal = maxTotal; }
+
+    public int getMaxPerRoute() { return maxPerRoute; }
+    public void setMaxPerRoute(int maxPerRoute) { this.maxPerRoute = maxPerRoute; }
+
+    public Map<String, Integer> getRouteLimits() { return routeLimits; }
+    public void setRouteLimits(Map<String, Integer> routeLimits) { this.routeLimits = routeLimits; }
+
+    public Duration getConnectTimeout() { return connectTimeout; }
+    public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+
+    public Duration getResponseTimeout() { return responseTimeout; }
+    public void setResponseTimeout(Duration responseTimeout) { this.responseTimeout = responseTimeout; }
+
+    public Duration getConnectionRequestTimeout() { return connectionRequestTimeout; }
+    public void setConnectionRequestTimeout(Duration connectionRequestTimeout) { this.connectionRequestTimeout = connectionRequestTimeout; }
+
+    public Duration getIdleEviction() { return idleEviction; }
+    public void setIdleEviction(Duration idleEviction) { this.idleEviction = idleEviction; }
+
+    public Duration getTimeToLive() { return timeToLive; }
+    public void setTimeToLive(Duration timeToLive) { this.timeToLive = timeToLive; }
+
+    public Duration getValidateAfterInactivity() { return validateAfterInactivity; }
+    public void setValidateAfterInactivity(Duration validateAfterInactivity) { this.validateAfterInactivity = validateAfterInactivity; }
+
+    public int getTlsSessionCacheSize() { return tlsSessionCacheSize; }
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) { this.tlsSessionCacheSize = tlsSessionCacheSize; }
+
+    public Duration getTlsSessionTimeout() { return tlsSessionTimeout; }
+    public void setTlsSessionTimeout(Duration tlsSessionTimeout) { this.tlsSessionTimeout = tlsSessionTimeout; }
+
+    public int getIoThreads() { return ioThreads; }
+    public void setIoThreads(int ioThreads) { this.ioThreads = ioThreads; }
+
+    public HttpVersionPolicy getVersionPolicy() { return versionPolicy; }
+    public void setVersionPolicy(HttpVersionPolicy versionPolicy) { this.versionPolicy = versionPolicy; }
+
+    public int getMetricsMaxRoutes() { return metricsMaxRoutes; }
+    public void setMetricsMaxRoutes(int metricsMaxRoutes) { this.metricsMaxRoutes = metricsMaxRoutes; }
+}
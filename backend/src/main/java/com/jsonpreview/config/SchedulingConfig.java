@@ -0,0 +1,12 @@
+package com.jsonpreview.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on {@code @Scheduled} methods, such as the periodic pool metrics refresh.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -18,22 +18,63 @@ import java.util.Map;
  * @since 2025-09-24
  */
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.BatchExecuteRequestDto;
+import com.jsonpreview.dto.CollectionRunRequestDto;
 import com.jsonpreview.dto.ExecuteRequestDto;
-import com.jsonpreview.dto.RequestSummaryDto;
+import com.jsonpreview.dto.HistoryEntryDto;
+import com.jsonpreview.dto.HistoryRecordDto;
+import com.jsonpreview.dto.IterationRequestDto;
+import com.jsonpreview.dto.IterationResultDto;
+import com.jsonpreview.dto.LoadTestRequestDto;
+import com.jsonpreview.dto.LoadTestResultDto;
+import com.jsonpreview.dto.RunSummaryDto;
 import com.jsonpreview.model.PostmanCollection;
-import com.jsonpreview.model.PostmanEnvironment;
 import com.jsonpreview.service.ApiExecutionService;
+import com.jsonpreview.service.BatchExecutionService;
+import com.jsonpreview.service.CollectionRegistry;
+import com.jsonpreview.service.CollectionRunService;
+import com.jsonpreview.service.CollectionSnapshot;
+import com.jsonpreview.service.EnvironmentSnapshot;
+import com.jsonpreview.service.ExecutionHistory;
+import com.jsonpreview.service.IterationService;
+import com.jsonpreview.service.JsonDiffService;
+import com.jsonpreview.service.JsonDocument;
+import com.jsonpreview.service.JsonDocumentService;
+import com.jsonpreview.service.JsonQueryService;
+import com.jsonpreview.service.LoadTestService;
 import com.jsonpreview.service.PostmanParserService;
+import com.jsonpreview.service.RequestListing;
+import com.jsonpreview.service.ResponseCache;
+import com.jsonpreview.service.RunGraph;
+import com.jsonpreview.service.UpstreamStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.hc.core5.http.Header;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * REST Controller providing API endpoints for JSON processing and Postman collection management
@@ -50,25 +91,68 @@ public class ApiController {
     private static final String KEY_ERROR = "error";
     private static final String KEY_MESSAGE = "message";
     
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    
+    private static final String UPSTREAM_STATUS = "X-Upstream-Status";
+    private static final String UPSTREAM_TIME = "X-Upstream-Time-Ms";
+    private static final String UPSTREAM_HEADER_PREFIX = "X-Upstream-Header-";
+    private static final String UPSTREAM_TOTAL_TIME = "X-Upstream-Total-Ms";
+    private static final String UPSTREAM_BYTES = "X-Upstream-Bytes";
+    
+    // Document browsing: children per page at most, and default cut-off for long strings
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_MAX_STRING_LENGTH = 1000;
+    
     // Logger for tracking API requests and debugging
     private static final Logger logger = LoggerFactory.getLogger(ApiController.class);
     
     // Service dependencies injected via Spring's dependency injection
     private final PostmanParserService postmanParserService;
     private final ApiExecutionService apiExecutionService;
+    private final CollectionRegistry collectionRegistry;
+    private final BatchExecutionService batchExecutionService;
+    private final JsonDocumentService jsonDocumentService;
+    private final JsonQueryService jsonQueryService;
+    private final JsonDiffService jsonDiffService;
+    private final ResponseCache responseCache;
+    private final LoadTestService loadTestService;
+    private final CollectionRunService collectionRunService;
+    private final IterationService iterationService;
+    private final ExecutionHistory executionHistory;
+    
+    // Single-line JSON for NDJSON streams, independent of spring.jackson indent-output
+    private final ObjectWriter lineWriter;
 
-    public ApiController(PostmanParserService postmanParserService, ApiExecutionService apiExecutionService) {
+    public ApiController(PostmanParserService postmanParserService, ApiExecutionService apiExecutionService,
+                         CollectionRegistry collectionRegistry, BatchExecutionService batchExecutionService,
+                         JsonDocumentService jsonDocumentService, JsonQueryService jsonQueryService,
+                         JsonDiffService jsonDiffService, ResponseCache responseCache, LoadTestService loadTestService,
+                         CollectionRunService collectionRunService, IterationService iterationService,
+                         ExecutionHistory executionHistory, ObjectMapper objectMapper) {
         this.postmanParserService = postmanParserService;
         this.apiExecutionService = apiExecutionService;
+        this.collectionRegistry = collectionRegistry;
+        this.batchExecutionService = batchExecutionService;
+        this.jsonDocumentService = jsonDocumentService;
+        this.jsonQueryService = jsonQueryService;
+        this.jsonDiffService = jsonDiffService;
+        this.responseCache = responseCache;
+        this.loadTestService = loadTestService;
+        this.collectionRunService = collectionRunService;
+        this.iterationService = iterationService;
+        this.executionHistory = executionHistory;
+        this.lineWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
     }
     
     /**
      * Upload and parse a Postman collection file
      * 
      * Accepts multipart file uploads containing Postman Collection v2.1 JSON format.
-     * The collection is parsed and stored in memory for subsequent request execution.
+     * The collection is parsed and stored in the collection registry for subsequent
+     * request execution, and becomes the default collection.
      * 
      * @param file MultipartFile containing Postman collection JSON
+     * @param id optional collection id; an existing collection with this id is replaced
      * @return ResponseEntity with success status and collection metadata
      * 
      * @throws Exception if file parsing fails or invalid format is provided
@@ -77,26 +161,30 @@ public class ApiController {
      * {
      *   "success": true,
      *   "message": "Collection uploaded successfully", 
+     *   "collectionId": "3f6c...",
      *   "collectionName": "My API Collection"
      * }
      */
     @PostMapping("/upload/collection")
-    public ResponseEntity<Map<String, Object>> uploadCollection(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, Object>> uploadCollection(@RequestParam("file") MultipartFile file,
+                                                                @RequestParam(value = "id", required = false) String id) {
         try {
             logger.info("Uploading collection file: {} (size: {} bytes)", 
                        file.getOriginalFilename(), file.getSize());
             
             // Parse the uploaded Postman collection
-            PostmanCollection collection = postmanParserService.parseCollection(file);
+            CollectionSnapshot snapshot = postmanParserService.parseCollection(file, id);
+            PostmanCollection collection = snapshot.getCollection();
             
-            logger.info("Successfully parsed collection: {} with {} items", 
-                       collection.getInfo().getName(), 
+            logger.info("Successfully parsed collection: {} ({}) with {} items", 
+                       snapshot.getName(), snapshot.getId(),
                        collection.getItems().size());
             
             java.util.Map<String, Object> resp = new java.util.HashMap<>();
             resp.put(KEY_SUCCESS, true);
             resp.put(KEY_MESSAGE, "Collection uploaded successfully");
-            resp.put("collectionName", collection.getInfo().getName());
+            resp.put("collectionId", snapshot.getId());
+            resp.put("collectionName", snapshot.getName());
             resp.put("itemCount", collection.getItems().size());
             return ResponseEntity.ok().body(resp);
         } catch (Exception e) {
@@ -110,13 +198,15 @@ public class ApiController {
     }
     
     @PostMapping("/upload/environment")
-    public ResponseEntity<Map<String, Object>> uploadEnvironment(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, Object>> uploadEnvironment(@RequestParam("file") MultipartFile file,
+                                                                 @RequestParam(value = "id", required = false) String id) {
         try {
             logger.info("Uploading environment file: {}", file.getOriginalFilename());
-            PostmanEnvironment environment = postmanParserService.parseEnvironment(file);
+            EnvironmentSnapshot environment = postmanParserService.parseEnvironment(file, id);
             java.util.Map<String, Object> resp = new java.util.HashMap<>();
             resp.put(KEY_SUCCESS, true);
             resp.put(KEY_MESSAGE, "Environment uploaded successfully");
+            resp.put("environmentId", environment.getId());
             resp.put("environmentName", environment.getName());
             return ResponseEntity.ok().body(resp);
         } catch (Exception e) {
@@ -134,8 +224,7 @@ public class ApiController {
             logger.info("Uploading JSON response file: {}", file.getOriginalFilename());
             
             // Read and parse the JSON file
-            String jsonContent = new String(file.getBytes(), StandardCharsets.UTF_8);
-            Object parsedJson = postmanParserService.parseJsonResponse(jsonContent);
+            Object parsedJson = postmanParserService.parseJsonResponse(file);
             
             // Create response similar to API execution response
             ApiResponseDto response = new ApiResponseDto();
@@ -158,30 +247,782 @@ public class ApiController {
         }
     }
     
+    /**
+     * Upload a JSON document for lazy browsing
+     * 
+     * Unlike /upload/json-response, the document is not turned into an object graph:
+     * the server keeps the raw bytes plus a compact structural index, and the client
+     * expands it node by node through /documents/{id}/node.
+     * 
+     * Example successful response:
+     * {
+     *   "success": true,
+     *   "documentId": "9b1e...",
+     *   "size": 524288000,
+     *   "nodeCount": 12000000,
+     *   "root": { "pointer": "", "type": "object", "childCount": 3 }
+     * }
+     */
+    @PostMapping("/documents")
+    public ResponseEntity<Map<String, Object>> uploadDocument(@RequestParam("file") MultipartFile file,
+                                                              @RequestParam(value = "id", required = false) String id,
+                                                              @RequestParam(value = "searchable", required = false) Boolean searchable) {
+        try {
+            logger.info("Uploading JSON document: {}", file.getOriginalFilename());
+            JsonDocument document = jsonDocumentService.upload(file, id, searchable);
+            
+            java.util.Map<String, Object> resp = describeDocument(document);
+            resp.put(KEY_SUCCESS, true);
+            resp.put(KEY_MESSAGE, "Document uploaded successfully");
+            resp.put("root", jsonDocumentService.describe(document, 0, "", 0, 0, DEFAULT_MAX_STRING_LENGTH));
+            return ResponseEntity.ok().body(resp);
+        } catch (IllegalStateException e) {
+            java.util.Map<String, Object> resp = new java.util.HashMap<>();
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(resp);
+        } catch (Exception e) {
+            logger.error("Error uploading JSON document: {}", e.getMessage(), e);
+            java.util.Map<String, Object> resp = new java.util.HashMap<>();
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, "Invalid JSON file: " + e.getMessage());
+            return ResponseEntity.badRequest().body(resp);
+        }
+    }
+    
+    @GetMapping("/documents")
+    public ResponseEntity<List<Map<String, Object>>> getDocuments() {
+        List<Map<String, Object>> documents = new ArrayList<>();
+        for (JsonDocument document : jsonDocumentService.getDocuments()) {
+            documents.add(describeDocument(document));
+        }
+        return ResponseEntity.ok(documents);
+    }
+    
+    /**
+     * One node of a stored document, addressed by JSON Pointer ("" is the root), with
+     * a page of its children: {@code limit} children starting at {@code offset}.
+     */
+    @GetMapping("/documents/{id}/node")
+    public ResponseEntity<Map<String, Object>> getDocumentNode(@PathVariable("id") String id,
+                                                               @RequestParam(value = "pointer", defaultValue = "") String pointer,
+                                                               @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                               @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                               @RequestParam(value = "maxStringLength", defaultValue = "1000") int maxStringLength) {
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        try (JsonDocument document = jsonDocumentService.openDocument(id)) {
+            if (document == null) {
+                resp.put(KEY_SUCCESS, false);
+                resp.put(KEY_ERROR, "Document not found: " + id);
+                return ResponseEntity.status(404).body(resp);
+            }
+            int node = jsonDocumentService.resolve(document, pointer);
+            if (node < 0) {
+                resp.put(KEY_SUCCESS, false);
+                resp.put(KEY_ERROR, "No value at pointer: " + pointer);
+                return ResponseEntity.status(404).body(resp);
+            }
+            resp.put(KEY_SUCCESS, true);
+            resp.put("node", jsonDocumentService.describe(document, node, pointer, offset,
+                                                          Math.min(limit, MAX_PAGE_SIZE), maxStringLength));
+            return ResponseEntity.ok().body(resp);
+        } catch (IllegalArgumentException e) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, "Invalid pointer: " + e.getMessage());
+            return ResponseEntity.badRequest().body(resp);
+        } catch (Exception e) {
+            logger.error("Error reading document {}: {}", id, e.getMessage(), e);
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.internalServerError().body(resp);
+        }
+    }
+    
+    /**
+     * The complete JSON of one node, streamed from the stored bytes.
+     */
+    @GetMapping("/documents/{id}/value")
+    public ResponseEntity<StreamingResponseBody> getDocumentValue(@PathVariable("id") String id,
+                                                                  @RequestParam(value = "pointer", defaultValue = "") String pointer,
+                                                                  @RequestParam(value = "pretty", defaultValue = "false") boolean pretty) {
+        JsonDocument document = jsonDocumentService.openDocument(id);
+        if (document == null) {
+            return ResponseEntity.notFound().build();
+        }
+        int node;
+        try {
+            node = jsonDocumentService.resolve(document, pointer);
+        } catch (Exception e) {
+            node = -1;
+        }
+        if (node < 0) {
+            document.close();
+            return ResponseEntity.notFound().build();
+        }
+        int resolved = node;
+        // The reader reference is held until the value has been written
+        StreamingResponseBody body = out -> {
+            try (document) {
+                jsonDocumentService.writeValue(document, resolved, out, pretty);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+    
+    /**
+     * Runs a JSONPath (e.g. {@code $.items[*].id}) or JSON Pointer query against a stored
+     * document and returns one page of matches. {@code count=true} also reports the total
+     * number of matches, at the cost of visiting all of them.
+     */
+    @GetMapping("/documents/{id}/query")
+    public ResponseEntity<Map<String, Object>> queryDocument(@PathVariable("id") String id,
+                                                             @RequestParam(value = "path", defaultValue = "$") String path,
+                                                             @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                             @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                             @RequestParam(value = "maxStringLength", defaultValue = "1000") int maxStringLength,
+                                                             @RequestParam(value = "count", defaultValue = "false") boolean count) {
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        try (JsonDocument document = jsonDocumentService.openDocument(id)) {
+            if (document == null) {
+                resp.put(KEY_SUCCESS, false);
+                resp.put(KEY_ERROR, "Document not found: " + id);
+                return ResponseEntity.status(404).body(resp);
+            }
+            resp.put(KEY_SUCCESS, true);
+            resp.put("result", jsonQueryService.query(document, path, offset, Math.min(limit, MAX_PAGE_SIZE),
+                                                      maxStringLength, count));
+            return ResponseEntity.ok().body(resp);
+        } catch (IllegalArgumentException e) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, "Invalid expression: " + e.getMessage());
+            return ResponseEntity.badRequest().body(resp);
+        } catch (Exception e) {
+            logger.error("Error querying document {}: {}", id, e.getMessage(), e);
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.internalServerError().body(resp);
+        }
+    }
+    
+    /**
+     * Finds the nodes of a stored document whose member name and/or scalar value contains
+     * the given text, ignoring case. {@code scope} is {@code all}, {@code keys} or
+     * {@code values}; each match carries the character ranges that matched. Served from the
+     * word index built at upload, so the text must consist of whole words.
+     */
+    @GetMapping("/documents/{id}/search")
+    public ResponseEntity<Map<String, Object>> searchDocument(@PathVariable("id") String id,
+                                                              @RequestParam("q") String q,
+                                                              @RequestParam(value = "scope", defaultValue = "all") String scope,
+                                                              @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                              @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                              @RequestParam(value = "maxStringLength", defaultValue = "1000") int maxStringLength,
+                                                              @RequestParam(value = "count", defaultValue = "false") boolean count) {
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        boolean keys = scope.equalsIgnoreCase("all") || scope.equalsIgnoreCase("keys");
+        boolean values = scope.equalsIgnoreCase("all") || scope.equalsIgnoreCase("values");
+        if (!keys && !values) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, "Invalid scope: " + scope + " (expected all, keys or values)");
+            return ResponseEntity.badRequest().body(resp);
+        }
+        try (JsonDocument document = jsonDocumentService.openDocument(id)) {
+            if (document == null) {
+                resp.put(KEY_SUCCESS, false);
+                resp.put(KEY_ERROR, "Document not found: " + id);
+                return ResponseEntity.status(404).body(resp);
+            }
+            resp.put(KEY_SUCCESS, true);
+            resp.put("result", jsonDocumentService.search(document, q, keys, values, offset,
+                                                          Math.min(limit, MAX_PAGE_SIZE), maxStringLength, count));
+            return ResponseEntity.ok().body(resp);
+        } catch (IllegalArgumentException e) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.badRequest().body(resp);
+        } catch (IllegalStateException e) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.status(409).body(resp);
+        } catch (Exception e) {
+            logger.error("Error searching document {}: {}", id, e.getMessage(), e);
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.internalServerError().body(resp);
+        }
+    }
+    
+    /**
+     * Structural diff of two stored documents: paths added, removed or changed from
+     * {@code id} to {@code other}. {@code arrayKey} (e.g. {@code id}) matches array
+     * elements by that member instead of by position. {@code count=true} keeps walking
+     * past the limit to report the totals.
+     */
+    @GetMapping("/documents/{id}/diff")
+    public ResponseEntity<Map<String, Object>> diffDocuments(@PathVariable("id") String id,
+                                                             @RequestParam("other") String other,
+                                                             @RequestParam(value = "arrayKey", required = false) String arrayKey,
+                                                             @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                             @RequestParam(value = "maxStringLength", defaultValue = "1000") int maxStringLength,
+                                                             @RequestParam(value = "count", defaultValue = "false") boolean count) {
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        try (JsonDocument left = jsonDocumentService.openDocument(id);
+             JsonDocument right = jsonDocumentService.openDocument(other)) {
+            if (left == null || right == null) {
+                resp.put(KEY_SUCCESS, false);
+                resp.put(KEY_ERROR, "Document not found: " + (left == null ? id : other));
+                return ResponseEntity.status(404).body(resp);
+            }
+            resp.put(KEY_SUCCESS, true);
+            resp.put("result", jsonDiffService.diff(left, right, arrayKey, Math.min(limit, MAX_PAGE_SIZE),
+                                                    maxStringLength, count));
+            return ResponseEntity.ok().body(resp);
+        } catch (Exception e) {
+            logger.error("Error comparing documents {} and {}: {}", id, other, e.getMessage(), e);
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.internalServerError().body(resp);
+        }
+    }
+    
+    @DeleteMapping("/documents/{id}")
+    public ResponseEntity<Void> deleteDocument(@PathVariable("id") String id) {
+        return jsonDocumentService.removeDocument(id)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+    
+    private static java.util.Map<String, Object> describeDocument(JsonDocument document) {
+        java.util.Map<String, Object> item = new java.util.HashMap<>();
+        item.put("documentId", document.getId());
+        item.put("name", document.getName());
+        item.put("size", document.getSize());
+        item.put("nodeCount", document.getIndex().size());
+        item.put("indexBytes", document.getIndex().memoryBytes());
+        item.put("mapped", document.isMapped());
+        item.put("indexTimeMs", document.getIndexTimeMs());
+        item.put("searchable", document.getSearchIndex() != null);
+        if (document.getSearchIndex() != null) {
+            item.put("searchIndexBytes", document.getSearchIndex().memoryBytes());
+            item.put("termCount", document.getSearchIndex().termCount());
+        }
+        return item;
+    }
+    
+    /**
+     * List the requests of the current collection
+     * 
+     * The JSON is serialized once per collection upload and sent with a strong ETag;
+     * polls carrying a matching If-None-Match are answered with 304 Not Modified
+     * (handled by Spring's conditional request support for ResponseEntity).
+     */
     @GetMapping("/requests")
-    public ResponseEntity<List<RequestSummaryDto>> getRequests() {
+    public ResponseEntity<byte[]> getRequests(@RequestParam(value = "collectionId", required = false) String collectionId) {
         try {
-            List<RequestSummaryDto> requests = postmanParserService.getAllRequests();
-            return ResponseEntity.ok(requests);
+            RequestListing listing = postmanParserService.getRequestListing(collectionId);
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(listing.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .body(listing.getJson());
         } catch (Exception e) {
             logger.error("Error getting requests: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
     
-    @PostMapping("/executeRequest")
-    public ResponseEntity<ApiResponseDto> executeRequest(@RequestBody ExecuteRequestDto requestDto) {
+    @GetMapping("/collections")
+    public ResponseEntity<List<Map<String, Object>>> getCollections() {
+        String defaultId = collectionRegistry.getDefaultCollectionId();
+        List<Map<String, Object>> collections = new ArrayList<>();
+        for (CollectionSnapshot snapshot : collectionRegistry.getCollections()) {
+            java.util.Map<String, Object> item = new java.util.HashMap<>();
+            item.put("id", snapshot.getId());
+            item.put("name", snapshot.getName());
+            item.put("requestCount", snapshot.getIndex().size());
+            item.put("streamed", snapshot.isStreamed());
+            item.put("estimatedBytes", snapshot.getEstimatedBytes());
+            item.put("default", snapshot.getId().equals(defaultId));
+            collections.add(item);
+        }
+        return ResponseEntity.ok(collections);
+    }
+    
+    @GetMapping("/environments")
+    public ResponseEntity<List<Map<String, Object>>> getEnvironments() {
+        String defaultId = collectionRegistry.getDefaultEnvironmentId();
+        List<Map<String, Object>> environments = new ArrayList<>();
+        for (EnvironmentSnapshot snapshot : collectionRegistry.getEnvironments()) {
+            java.util.Map<String, Object> item = new java.util.HashMap<>();
+            item.put("id", snapshot.getId());
+            item.put("name", snapshot.getName());
+            item.put("variableCount", snapshot.getVariables().size());
+            item.put("default", snapshot.getId().equals(defaultId));
+            environments.add(item);
+        }
+        return ResponseEntity.ok(environments);
+    }
+    
+    @DeleteMapping("/collections/{id}")
+    public ResponseEntity<Void> deleteCollection(@PathVariable("id") String id) {
+        return collectionRegistry.removeCollection(id)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+    
+    @DeleteMapping("/environments/{id}")
+    public ResponseEntity<Void> deleteEnvironment(@PathVariable("id") String id) {
+        return collectionRegistry.removeEnvironment(id)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Execute many collection requests concurrently
+     * 
+     * Accepts either an explicit list of requests or a folder path of a collection.
+     * Results are streamed back as NDJSON, one BatchResultDto per line, in completion
+     * order, so fast requests are visible before the slowest one finishes.
+     */
+    @PostMapping(value = "/executeBatch", produces = { "application/x-ndjson", "application/json" })
+    public ResponseEntity<StreamingResponseBody> executeBatch(@RequestBody BatchExecuteRequestDto batch) {
+        List<ExecuteRequestDto> requests;
         try {
-            logger.info("Executing request: {}", requestDto.getRequestName());
-            ApiResponseDto response = apiExecutionService.executeRequest(requestDto);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Error executing request: {}", e.getMessage(), e);
+            requests = batchExecutionService.resolve(batch);
+        } catch (IllegalArgumentException e) {
+            java.util.Map<String, Object> resp = new java.util.HashMap<>();
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> lineWriter.writeValue(out, resp));
+        }
+        
+        logger.info("Executing batch of {} requests", requests.size());
+        StreamingResponseBody body = out -> batchExecutionService.execute(requests, batch.getParallelism(), result -> {
+            executionHistory.record(requests.get(result.getIndex()), result.getResponse());
+            out.write(lineWriter.writeValueAsBytes(result));
+            out.write('\n');
+            out.flush();
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+    
+    /**
+     * Run the requests of a collection folder as a pipeline
+     * 
+     * Values listed under {@code extract} are taken from each response (JSON Pointer or
+     * "header:<name>") and fill the variables of the requests after it. A request waits
+     * only for the requests producing its variables, so independent ones run in parallel;
+     * requests behind a failed one are skipped. Results are streamed as NDJSON, one
+     * RunStepResultDto per line in completion order, then a {"summary": ...} line.
+     */
+    @PostMapping(value = "/runCollection", produces = { "application/x-ndjson", "application/json" })
+    public ResponseEntity<StreamingResponseBody> runCollection(@RequestBody CollectionRunRequestDto run) {
+        RunGraph graph;
+        try {
+            graph = collectionRunService.resolve(run);
+        } catch (IllegalArgumentException e) {
+            java.util.Map<String, Object> resp = new java.util.HashMap<>();
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> lineWriter.writeValue(out, resp));
+        }
+        
+        logger.info("Running {} requests of collection {}", graph.size(), run.getCollectionId());
+        StreamingResponseBody body = out -> {
+            RunSummaryDto summary = collectionRunService.execute(graph, result -> {
+                out.write(lineWriter.writeValueAsBytes(result));
+                out.write('\n');
+                out.flush();
+            });
+            out.write(lineWriter.writeValueAsBytes(Map.of("summary", summary)));
+            out.write('\n');
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+    
+    /**
+     * Starts a load test of one collection request at a target rate ({@code rps}, open
+     * loop) or concurrency, for {@code durationSeconds}. Returns at once with the test id;
+     * figures are polled from /loadtests/{id} or followed live on /loadtests/{id}/stream.
+     */
+    @PostMapping("/loadtests")
+    public ResponseEntity<Map<String, Object>> startLoadTest(@RequestBody LoadTestRequestDto request) {
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        try {
+            LoadTestResultDto result = loadTestService.start(request);
+            resp.put(KEY_SUCCESS, true);
+            resp.put("id", result.getId());
+            resp.put("result", result);
+            return ResponseEntity.status(202).body(resp);
+        } catch (IllegalArgumentException e) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.badRequest().body(resp);
+        } catch (IllegalStateException e) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.status(429).body(resp);
+        }
+    }
+    
+    @GetMapping("/loadtests")
+    public ResponseEntity<List<LoadTestResultDto>> getLoadTests() {
+        return ResponseEntity.ok(loadTestService.getLoadTests());
+    }
+    
+    @GetMapping("/loadtests/{id}")
+    public ResponseEntity<LoadTestResultDto> getLoadTest(@PathVariable("id") String id) {
+        LoadTestResultDto result = loadTestService.snapshot(id);
+        return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Live figures of a load test as NDJSON, one snapshot per {@code intervalMs} (the
+     * recent* fields cover that interval), ending with the final result.
+     */
+    @GetMapping(value = "/loadtests/{id}/stream", produces = { "application/x-ndjson", "application/json" })
+    public ResponseEntity<StreamingResponseBody> streamLoadTest(@PathVariable("id") String id,
+                                                                @RequestParam(value = "intervalMs", defaultValue = "1000") long intervalMs) {
+        if (loadTestService.snapshot(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long interval = Math.max(intervalMs, 100);
+        StreamingResponseBody body = out -> {
+            try {
+                boolean finished;
+                do {
+                    finished = loadTestService.awaitFinish(id, interval);
+                    LoadTestResultDto result = loadTestService.snapshot(id);
+                    if (result == null) break;
+                    out.write(lineWriter.writeValueAsBytes(result));
+                    out.write('\n');
+                    out.flush();
+                } while (!finished);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+    
+    /**
+     * Stops a running load test, or deletes the result of a finished one.
+     */
+    @DeleteMapping("/loadtests/{id}")
+    public ResponseEntity<Void> stopLoadTest(@PathVariable("id") String id) {
+        return loadTestService.stopOrRemove(id)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Starts running one collection request for every row of a CSV (header row first) or
+     * NDJSON parameter file. Returns at once with the iteration id; results are written to
+     * a file on the server, one line per row in file order, and fetched from
+     * /iterations/{id}/results.
+     */
+    @PostMapping("/iterations")
+    public ResponseEntity<Map<String, Object>> startIteration(@RequestParam("file") MultipartFile file,
+                                                              @RequestParam("requestName") String requestName,
+                                                              @RequestParam(value = "collectionId", required = false) String collectionId,
+                                                              @RequestParam(value = "environment", required = false) String environment,
+                                                              @RequestParam(value = "format", required = false) String format,
+                                                              @RequestParam(value = "parallelism", required = false) Integer parallelism) {
+        IterationRequestDto request = new IterationRequestDto();
+        request.setCollectionId(collectionId);
+        request.setRequestName(requestName);
+        request.setEnvironment(environment);
+        request.setFormat(format);
+        request.setParallelism(parallelism);
+        return iterationResponse(() -> iterationService.start(file, request));
+    }
+    
+    /**
+     * Continues a stopped or interrupted iteration from its last checkpoint, also after a
+     * restart.
+     */
+    @PostMapping("/iterations/{id}/resume")
+    public ResponseEntity<Map<String, Object>> resumeIteration(@PathVariable("id") String id) {
+        return iterationResponse(() -> iterationService.resume(id));
+    }
+    
+    @FunctionalInterface
+    private interface IterationAction {
+        IterationResultDto run() throws IOException;
+    }
+    
+    private ResponseEntity<Map<String, Object>> iterationResponse(IterationAction action) {
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        try {
+            IterationResultDto result = action.run();
+            resp.put(KEY_SUCCESS, true);
+            resp.put("id", result.getId());
+            resp.put("result", result);
+            return ResponseEntity.status(202).body(resp);
+        } catch (IllegalArgumentException e) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.badRequest().body(resp);
+        } catch (IllegalStateException e) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.status(429).body(resp);
+        } catch (IOException e) {
+            logger.error("Error starting iteration: {}", e.getMessage(), e);
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, "Failed to start iteration: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(resp);
+        }
+    }
+    
+    @GetMapping("/iterations")
+    public ResponseEntity<List<IterationResultDto>> getIterations() {
+        return ResponseEntity.ok(iterationService.getIterations());
+    }
+    
+    @GetMapping("/iterations/{id}")
+    public ResponseEntity<IterationResultDto> getIteration(@PathVariable("id") String id) {
+        IterationResultDto result = iterationService.snapshot(id);
+        return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Result lines written so far (up to the last checkpoint), as NDJSON.
+     */
+    @GetMapping(value = "/iterations/{id}/results", produces = { "application/x-ndjson", "application/json" })
+    public ResponseEntity<StreamingResponseBody> getIterationResults(@PathVariable("id") String id) {
+        if (!iterationService.hasResults(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = out -> iterationService.writeResults(id, out);
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+    
+    /**
+     * Stops a running iteration (it can be resumed), or deletes a finished one and its files.
+     */
+    @DeleteMapping("/iterations/{id}")
+    public ResponseEntity<Void> stopIteration(@PathVariable("id") String id) {
+        return iterationService.stopOrRemove(id)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Recorded executions, newest first: of one request name or of all, recorded (epoch
+     * milliseconds) within {@code from}..{@code to}. The next page is requested with
+     * {@code before} set to the returned {@code next} id.
+     */
+    @GetMapping("/history")
+    public ResponseEntity<Map<String, Object>> getHistory(@RequestParam(value = "requestName", required = false) String requestName,
+                                                          @RequestParam(value = "before", required = false) Long before,
+                                                          @RequestParam(value = "from", required = false) Long from,
+                                                          @RequestParam(value = "to", required = false) Long to,
+                                                          @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<HistoryEntryDto> entries = executionHistory.list(requestName, before, from, to, pageSize);
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        resp.put("entries", entries);
+        if (entries.size() == pageSize) {
+            resp.put("next", entries.get(entries.size() - 1).getId());
+        }
+        return ResponseEntity.ok(resp);
+    }
+    
+    /**
+     * A recorded execution with its request and full response, read back from the log.
+     */
+    @GetMapping("/history/{id}")
+    public ResponseEntity<HistoryRecordDto> getHistoryRecord(@PathVariable("id") long id) {
+        try {
+            HistoryRecordDto record = executionHistory.get(id);
+            return record != null ? ResponseEntity.ok(record) : ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            logger.error("Error reading history entry {}: {}", id, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @DeleteMapping("/history/{id}")
+    public ResponseEntity<Void> deleteHistoryRecord(@PathVariable("id") long id) {
+        return executionHistory.delete(id)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+    
+    @DeleteMapping("/history")
+    public ResponseEntity<Map<String, Object>> deleteHistory(@RequestParam("requestName") String requestName) {
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        resp.put("deleted", executionHistory.deleteRequest(requestName));
+        return ResponseEntity.ok(resp);
+    }
+    
+    /**
+     * Executes a collection request. On the async engine the servlet thread is released
+     * and a {@code CompletableFuture} is returned; the classic engine blocks anyway, so it
+     * runs on the servlet thread and Tomcat's pool stays the bound on concurrent calls.
+     */
+    @PostMapping("/executeRequest")
+    public Object executeRequest(@RequestBody ExecuteRequestDto requestDto) {
+        logger.debug("Executing request: {}", requestDto.getRequestName());
+        if (!apiExecutionService.isAsyncEngine()) {
+            try {
+                return executed(requestDto, apiExecutionService.executeRequest(requestDto));
+            } catch (Exception e) {
+                return executionFailed(e);
+            }
+        }
+        return apiExecutionService.executeRequestAsync(requestDto)
+            .thenApply(response -> executed(requestDto, response))
+            .exceptionally(this::executionFailed);
+    }
+    
+    private ResponseEntity<ApiResponseDto> executed(ExecuteRequestDto requestDto, ApiResponseDto response) {
+        executionHistory.record(requestDto, response);
+        return ResponseEntity.ok(response);
+    }
+    
+    private ResponseEntity<ApiResponseDto> executionFailed(Throwable e) {
+        logger.error("Error executing request: {}", e.getMessage(), e);
+        ApiResponseDto errorResponse = new ApiResponseDto();
+        errorResponse.setError("Internal server error: " + e.getMessage());
+        errorResponse.setStatusCode(500);
+        return ResponseEntity.internalServerError().body(errorResponse);
+    }
+    
+    /**
+     * Executes a request and pipes the upstream body straight to the client without
+     * buffering it; {@code pretty=true} re-indents a JSON body on the fly. Upstream status,
+     * headers ({@code X-Upstream-Header-*}) and time to first headers are sent up front as
+     * response headers; total time and body size follow as HTTP trailers. The upstream
+     * response is closed when the async request completes, also if the body never ran
+     * (client gone or async timeout before dispatch).
+     */
+    @PostMapping("/executeRequest/stream")
+    public ResponseEntity<StreamingResponseBody> executeRequestStream(@RequestBody ExecuteRequestDto requestDto,
+                                                                      @RequestParam(value = "pretty", defaultValue = "false") boolean pretty,
+                                                                      HttpServletRequest servletRequest,
+                                                                      HttpServletResponse servletResponse) {
+        logger.debug("Streaming request: {}", requestDto.getRequestName());
+        UpstreamStream upstream = apiExecutionService.openStream(requestDto);
+        if (upstream.isFailed()) {
             ApiResponseDto errorResponse = new ApiResponseDto();
-            errorResponse.setError("Internal server error: " + e.getMessage());
+            errorResponse.setError(upstream.getError());
             errorResponse.setStatusCode(500);
-            return ResponseEntity.internalServerError().body(errorResponse);
+            errorResponse.setExecutionTimeMs(upstream.getElapsedMs());
+            return ResponseEntity.internalServerError()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> lineWriter.writeValue(out, errorResponse));
+        }
+        
+        // Runs however the async request ends; closing twice is harmless
+        WebAsyncUtils.getAsyncManager(servletRequest).registerCallableInterceptor(upstream, new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                try {
+                    upstream.close();
+                } catch (IOException e) {
+                    logger.debug("Closing upstream of {} failed: {}", upstream.getRequestName(), e.getMessage());
+                }
+            }
+        });
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(UPSTREAM_STATUS, String.valueOf(upstream.getStatusCode()));
+        headers.set(UPSTREAM_TIME, String.valueOf(upstream.getHeadersTimeMs()));
+        for (Header header : upstream.getHeaders()) {
+            headers.add(UPSTREAM_HEADER_PREFIX + header.getName(), header.getValue());
+        }
+        
+        boolean reindent = pretty && upstream.isJson();
+        MediaType contentType = reindent ? MediaType.APPLICATION_JSON : MediaType.APPLICATION_OCTET_STREAM;
+        if (!reindent && upstream.getContentType() != null) {
+            try {
+                contentType = MediaType.parseMediaType(upstream.getContentType().toString());
+            } catch (InvalidMediaTypeException e) {
+                // Keep application/octet-stream
+            }
         }
+        
+        Map<String, String> trailers = new ConcurrentHashMap<>();
+        try {
+            servletResponse.setTrailerFields(() -> trailers);
+            headers.set(HttpHeaders.TRAILER, UPSTREAM_TOTAL_TIME + ", " + UPSTREAM_BYTES);
+        } catch (IllegalStateException e) {
+            // HTTP/1.0 client: no trailers
+        }
+        
+        StreamingResponseBody body = out -> {
+            try (upstream) {
+                long bytes = upstream.writeTo(out, reindent);
+                trailers.put(UPSTREAM_TOTAL_TIME, String.valueOf(upstream.getElapsedMs()));
+                trailers.put(UPSTREAM_BYTES, String.valueOf(bytes));
+                logger.debug("Streamed {} bytes for {} in {} ms", bytes, upstream.getRequestName(), upstream.getElapsedMs());
+            }
+        };
+        return ResponseEntity.ok().headers(headers).contentType(contentType).body(body);
+    }
+    
+    /**
+     * Executes a request and stores its JSON body as a document, to be browsed through
+     * /documents/{id}/node and queried through /documents/{id}/query without sending the
+     * body to the client.
+     */
+    @PostMapping("/executeRequest/document")
+    public ResponseEntity<Map<String, Object>> executeRequestToDocument(@RequestBody ExecuteRequestDto requestDto,
+                                                                        @RequestParam(value = "id", required = false) String id,
+                                                                        @RequestParam(value = "searchable", required = false) Boolean searchable) {
+        logger.info("Capturing response of request: {}", requestDto.getRequestName());
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        try (UpstreamStream upstream = apiExecutionService.openStream(requestDto)) {
+            if (upstream.isFailed()) {
+                resp.put(KEY_SUCCESS, false);
+                resp.put(KEY_ERROR, upstream.getError());
+                return ResponseEntity.internalServerError().body(resp);
+            }
+            JsonDocument document = jsonDocumentService.capture(upstream, id, searchable);
+            resp.putAll(describeDocument(document));
+            resp.put(KEY_SUCCESS, true);
+            resp.put("upstreamStatus", upstream.getStatusCode());
+            resp.put("executionTimeMs", upstream.getElapsedMs());
+            return ResponseEntity.ok().body(resp);
+        } catch (IllegalStateException e) {
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(resp);
+        } catch (Exception e) {
+            logger.error("Error capturing response: {}", e.getMessage(), e);
+            resp.put(KEY_SUCCESS, false);
+            resp.put(KEY_ERROR, "Response is not a JSON document: " + e.getMessage());
+            return ResponseEntity.badRequest().body(resp);
+        }
+    }
+    
+    /**
+     * Response cache statistics: entries, estimated bytes, hits, revalidations, misses and
+     * evictions since startup.
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        resp.put("entries", responseCache.size());
+        resp.put("bytes", responseCache.getBytes());
+        resp.put("hits", responseCache.getHits());
+        resp.put("revalidations", responseCache.getRevalidations());
+        resp.put("misses", responseCache.getMisses());
+        resp.put("evictions", responseCache.getEvictions());
+        return ResponseEntity.ok().body(resp);
+    }
+    
+    @DeleteMapping("/cache")
+    public ResponseEntity<Void> clearCache() {
+        responseCache.clear();
+        return ResponseEntity.noContent().build();
     }
     
     @GetMapping("/health")
@@ -1,17 +1,33 @@
 package com.jsonpreview.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
 import java.time.LocalDateTime;
 import java.util.Map;
 
+// The truncation flag and raw text follow the body, so BufferedBody views know whether it broke
+@JsonPropertyOrder({ "statusCode", "headers", "responseBody", "responseTruncated", "rawResponse" })
 public class ApiResponseDto {
     
     private int statusCode;
     private Map<String, String> headers;
     private Object responseBody;
-    private String rawResponse;
+    // String (tree mode), or a BufferedBody.Fallback written only if the body was malformed
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Object rawResponse;
     private long executionTimeMs;
     private LocalDateTime timestamp;
     private String error;
+    // HIT, REVALIDATED or MISS when the response cache was consulted
+    private String cacheStatus;
+    // Set when the response was shared from an identical execution already in flight
+    private Boolean coalesced;
+    // Phase breakdown of executionTimeMs
+    private ExecutionTimingsDto timings;
+    // Whether the upstream exchange went over a connection that had carried earlier requests
+    private Boolean connectionReused;
     
     // Constructors
     public ApiResponseDto() {
@@ -35,8 +51,15 @@ public class ApiResponseDto {
     public Object getResponseBody() { return responseBody; }
     public void setResponseBody(Object responseBody) { this.responseBody = responseBody; }
     
-    public String getRawResponse() { return rawResponse; }
-    public void setRawResponse(String rawResponse) { this.rawResponse = rawResponse; }
+    // true only when a BufferedBody broke off part way, and the body holds what came before
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Object getResponseTruncated() {
+        return responseBody instanceof BufferedBody body ? body.asTruncation() : null;
+    }
+    
+    public Object getRawResponse() { return rawResponse; }
+    public void setRawResponse(Object rawResponse) { this.rawResponse = rawResponse; }
     
     public long getExecutionTimeMs() { return executionTimeMs; }
     public void setExecutionTimeMs(long executionTimeMs) { this.executionTimeMs = executionTimeMs; }
@@ -46,4 +69,16 @@ public class ApiResponseDto {
     
     public String getError() { return error; }
     public void setError(String error) { this.error = error; }
+    
+    public String getCacheStatus() { return cacheStatus; }
+    public void setCacheStatus(String cacheStatus) { this.cacheStatus = cacheStatus; }
+    
+    public Boolean getCoalesced() { return coalesced; }
+    public void setCoalesced(Boolean coalesced) { this.coalesced = coalesced; }
+    
+    public ExecutionTimingsDto getTimings() { return timings; }
+    public void setTimings(ExecutionTimingsDto timings) { this.timings = timings; }
+    
+    public Boolean getConnectionReused() { return connectionReused; }
+    public void setConnectionReused(Boolean connectionReused) { this.connectionReused = connectionReused; }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.jsonpreview.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class BatchExecuteRequestDto {
+
+    // Either explicit requests...
+    private List<ExecuteRequestDto> requests;
+
+    // ...or every request under a folder path of a collection
+    private String collectionId;
+    private String folder;
+    private String environment;
+    private Map<String, String> parameters;
+
+    private Integer parallelism;
+
+    // Getters and Setters
+    public List<ExecuteRequestDto> getRequests() { return requests; }
+    public void setRequests(List<ExecuteRequestDto> requests) { this.requests = requests; }
+
+    public String getCollectionId() { return collectionId; }
+    public void setCollectionId(String collectionId) { this.collectionId = collectionId; }
+
+    public String getFolder() { return folder; }
+    public void setFolder(String folder) { this.folder = folder; }
+
+    public String getEnvironment() { return environment; }
+    public void setEnvironment(String environment) { this.environment = environment; }
+
+    public Map<String, String> getParameters() { return parameters; }
+    public void setParameters(Map<String, String> parameters) { this.parameters = parameters; }
+
+    public Integer getParallelism() { return parallelism; }
+    public void setParallelism(Integer parallelism) { this.parallelism = parallelism; }
+}
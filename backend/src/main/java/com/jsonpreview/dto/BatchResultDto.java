@@ -0,0 +1,27 @@
+package com.jsonpreview.dto;
+
+public class BatchResultDto {
+
+    private int index;
+    private String requestName;
+    private ApiResponseDto response;
+
+    // Constructors
+    public BatchResultDto() {}
+
+    public BatchResultDto(int index, String requestName, ApiResponseDto response) {
+        this.index = index;
+        this.requestName = requestName;
+        this.response = response;
+    }
+
+    // Getters and Setters
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+
+    public String getRequestName() { return requestName; }
+    public void setRequestName(String requestName) { this.requestName = requestName; }
+
+    public ApiResponseDto getResponse() { return response; }
+    public void setResponse(ApiResponseDto response) { this.response = response; }
+}
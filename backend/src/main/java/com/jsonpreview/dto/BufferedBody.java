@@ -0,0 +1,551 @@
+package com.jsonpreview.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Upstream response body held once, as the bytes that were received.
+ *
+ * Bytes are kept in the chunks they were read into, so a body of unknown length is never
+ * copied into one final array. When serialized, a body that starts like JSON is copied
+ * token by token into the output, so indentation follows the writer (pretty for the REST
+ * response, compact for NDJSON), and that same pass decides whether it is JSON; no tree is
+ * built. Anything else is written as a JSON string. A body found malformed part way
+ * through is closed off where it broke, flagged by its {@link #asTruncation() truncation}
+ * view, and also written in full, as the raw text, by its {@link #asFallback() fallback}
+ * view.
+ *
+ * A body that grows past the builder's spill threshold is written to a temp file instead
+ * and read back through a read-only mapping, so huge bodies stay off the heap. Where the
+ * OS allows it (POSIX) the file is unlinked as soon as it is mapped, and its space is freed
+ * when the mapping is garbage collected; where a mapped file cannot be deleted (Windows)
+ * it is deleted once the body is unreachable, or at exit at the latest.
+ */
+@JsonSerialize(using = BufferedBody.BodySerializer.class)
+public final class BufferedBody {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Cleaner SPILL_CLEANER = Cleaner.create();
+
+    private static final int MIN_CHUNK = 8 * 1024;
+    private static final int MAX_CHUNK = 1024 * 1024;
+    private static final long MAX_MAPPING = 1L << 30;
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    // Heap chunks, or mapped segments of a spilled body
+    private final List<ByteBuffer> chunks;
+    private final long size;
+    private final Charset charset;
+    private volatile Boolean json;
+
+    private BufferedBody(List<ByteBuffer> chunks, long size, Charset charset) {
+        this.chunks = chunks;
+        this.size = size;
+        this.charset = charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+    public static BufferedBody of(byte[] bytes, Charset charset) {
+        return new BufferedBody(Collections.singletonList(ByteBuffer.wrap(bytes)), bytes.length, charset);
+    }
+
+    /**
+     * Reads a stream to the end. A known {@code expectedLength} sizes the first chunk so
+     * a body with Content-Length lands in exactly one array.
+     */
+    public static BufferedBody read(InputStream in, long expectedLength, Charset charset) throws IOException {
+        return read(in, expectedLength, charset, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads a stream to the end, spilling to a mapped temp file past {@code spillThreshold} bytes.
+     */
+    public static BufferedBody read(InputStream in, long expectedLength, Charset charset,
+                                    long spillThreshold) throws IOException {
+        Builder builder = new Builder(charset, expectedLength, spillThreshold);
+        try {
+            byte[] buffer = new byte[MIN_CHUNK];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                builder.append(buffer, 0, read);
+            }
+            return builder.build();
+        } catch (IOException | RuntimeException e) {
+            builder.discard();
+            throw e;
+        }
+    }
+
+    public long size() { return size; }
+
+    /**
+     * Whether the body was spilled to disk and is read through a mapping.
+     */
+    public boolean isMapped() {
+        return !chunks.get(0).hasArray();
+    }
+
+    public Charset getCharset() { return charset; }
+
+    /**
+     * Whether the body is one well-formed JSON value; decided by serializing the body, or
+     * by a parse when asked before.
+     */
+    public boolean isJson() {
+        Boolean result = json;
+        if (result == null) {
+            result = isWellFormedJson();
+            json = result;
+        }
+        return result;
+    }
+
+    public InputStream openStream() {
+        if (chunks.size() == 1) {
+            return openStream(chunks.get(0));
+        }
+        List<InputStream> streams = new ArrayList<>(chunks.size());
+        for (ByteBuffer chunk : chunks) {
+            streams.add(openStream(chunk));
+        }
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+
+    private static InputStream openStream(ByteBuffer chunk) {
+        if (chunk.hasArray()) {
+            return new ByteArrayInputStream(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        }
+        return new ByteBufferBackedInputStream(chunk.duplicate());
+    }
+
+    public Reader openReader() {
+        return new InputStreamReader(openStream(), charset);
+    }
+
+    /**
+     * Parser over the body. Bytes in a Unicode encoding are parsed directly (Jackson
+     * detects UTF-8/16/32 itself); other charsets are decoded through a reader.
+     */
+    public JsonParser createParser() throws IOException {
+        if (!isUnicode(charset)) {
+            return JSON_FACTORY.createParser(openReader());
+        }
+        ByteBuffer first = chunks.get(0);
+        return chunks.size() == 1 && first.hasArray()
+            ? JSON_FACTORY.createParser(first.array(), first.arrayOffset() + first.position(), first.remaining())
+            : JSON_FACTORY.createParser(openStream());
+    }
+
+    /**
+     * Copies the body into one array; only for callers that need contiguous bytes.
+     *
+     * @throws IllegalStateException if the body is too large for an array
+     */
+    public byte[] toByteArray() {
+        if (size > MAX_ARRAY) {
+            throw new IllegalStateException("Body of " + size + " bytes is too large for one array");
+        }
+        byte[] bytes = new byte[(int) size];
+        int offset = 0;
+        for (ByteBuffer chunk : chunks) {
+            int length = chunk.remaining();
+            chunk.duplicate().get(bytes, offset, length);
+            offset += length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Whether {@code size} bytes can be copied into one array.
+     */
+    public boolean fitsArray() {
+        return size <= MAX_ARRAY;
+    }
+
+    /**
+     * The same bytes as the raw text, serialized only when the body itself was just found
+     * malformed part way through, and omitted otherwise (the property must include
+     * non-empty values only, and come after the body).
+     */
+    public Fallback asFallback() {
+        return new Fallback(this);
+    }
+
+    /**
+     * {@code true} when the body was just found malformed part way through, so what was
+     * written for it is only the part before the break; omitted otherwise, like the
+     * {@link #asFallback() fallback} (the property must come after the body).
+     */
+    public Truncation asTruncation() {
+        return new Truncation(this);
+    }
+
+    private boolean isWellFormedJson() {
+        if (size == 0) return false;
+        try (JsonParser parser = createParser()) {
+            if (parser.nextToken() == null) return false;
+            parser.skipChildren();
+            // Exactly one root value
+            return parser.nextToken() == null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isUnicode(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset)
+            || StandardCharsets.UTF_16.equals(charset)
+            || StandardCharsets.UTF_16BE.equals(charset)
+            || StandardCharsets.UTF_16LE.equals(charset)
+            || StandardCharsets.US_ASCII.equals(charset);
+    }
+
+    /**
+     * Whether the first non-blank byte can start a JSON value. A text body that starts
+     * otherwise is written as text without parsing; one that starts like JSON but isn't
+     * usually fails on its first token, before anything was written.
+     */
+    private boolean looksLikeJson() {
+        for (ByteBuffer chunk : chunks) {
+            for (int i = chunk.position(); i < chunk.limit(); i++) {
+                byte b = chunk.get(i);
+                switch (b) {
+                    case ' ', '\t', '\r', '\n' -> { }
+                    // A byte order mark, or the zero bytes of UTF-16/32: let the parser decide
+                    case (byte) 0xEF, (byte) 0xFE, (byte) 0xFF, 0 -> { return true; }
+                    case '{', '[', '"', '-', 't', 'f', 'n' -> { return true; }
+                    default -> { return b >= '0' && b <= '9'; }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the body token by token into {@code gen}; false if it is not one well-formed
+     * JSON value. A failure on the first token leaves {@code gen} untouched; a later one
+     * closes the containers left open, so the output stays well-formed.
+     *
+     * @return null if nothing was written, else whether the whole value was copied
+     */
+    private Boolean copyJson(JsonGenerator gen) throws IOException {
+        try (JsonParser parser = createParser()) {
+            JsonToken token;
+            try {
+                token = parser.nextToken();
+            } catch (JsonProcessingException e) {
+                return null;
+            }
+            if (token == null) return null;
+
+            int depth = 0;
+            boolean pendingName = false;
+            try {
+                while (true) {
+                    gen.copyCurrentEvent(parser);
+                    pendingName = token == JsonToken.FIELD_NAME;
+                    if (token.isStructStart()) depth++;
+                    else if (token.isStructEnd()) depth--;
+                    if (depth == 0 && !pendingName) break;
+                    token = parser.nextToken();
+                    if (token == null) throw new JsonParseException(parser, "Unexpected end of content");
+                }
+                // Exactly one root value
+                return parser.nextToken() == null;
+            } catch (JsonProcessingException e) {
+                if (pendingName) gen.writeNull();
+                for (; depth > 0; depth--) {
+                    if (gen.getOutputContext().inObject()) gen.writeEndObject();
+                    else gen.writeEndArray();
+                }
+                return false;
+            }
+        }
+    }
+
+    private void writeText(JsonGenerator gen) throws IOException {
+        try (Reader reader = openReader()) {
+            gen.writeString(reader, -1);
+        } catch (UnsupportedOperationException e) {
+            // Generators that can't stream string values (e.g. token buffers)
+            if (!fitsArray()) throw new IOException("Body of " + size + " bytes is too large to write as one string");
+            gen.writeString(new String(toByteArray(), charset));
+        }
+    }
+
+    /**
+     * Accumulates a body as it arrives. Chunks grow from 8KB to 1MB, so at most one
+     * partly filled chunk is trimmed when the body is complete. Once the body exceeds the
+     * spill threshold, what was buffered so far and everything after it goes to a temp
+     * file; a builder that is abandoned must be {@link #discard() discarded}.
+     */
+    public static final class Builder {
+        private final Charset charset;
+        private final long spillThreshold;
+        private final List<byte[]> chunks = new ArrayList<>();
+        private byte[] current;
+        private int position;
+        private long size;
+        private Path spillPath;
+        private FileChannel spill;
+
+        public Builder(Charset charset, long expectedLength) {
+            this(charset, expectedLength, Long.MAX_VALUE);
+        }
+
+        public Builder(Charset charset, long expectedLength, long spillThreshold) {
+            this.charset = charset;
+            this.spillThreshold = spillThreshold;
+            if (expectedLength > 0 && expectedLength <= Integer.MAX_VALUE - 8 && expectedLength <= spillThreshold) {
+                current = new byte[(int) expectedLength];
+            }
+        }
+
+        public void append(byte[] bytes, int offset, int length) throws IOException {
+            if (spill != null || size + length > spillThreshold) {
+                spill(ByteBuffer.wrap(bytes, offset, length));
+                return;
+            }
+            while (length > 0) {
+                int n = Math.min(length, ensureCapacity());
+                System.arraycopy(bytes, offset, current, position, n);
+                position += n;
+                offset += n;
+                length -= n;
+                size += n;
+            }
+        }
+
+        public void append(ByteBuffer src) throws IOException {
+            if (spill != null || size + src.remaining() > spillThreshold) {
+                spill(src);
+                return;
+            }
+            while (src.hasRemaining()) {
+                int n = Math.min(src.remaining(), ensureCapacity());
+                src.get(current, position, n);
+                position += n;
+                size += n;
+            }
+        }
+
+        public BufferedBody build() throws IOException {
+            if (spill != null) {
+                return buildMapped();
+            }
+            List<ByteBuffer> result = new ArrayList<>(chunks.size() + 1);
+            for (byte[] chunk : chunks) {
+                result.add(ByteBuffer.wrap(chunk));
+            }
+            if (current != null && position > 0) {
+                result.add(ByteBuffer.wrap(position == current.length ? current : Arrays.copyOf(current, position)));
+            }
+            chunks.clear();
+            current = null;
+            if (result.isEmpty()) result.add(ByteBuffer.wrap(new byte[0]));
+            return new BufferedBody(result, size, charset);
+        }
+
+        /**
+         * Drops a partly received body, deleting its spill file if there is one.
+         */
+        public void discard() {
+            chunks.clear();
+            current = null;
+            if (spill != null && closeSpill()) {
+                deleteSpill(spillPath);
+            }
+        }
+
+        private boolean closeSpill() {
+            try {
+                spill.close();
+                return true;
+            } catch (IOException e) {
+                spillPath.toFile().deleteOnExit();
+                return false;
+            } finally {
+                spill = null;
+            }
+        }
+
+        private static boolean deleteSpill(Path path) {
+            try {
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private void spill(ByteBuffer src) throws IOException {
+            if (spill == null) {
+                spillPath = Files.createTempFile("body-", ".tmp");
+                spill = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                for (byte[] chunk : chunks) {
+                    writeFully(ByteBuffer.wrap(chunk));
+                }
+                if (current != null) {
+                    writeFully(ByteBuffer.wrap(current, 0, position));
+                }
+                chunks.clear();
+                current = null;
+            }
+            size += src.remaining();
+            writeFully(src);
+        }
+
+        private void writeFully(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                spill.write(src);
+            }
+        }
+
+        private BufferedBody buildMapped() throws IOException {
+            BufferedBody body;
+            try {
+                List<ByteBuffer> segments = new ArrayList<>();
+                for (long offset = 0; offset < size; offset += MAX_MAPPING) {
+                    segments.add(spill.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAX_MAPPING, size - offset)));
+                }
+                body = new BufferedBody(segments, size, charset);
+            } catch (IOException | RuntimeException e) {
+                discard();
+                throw e;
+            }
+            // Mappings stay valid after the channel is closed, and on POSIX after the file
+            // is unlinked; Windows refuses to delete a mapped file, so it waits for the body
+            Path path = spillPath;
+            if (closeSpill() && !deleteSpill(path)) {
+                SPILL_CLEANER.register(body, () -> {
+                    if (!deleteSpill(path)) path.toFile().deleteOnExit();
+                });
+            }
+            return body;
+        }
+
+        private int ensureCapacity() {
+            if (current == null || position == current.length) {
+                if (current != null) chunks.add(current);
+                int next = current == null ? MIN_CHUNK : Math.min(current.length * 2, MAX_CHUNK);
+                current = new byte[Math.max(next, MIN_CHUNK)];
+                position = 0;
+            }
+            return current.length - position;
+        }
+    }
+
+    @JsonSerialize(using = FallbackSerializer.class)
+    public static final class Fallback {
+        private final BufferedBody body;
+
+        private Fallback(BufferedBody body) {
+            this.body = body;
+        }
+
+        public BufferedBody getBody() { return body; }
+    }
+
+    @JsonSerialize(using = TruncationSerializer.class)
+    public static final class Truncation {
+        private final BufferedBody body;
+
+        private Truncation(BufferedBody body) {
+            this.body = body;
+        }
+
+        public BufferedBody getBody() { return body; }
+    }
+
+    static final class BodySerializer extends StdSerializer<BufferedBody> {
+        private static final long serialVersionUID = 1L;
+
+        BodySerializer() {
+            super(BufferedBody.class);
+        }
+
+        @Override
+        public void serialize(BufferedBody value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            Boolean known = value.json;
+            if (Boolean.FALSE.equals(known) || (known == null && !value.looksLikeJson())) {
+                value.json = false;
+                value.writeText(gen);
+                return;
+            }
+            Boolean copied = value.copyJson(gen);
+            if (copied == null) {
+                // Not JSON after all, and nothing written yet
+                value.json = false;
+                value.writeText(gen);
+                return;
+            }
+            value.json = copied;
+            if (!copied) {
+                // Part of the value went out; the truncation and fallback views follow
+                provider.setAttribute(value, Boolean.TRUE);
+            }
+        }
+    }
+
+    static final class FallbackSerializer extends StdSerializer<Fallback> {
+        private static final long serialVersionUID = 1L;
+
+        FallbackSerializer() {
+            super(Fallback.class);
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Fallback value) {
+            return provider.getAttribute(value.body) == null;
+        }
+
+        @Override
+        public void serialize(Fallback value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            value.body.writeText(gen);
+        }
+    }
+
+    static final class TruncationSerializer extends StdSerializer<Truncation> {
+        private static final long serialVersionUID = 1L;
+
+        TruncationSerializer() {
+            super(Truncation.class);
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Truncation value) {
+            return provider.getAttribute(value.body) == null;
+        }
+
+        @Override
+        public void serialize(Truncation value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeBoolean(true);
+        }
+    }
+}
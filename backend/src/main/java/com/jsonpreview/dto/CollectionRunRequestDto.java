@@ -0,0 +1,37 @@
+package com.jsonpreview.dto;
+
+import java.util.Map;
+
+public class CollectionRunRequestDto {
+
+    private String collectionId;
+    // Folder path whose requests are run, in document order; the whole collection if empty
+    private String folder;
+    private String environment;
+    // Initial run variables
+    private Map<String, String> parameters;
+
+    // Request name or path -> variable -> JSON Pointer into its response body, or "header:<name>"
+    private Map<String, Map<String, String>> extract;
+
+    private Integer parallelism;
+
+    // Getters and Setters
+    public String getCollectionId() { return collectionId; }
+    public void setCollectionId(String collectionId) { this.collectionId = collectionId; }
+
+    public String getFolder() { return folder; }
+    public void setFolder(String folder) { this.folder = folder; }
+
+    public String getEnvironment() { return environment; }
+    public void setEnvironment(String environment) { this.environment = environment; }
+
+    public Map<String, String> getParameters() { return parameters; }
+    public void setParameters(Map<String, String> parameters) { this.parameters = parameters; }
+
+    public Map<String, Map<String, String>> getExtract() { return extract; }
+    public void setExtract(Map<String, Map<String, String>> extract) { this.extract = extract; }
+
+    public Integer getParallelism() { return parallelism; }
+    public void setParallelism(Integer parallelism) { this.parallelism = parallelism; }
+}
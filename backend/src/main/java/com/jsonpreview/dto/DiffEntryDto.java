@@ -0,0 +1,28 @@
+package com.jsonpreview.dto;
+
+/**
+ * One difference between two documents: a path present only on the left
+ * ({@code removed}), only on the right ({@code added}), or on both with different values
+ * ({@code changed}).
+ */
+public class DiffEntryDto {
+
+    private String op;
+    // Left pointer, or the right one for an added path; they differ when arrays are matched by key
+    private String path;
+    private DocumentNodeDto left;
+    private DocumentNodeDto right;
+
+    // Getters and Setters
+    public String getOp() { return op; }
+    public void setOp(String op) { this.op = op; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public DocumentNodeDto getLeft() { return left; }
+    public void setLeft(DocumentNodeDto left) { this.left = left; }
+
+    public DocumentNodeDto getRight() { return right; }
+    public void setRight(DocumentNodeDto right) { this.right = right; }
+}
@@ -0,0 +1,61 @@
+package com.jsonpreview.dto;
+
+import java.util.List;
+
+/**
+ * Structural differences between two stored documents, in document order.
+ */
+public class DiffResultDto {
+
+    private String leftId;
+    private String rightId;
+    private String arrayKey;
+    private boolean identical;
+    private int limit;
+    // More differences exist than were returned
+    private boolean truncated;
+    // Only set when every difference was visited
+    private Long added;
+    private Long removed;
+    private Long changed;
+    private long comparedNodes;
+    private long elapsedMs;
+    private List<DiffEntryDto> differences;
+
+    // Getters and Setters
+    public String getLeftId() { return leftId; }
+    public void setLeftId(String leftId) { this.leftId = leftId; }
+
+    public String getRightId() { return rightId; }
+    public void setRightId(String rightId) { this.rightId = rightId; }
+
+    public String getArrayKey() { return arrayKey; }
+    public void setArrayKey(String arrayKey) { this.arrayKey = arrayKey; }
+
+    public boolean isIdentical() { return identical; }
+    public void setIdentical(boolean identical) { this.identical = identical; }
+
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+
+    public boolean isTruncated() { return truncated; }
+    public void setTruncated(boolean truncated) { this.truncated = truncated; }
+
+    public Long getAdded() { return added; }
+    public void setAdded(Long added) { this.added = added; }
+
+    public Long getRemoved() { return removed; }
+    public void setRemoved(Long removed) { this.removed = removed; }
+
+    public Long getChanged() { return changed; }
+    public void setChanged(Long changed) { this.changed = changed; }
+
+    public long getComparedNodes() { return comparedNodes; }
+    public void setComparedNodes(long comparedNodes) { this.comparedNodes = comparedNodes; }
+
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public List<DiffEntryDto> getDifferences() { return differences; }
+    public void setDifferences(List<DiffEntryDto> differences) { this.differences = differences; }
+}
@@ -0,0 +1,53 @@
+package com.jsonpreview.dto;
+
+import java.util.List;
+
+/**
+ * One node of a stored JSON document. Containers carry their child count and, for the
+ * node that was asked for, one page of children; scalars carry their value.
+ */
+public class DocumentNodeDto {
+
+    private String pointer;
+    private String name;
+    private Integer index;
+    private String type;
+    private Integer childCount;
+    private Object value;
+    private Boolean truncated;
+    private List<DocumentNodeDto> children;
+    // Search matches: [start, end) character ranges of the matched text
+    private List<int[]> nameHighlights;
+    private List<int[]> valueHighlights;
+
+    // Getters and Setters
+    public String getPointer() { return pointer; }
+    public void setPointer(String pointer) { this.pointer = pointer; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Integer getIndex() { return index; }
+    public void setIndex(Integer index) { this.index = index; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public Integer getChildCount() { return childCount; }
+    public void setChildCount(Integer childCount) { this.childCount = childCount; }
+
+    public Object getValue() { return value; }
+    public void setValue(Object value) { this.value = value; }
+
+    public Boolean getTruncated() { return truncated; }
+    public void setTruncated(Boolean truncated) { this.truncated = truncated; }
+
+    public List<DocumentNodeDto> getChildren() { return children; }
+    public void setChildren(List<DocumentNodeDto> children) { this.children = children; }
+
+    public List<int[]> getNameHighlights() { return nameHighlights; }
+    public void setNameHighlights(List<int[]> nameHighlights) { this.nameHighlights = nameHighlights; }
+
+    public List<int[]> getValueHighlights() { return valueHighlights; }
+    public void setValueHighlights(List<int[]> valueHighlights) { this.valueHighlights = valueHighlights; }
+}
@@ -4,11 +4,19 @@ import java.util.Map;
 
 public class ExecuteRequestDto {
     
+    private String collectionId;
     private String requestName;
     private Map<String, String> parameters;
     private String environment;
+    // Use the response cache; null follows execution.cache.enabled
+    private Boolean cache;
+    // Share an identical GET already in flight; null follows execution.coalescing.enabled
+    private Boolean coalesce;
     
     // Getters and Setters
+    public String getCollectionId() { return collectionId; }
+    public void setCollectionId(String collectionId) { this.collectionId = collectionId; }
+    
     public String getRequestName() { return requestName; }
     public void setRequestName(String requestName) { this.requestName = requestName; }
     
@@ -17,4 +25,10 @@ public class ExecuteRequestDto {
     
     public String getEnvironment() { return environment; }
     public void setEnvironment(String environment) { this.environment = environment; }
+    
+    public Boolean getCache() { return cache; }
+    public void setCache(Boolean cache) { this.cache = cache; }
+    
+    public Boolean getCoalesce() { return coalesce; }
+    public void setCoalesce(Boolean coalesce) { this.coalesce = coalesce; }
 }
\ No newline at end of file
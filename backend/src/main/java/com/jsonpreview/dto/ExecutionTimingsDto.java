@@ -0,0 +1,53 @@
+package com.jsonpreview.dto;
+
+/**
+ * Where the time of one execution went, in milliseconds with microsecond precision.
+ * Phases without an upstream exchange (a cache hit) are null, as are DNS and TLS on the
+ * async engine, where they are counted in connect.
+ */
+public class ExecutionTimingsDto {
+
+    // Collection lookup and variable substitution
+    private Double prepareMs;
+    // Pool wait plus any DNS, connect and TLS handshake, until the request could be written
+    private Double connectionMs;
+    private Double dnsMs;
+    // Opening connections; 0 over a reused one
+    private Double connectMs;
+    private Double tlsMs;
+    // Writing the request and waiting for the response head
+    private Double ttfbMs;
+    // Reading the response body
+    private Double downloadMs;
+    // Turning the response into this DTO (parsing it in tree mode), and caching it
+    private Double processMs;
+    private Double totalMs;
+
+    // Getters and Setters
+    public Double getPrepareMs() { return prepareMs; }
+    public void setPrepareMs(Double prepareMs) { this.prepareMs = prepareMs; }
+
+    public Double getConnectionMs() { return connectionMs; }
+    public void setConnectionMs(Double connectionMs) { this.connectionMs = connectionMs; }
+
+    public Double getDnsMs() { return dnsMs; }
+    public void setDnsMs(Double dnsMs) { this.dnsMs = dnsMs; }
+
+    public Double getConnectMs() { return connectMs; }
+    public void setConnectMs(Double connectMs) { this.connectMs = connectMs; }
+
+    public Double getTlsMs() { return tlsMs; }
+    public void setTlsMs(Double tlsMs) { this.tlsMs = tlsMs; }
+
+    public Double getTtfbMs() { return ttfbMs; }
+    public void setTtfbMs(Double ttfbMs) { this.ttfbMs = ttfbMs; }
+
+    public Double getDownloadMs() { return downloadMs; }
+    public void setDownloadMs(Double downloadMs) { this.downloadMs = downloadMs; }
+
+    public Double getProcessMs() { return processMs; }
+    public void setProcessMs(Double processMs) { this.processMs = processMs; }
+
+    public Double getTotalMs() { return totalMs; }
+    public void setTotalMs(Double totalMs) { this.totalMs = totalMs; }
+}
@@ -0,0 +1,45 @@
+package com.jsonpreview.dto;
+
+/**
+ * One recorded execution, as listed; the request and response are fetched by id.
+ */
+public class HistoryEntryDto {
+
+    private long id;
+    private String requestName;
+    // Epoch milliseconds
+    private long recordedAt;
+    private int statusCode;
+    private long executionTimeMs;
+    // Uncompressed body size
+    private int bodyBytes;
+    // False when the body was above history.max-body-size and only its size was kept
+    private boolean bodyStored;
+    // Size of the record on disk, body compressed
+    private int storedBytes;
+
+    // Getters and Setters
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    public String getRequestName() { return requestName; }
+    public void setRequestName(String requestName) { this.requestName = requestName; }
+
+    public long getRecordedAt() { return recordedAt; }
+    public void setRecordedAt(long recordedAt) { this.recordedAt = recordedAt; }
+
+    public int getStatusCode() { return statusCode; }
+    public void setStatusCode(int statusCode) { this.statusCode = statusCode; }
+
+    public long getExecutionTimeMs() { return executionTimeMs; }
+    public void setExecutionTimeMs(long executionTimeMs) { this.executionTimeMs = executionTimeMs; }
+
+    public int getBodyBytes() { return bodyBytes; }
+    public void setBodyBytes(int bodyBytes) { this.bodyBytes = bodyBytes; }
+
+    public boolean isBodyStored() { return bodyStored; }
+    public void setBodyStored(boolean bodyStored) { this.bodyStored = bodyStored; }
+
+    public int getStoredBytes() { return storedBytes; }
+    public void setStoredBytes(int storedBytes) { this.storedBytes = storedBytes; }
+}
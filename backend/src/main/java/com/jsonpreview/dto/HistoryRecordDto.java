@@ -0,0 +1,29 @@
+package com.jsonpreview.dto;
+
+/**
+ * A recorded execution in full: what was asked for and the response as it was returned.
+ */
+public class HistoryRecordDto {
+
+    private HistoryEntryDto entry;
+    private ExecuteRequestDto request;
+    private ApiResponseDto response;
+
+    public HistoryRecordDto() {}
+
+    public HistoryRecordDto(HistoryEntryDto entry, ExecuteRequestDto request, ApiResponseDto response) {
+        this.entry = entry;
+        this.request = request;
+        this.response = response;
+    }
+
+    // Getters and Setters
+    public HistoryEntryDto getEntry() { return entry; }
+    public void setEntry(HistoryEntryDto entry) { this.entry = entry; }
+
+    public ExecuteRequestDto getRequest() { return request; }
+    public void setRequest(ExecuteRequestDto request) { this.request = request; }
+
+    public ApiResponseDto getResponse() { return response; }
+    public void setResponse(ApiResponseDto response) { this.response = response; }
+}
@@ -0,0 +1,36 @@
+package com.jsonpreview.dto;
+
+/**
+ * One collection request run once per row of an uploaded parameter file, each row's
+ * columns (CSV) or fields (NDJSON) being the request's parameters. Kept next to the
+ * iteration's files, so a stopped or interrupted iteration can be resumed.
+ */
+public class IterationRequestDto {
+
+    private String collectionId;
+    private String requestName;
+    private String environment;
+    // csv or ndjson; taken from the file name when absent
+    private String format;
+    private String fileName;
+    private Integer parallelism;
+
+    // Getters and Setters
+    public String getCollectionId() { return collectionId; }
+    public void setCollectionId(String collectionId) { this.collectionId = collectionId; }
+
+    public String getRequestName() { return requestName; }
+    public void setRequestName(String requestName) { this.requestName = requestName; }
+
+    public String getEnvironment() { return environment; }
+    public void setEnvironment(String environment) { this.environment = environment; }
+
+    public String getFormat() { return format; }
+    public void setFormat(String format) { this.format = format; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public Integer getParallelism() { return parallelism; }
+    public void setParallelism(Integer parallelism) { this.parallelism = parallelism; }
+}
@@ -0,0 +1,83 @@
+package com.jsonpreview.dto;
+
+/**
+ * State of an iteration at one moment, running or finished.
+ */
+public class IterationResultDto {
+
+    private String id;
+    private String requestName;
+    // RUNNING, COMPLETED, STOPPED or FAILED
+    private String state;
+    private String error;
+    private String format;
+    private int parallelism;
+    private double elapsedSeconds;
+
+    private long inputBytes;
+    private long bytesRead;
+    // Rows already in the results file when this session started
+    private long resumedFromRow;
+    private long rowsRead;
+    // Rows written to the results file, in file order
+    private long rowsDone;
+    private long succeeded;
+    // Unreadable rows, execution errors and responses with status >= 400
+    private long failed;
+    private long inFlight;
+    private double throughput;
+    // Results file length covered by the last checkpoint
+    private long outputBytes;
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getRequestName() { return requestName; }
+    public void setRequestName(String requestName) { this.requestName = requestName; }
+
+    public String getState() { return state; }
+    public void setState(String state) { this.state = state; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getFormat() { return format; }
+    public void setFormat(String format) { this.format = format; }
+
+    public int getParallelism() { return parallelism; }
+    public void setParallelism(int parallelism) { this.parallelism = parallelism; }
+
+    public double getElapsedSeconds() { return elapsedSeconds; }
+    public void setElapsedSeconds(double elapsedSeconds) { this.elapsedSeconds = elapsedSeconds; }
+
+    public long getInputBytes() { return inputBytes; }
+    public void setInputBytes(long inputBytes) { this.inputBytes = inputBytes; }
+
+    public long getBytesRead() { return bytesRead; }
+    public void setBytesRead(long bytesRead) { this.bytesRead = bytesRead; }
+
+    public long getResumedFromRow() { return resumedFromRow; }
+    public void setResumedFromRow(long resumedFromRow) { this.resumedFromRow = resumedFromRow; }
+
+    public long getRowsRead() { return rowsRead; }
+    public void setRowsRead(long rowsRead) { this.rowsRead = rowsRead; }
+
+    public long getRowsDone() { return rowsDone; }
+    public void setRowsDone(long rowsDone) { this.rowsDone = rowsDone; }
+
+    public long getSucceeded() { return succeeded; }
+    public void setSucceeded(long succeeded) { this.succeeded = succeeded; }
+
+    public long getFailed() { return failed; }
+    public void setFailed(long failed) { this.failed = failed; }
+
+    public long getInFlight() { return inFlight; }
+    public void setInFlight(long inFlight) { this.inFlight = inFlight; }
+
+    public double getThroughput() { return throughput; }
+    public void setThroughput(double throughput) { this.throughput = throughput; }
+
+    public long getOutputBytes() { return outputBytes; }
+    public void setOutputBytes(long outputBytes) { this.outputBytes = outputBytes; }
+}
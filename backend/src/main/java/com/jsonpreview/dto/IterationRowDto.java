@@ -0,0 +1,38 @@
+package com.jsonpreview.dto;
+
+import java.util.Map;
+
+/**
+ * One line of an iteration's results file.
+ */
+public class IterationRowDto {
+
+    // Position in the parameter file, from 0 (the CSV header is not counted)
+    private long row;
+    private Map<String, String> parameters;
+    // Unreadable row or failed execution
+    private String error;
+    private ApiResponseDto response;
+
+    public IterationRowDto() {}
+
+    public IterationRowDto(long row, Map<String, String> parameters, String error, ApiResponseDto response) {
+        this.row = row;
+        this.parameters = parameters;
+        this.error = error;
+        this.response = response;
+    }
+
+    // Getters and Setters
+    public long getRow() { return row; }
+    public void setRow(long row) { this.row = row; }
+
+    public Map<String, String> getParameters() { return parameters; }
+    public void setParameters(Map<String, String> parameters) { this.parameters = parameters; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public ApiResponseDto getResponse() { return response; }
+    public void setResponse(ApiResponseDto response) { this.response = response; }
+}
@@ -0,0 +1,41 @@
+package com.jsonpreview.dto;
+
+/**
+ * Percentiles of a latency histogram, in milliseconds with microsecond precision.
+ */
+public class LatencySummaryDto {
+
+    private long count;
+    private double minMs;
+    private double meanMs;
+    private double p50Ms;
+    private double p90Ms;
+    private double p99Ms;
+    private double p999Ms;
+    private double maxMs;
+
+    // Getters and Setters
+    public long getCount() { return count; }
+    public void setCount(long count) { this.count = count; }
+
+    public double getMinMs() { return minMs; }
+    public void setMinMs(double minMs) { this.minMs = minMs; }
+
+    public double getMeanMs() { return meanMs; }
+    public void setMeanMs(double meanMs) { this.meanMs = meanMs; }
+
+    public double getP50Ms() { return p50Ms; }
+    public void setP50Ms(double p50Ms) { this.p50Ms = p50Ms; }
+
+    public double getP90Ms() { return p90Ms; }
+    public void setP90Ms(double p90Ms) { this.p90Ms = p90Ms; }
+
+    public double getP99Ms() { return p99Ms; }
+    public void setP99Ms(double p99Ms) { this.p99Ms = p99Ms; }
+
+    public double getP999Ms() { return p999Ms; }
+    public void setP999Ms(double p999Ms) { this.p999Ms = p999Ms; }
+
+    public double getMaxMs() { return maxMs; }
+    public void setMaxMs(double maxMs) { this.maxMs = maxMs; }
+}
@@ -0,0 +1,63 @@
+package com.jsonpreview.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A load test of one collection request: either {@code rps} executions per second on a
+ * fixed schedule (open loop), or {@code concurrency} executions kept in flight back to
+ * back (closed loop), for {@code durationSeconds}.
+ */
+public class LoadTestRequestDto {
+
+    private String collectionId;
+    private String requestName;
+    private String environment;
+    // Used in turn, one set per execution; parameters alone is a single set
+    private List<Map<String, String>> parameterSets;
+    private Map<String, String> parameters;
+
+    private Double rps;
+    private Integer concurrency;
+    private Integer durationSeconds;
+    // Open loop only: executions allowed in flight before the schedule waits (latency still counts the wait)
+    private Integer maxInFlight;
+
+    // Off by default, so every execution reaches the upstream
+    private Boolean cache;
+    private Boolean coalesce;
+
+    // Getters and Setters
+    public String getCollectionId() { return collectionId; }
+    public void setCollectionId(String collectionId) { this.collectionId = collectionId; }
+
+    public String getRequestName() { return requestName; }
+    public void setRequestName(String requestName) { this.requestName = requestName; }
+
+    public String getEnvironment() { return environment; }
+    public void setEnvironment(String environment) { this.environment = environment; }
+
+    public List<Map<String, String>> getParameterSets() { return parameterSets; }
+    public void setParameterSets(List<Map<String, String>> parameterSets) { this.parameterSets = parameterSets; }
+
+    public Map<String, String> getParameters() { return parameters; }
+    public void setParameters(Map<String, String> parameters) { this.parameters = parameters; }
+
+    public Double getRps() { return rps; }
+    public void setRps(Double rps) { this.rps = rps; }
+
+    public Integer getConcurrency() { return concurrency; }
+    public void setConcurrency(Integer concurrency) { this.concurrency = concurrency; }
+
+    public Integer getDurationSeconds() { return durationSeconds; }
+    public void setDurationSeconds(Integer durationSeconds) { this.durationSeconds = durationSeconds; }
+
+    public Integer getMaxInFlight() { return maxInFlight; }
+    public void setMaxInFlight(Integer maxInFlight) { this.maxInFlight = maxInFlight; }
+
+    public Boolean getCache() { return cache; }
+    public void setCache(Boolean cache) { this.cache = cache; }
+
+    public Boolean getCoalesce() { return coalesce; }
+    public void setCoalesce(Boolean coalesce) { this.coalesce = coalesce; }
+}
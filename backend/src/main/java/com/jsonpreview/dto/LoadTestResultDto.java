@@ -0,0 +1,103 @@
+package com.jsonpreview.dto;
+
+import java.util.Map;
+
+/**
+ * State of a load test at one moment, running or finished. {@code recent*} figures cover
+ * the time since the previous snapshot of the same test.
+ */
+public class LoadTestResultDto {
+
+    private String id;
+    private String requestName;
+    // RUNNING, COMPLETED, STOPPED or FAILED
+    private String state;
+    private String error;
+    private String mode;
+    private Double targetRps;
+    private Integer concurrency;
+    private int durationSeconds;
+    private double elapsedSeconds;
+
+    private long sent;
+    private long completed;
+    private long inFlight;
+    // Execution errors plus responses with status >= 400
+    private long errors;
+    private double errorRate;
+    private double throughput;
+    private double recentThroughput;
+    // Open loop: how far sending has fallen behind the schedule
+    private double scheduleLagMs;
+    private Map<String, Long> statusCounts;
+
+    // From the scheduled send time, so time spent waiting to be sent counts (open loop)
+    private LatencySummaryDto latency;
+    private LatencySummaryDto recentLatency;
+    // From the actual send time
+    private LatencySummaryDto serviceTime;
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getRequestName() { return requestName; }
+    public void setRequestName(String requestName) { this.requestName = requestName; }
+
+    public String getState() { return state; }
+    public void setState(String state) { this.state = state; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getMode() { return mode; }
+    public void setMode(String mode) { this.mode = mode; }
+
+    public Double getTargetRps() { return targetRps; }
+    public void setTargetRps(Double targetRps) { this.targetRps = targetRps; }
+
+    public Integer getConcurrency() { return concurrency; }
+    public void setConcurrency(Integer concurrency) { this.concurrency = concurrency; }
+
+    public int getDurationSeconds() { return durationSeconds; }
+    public void setDurationSeconds(int durationSeconds) { this.durationSeconds = durationSeconds; }
+
+    public double getElapsedSeconds() { return elapsedSeconds; }
+    public void setElapsedSeconds(double elapsedSeconds) { this.elapsedSeconds = elapsedSeconds; }
+
+    public long getSent() { return sent; }
+    public void setSent(long sent) { this.sent = sent; }
+
+    public long getCompleted() { return completed; }
+    public void setCompleted(long completed) { this.completed = completed; }
+
+    public long getInFlight() { return inFlight; }
+    public void setInFlight(long inFlight) { this.inFlight = inFlight; }
+
+    public long getErrors() { return errors; }
+    public void setErrors(long errors) { this.errors = errors; }
+
+    public double getErrorRate() { return errorRate; }
+    public void setErrorRate(double errorRate) { this.errorRate = errorRate; }
+
+    public double getThroughput() { return throughput; }
+    public void setThroughput(double throughput) { this.throughput = throughput; }
+
+    public double getRecentThroughput() { return recentThroughput; }
+    public void setRecentThroughput(double recentThroughput) { this.recentThroughput = recentThroughput; }
+
+    public double getScheduleLagMs() { return scheduleLagMs; }
+    public void setScheduleLagMs(double scheduleLagMs) { this.scheduleLagMs = scheduleLagMs; }
+
+    public Map<String, Long> getStatusCounts() { return statusCounts; }
+    public void setStatusCounts(Map<String, Long> statusCounts) { this.statusCounts = statusCounts; }
+
+    public LatencySummaryDto getLatency() { return latency; }
+    public void setLatency(LatencySummaryDto latency) { this.latency = latency; }
+
+    public LatencySummaryDto getRecentLatency() { return recentLatency; }
+    public void setRecentLatency(LatencySummaryDto recentLatency) { this.recentLatency = recentLatency; }
+
+    public LatencySummaryDto getServiceTime() { return serviceTime; }
+    public void setServiceTime(LatencySummaryDto serviceTime) { this.serviceTime = serviceTime; }
+}
@@ -0,0 +1,44 @@
+package com.jsonpreview.dto;
+
+import java.util.List;
+
+/**
+ * One page of the matches of a JSONPath / JSON Pointer query.
+ */
+public class QueryResultDto {
+
+    private String documentId;
+    private String expression;
+    private int offset;
+    private int limit;
+    private boolean hasMore;
+    // Only computed when asked for, as it requires visiting every match
+    private Long total;
+    private long elapsedMs;
+    private List<DocumentNodeDto> matches;
+
+    // Getters and Setters
+    public String getDocumentId() { return documentId; }
+    public void setDocumentId(String documentId) { this.documentId = documentId; }
+
+    public String getExpression() { return expression; }
+    public void setExpression(String expression) { this.expression = expression; }
+
+    public int getOffset() { return offset; }
+    public void setOffset(int offset) { this.offset = offset; }
+
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+
+    public Long getTotal() { return total; }
+    public void setTotal(Long total) { this.total = total; }
+
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public List<DocumentNodeDto> getMatches() { return matches; }
+    public void setMatches(List<DocumentNodeDto> matches) { this.matches = matches; }
+}
@@ -6,6 +6,7 @@ import java.util.Map;
 public class RequestSummaryDto {
     
     private String name;
+    private String path;
     private String method;
     private String url;
     private String description;
@@ -25,6 +26,9 @@ public class RequestSummaryDto {
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
     
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+    
     public String getMethod() { return method; }
     public void setMethod(String method) { this.method = method; }
     
@@ -0,0 +1,49 @@
+package com.jsonpreview.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class RunStepResultDto {
+
+    // Position in document order
+    private int index;
+    private String requestName;
+    // SUCCEEDED, FAILED (error, status >= 400 or nothing to extract) or SKIPPED (a dependency did not succeed)
+    private String state;
+    private String error;
+    // Requests whose extracted variables this one consumes
+    private List<String> dependsOn;
+    private Map<String, String> extracted;
+    // Since the start of the run; absent for skipped requests
+    private Long startedAtMs;
+    private Long durationMs;
+    private ApiResponseDto response;
+
+    // Getters and Setters
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+
+    public String getRequestName() { return requestName; }
+    public void setRequestName(String requestName) { this.requestName = requestName; }
+
+    public String getState() { return state; }
+    public void setState(String state) { this.state = state; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public List<String> getDependsOn() { return dependsOn; }
+    public void setDependsOn(List<String> dependsOn) { this.dependsOn = dependsOn; }
+
+    public Map<String, String> getExtracted() { return extracted; }
+    public void setExtracted(Map<String, String> extracted) { this.extracted = extracted; }
+
+    public Long getStartedAtMs() { return startedAtMs; }
+    public void setStartedAtMs(Long startedAtMs) { this.startedAtMs = startedAtMs; }
+
+    public Long getDurationMs() { return durationMs; }
+    public void setDurationMs(Long durationMs) { this.durationMs = durationMs; }
+
+    public ApiResponseDto getResponse() { return response; }
+    public void setResponse(ApiResponseDto response) { this.response = response; }
+}
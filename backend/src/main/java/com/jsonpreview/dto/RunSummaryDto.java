@@ -0,0 +1,41 @@
+package com.jsonpreview.dto;
+
+public class RunSummaryDto {
+
+    private int requests;
+    private int succeeded;
+    private int failed;
+    private int skipped;
+    // Longest dependency chain, in requests
+    private int depth;
+    private long wallTimeMs;
+    // What running every request one after the other would have taken
+    private long serialTimeMs;
+    // Longest chain of dependent requests, by duration: the wall time floor
+    private long criticalPathMs;
+
+    // Getters and Setters
+    public int getRequests() { return requests; }
+    public void setRequests(int requests) { this.requests = requests; }
+
+    public int getSucceeded() { return succeeded; }
+    public void setSucceeded(int succeeded) { this.succeeded = succeeded; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public int getSkipped() { return skipped; }
+    public void setSkipped(int skipped) { this.skipped = skipped; }
+
+    public int getDepth() { return depth; }
+    public void setDepth(int depth) { this.depth = depth; }
+
+    public long getWallTimeMs() { return wallTimeMs; }
+    public void setWallTimeMs(long wallTimeMs) { this.wallTimeMs = wallTimeMs; }
+
+    public long getSerialTimeMs() { return serialTimeMs; }
+    public void setSerialTimeMs(long serialTimeMs) { this.serialTimeMs = serialTimeMs; }
+
+    public long getCriticalPathMs() { return criticalPathMs; }
+    public void setCriticalPathMs(long criticalPathMs) { this.criticalPathMs = criticalPathMs; }
+}
@@ -2,7 +2,15 @@ package com.jsonpreview.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -58,6 +66,14 @@ public class PostmanItem {
         private List<String> host;
         private List<String> path;
         private List<PostmanQuery> query;
+
+        public PostmanUrl() {
+        }
+
+        // Collections may give the url as a plain string, which is its raw form
+        public PostmanUrl(String raw) {
+            this.raw = raw;
+        }
         
         // Getters and Setters
         public String getRaw() { return raw; }
@@ -78,6 +94,7 @@ public class PostmanItem {
         private String key;
         private String value;
         private String description;
+        private boolean disabled;
         
         // Getters and Setters
         public String getKey() { return key; }
@@ -88,6 +105,9 @@ public class PostmanItem {
         
         public String getDescription() { return description; }
         public void setDescription(String description) { this.description = description; }
+        
+        public boolean isDisabled() { return disabled; }
+        public void setDisabled(boolean disabled) { this.disabled = disabled; }
     }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
@@ -95,6 +115,7 @@ public class PostmanItem {
         private String key;
         private String value;
         private String description;
+        private boolean disabled;
         
         // Getters and Setters
         public String getKey() { return key; }
@@ -105,6 +126,9 @@ public class PostmanItem {
         
         public String getDescription() { return description; }
         public void setDescription(String description) { this.description = description; }
+        
+        public boolean isDisabled() { return disabled; }
+        public void setDisabled(boolean disabled) { this.disabled = disabled; }
     }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
@@ -123,8 +147,11 @@ public class PostmanItem {
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class PostmanAuth {
         private String type;
+        @JsonDeserialize(using = AuthAttributes.class)
         private Map<String, Object> apikey;
+        @JsonDeserialize(using = AuthAttributes.class)
         private Map<String, Object> bearer;
+        @JsonDeserialize(using = AuthAttributes.class)
         private Map<String, Object> basic;
         
         // Getters and Setters
@@ -140,4 +167,33 @@ public class PostmanItem {
         public Map<String, Object> getBasic() { return basic; }
         public void setBasic(Map<String, Object> basic) { this.basic = basic; }
     }
+
+    /**
+     * Reads auth attributes from either the v2.1 form, {@code [{"key": ..., "value": ...}]},
+     * or the v2.0 one, a plain object; values are kept as text.
+     */
+    public static class AuthAttributes extends JsonDeserializer<Map<String, Object>> {
+        @Override
+        public Map<String, Object> deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonNode node = parser.readValueAsTree();
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            if (node.isArray()) {
+                for (JsonNode attribute : node) {
+                    JsonNode key = attribute.get("key");
+                    if (key != null && !key.isNull()) attributes.put(key.asText(), text(attribute.get("value")));
+                }
+            } else if (node.isObject()) {
+                for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    attributes.put(field.getKey(), text(field.getValue()));
+                }
+            }
+            return attributes;
+        }
+
+        private static String text(JsonNode value) {
+            if (value == null || value.isNull()) return null;
+            return value.isValueNode() ? value.asText() : value.toString();
+        }
+    }
 }
\ No newline at end of file
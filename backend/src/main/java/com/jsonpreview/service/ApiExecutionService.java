@@ -3,27 +3,45 @@ package com.jsonpreview.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.BufferedBody;
 import com.jsonpreview.dto.ExecuteRequestDto;
-import com.jsonpreview.model.PostmanItem;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
 import org.apache.hc.client5.http.classic.methods.*;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.Header;
-import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.nio.support.BasicResponseConsumer;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
-import org.apache.hc.core5.http.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ApiExecutionService {
@@ -35,114 +53,409 @@ public class ApiExecutionService {
     
     private final ObjectMapper objectMapper;
     private final CloseableHttpClient httpClient;
+    // Only present when execution.engine=async
+    private final CloseableHttpAsyncClient asyncHttpClient;
+    private final ExecutorService requestExecutor;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer coalescer;
+    private final HotPathMetrics metrics;
+    // Whether identical concurrent GET executions share one upstream call by default
+    private final boolean coalescing;
+    // tree: legacy String + JsonNode copies of every body; bytes: one BufferedBody
+    private final boolean treeResponseBodies;
+    // Bodies larger than this are spilled to a mapped temp file (bytes mode only)
+    private final long bodySpillThreshold;
     
-    public ApiExecutionService() {
+    public ApiExecutionService(CloseableHttpClient upstreamHttpClient,
+                               ObjectProvider<CloseableHttpAsyncClient> upstreamAsyncHttpClient,
+                               ExecutorService requestExecutor,
+                               ResponseCache responseCache,
+                               RequestCoalescer coalescer,
+                               HotPathMetrics metrics,
+                               @Value("${execution.coalescing.enabled:true}") boolean coalescing,
+                               @Value("${execution.response-body:bytes}") String responseBodyMode,
+                               @Value("${execution.body-spill-threshold:32MB}") DataSize bodySpillThreshold) {
         this.objectMapper = new ObjectMapper();
-        this.httpClient = HttpClients.createDefault();
+        this.httpClient = upstreamHttpClient;
+        this.asyncHttpClient = upstreamAsyncHttpClient.getIfAvailable();
+        this.requestExecutor = requestExecutor;
+        this.responseCache = responseCache;
+        this.coalescer = coalescer;
+        this.metrics = metrics;
+        this.coalescing = coalescing;
+        this.treeResponseBodies = "tree".equalsIgnoreCase(responseBodyMode);
+        this.bodySpillThreshold = treeResponseBodies ? Long.MAX_VALUE : bodySpillThreshold.toBytes();
+        logger.info("Using {} execution engine", asyncHttpClient != null ? "async" : "classic");
     }
     
     public ApiResponseDto executeRequest(ExecuteRequestDto requestDto) {
         long startTime = System.currentTimeMillis();
-        
+        return execute(prepareRequest(requestDto), startTime);
+    }
+    
+    /**
+     * Whether upstream calls are driven by the async client (execution.engine=async)
+     * rather than made on the calling thread.
+     */
+    public boolean isAsyncEngine() {
+        return asyncHttpClient != null;
+    }
+    
+    /**
+     * Executes without holding the calling thread on the async engine, where the exchange
+     * is driven by the client's I/O reactor. The classic engine has nothing to gain from
+     * handing the blocking call to another thread, so there it runs on the calling thread
+     * and the returned future is already complete.
+     */
+    public CompletableFuture<ApiResponseDto> executeRequestAsync(ExecuteRequestDto requestDto) {
+        long startTime = System.currentTimeMillis();
+        if (asyncHttpClient == null) {
+            return CompletableFuture.completedFuture(execute(prepareRequest(requestDto), startTime));
+        }
+        return executeOnAsyncEngine(prepareRequest(requestDto), startTime);
+    }
+    
+    /**
+     * Sends an already prepared request without holding the calling thread. On the classic
+     * engine the blocking call runs on the request executor.
+     */
+    public CompletableFuture<ApiResponseDto> executeAsync(PreparedRequest prepared, long startTime) {
+        return executeAsync(prepared, startTime, requestExecutor);
+    }
+    
+    /**
+     * Like {@link #executeAsync(PreparedRequest, long)}, with the classic engine's blocking
+     * call running on {@code classicExecutor} instead of the request executor.
+     */
+    public CompletableFuture<ApiResponseDto> executeAsync(PreparedRequest prepared, long startTime,
+                                                          Executor classicExecutor) {
+        if (asyncHttpClient == null) {
+            return CompletableFuture.supplyAsync(() -> execute(prepared, startTime), classicExecutor);
+        }
+        return executeOnAsyncEngine(prepared, startTime);
+    }
+    
+    /**
+     * Resolves the collection request and environment named by {@code requestDto} and
+     * renders them into an HTTP request, without sending it.
+     */
+    public PreparedRequest prepareRequest(ExecuteRequestDto requestDto) {
+        return prepareRequest(requestDto, Collections.emptyMap());
+    }
+    
+    /**
+     * Like {@link #prepareRequest(ExecuteRequestDto)}, with {@code runVariables} taking
+     * precedence over the environment's variables.
+     */
+    PreparedRequest prepareRequest(ExecuteRequestDto requestDto, Map<String, String> runVariables) {
+        long started = System.nanoTime();
+        String requestName = requestDto.getRequestName();
         try {
-            PostmanItem requestItem = postmanParserService.findRequestByName(requestDto.getRequestName());
-            if (requestItem == null) {
-                return createErrorResponse("Request not found: " + requestDto.getRequestName(), startTime);
+            CollectionSnapshot collection = postmanParserService.findCollection(requestDto.getCollectionId());
+            if (collection == null && requestDto.getCollectionId() != null) {
+                return PreparedRequest.failed(requestName, "Collection not found: " + requestDto.getCollectionId());
             }
             
-            PostmanItem.PostmanRequest request = requestItem.getRequest();
-            if (request == null) {
-                return createErrorResponse("Invalid request configuration", startTime);
+            EnvironmentSnapshot environment = postmanParserService.findEnvironment(requestDto.getEnvironment());
+            if (environment == null && !CollectionRegistry.isDefaultEnvironment(requestDto.getEnvironment())) {
+                return PreparedRequest.failed(requestName, "Environment not found: " + requestDto.getEnvironment());
+            }
+            Map<String, String> variables = environment != null ? environment.getVariables() : Collections.emptyMap();
+            if (!runVariables.isEmpty()) {
+                variables = new HashMap<>(variables);
+                variables.putAll(runVariables);
             }
             
-            // Build the HTTP request
-            HttpUriRequestBase httpRequest = buildHttpRequest(request, requestDto.getParameters());
+            CollectionIndex.Entry entry = collection != null ? collection.getIndex().find(requestName) : null;
+            if (entry == null) {
+                return PreparedRequest.failed(requestName, "Request not found: " + requestName);
+            }
             
-            // Execute the request
-            try (CloseableHttpResponse response = httpClient.execute(httpRequest)) {
-                return processResponse(response, startTime);
+            RequestPlan plan = entry.getPlan();
+            if (plan == null) {
+                return PreparedRequest.failed(requestName, "Invalid request configuration");
             }
             
+            // Fill the plan's slots in
+            long renderStart = System.nanoTime();
+            HttpUriRequestBase httpRequest = plan.render(variables, requestDto.getParameters());
+            metrics.recordRender(System.nanoTime() - renderStart);
+            return PreparedRequest.of(requestName, httpRequest,
+                                      responseCache.isEnabled(requestDto.getCache()),
+                                      requestDto.getCoalesce() != null ? requestDto.getCoalesce() : coalescing,
+                                      ExecutionTimer.preparedSince(started));
+            
         } catch (Exception e) {
-            logger.error("Error executing request: {}", e.getMessage(), e);
-            return createErrorResponse("Execution error: " + e.getMessage(), startTime);
+            logger.error("Error preparing request: {}", e.getMessage(), e);
+            return PreparedRequest.failed(requestName, "Execution error: " + e.getMessage());
         }
     }
     
-    private HttpUriRequestBase buildHttpRequest(PostmanItem.PostmanRequest request, Map<String, String> parameters) 
-            throws URISyntaxException, IOException {
-        
-        // Replace variables in URL
-        String url = postmanParserService.replaceVariables(request.getUrl().getRaw(), parameters);
-        
-        // Create request based on method
-        HttpUriRequestBase httpRequest;
-        String method = request.getMethod().toUpperCase();
-        
-        switch (method) {
-            case "GET":
-                httpRequest = new HttpGet(url);
-                break;
-            case "POST":
-                httpRequest = new HttpPost(url);
-                break;
-            case "PUT":
-                httpRequest = new HttpPut(url);
-                break;
-            case "DELETE":
-                httpRequest = new HttpDelete(url);
-                break;
-            case "PATCH":
-                httpRequest = new HttpPatch(url);
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported HTTP method: " + method);
+    /**
+     * Sends a prepared request, or answers it from the response cache when the request
+     * uses the cache and a fresh response is stored, or from an identical GET already in
+     * flight; {@code startTime} is when the execution began, so the reported time
+     * includes preparation.
+     */
+    public ApiResponseDto execute(PreparedRequest prepared, long startTime) {
+        return recorded(prepared, executePrepared(prepared, startTime), startTime);
+    }
+    
+    private ApiResponseDto executePrepared(PreparedRequest prepared, long startTime) {
+        if (prepared.isFailed()) {
+            return createErrorResponse(prepared.getError(), startTime);
+        }
+        String key = coalescingKey(prepared);
+        ResponseCache.Lookup cached = lookup(prepared);
+        ApiResponseDto hit = cached != null ? cached.fresh(startTime) : null;
+        if (hit != null) {
+            return prepared.getTimer().finish(hit);
+        }
+        if (key == null) {
+            return send(prepared, cached, startTime);
         }
         
-        // Add headers
-        if (request.getHeader() != null) {
-            for (PostmanItem.PostmanHeader header : request.getHeader()) {
-                String headerValue = postmanParserService.replaceVariables(header.getValue(), parameters);
-                httpRequest.addHeader(header.getKey(), headerValue);
+        CompletableFuture<ApiResponseDto> shared = coalescer.execute(
+            key, () -> CompletableFuture.completedFuture(send(prepared, cached, startTime)));
+        try {
+            return shared.get();
+        } catch (InterruptedException e) {
+            shared.cancel(true);
+            Thread.currentThread().interrupt();
+            return createErrorResponse("Execution error: " + e.getMessage(), startTime);
+        } catch (ExecutionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.error("Error executing request: {}", cause.getMessage(), cause);
+            return createErrorResponse("Execution error: " + cause.getMessage(), startTime);
+        }
+    }
+    
+    private ApiResponseDto send(PreparedRequest prepared, ResponseCache.Lookup cached, long startTime) {
+        ExecutionTimer timer = prepared.getTimer();
+        if (asyncHttpClient != null) {
+            // Process on the calling thread: callers may themselves be request executor
+            // threads, which must not wait on work queued behind them
+            CompletableFuture<Message<HttpResponse, BufferedBody>> exchange = send(prepared);
+            Message<HttpResponse, BufferedBody> response = null;
+            Throwable failure = null;
+            try {
+                response = exchange.get();
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (CancellationException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                exchange.cancel(true);
+                Thread.currentThread().interrupt();
+                failure = e;
             }
+            return toResponseDto(response, failure, cached, timer, startTime);
         }
         
-        // Add body for POST/PUT/PATCH requests
-        if (request.getBody() != null && request.getBody().getRaw() != null && 
-            (httpRequest instanceof HttpPost || httpRequest instanceof HttpPut || httpRequest instanceof HttpPatch)) {
-            
-            String body = postmanParserService.replaceVariables(request.getBody().getRaw(), parameters);
-            StringEntity entity = new StringEntity(body, ContentType.APPLICATION_JSON);
-            
-            if (httpRequest instanceof HttpPost) {
-                ((HttpPost) httpRequest).setEntity(entity);
-            } else if (httpRequest instanceof HttpPut) {
-                ((HttpPut) httpRequest).setEntity(entity);
-            } else if (httpRequest instanceof HttpPatch) {
-                ((HttpPatch) httpRequest).setEntity(entity);
-            }
+        countSent(prepared.getHttpRequest());
+        timer.sending(true);
+        try (CloseableHttpResponse response = httpClient.execute(prepared.getHttpRequest(), timer.getContext())) {
+            timer.responded();
+            HttpEntity entity = response.getEntity();
+            BufferedBody body = entity != null ? readBody(entity) : null;
+            timer.received();
+            return complete(cached, timer, response.getCode(), response.getHeaders(), body, startTime);
+        } catch (Exception e) {
+            logger.error("Error executing request: {}", e.getMessage(), e);
+            return createErrorResponse("Execution error: " + e.getMessage(), startTime);
+        } finally {
+            timer.detach();
+        }
+    }
+    
+    /**
+     * Sends a collection request and returns once the upstream response headers have
+     * arrived, leaving the entity unread so it can be streamed to the client. Always uses
+     * the blocking client, whatever the engine. The caller must close the result.
+     */
+    public UpstreamStream openStream(ExecuteRequestDto requestDto) {
+        long startTime = System.currentTimeMillis();
+        PreparedRequest prepared = prepareRequest(requestDto);
+        if (prepared.isFailed()) {
+            return UpstreamStream.failed(prepared.getRequestName(), prepared.getError(), startTime);
         }
         
-        return httpRequest;
+        try {
+            return UpstreamStream.of(prepared.getRequestName(), httpClient.execute(prepared.getHttpRequest()), startTime);
+        } catch (Exception e) {
+            logger.error("Error executing request: {}", e.getMessage(), e);
+            return UpstreamStream.failed(prepared.getRequestName(), "Execution error: " + e.getMessage(), startTime);
+        }
+    }
+    
+    /**
+     * Sends a prepared request on the async engine. The response is parsed on the request
+     * executor rather than on an I/O reactor thread; cancelling the returned future aborts
+     * the upstream exchange (once every caller sharing a coalesced exchange has cancelled).
+     */
+    private CompletableFuture<ApiResponseDto> executeOnAsyncEngine(PreparedRequest prepared, long startTime) {
+        CompletableFuture<ApiResponseDto> execution = executePreparedAsync(prepared, startTime);
+        CompletableFuture<ApiResponseDto> result = execution.thenApply(response -> recorded(prepared, response, startTime));
+        result.whenComplete((response, e) -> {
+            if (result.isCancelled()) execution.cancel(true);
+        });
+        return result;
+    }
+    
+    private CompletableFuture<ApiResponseDto> executePreparedAsync(PreparedRequest prepared, long startTime) {
+        if (prepared.isFailed()) {
+            return CompletableFuture.completedFuture(createErrorResponse(prepared.getError(), startTime));
+        }
+        String key = coalescingKey(prepared);
+        ResponseCache.Lookup cached = lookup(prepared);
+        ApiResponseDto hit = cached != null ? cached.fresh(startTime) : null;
+        if (hit != null) {
+            return CompletableFuture.completedFuture(prepared.getTimer().finish(hit));
+        }
+        if (key == null) {
+            return sendAsync(prepared, cached, startTime);
+        }
+        return coalescer.execute(key, () -> sendAsync(prepared, cached, startTime));
+    }
+    
+    private CompletableFuture<ApiResponseDto> sendAsync(PreparedRequest prepared, ResponseCache.Lookup cached,
+                                                        long startTime) {
+        CompletableFuture<Message<HttpResponse, BufferedBody>> exchange = send(prepared);
+        CompletableFuture<ApiResponseDto> result = exchange.handleAsync(
+            (response, e) -> toResponseDto(response, e, cached, prepared.getTimer(), startTime), requestExecutor);
+        result.whenComplete((response, e) -> {
+            if (result.isCancelled()) exchange.cancel(true);
+        });
+        return result;
+    }
+    
+    private CompletableFuture<Message<HttpResponse, BufferedBody>> send(PreparedRequest prepared) {
+        CompletableFuture<Message<HttpResponse, BufferedBody>> exchange = new CompletableFuture<>();
+        ExecutionTimer timer = prepared.getTimer();
+        try {
+            SimpleHttpRequest request = toSimpleRequest(prepared.getHttpRequest());
+            countSent(prepared.getHttpRequest());
+            timer.sending(false);
+            Future<Message<HttpResponse, BufferedBody>> upstream = asyncHttpClient.execute(
+                SimpleRequestProducer.create(request),
+                new BasicResponseConsumer<>(new BufferedBodyConsumer(bodySpillThreshold, timer)),
+                timer.getContext(),
+                new FutureCallback<Message<HttpResponse, BufferedBody>>() {
+                    @Override
+                    public void completed(Message<HttpResponse, BufferedBody> response) {
+                        timer.received();
+                        exchange.complete(response);
+                    }
+                    
+                    @Override
+                    public void failed(Exception e) {
+                        exchange.completeExceptionally(e);
+                    }
+                    
+                    @Override
+                    public void cancelled() {
+                        exchange.cancel(false);
+                    }
+                });
+            exchange.whenComplete((response, e) -> {
+                if (exchange.isCancelled()) upstream.cancel(true);
+            });
+        } catch (IOException e) {
+            exchange.completeExceptionally(e);
+        }
+        return exchange;
+    }
+    
+    private ApiResponseDto recorded(PreparedRequest prepared, ApiResponseDto response, long startTime) {
+        ExecutionTimer timer = prepared.getTimer();
+        long nanos = timer != null
+            ? timer.elapsedNanos()
+            : TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - startTime);
+        metrics.recordExecution(prepared.getRequestName(), response, nanos);
+        return response;
+    }
+    
+    private void countSent(HttpUriRequestBase httpRequest) {
+        HttpEntity entity = httpRequest.getEntity();
+        if (entity != null) metrics.countSent(entity.getContentLength());
     }
     
-    private ApiResponseDto processResponse(CloseableHttpResponse response, long startTime) throws IOException, ParseException {
+    /**
+     * Key under which identical executions are coalesced, or null if this one isn't: only
+     * GETs are, as sharing a call is only safe when sending it once or twice is the same.
+     * Taken before the cache lookup, which may add conditional headers.
+     */
+    private String coalescingKey(PreparedRequest prepared) {
+        if (!prepared.isCoalesced() || !"GET".equals(prepared.getHttpRequest().getMethod())) return null;
+        return ResponseCache.keyOf(prepared.getHttpRequest());
+    }
+    
+    /**
+     * Cache lookup for a request that uses the cache; may add conditional headers to it.
+     */
+    private ResponseCache.Lookup lookup(PreparedRequest prepared) {
+        return prepared.isCached() ? responseCache.lookup(prepared.getHttpRequest()) : null;
+    }
+    
+    private ApiResponseDto toResponseDto(Message<HttpResponse, BufferedBody> response, Throwable failure,
+                                         ResponseCache.Lookup cached, ExecutionTimer timer, long startTime) {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            logger.error("Error executing request: {}", cause.getMessage(), cause);
+            return createErrorResponse("Execution error: " + cause.getMessage(), startTime);
+        }
+        try {
+            HttpResponse head = response.getHead();
+            return complete(cached, timer, head.getCode(), head.getHeaders(), response.getBody(), startTime);
+        } catch (Exception e) {
+            logger.error("Error processing response: {}", e.getMessage(), e);
+            return createErrorResponse("Execution error: " + e.getMessage(), startTime);
+        }
+    }
+    
+    private static SimpleHttpRequest toSimpleRequest(HttpUriRequestBase httpRequest) throws IOException {
+        SimpleRequestBuilder builder = SimpleRequestBuilder.copy(httpRequest);
+        HttpEntity entity = httpRequest.getEntity();
+        if (entity != null) {
+            builder.setBody(EntityUtils.toByteArray(entity), ContentType.parse(entity.getContentType()));
+        }
+        return builder.build();
+    }
+    
+    private ApiResponseDto complete(ResponseCache.Lookup cached, ExecutionTimer timer, int statusCode,
+                                    Header[] responseHeaders, BufferedBody body, long startTime) {
+        if (body != null) metrics.countReceived(body.size());
+        long processStart = System.nanoTime();
+        ApiResponseDto dto = processResponse(statusCode, responseHeaders, body, startTime);
+        metrics.recordProcess(System.nanoTime() - processStart);
+        return timer.finish(cached != null ? cached.complete(statusCode, responseHeaders, dto, body, startTime) : dto);
+    }
+    
+    private ApiResponseDto processResponse(int statusCode, Header[] responseHeaders, BufferedBody body, long startTime) {
         long executionTime = System.currentTimeMillis() - startTime;
         
         ApiResponseDto dto = new ApiResponseDto();
-        dto.setStatusCode(response.getCode());
+        dto.setStatusCode(statusCode);
         dto.setExecutionTimeMs(executionTime);
         
         // Extract headers
         Map<String, String> headers = new HashMap<>();
-        for (Header header : response.getHeaders()) {
+        for (Header header : responseHeaders) {
             headers.put(header.getName(), header.getValue());
         }
         dto.setHeaders(headers);
         
         // Extract response body
-        if (response.getEntity() != null) {
-            String rawResponse = EntityUtils.toString(response.getEntity());
+        if (body != null) {
+            if (!treeResponseBodies || !body.fitsArray()) {
+                // Serialized straight from the received bytes, in one pass that also tells
+                // whether they are JSON; the raw text is only added if they turn out malformed
+                dto.setResponseBody(body);
+                dto.setRawResponse(body.asFallback());
+                return dto;
+            }
+            
+            String rawResponse = new String(body.toByteArray(), body.getCharset());
             dto.setRawResponse(rawResponse);
             
             try {
@@ -158,6 +471,14 @@ public class ApiExecutionService {
         return dto;
     }
     
+    private BufferedBody readBody(HttpEntity entity) throws IOException {
+        Charset charset = BufferedBodyConsumer.charsetOf(ContentType.parseLenient(entity.getContentType()));
+        try (InputStream in = entity.getContent()) {
+            if (in == null) return BufferedBody.of(new byte[0], charset);
+            return BufferedBody.read(in, entity.getContentLength(), charset, bodySpillThreshold);
+        }
+    }
+    
     private ApiResponseDto createErrorResponse(String error, long startTime) {
         long executionTime = System.currentTimeMillis() - startTime;
         ApiResponseDto dto = new ApiResponseDto();
@@ -0,0 +1,240 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.BatchExecuteRequestDto;
+import com.jsonpreview.dto.BatchResultDto;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Runs many collection requests concurrently and hands each result to a sink as soon as
+ * it completes, in completion order.
+ *
+ * Concurrency is bounded per batch by a global permit count ({@code batch.max-parallelism},
+ * or the smaller value the caller asks for) and by a permit count per target
+ * {@code host[:port]} ({@code batch.per-host-limit}), so one slow upstream cannot take
+ * every slot. Requests wait for permits in per-host queues on the scheduling thread,
+ * never on executor threads.
+ */
+@Service
+public class BatchExecutionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchExecutionService.class);
+
+    private final ApiExecutionService apiExecutionService;
+    private final PostmanParserService postmanParserService;
+    private final ExecutorService requestExecutor;
+    private final int maxParallelism;
+    private final int perHostLimit;
+    private final int maxRequests;
+
+    public BatchExecutionService(ApiExecutionService apiExecutionService,
+                                 PostmanParserService postmanParserService,
+                                 ExecutorService requestExecutor,
+                                 @Value("${batch.max-parallelism:64}") int maxParallelism,
+                                 @Value("${batch.per-host-limit:16}") int perHostLimit,
+                                 @Value("${batch.max-requests:10000}") int maxRequests) {
+        this.apiExecutionService = apiExecutionService;
+        this.postmanParserService = postmanParserService;
+        this.requestExecutor = requestExecutor;
+        this.maxParallelism = maxParallelism;
+        this.perHostLimit = perHostLimit;
+        this.maxRequests = maxRequests;
+    }
+
+    /**
+     * Receives results one at a time, from a single thread.
+     */
+    @FunctionalInterface
+    public interface ResultSink {
+        void accept(BatchResultDto result) throws IOException;
+    }
+
+    /**
+     * Expands a batch into individual executions: the explicit request list if present,
+     * otherwise every request under {@code folder} in the chosen collection.
+     *
+     * @throws IllegalArgumentException if the batch is empty, too large or names an unknown collection
+     */
+    public List<ExecuteRequestDto> resolve(BatchExecuteRequestDto batch) {
+        List<ExecuteRequestDto> requests;
+        if (batch.getRequests() != null && !batch.getRequests().isEmpty()) {
+            requests = batch.getRequests();
+        } else if (batch.getFolder() != null) {
+            CollectionSnapshot collection = postmanParserService.findCollection(batch.getCollectionId());
+            if (collection == null) {
+                throw new IllegalArgumentException("Collection not found: "
+                    + (batch.getCollectionId() != null ? batch.getCollectionId() : "no collection uploaded"));
+            }
+            requests = new ArrayList<>();
+            for (CollectionIndex.Entry entry : collection.getIndex().getEntriesUnder(batch.getFolder())) {
+                ExecuteRequestDto request = new ExecuteRequestDto();
+                request.setCollectionId(collection.getId());
+                request.setRequestName(entry.getPath());
+                request.setEnvironment(batch.getEnvironment());
+                request.setParameters(batch.getParameters());
+                requests.add(request);
+            }
+        } else {
+            throw new IllegalArgumentException("Either requests or folder is required");
+        }
+
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("No requests found in folder: " + batch.getFolder());
+        }
+        if (requests.size() > maxRequests) {
+            throw new IllegalArgumentException("Batch of " + requests.size() + " requests exceeds the limit of " + maxRequests);
+        }
+        return requests;
+    }
+
+    /**
+     * Requests waiting for one {@code host[:port]}, and how many of its requests are running.
+     */
+    private static final class Host {
+        final int limit;
+        final ArrayDeque<Integer> queued = new ArrayDeque<>();
+        int running;
+        boolean ready;
+
+        Host(int limit) {
+            this.limit = limit;
+        }
+
+        boolean canStart() {
+            return !queued.isEmpty() && running < limit;
+        }
+    }
+
+    /**
+     * Executes the requests, at most {@code parallelism} at a time. Scheduling happens on
+     * the calling thread: a request is handed to the executor only once both a global and
+     * a host permit are free, so requests queued behind a busy host wait in memory rather
+     * than on an executor thread, and the shared executor stays available to other
+     * batches and single executions.
+     */
+    public void execute(List<ExecuteRequestDto> requests, Integer parallelism, ResultSink sink) throws IOException {
+        int limit = parallelism != null && parallelism > 0 ? Math.min(parallelism, maxParallelism) : maxParallelism;
+        int total = requests.size();
+        PreparedRequest[] prepared = new PreparedRequest[total];
+        Host[] hostOf = new Host[total];
+        Map<String, Host> hosts = new HashMap<>();
+        // Requests without a host (failed to render) are only bounded by the global limit
+        Host noHost = new Host(Integer.MAX_VALUE);
+        ArrayDeque<Host> ready = new ArrayDeque<>();
+        BlockingQueue<BatchResultDto> completed = new LinkedBlockingQueue<>();
+        boolean[] reported = new boolean[total];
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.currentTimeMillis();
+        int nextToPrepare = 0;
+        int running = 0;
+        int received = 0;
+        try {
+            while (received < total) {
+                while (running < limit) {
+                    Host host = ready.poll();
+                    if (host != null) {
+                        host.ready = false;
+                        int index = host.queued.poll();
+                        host.running++;
+                        running++;
+                        futures.add(submit(index, requests.get(index), prepared[index], completed));
+                        prepared[index] = null;
+                        markReady(host, ready);
+                    } else if (nextToPrepare < total) {
+                        int index = nextToPrepare++;
+                        prepared[index] = apiExecutionService.prepareRequest(requests.get(index));
+                        String authority = prepared[index].getAuthority();
+                        host = authority != null
+                            ? hosts.computeIfAbsent(authority, a -> new Host(perHostLimit))
+                            : noHost;
+                        hostOf[index] = host;
+                        host.queued.add(index);
+                        markReady(host, ready);
+                    } else {
+                        break;
+                    }
+                }
+
+                BatchResultDto result = completed.take();
+                running--;
+                Host host = hostOf[result.getIndex()];
+                host.running--;
+                markReady(host, ready);
+                reported[result.getIndex()] = true;
+                received++;
+                sink.accept(result);
+            }
+            logger.info("Batch of {} requests over {} hosts finished in {} ms (parallelism {})",
+                        total, hosts.size(), System.currentTimeMillis() - start, limit);
+        } catch (InterruptedException e) {
+            // Async timeout or shutdown: report the rest as cancelled so the stream ends
+            // with a line for every request rather than stopping short
+            cancel(futures);
+            logger.warn("Batch interrupted after {} of {} results", received, total);
+            for (int index = 0; index < total; index++) {
+                if (!reported[index]) {
+                    sink.accept(new BatchResultDto(index, requests.get(index).getRequestName(),
+                                                   cancelled(System.currentTimeMillis() - start)));
+                }
+            }
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            // Client went away; stop scheduling the rest
+            cancel(futures);
+            throw e;
+        }
+    }
+
+    private static void markReady(Host host, ArrayDeque<Host> ready) {
+        if (!host.ready && host.canStart()) {
+            host.ready = true;
+            ready.add(host);
+        }
+    }
+
+    private Future<?> submit(int index, ExecuteRequestDto request, PreparedRequest prepared,
+                             BlockingQueue<BatchResultDto> completed) {
+        return requestExecutor.submit(() -> {
+            long startTime = System.currentTimeMillis();
+            ApiResponseDto response;
+            try {
+                response = Thread.currentThread().isInterrupted()
+                    ? cancelled(0)
+                    : apiExecutionService.execute(prepared, startTime);
+            } catch (RuntimeException e) {
+                response = new ApiResponseDto();
+                response.setError("Execution error: " + e.getMessage());
+                response.setStatusCode(500);
+            }
+            // Always report, so the scheduler never waits for a result that won't come
+            completed.add(new BatchResultDto(index, request.getRequestName(), response));
+        });
+    }
+
+    private static ApiResponseDto cancelled(long elapsedMs) {
+        ApiResponseDto cancelled = new ApiResponseDto();
+        cancelled.setError("Batch cancelled");
+        cancelled.setStatusCode(500);
+        cancelled.setExecutionTimeMs(elapsedMs);
+        return cancelled;
+    }
+
+    private static void cancel(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
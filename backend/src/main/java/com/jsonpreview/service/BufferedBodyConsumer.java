@@ -0,0 +1,79 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.BufferedBody;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.nio.entity.AbstractBinAsyncEntityConsumer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Collects an async response entity straight into a {@link BufferedBody}, without the
+ * growing buffer and final copy of the simple consumers. Bodies past the spill threshold
+ * are written to a temp file as they arrive.
+ */
+class BufferedBodyConsumer extends AbstractBinAsyncEntityConsumer<BufferedBody> {
+
+    private static final int CAPACITY_INCREMENT = 64 * 1024;
+    // MIME types whose default charset is UTF-8 in httpcore's (deprecated) ContentType table
+    private static final Set<String> UTF_8_BY_DEFAULT = Set.of(
+        "application/json", "application/xml", "application/atom+xml", "application/svg+xml",
+        "application/xhtml+xml", "text/xml");
+
+    private final long spillThreshold;
+    // Told when the response head arrives
+    private final ExecutionTimer timer;
+    private BufferedBody.Builder builder;
+
+    BufferedBodyConsumer(long spillThreshold, ExecutionTimer timer) {
+        this.spillThreshold = spillThreshold;
+        this.timer = timer;
+    }
+
+    @Override
+    protected void streamStart(ContentType contentType) {
+        timer.responded();
+        builder = new BufferedBody.Builder(charsetOf(contentType), -1, spillThreshold);
+    }
+
+    @Override
+    protected int capacityIncrement() {
+        return CAPACITY_INCREMENT;
+    }
+
+    @Override
+    protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+        builder.append(src);
+    }
+
+    @Override
+    protected BufferedBody generateContent() throws IOException {
+        return builder.build();
+    }
+
+    @Override
+    public void releaseResources() {
+        // No-op once built; drops the spill file of an abandoned exchange
+        if (builder != null) builder.discard();
+    }
+
+    /**
+     * Charset for decoding a body, with the same defaults as {@code EntityUtils.toString}:
+     * the declared charset, else the MIME type's default, else ISO-8859-1.
+     */
+    static Charset charsetOf(ContentType contentType) {
+        Charset charset = null;
+        if (contentType != null) {
+            charset = contentType.getCharset();
+            if (charset == null && contentType.getMimeType() != null
+                    && UTF_8_BY_DEFAULT.contains(contentType.getMimeType().toLowerCase(Locale.ROOT))) {
+                charset = StandardCharsets.UTF_8;
+            }
+        }
+        return charset != null ? charset : StandardCharsets.ISO_8859_1;
+    }
+}
@@ -0,0 +1,306 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.model.PostmanCollection;
+import com.jsonpreview.model.PostmanItem;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Immutable lookup structure over the requests of one uploaded collection.
+ *
+ * Requests are flattened once, in document (depth-first) order, and indexed by bare
+ * name and by folder path ({@code "Folder/Sub folder/Request"}). When several requests
+ * share a name, the bare name resolves to the first one in document order, which is
+ * what the original recursive search returned; the others stay reachable through their
+ * path. Colliding paths get a {@code " #2"}, {@code " #3"}... suffix in document order.
+ *
+ * Entries either hold a fully parsed request, compiled into a {@link RequestPlan} the
+ * first time it is executed, or - for collections ingested by
+ * {@link StreamingCollectionParser} - a summary-only item plus a {@link RequestLoader}
+ * that inflates the complete request on demand. Plans of the latter are kept in a small
+ * per-collection LRU ({@value #LAZY_PLAN_ENTRIES} plans, about {@value #LAZY_PLAN_BYTES}
+ * bytes of request bodies), so repeated executions only fill in slots while the bulk of
+ * a huge collection stays off the heap.
+ */
+public final class CollectionIndex {
+
+    public static final CollectionIndex EMPTY = new Builder().build();
+
+    private static final String PATH_SEPARATOR = "/";
+
+    static final int LAZY_PLAN_ENTRIES = 1024;
+    static final long LAZY_PLAN_BYTES = 16L * 1024 * 1024;
+    // Charged per cached plan besides its body
+    private static final int PLAN_OVERHEAD = 1024;
+
+    private final List<Entry> entries;
+    private final Map<String, Entry> byName;
+    private final Map<String, Entry> byPath;
+    private final int duplicateNames;
+
+    private CollectionIndex(List<Entry> entries, Map<String, Entry> byName, Map<String, Entry> byPath, int duplicateNames) {
+        this.entries = entries;
+        this.byName = byName;
+        this.byPath = byPath;
+        this.duplicateNames = duplicateNames;
+    }
+
+    public static CollectionIndex build(PostmanCollection collection) {
+        Builder builder = new Builder();
+        if (collection == null || collection.getItems() == null) return builder.build();
+
+        // Explicit stack instead of recursion so deeply nested folders can't overflow
+        Deque<Iterator<PostmanItem>> stack = new ArrayDeque<>();
+        stack.push(collection.getItems().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<PostmanItem> items = stack.peek();
+            if (!items.hasNext()) {
+                stack.pop();
+                if (!stack.isEmpty()) builder.exitFolder();
+                continue;
+            }
+            PostmanItem item = items.next();
+            if (item.getRequest() != null) {
+                builder.addRequest(item);
+            } else if (item.getItem() != null) {
+                builder.enterFolder().setName(item.getName());
+                stack.push(item.getItem().iterator());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Resolves a request by bare name first, then by folder path.
+     */
+    public Entry find(String nameOrPath) {
+        if (nameOrPath == null) return null;
+        Entry entry = byName.get(nameOrPath);
+        return entry != null ? entry : byPath.get(nameOrPath);
+    }
+
+    public List<Entry> getEntries() { return entries; }
+
+    /**
+     * Requests under a folder path (including sub folders), in document order; every
+     * request for a null or blank path.
+     */
+    public List<Entry> getEntriesUnder(String folderPath) {
+        if (folderPath == null || folderPath.isBlank()) return entries;
+
+        String prefix = folderPath.endsWith(PATH_SEPARATOR) ? folderPath : folderPath + PATH_SEPARATOR;
+        List<Entry> matches = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.path.startsWith(prefix)) matches.add(entry);
+        }
+        return matches;
+    }
+
+    public int size() { return entries.size(); }
+
+    public int getDuplicateNames() { return duplicateNames; }
+
+    /**
+     * Reads the complete definition of a request that was indexed without it.
+     */
+    @FunctionalInterface
+    public interface RequestLoader {
+        PostmanItem.PostmanRequest load() throws IOException;
+    }
+
+    /**
+     * Recently used plans of lazily loaded entries, bounded by count and by body size.
+     */
+    static final class LazyPlans {
+        private final int maxEntries;
+        private final long maxBytes;
+        private final LinkedHashMap<Entry, RequestPlan> plans = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        LazyPlans(int maxEntries, long maxBytes) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized RequestPlan get(Entry entry) {
+            return plans.get(entry);
+        }
+
+        synchronized void put(Entry entry, RequestPlan plan) {
+            long weight = weightOf(plan);
+            // A plan that would take most of the budget is compiled anew each time instead
+            if (weight > maxBytes / 4) return;
+            RequestPlan replaced = plans.put(entry, plan);
+            if (replaced != null) bytes -= weightOf(replaced);
+            bytes += weight;
+            Iterator<Map.Entry<Entry, RequestPlan>> eldest = plans.entrySet().iterator();
+            while ((plans.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+                bytes -= weightOf(eldest.next().getValue());
+                eldest.remove();
+            }
+        }
+
+        synchronized int size() {
+            return plans.size();
+        }
+
+        private static long weightOf(RequestPlan plan) {
+            PostmanItem.PostmanBody body = plan.getRequest().getBody();
+            // UTF-16 source text plus the compiled UTF-8 chunks
+            return PLAN_OVERHEAD + (body != null && body.getRaw() != null ? 3L * body.getRaw().length() : 0);
+        }
+    }
+
+    public static final class Entry {
+        private final String name;
+        private final PostmanItem item;
+        private final RequestLoader loader;
+        private final LazyPlans lazyPlans;
+        private final Folder folder;
+        private String path;
+        // Compiled on first use; racing compilations build equal plans
+        private volatile RequestPlan plan;
+
+        private Entry(String name, PostmanItem item, RequestLoader loader, LazyPlans lazyPlans, Folder folder) {
+            this.name = name;
+            this.item = item;
+            this.loader = loader;
+            this.lazyPlans = lazyPlans;
+            this.folder = folder;
+        }
+
+        public String getName() { return name; }
+
+        public String getPath() { return path; }
+
+        /**
+         * The indexed item. For lazily loaded entries its request carries everything
+         * needed for the summary listing but no body.
+         */
+        public PostmanItem getItem() { return item; }
+
+        /**
+         * Execution plan of the complete request, or null if there is no request. Lazily
+         * loaded entries inflate and compile the request from its source when their plan
+         * is not among the collection's recently used ones.
+         */
+        public RequestPlan getPlan() throws IOException {
+            if (loader != null) {
+                RequestPlan cached = lazyPlans.get(this);
+                if (cached != null) return cached;
+                PostmanItem.PostmanRequest request = loader.load();
+                if (request == null) return null;
+                RequestPlan compiled = RequestPlan.compile(request);
+                lazyPlans.put(this, compiled);
+                return compiled;
+            }
+            RequestPlan compiled = plan;
+            if (compiled == null && item.getRequest() != null) {
+                plan = compiled = RequestPlan.compile(item.getRequest());
+            }
+            return compiled;
+        }
+
+        public boolean isLazy() { return loader != null; }
+    }
+
+    /**
+     * Folder whose name may still be unknown while its children are being indexed;
+     * paths are only resolved in {@link Builder#build()}.
+     */
+    public static final class Folder {
+        private final Folder parent;
+        private String name = "";
+        private String prefix;
+
+        private Folder(Folder parent) {
+            this.parent = parent;
+        }
+
+        public void setName(String name) {
+            this.name = name != null ? name : "";
+        }
+
+        private String prefix() {
+            // Resolved top-down from the nearest known ancestor so deep nesting cannot overflow the stack
+            Deque<Folder> unresolved = new ArrayDeque<>();
+            for (Folder folder = this; folder.prefix == null; folder = folder.parent) {
+                if (folder.parent == null) {
+                    folder.prefix = "";
+                    break;
+                }
+                unresolved.push(folder);
+            }
+            while (!unresolved.isEmpty()) {
+                Folder folder = unresolved.pop();
+                folder.prefix = folder.parent.prefix + folder.name + PATH_SEPARATOR;
+            }
+            return prefix;
+        }
+    }
+
+    /**
+     * Incremental construction in document order, shared by the object-mapping and the
+     * streaming ingestion paths.
+     */
+    public static final class Builder {
+        private final List<Entry> entries = new ArrayList<>();
+        private final LazyPlans lazyPlans = new LazyPlans(LAZY_PLAN_ENTRIES, LAZY_PLAN_BYTES);
+        private Folder current = new Folder(null);
+
+        public Folder enterFolder() {
+            current = new Folder(current);
+            return current;
+        }
+
+        public void exitFolder() {
+            if (current.parent != null) {
+                current = current.parent;
+            }
+        }
+
+        public void addRequest(PostmanItem item) {
+            entries.add(new Entry(nameOf(item), item, null, null, current));
+        }
+
+        public void addRequest(PostmanItem item, RequestLoader loader) {
+            entries.add(new Entry(nameOf(item), item, loader, lazyPlans, current));
+        }
+
+        public int size() { return entries.size(); }
+
+        public CollectionIndex build() {
+            Map<String, Entry> byName = new HashMap<>();
+            Map<String, Entry> byPath = new HashMap<>();
+            int duplicates = 0;
+
+            for (Entry entry : entries) {
+                entry.path = uniquePath(entry.folder.prefix() + entry.name, byPath);
+                byPath.put(entry.path, entry);
+                if (byName.putIfAbsent(entry.name, entry) != null) {
+                    duplicates++;
+                }
+            }
+
+            return new CollectionIndex(
+                Collections.unmodifiableList(new ArrayList<>(entries)),
+                Collections.unmodifiableMap(byName),
+                Collections.unmodifiableMap(byPath),
+                duplicates);
+        }
+
+        private static String nameOf(PostmanItem item) {
+            return item.getName() != null ? item.getName() : "";
+        }
+
+        private static String uniquePath(String path, Map<String, Entry> byPath) {
+            if (!byPath.containsKey(path)) return path;
+            int n = 2;
+            while (byPath.containsKey(path + " #" + n)) {
+                n++;
+            }
+            return path + " #" + n;
+        }
+    }
+}
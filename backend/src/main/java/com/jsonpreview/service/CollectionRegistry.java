@@ -0,0 +1,274 @@
+package com.jsonpreview.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds every uploaded collection and environment, keyed by id.
+ *
+ * Readers take the current {@link State} from an atomic reference and never lock.
+ * Uploads publish by copy-on-write: writers (serialized on this object) copy the maps,
+ * add the new snapshot, evict least-recently-used snapshots until the estimated total
+ * fits {@code registry.memory-budget}, and swap the state in one step. The most recent
+ * upload of each kind is the default used when a caller names no id, and is never
+ * evicted.
+ */
+@Service
+public class CollectionRegistry implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CollectionRegistry.class);
+
+    private static final String DEFAULT_ENVIRONMENT = "default";
+
+    private final long memoryBudget;
+    private final AtomicReference<State> state = new AtomicReference<>(State.EMPTY);
+
+    public CollectionRegistry(@Value("${registry.memory-budget:256MB}") DataSize memoryBudget) {
+        this.memoryBudget = memoryBudget.toBytes();
+    }
+
+    private static final class State {
+        static final State EMPTY = new State(Collections.emptyMap(), Collections.emptyMap(), null, null);
+
+        final Map<String, CollectionSnapshot> collections;
+        final Map<String, EnvironmentSnapshot> environments;
+        final String defaultCollectionId;
+        final String defaultEnvironmentId;
+
+        State(Map<String, CollectionSnapshot> collections, Map<String, EnvironmentSnapshot> environments,
+              String defaultCollectionId, String defaultEnvironmentId) {
+            this.collections = collections;
+            this.environments = environments;
+            this.defaultCollectionId = defaultCollectionId;
+            this.defaultEnvironmentId = defaultEnvironmentId;
+        }
+
+        long estimatedBytes() {
+            long total = 0;
+            for (CollectionSnapshot snapshot : collections.values()) total += snapshot.getEstimatedBytes();
+            for (EnvironmentSnapshot snapshot : environments.values()) total += snapshot.getEstimatedBytes();
+            return total;
+        }
+    }
+
+    /**
+     * The collection with the given id, or the default collection when {@code id} is null.
+     */
+    public CollectionSnapshot getCollection(String id) {
+        State current = state.get();
+        CollectionSnapshot snapshot = current.collections.get(id != null ? id : current.defaultCollectionId);
+        if (snapshot != null) snapshot.touch();
+        return snapshot;
+    }
+
+    /**
+     * The environment with the given id or name, or the default environment when
+     * {@code idOrName} is null, blank or "default" (what clients send when no environment
+     * is selected) and no environment has that id or name; null for any other unknown name,
+     * so a typo or an evicted id is not silently run against another environment.
+     */
+    public EnvironmentSnapshot getEnvironment(String idOrName) {
+        State current = state.get();
+        EnvironmentSnapshot snapshot = null;
+        if (idOrName != null && !idOrName.isBlank()) {
+            snapshot = current.environments.get(idOrName);
+            if (snapshot == null) {
+                snapshot = findEnvironmentByName(current, idOrName);
+            }
+        }
+        if (snapshot == null && isDefaultEnvironment(idOrName) && current.defaultEnvironmentId != null) {
+            snapshot = current.environments.get(current.defaultEnvironmentId);
+        }
+        if (snapshot != null) snapshot.touch();
+        return snapshot;
+    }
+
+    /**
+     * Whether {@code idOrName} asks for the default environment rather than naming one.
+     */
+    public static boolean isDefaultEnvironment(String idOrName) {
+        return idOrName == null || idOrName.isBlank() || DEFAULT_ENVIRONMENT.equals(idOrName);
+    }
+
+    private static EnvironmentSnapshot findEnvironmentByName(State current, String name) {
+        // Newest upload wins when several environments share a name
+        EnvironmentSnapshot match = null;
+        for (EnvironmentSnapshot snapshot : current.environments.values()) {
+            if (name.equals(snapshot.getName())) match = snapshot;
+        }
+        return match;
+    }
+
+    public Collection<CollectionSnapshot> getCollections() {
+        return state.get().collections.values();
+    }
+
+    public Collection<EnvironmentSnapshot> getEnvironments() {
+        return state.get().environments.values();
+    }
+
+    public String getDefaultCollectionId() { return state.get().defaultCollectionId; }
+
+    public String getDefaultEnvironmentId() { return state.get().defaultEnvironmentId; }
+
+    public long getEstimatedBytes() { return state.get().estimatedBytes(); }
+
+    public long getMemoryBudget() { return memoryBudget; }
+
+    /**
+     * Requests across all loaded collections.
+     */
+    public long getRequestCount() {
+        long total = 0;
+        for (CollectionSnapshot snapshot : state.get().collections.values()) total += snapshot.getIndex().size();
+        return total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("registry.collections", this, r -> r.getCollections().size())
+            .description("Collections loaded")
+            .register(registry);
+        Gauge.builder("registry.environments", this, r -> r.getEnvironments().size())
+            .description("Environments loaded")
+            .register(registry);
+        Gauge.builder("registry.requests", this, CollectionRegistry::getRequestCount)
+            .description("Requests across all loaded collections")
+            .register(registry);
+        Gauge.builder("registry.bytes", this, CollectionRegistry::getEstimatedBytes)
+            .description("Estimated heap held by loaded collections and environments")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    public synchronized void publishCollection(CollectionSnapshot snapshot) {
+        State current = state.get();
+        Map<String, CollectionSnapshot> collections = new LinkedHashMap<>(current.collections);
+        // Re-insert so iteration order stays upload order
+        CollectionSnapshot replaced = collections.remove(snapshot.getId());
+        collections.put(snapshot.getId(), snapshot);
+
+        List<Object> evicted = new ArrayList<>();
+        State next = evict(new State(collections, new LinkedHashMap<>(current.environments),
+                                     snapshot.getId(), current.defaultEnvironmentId), evicted);
+        state.set(freeze(next));
+
+        if (replaced != null) replaced.release();
+        releaseEvicted(evicted);
+    }
+
+    public synchronized void publishEnvironment(EnvironmentSnapshot snapshot) {
+        State current = state.get();
+        Map<String, EnvironmentSnapshot> environments = new LinkedHashMap<>(current.environments);
+        environments.remove(snapshot.getId());
+        environments.put(snapshot.getId(), snapshot);
+
+        List<Object> evicted = new ArrayList<>();
+        State next = evict(new State(new LinkedHashMap<>(current.collections), environments,
+                                     current.defaultCollectionId, snapshot.getId()), evicted);
+        state.set(freeze(next));
+        releaseEvicted(evicted);
+    }
+
+    public synchronized boolean removeCollection(String id) {
+        State current = state.get();
+        if (!current.collections.containsKey(id)) return false;
+
+        Map<String, CollectionSnapshot> collections = new LinkedHashMap<>(current.collections);
+        CollectionSnapshot removed = collections.remove(id);
+        String defaultId = id.equals(current.defaultCollectionId) ? lastKey(collections) : current.defaultCollectionId;
+        state.set(freeze(new State(collections, current.environments, defaultId, current.defaultEnvironmentId)));
+        removed.release();
+        return true;
+    }
+
+    public synchronized boolean removeEnvironment(String id) {
+        State current = state.get();
+        if (!current.environments.containsKey(id)) return false;
+
+        Map<String, EnvironmentSnapshot> environments = new LinkedHashMap<>(current.environments);
+        environments.remove(id);
+        String defaultId = id.equals(current.defaultEnvironmentId) ? lastKey(environments) : current.defaultEnvironmentId;
+        state.set(freeze(new State(current.collections, environments, current.defaultCollectionId, defaultId)));
+        return true;
+    }
+
+    /**
+     * Drops least-recently-accessed snapshots, defaults excluded, until the budget fits.
+     * Mutates the maps of {@code candidate}, which must be private copies.
+     */
+    private State evict(State candidate, List<Object> evicted) {
+        long total = candidate.estimatedBytes();
+        if (total <= memoryBudget) return candidate;
+
+        List<Object> victims = new ArrayList<>();
+        for (CollectionSnapshot snapshot : candidate.collections.values()) {
+            if (!snapshot.getId().equals(candidate.defaultCollectionId)) victims.add(snapshot);
+        }
+        for (EnvironmentSnapshot snapshot : candidate.environments.values()) {
+            if (!snapshot.getId().equals(candidate.defaultEnvironmentId)) victims.add(snapshot);
+        }
+        victims.sort(Comparator.comparingLong(CollectionRegistry::lastAccessOf));
+
+        for (Object victim : victims) {
+            if (total <= memoryBudget) break;
+            if (victim instanceof CollectionSnapshot) {
+                CollectionSnapshot snapshot = (CollectionSnapshot) victim;
+                candidate.collections.remove(snapshot.getId());
+                total -= snapshot.getEstimatedBytes();
+            } else {
+                EnvironmentSnapshot snapshot = (EnvironmentSnapshot) victim;
+                candidate.environments.remove(snapshot.getId());
+                total -= snapshot.getEstimatedBytes();
+            }
+            evicted.add(victim);
+        }
+
+        if (total > memoryBudget) {
+            logger.warn("Registry holds ~{} bytes, above the {} byte budget, after evicting everything but the defaults",
+                        total, memoryBudget);
+        }
+        return candidate;
+    }
+
+    private static long lastAccessOf(Object snapshot) {
+        return snapshot instanceof CollectionSnapshot
+            ? ((CollectionSnapshot) snapshot).getLastAccess()
+            : ((EnvironmentSnapshot) snapshot).getLastAccess();
+    }
+
+    private static void releaseEvicted(List<Object> evicted) {
+        for (Object victim : evicted) {
+            if (victim instanceof CollectionSnapshot) {
+                CollectionSnapshot snapshot = (CollectionSnapshot) victim;
+                logger.info("Evicted collection '{}' ({}) to stay within the registry memory budget",
+                            snapshot.getName(), snapshot.getId());
+                snapshot.release();
+            } else {
+                EnvironmentSnapshot snapshot = (EnvironmentSnapshot) victim;
+                logger.info("Evicted environment '{}' ({}) to stay within the registry memory budget",
+                            snapshot.getName(), snapshot.getId());
+            }
+        }
+    }
+
+    private static State freeze(State state) {
+        return new State(Collections.unmodifiableMap(state.collections), Collections.unmodifiableMap(state.environments),
+                         state.defaultCollectionId, state.defaultEnvironmentId);
+    }
+
+    private static String lastKey(Map<String, ?> map) {
+        String last = null;
+        for (String key : map.keySet()) last = key;
+        return last;
+    }
+}
@@ -0,0 +1,428 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.BufferedBody;
+import com.jsonpreview.dto.CollectionRunRequestDto;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import com.jsonpreview.dto.RunStepResultDto;
+import com.jsonpreview.dto.RunSummaryDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs the requests of a collection folder as a pipeline: values extracted from one
+ * response (a JSON Pointer into the body, or a header) become run variables for the
+ * requests after it.
+ *
+ * The run is scheduled as a dependency graph ({@link RunGraph}) rather than in document
+ * order, so a request starts as soon as the requests producing its variables have
+ * succeeded and requests that share no variables run in parallel, up to
+ * {@code batch.max-parallelism} at once. When a request fails, the requests depending on
+ * it, directly or not, are skipped.
+ */
+@Service
+public class CollectionRunService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CollectionRunService.class);
+
+    private static final String HEADER_SOURCE = "header:";
+
+    enum StepState { SUCCEEDED, FAILED, SKIPPED }
+
+    private final ApiExecutionService apiExecutionService;
+    private final PostmanParserService postmanParserService;
+    private final ExecutorService requestExecutor;
+    private final int maxParallelism;
+    private final int maxRequests;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public CollectionRunService(ApiExecutionService apiExecutionService,
+                                PostmanParserService postmanParserService,
+                                ExecutorService requestExecutor,
+                                @Value("${batch.max-parallelism:64}") int maxParallelism,
+                                @Value("${batch.max-requests:10000}") int maxRequests) {
+        this.apiExecutionService = apiExecutionService;
+        this.postmanParserService = postmanParserService;
+        this.requestExecutor = requestExecutor;
+        this.maxParallelism = maxParallelism;
+        this.maxRequests = maxRequests;
+    }
+
+    /**
+     * Receives step results one at a time, from a single thread.
+     */
+    @FunctionalInterface
+    public interface StepSink {
+        void accept(RunStepResultDto result) throws IOException;
+    }
+
+    /**
+     * Resolves the requests of the run and works out which depend on which, from the
+     * variables each one refers to and the variables each one extracts.
+     *
+     * @throws IllegalArgumentException if the collection is unknown, the run is empty or too
+     *         large, an extraction is malformed or names a request outside the run
+     */
+    public RunGraph resolve(CollectionRunRequestDto run) {
+        CollectionSnapshot collection = postmanParserService.findCollection(run.getCollectionId());
+        if (collection == null) {
+            throw new IllegalArgumentException("Collection not found: "
+                + (run.getCollectionId() != null ? run.getCollectionId() : "no collection uploaded"));
+        }
+        List<CollectionIndex.Entry> entries = collection.getIndex().getEntriesUnder(run.getFolder());
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("No requests found in folder: " + run.getFolder());
+        }
+        if (entries.size() > maxRequests) {
+            throw new IllegalArgumentException("Run of " + entries.size() + " requests exceeds the limit of " + maxRequests);
+        }
+
+        Map<String, Map<String, String>> rules = run.getExtract() != null ? run.getExtract() : Collections.emptyMap();
+        Set<String> unmatched = new HashSet<>(rules.keySet());
+        // Variable -> last step so far extracting it
+        Map<String, Integer> producers = new HashMap<>();
+        List<RunGraph.Step> steps = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            CollectionIndex.Entry entry = entries.get(i);
+            String key = rules.containsKey(entry.getPath()) ? entry.getPath() : entry.getName();
+            Map<String, String> stepRules = rules.get(key);
+            if (stepRules != null) {
+                unmatched.remove(key);
+            }
+
+            Map<String, Integer> inputs = new LinkedHashMap<>();
+            for (String variable : variablesOf(entry)) {
+                Integer producer = producers.get(variable);
+                if (producer != null) {
+                    inputs.put(variable, producer);
+                }
+            }
+            Map<String, RunGraph.Extraction> extract = compileRules(entry.getPath(), stepRules);
+            steps.add(new RunGraph.Step(i, entry.getPath(), inputs, extract));
+            for (String variable : extract.keySet()) {
+                producers.put(variable, i);
+            }
+        }
+        if (!unmatched.isEmpty()) {
+            throw new IllegalArgumentException("Extraction for a request outside the run: " + unmatched.iterator().next());
+        }
+        return new RunGraph(run, collection.getId(), steps);
+    }
+
+    /**
+     * Runs a resolved graph, handing each step's result to {@code sink} as it settles, and
+     * returns the run's figures.
+     */
+    public RunSummaryDto execute(RunGraph graph, StepSink sink) throws IOException {
+        Integer parallelism = graph.getRequest().getParallelism();
+        int limit = parallelism != null && parallelism > 0 ? Math.min(parallelism, maxParallelism) : maxParallelism;
+        List<RunGraph.Step> steps = graph.getSteps();
+        Schedule schedule = new Schedule(steps);
+        BlockingQueue<RunStepResultDto> completed = new LinkedBlockingQueue<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        long runStart = System.nanoTime();
+        int inFlight = 0;
+        try {
+            while (!schedule.isDone()) {
+                while (inFlight < limit && !schedule.ready.isEmpty()) {
+                    RunGraph.Step step = steps.get(schedule.ready.poll());
+                    Map<String, String> inputs = schedule.inputsOf(step);
+                    futures.add(requestExecutor.submit(() -> {
+                        RunStepResultDto result;
+                        try {
+                            result = runStep(graph, step, inputs, runStart);
+                        } catch (RuntimeException e) {
+                            result = result(graph, step, StepState.FAILED, "Execution error: " + e.getMessage());
+                        }
+                        // Always report, so the scheduler never waits for a result that won't come
+                        completed.add(result);
+                    }));
+                    inFlight++;
+                }
+                RunStepResultDto result = completed.take();
+                inFlight--;
+                schedule.settle(graph, result, sink);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(futures);
+        } catch (IOException | RuntimeException e) {
+            // Client went away; stop scheduling the rest
+            cancel(futures);
+            throw e;
+        }
+
+        RunSummaryDto summary = schedule.summary;
+        summary.setRequests(steps.size());
+        summary.setWallTimeMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runStart));
+        logger.info("Run of {} requests finished in {} ms (critical path {} ms, serial {} ms, parallelism {})",
+                    steps.size(), summary.getWallTimeMs(), summary.getCriticalPathMs(), summary.getSerialTimeMs(), limit);
+        return summary;
+    }
+
+    private RunStepResultDto runStep(RunGraph graph, RunGraph.Step step, Map<String, String> inputs, long runStart) {
+        long started = System.nanoTime();
+        CollectionRunRequestDto run = graph.getRequest();
+        ExecuteRequestDto request = new ExecuteRequestDto();
+        request.setCollectionId(graph.getCollectionId());
+        request.setRequestName(step.path);
+        request.setEnvironment(run.getEnvironment());
+        request.setParameters(run.getParameters());
+
+        PreparedRequest prepared = apiExecutionService.prepareRequest(request, inputs);
+        ApiResponseDto response = apiExecutionService.execute(prepared, System.currentTimeMillis());
+
+        RunStepResultDto result;
+        if (response.getError() != null) {
+            result = result(graph, step, StepState.FAILED, response.getError());
+        } else if (response.getStatusCode() >= 400) {
+            result = result(graph, step, StepState.FAILED, "Status " + response.getStatusCode());
+        } else {
+            try {
+                Map<String, String> extracted = extract(step, response);
+                result = result(graph, step, StepState.SUCCEEDED, null);
+                result.setExtracted(extracted.isEmpty() ? null : extracted);
+            } catch (IOException | IllegalStateException e) {
+                result = result(graph, step, StepState.FAILED, e.getMessage());
+            }
+        }
+        result.setResponse(response);
+        result.setStartedAtMs(TimeUnit.NANOSECONDS.toMillis(started - runStart));
+        result.setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return result;
+    }
+
+    private Map<String, String> extract(RunGraph.Step step, ApiResponseDto response) throws IOException {
+        if (step.extract.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        JsonNode body = null;
+        for (Map.Entry<String, RunGraph.Extraction> rule : step.extract.entrySet()) {
+            RunGraph.Extraction extraction = rule.getValue();
+            String value;
+            if (extraction.header != null) {
+                value = header(response, extraction.header);
+            } else {
+                if (body == null) {
+                    body = bodyTree(response);
+                }
+                JsonNode node = body.at(extraction.pointer);
+                value = node.isMissingNode() || node.isNull() ? null
+                    : node.isValueNode() ? node.asText() : node.toString();
+            }
+            if (value == null) {
+                throw new IllegalStateException("Nothing to extract for " + rule.getKey() + " at " + extraction.source);
+            }
+            values.put(rule.getKey(), value);
+        }
+        return values;
+    }
+
+    private JsonNode bodyTree(ApiResponseDto response) throws IOException {
+        Object body = response.getResponseBody();
+        JsonNode tree;
+        try {
+            if (body instanceof JsonNode node) {
+                tree = node;
+            } else if (body instanceof BufferedBody buffered) {
+                try (JsonParser parser = buffered.createParser()) {
+                    tree = objectMapper.readTree(parser);
+                }
+            } else if (body instanceof String text) {
+                tree = objectMapper.readTree(text);
+            } else {
+                tree = null;
+            }
+        } catch (IOException e) {
+            throw new IOException("Response body is not JSON: " + e.getMessage(), e);
+        }
+        return tree != null ? tree : MissingNode.getInstance();
+    }
+
+    private static String header(ApiResponseDto response, String name) {
+        if (response.getHeaders() == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static RunStepResultDto result(RunGraph graph, RunGraph.Step step, StepState state, String error) {
+        RunStepResultDto result = new RunStepResultDto();
+        result.setIndex(step.index);
+        result.setRequestName(step.path);
+        result.setState(state.name());
+        result.setError(error);
+        if (step.dependencies.length > 0) {
+            List<String> dependsOn = new ArrayList<>(step.dependencies.length);
+            for (int dependency : step.dependencies) {
+                dependsOn.add(graph.getSteps().get(dependency).path);
+            }
+            result.setDependsOn(dependsOn);
+        }
+        return result;
+    }
+
+    private static Set<String> variablesOf(CollectionIndex.Entry entry) {
+        try {
+            RequestPlan plan = entry.getPlan();
+            return plan != null ? plan.getVariableNames() : Collections.emptySet();
+        } catch (IOException | RuntimeException e) {
+            // Reported when the request runs
+            return Collections.emptySet();
+        }
+    }
+
+    private static Map<String, RunGraph.Extraction> compileRules(String requestName, Map<String, String> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, RunGraph.Extraction> extract = new LinkedHashMap<>();
+        for (Map.Entry<String, String> rule : rules.entrySet()) {
+            String source = rule.getValue();
+            if (rule.getKey() == null || rule.getKey().isBlank() || source == null) {
+                throw new IllegalArgumentException("Incomplete extraction for " + requestName);
+            }
+            if (source.startsWith(HEADER_SOURCE)) {
+                extract.put(rule.getKey(), new RunGraph.Extraction(source, source.substring(HEADER_SOURCE.length()).trim(), null));
+                continue;
+            }
+            try {
+                extract.put(rule.getKey(), new RunGraph.Extraction(source, null, JsonPointer.compile(source)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid JSON Pointer for " + rule.getKey()
+                    + " of " + requestName + ": " + source);
+            }
+        }
+        return extract;
+    }
+
+    private static void cancel(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Scheduler-side state of a run; only touched by the thread calling
+     * {@link #execute}.
+     */
+    private static final class Schedule {
+        final List<RunGraph.Step> steps;
+        // Ready steps, lowest index first so independent requests keep document order
+        final PriorityQueue<Integer> ready = new PriorityQueue<>();
+        final int[] waitingOn;
+        final boolean[] settled;
+        final List<Map<String, String>> outputs;
+        // Longest chain ending at each step, by duration and by count
+        final long[] finishMs;
+        final int[] depth;
+        final RunSummaryDto summary = new RunSummaryDto();
+        int settledCount;
+
+        Schedule(List<RunGraph.Step> steps) {
+            this.steps = steps;
+            int n = steps.size();
+            waitingOn = new int[n];
+            settled = new boolean[n];
+            outputs = new ArrayList<>(Collections.nCopies(n, null));
+            finishMs = new long[n];
+            depth = new int[n];
+            for (RunGraph.Step step : steps) {
+                waitingOn[step.index] = step.dependencies.length;
+                if (step.dependencies.length == 0) {
+                    ready.add(step.index);
+                }
+            }
+        }
+
+        boolean isDone() { return settledCount == steps.size(); }
+
+        Map<String, String> inputsOf(RunGraph.Step step) {
+            if (step.inputs.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<String, String> inputs = new HashMap<>();
+            for (Map.Entry<String, Integer> input : step.inputs.entrySet()) {
+                inputs.put(input.getKey(), outputs.get(input.getValue()).get(input.getKey()));
+            }
+            return inputs;
+        }
+
+        /**
+         * Records a result, releases the steps it was the last dependency of, and skips the
+         * steps depending on it if it did not succeed.
+         */
+        void settle(RunGraph graph, RunStepResultDto first, StepSink sink) throws IOException {
+            Deque<RunStepResultDto> settling = new ArrayDeque<>();
+            settling.add(first);
+            while (!settling.isEmpty()) {
+                RunStepResultDto result = settling.poll();
+                int index = result.getIndex();
+                RunGraph.Step step = steps.get(index);
+                settled[index] = true;
+                settledCount++;
+                record(step, result);
+                sink.accept(result);
+
+                boolean succeeded = StepState.SUCCEEDED.name().equals(result.getState());
+                for (int dependent : step.dependents) {
+                    if (settled[dependent] || waitingOn[dependent] < 0) {
+                        continue;
+                    }
+                    if (succeeded) {
+                        if (--waitingOn[dependent] == 0) {
+                            ready.add(dependent);
+                        }
+                    } else {
+                        // Marked so a second failed dependency doesn't skip it again
+                        waitingOn[dependent] = -1;
+                        settling.add(result(graph, steps.get(dependent), StepState.SKIPPED,
+                                            "Dependency did not succeed: " + step.path));
+                    }
+                }
+            }
+        }
+
+        private void record(RunGraph.Step step, RunStepResultDto result) {
+            switch (StepState.valueOf(result.getState())) {
+                case SUCCEEDED -> summary.setSucceeded(summary.getSucceeded() + 1);
+                case FAILED -> summary.setFailed(summary.getFailed() + 1);
+                case SKIPPED -> {
+                    summary.setSkipped(summary.getSkipped() + 1);
+                    return;
+                }
+            }
+            outputs.set(step.index, result.getExtracted() != null ? result.getExtracted() : Collections.emptyMap());
+            long duration = result.getDurationMs() != null ? result.getDurationMs() : 0;
+            long before = 0;
+            int chain = 0;
+            for (int dependency : step.dependencies) {
+                before = Math.max(before, finishMs[dependency]);
+                chain = Math.max(chain, depth[dependency]);
+            }
+            finishMs[step.index] = before + duration;
+            depth[step.index] = chain + 1;
+            summary.setSerialTimeMs(summary.getSerialTimeMs() + duration);
+            summary.setCriticalPathMs(Math.max(summary.getCriticalPathMs(), finishMs[step.index]));
+            summary.setDepth(Math.max(summary.getDepth(), depth[step.index]));
+        }
+    }
+}
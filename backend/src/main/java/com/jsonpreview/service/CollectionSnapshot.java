@@ -0,0 +1,59 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.model.PostmanCollection;
+
+/**
+ * Immutable view of one uploaded collection: the parsed tree, its request index and the
+ * pre-serialized summary listing. Replaced as a whole on re-upload, so an execution
+ * that resolved a snapshot keeps a consistent view even if a newer upload is published.
+ */
+public final class CollectionSnapshot {
+
+    private final String id;
+    private final PostmanCollection collection;
+    private final CollectionIndex index;
+    private final RequestListing listing;
+    private final CollectionSource source;
+    private final long estimatedBytes;
+    private volatile long lastAccess;
+
+    public CollectionSnapshot(String id, PostmanCollection collection, CollectionIndex index,
+                              RequestListing listing, CollectionSource source, long estimatedBytes) {
+        this.id = id;
+        this.collection = collection;
+        this.index = index;
+        this.listing = listing;
+        this.source = source;
+        this.estimatedBytes = estimatedBytes;
+        this.lastAccess = System.nanoTime();
+    }
+
+    public String getId() { return id; }
+
+    public String getName() {
+        return collection.getInfo() != null ? collection.getInfo().getName() : null;
+    }
+
+    public PostmanCollection getCollection() { return collection; }
+
+    public CollectionIndex getIndex() { return index; }
+
+    public RequestListing getListing() { return listing; }
+
+    /**
+     * Rough retained heap of this snapshot, used for the registry's memory budget.
+     */
+    public long getEstimatedBytes() { return estimatedBytes; }
+
+    public boolean isStreamed() { return source != null; }
+
+    long getLastAccess() { return lastAccess; }
+
+    void touch() { lastAccess = System.nanoTime(); }
+
+    void release() {
+        if (source != null) {
+            source.release();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.jsonpreview.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploaded collection spooled to a local temp file, so a streamed collection can be
+ * scanned once and individual requests re-read later by byte range.
+ *
+ * The source is reference-counted: the owning snapshot holds one reference, and every
+ * read takes a short-lived one, so evicting the snapshot never closes the file under an
+ * in-flight read. The file is deleted once the last reference is released.
+ */
+public final class CollectionSource implements Closeable {
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private CollectionSource(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    public static CollectionSource spool(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile("collection-", ".json");
+        try {
+            file.transferTo(path);
+            return new CollectionSource(path);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    public InputStream openStream() throws IOException {
+        return new BufferedInputStream(Files.newInputStream(path), 64 * 1024);
+    }
+
+    /**
+     * Positional read of {@code length} bytes; safe to call from several threads.
+     */
+    public byte[] read(long offset, int length) throws IOException {
+        if (!retain()) {
+            throw new IOException("Collection source was evicted");
+        }
+        try {
+            byte[] bytes = new byte[length];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, offset + buffer.position());
+                if (n < 0) {
+                    throw new EOFException("Collection source ended at " + (offset + buffer.position()));
+                }
+            }
+            return bytes;
+        } finally {
+            release();
+        }
+    }
+
+    public long size() { return size; }
+
+    /**
+     * Takes a reference unless the source has already been released for good.
+     */
+    public boolean retain() {
+        int current;
+        do {
+            current = references.get();
+            if (current <= 0) return false;
+        } while (!references.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                path.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Releases the owner's reference.
+     */
+    @Override
+    public void close() {
+        release();
+    }
+}
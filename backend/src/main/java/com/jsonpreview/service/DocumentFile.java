@@ -0,0 +1,99 @@
+package com.jsonpreview.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploaded document spooled to a local temp file and mapped read-only, so its bytes are
+ * paged in by the OS instead of living on the heap.
+ *
+ * Reference-counted like {@link CollectionSource}: the owning {@link JsonDocument} holds
+ * one reference and every reader takes its own, so evicting the document never deletes
+ * the file under an in-flight read. The file is deleted once the last reference is
+ * released; the mapping itself is dropped when the buffer is garbage collected. Where a
+ * mapped file cannot be deleted (Windows), deletion waits until the buffer is unreachable,
+ * or until exit at the latest.
+ */
+public final class DocumentFile {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Path path;
+    private final ByteBuffer content;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private DocumentFile(Path path, ByteBuffer content) {
+        this.path = path;
+        this.content = content;
+    }
+
+    public static DocumentFile spool(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile("document-", ".json");
+        try {
+            file.transferTo(path);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return map(path);
+    }
+
+    /**
+     * Maps a file written by the caller and takes ownership of it: the file is deleted
+     * with the last reference, or right away if it can't be mapped.
+     */
+    public static DocumentFile map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Documents larger than 2GB are not supported");
+            }
+            return new DocumentFile(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    public ByteBuffer getContent() { return content; }
+
+    /**
+     * Takes a reference unless the file has already been released for good.
+     */
+    public boolean retain() {
+        int current;
+        do {
+            current = references.get();
+            if (current <= 0) return false;
+        } while (!references.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public void release() {
+        if (references.decrementAndGet() == 0 && !delete(path)) {
+            // Platforms that refuse to delete a mapped file: try again once it is unmapped
+            Path mapped = path;
+            CLEANER.register(content, () -> {
+                if (!delete(mapped)) mapped.toFile().deleteOnExit();
+            });
+        }
+    }
+
+    Path getPath() { return path; }
+
+    private static boolean delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
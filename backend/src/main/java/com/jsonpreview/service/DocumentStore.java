@@ -0,0 +1,122 @@
+package com.jsonpreview.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds stored JSON documents by id. Reads don't lock; publishing (serialized on this
+ * object) evicts least-recently-used documents, never the one just stored, until the
+ * estimated heap fits {@code documents.memory-budget} and mapped files fit
+ * {@code documents.mapped-budget}. The store owns one reference to each document and
+ * closes it when the document is evicted, replaced or removed.
+ */
+@Service
+public class DocumentStore implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentStore.class);
+
+    private final long memoryBudget;
+    private final long mappedBudget;
+    private final Map<String, JsonDocument> documents = new ConcurrentHashMap<>();
+
+    public DocumentStore(@Value("${documents.memory-budget:1GB}") DataSize memoryBudget,
+                         @Value("${documents.mapped-budget:8GB}") DataSize mappedBudget) {
+        this.memoryBudget = memoryBudget.toBytes();
+        this.mappedBudget = mappedBudget.toBytes();
+    }
+
+    /**
+     * The document with a reader reference taken, or null; the caller must close it.
+     */
+    public JsonDocument acquire(String id) {
+        JsonDocument document = id != null ? documents.get(id) : null;
+        if (document == null || !document.retain()) return null;
+        document.touch();
+        return document;
+    }
+
+    public Collection<JsonDocument> getDocuments() {
+        return Collections.unmodifiableCollection(documents.values());
+    }
+
+    public long getEstimatedBytes() {
+        long total = 0;
+        for (JsonDocument document : documents.values()) total += document.getEstimatedBytes();
+        return total;
+    }
+
+    public long getMappedBytes() {
+        long total = 0;
+        for (JsonDocument document : documents.values()) total += document.getMappedBytes();
+        return total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("documents.stored", documents, Map::size)
+            .description("Documents stored")
+            .register(registry);
+        Gauge.builder("documents.heap.bytes", this, DocumentStore::getEstimatedBytes)
+            .description("Estimated heap held by stored documents and their indexes")
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("documents.mapped.bytes", this, DocumentStore::getMappedBytes)
+            .description("Bytes of stored documents mapped from temp files")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    /**
+     * Refuses a document whose indexes alone would not fit {@code documents.memory-budget},
+     * before any heap is spent building them; smaller ones make room by evicting others.
+     *
+     * @throws IllegalStateException if {@code heapBytes} exceeds the budget
+     */
+    public void requireCapacity(long heapBytes) {
+        if (heapBytes > memoryBudget) {
+            throw new IllegalStateException("Document needs about " + heapBytes
+                + " bytes of heap, above documents.memory-budget of " + memoryBudget);
+        }
+    }
+
+    public synchronized void publish(JsonDocument document) {
+        JsonDocument replaced = documents.put(document.getId(), document);
+        if (replaced != null) replaced.close();
+
+        long heap = getEstimatedBytes();
+        long mapped = getMappedBytes();
+        if (heap <= memoryBudget && mapped <= mappedBudget) return;
+
+        List<JsonDocument> victims = new ArrayList<>(documents.values());
+        victims.remove(document);
+        victims.sort(Comparator.comparingLong(JsonDocument::getLastAccess));
+        for (JsonDocument victim : victims) {
+            if (heap <= memoryBudget && mapped <= mappedBudget) break;
+            documents.remove(victim.getId());
+            heap -= victim.getEstimatedBytes();
+            mapped -= victim.getMappedBytes();
+            victim.close();
+            logger.info("Evicted document {} ({} heap bytes, {} mapped bytes)",
+                        victim.getId(), victim.getEstimatedBytes(), victim.getMappedBytes());
+        }
+        if (heap > memoryBudget || mapped > mappedBudget) {
+            logger.warn("Document store holds ~{} heap bytes and {} mapped bytes, above its budget", heap, mapped);
+        }
+    }
+
+    public synchronized boolean remove(String id) {
+        JsonDocument document = documents.remove(id);
+        if (document == null) return false;
+        document.close();
+        return true;
+    }
+}
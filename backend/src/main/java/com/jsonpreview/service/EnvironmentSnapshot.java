@@ -0,0 +1,40 @@
+package com.jsonpreview.service;
+
+import java.util.Map;
+
+/**
+ * Immutable view of one uploaded environment with its variables flattened into a map.
+ */
+public final class EnvironmentSnapshot {
+
+    private final String id;
+    private final String name;
+    private final Map<String, String> variables;
+    private final long estimatedBytes;
+    private volatile long lastAccess;
+
+    public EnvironmentSnapshot(String id, String name, Map<String, String> variables) {
+        this.id = id;
+        this.name = name;
+        this.variables = variables;
+        long bytes = 64;
+        for (Map.Entry<String, String> entry : variables.entrySet()) {
+            // UTF-16 chars plus String and map node overhead
+            bytes += 2L * (entry.getKey().length() + entry.getValue().length()) + 96;
+        }
+        this.estimatedBytes = bytes;
+        this.lastAccess = System.nanoTime();
+    }
+
+    public String getId() { return id; }
+
+    public String getName() { return name; }
+
+    public Map<String, String> getVariables() { return variables; }
+
+    public long getEstimatedBytes() { return estimatedBytes; }
+
+    long getLastAccess() { return lastAccess; }
+
+    void touch() { lastAccess = System.nanoTime(); }
+}
@@ -0,0 +1,724 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.BufferedBody;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import com.jsonpreview.dto.HistoryEntryDto;
+import com.jsonpreview.dto.HistoryRecordDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps executed requests and their responses in an append-only log on local disk, so
+ * earlier results can be listed, fetched and compared without calling the upstream again.
+ * Off unless {@code history.enabled} is set, since records hold parameters, response
+ * headers and bodies (cookies and tokens included); the directory and its files are
+ * created readable by their owner only.
+ *
+ * Recording only queues the result; one writer thread deflates the body and appends the
+ * record to the active {@link HistorySegment}, rolling to a new one at
+ * {@code history.segment-size}. Results arriving while more than
+ * {@code history.queue-size} bytes wait are dropped and counted. An in-memory
+ * {@link HistoryIndex} holds each entry's name, time, status and file position: listing a
+ * page touches only the page's entries, and fetching one is a single positioned read.
+ * The index is rebuilt from the segments on startup, discarding a torn last record.
+ *
+ * Deletions are appended as records too and applied in memory at once. Every
+ * {@code history.maintenance-interval} the writer thread also drops whole segments past
+ * {@code history.retention} or beyond {@code history.max-size}, oldest first, and rewrites
+ * sealed segments that are mostly deleted records. Each request name keeps at most {@code history.max-per-request}
+ * entries.
+ */
+@Service
+public class ExecutionHistory implements MeterBinder, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionHistory.class);
+
+    // Enough of an execution record for the index when its name is short
+    private static final int HEADER_READ = HistorySegment.PREFIX + HistorySegment.EXECUTION_FIELDS + 2 + 256;
+    // Queue cost of a result besides its body
+    private static final int RECORD_OVERHEAD = 1024;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentSize;
+    private final long retentionMs;
+    private final long maxSize;
+    private final int maxPerRequest;
+    private final long maxBodySize;
+    private final long queueSize;
+    private final long maintenanceIntervalNanos;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter recordWriter;
+
+    // Guards the index, the segment map and entry positions; the files are only appended
+    // to and compacted by the writer thread
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HistoryIndex index = new HistoryIndex();
+    private final TreeMap<Integer, HistorySegment> segments = new TreeMap<>();
+    private HistorySegment active;
+
+    // Writer thread only (and startup)
+    private long nextId = 1;
+    private long lastRecordedAt;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+
+    private static final Pending STOP = new Pending(null, null, 0, 0, null);
+
+    /**
+     * An execution to append, or a deletion of one entry ({@code id}) or of every entry of
+     * a request name up to {@code id}.
+     */
+    private static final class Pending {
+        final ExecuteRequestDto request;
+        final ApiResponseDto response;
+        final long cost;
+        final long id;
+        final String name;
+
+        Pending(ExecuteRequestDto request, ApiResponseDto response, long cost, long id, String name) {
+            this.request = request;
+            this.response = response;
+            this.cost = cost;
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    public ExecutionHistory(ObjectMapper objectMapper,
+                            @Value("${history.enabled:false}") boolean enabled,
+                            @Value("${history.directory:${java.io.tmpdir}/json-preview-history}") Path directory,
+                            @Value("${history.segment-size:64MB}") DataSize segmentSize,
+                            @Value("${history.retention:7d}") Duration retention,
+                            @Value("${history.max-size:1GB}") DataSize maxSize,
+                            @Value("${history.max-per-request:1000}") int maxPerRequest,
+                            @Value("${history.max-body-size:8MB}") DataSize maxBodySize,
+                            @Value("${history.queue-size:64MB}") DataSize queueSize,
+                            @Value("${history.maintenance-interval:1m}") Duration maintenanceInterval) {
+        this.objectMapper = objectMapper;
+        this.recordWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.directory = directory;
+        this.segmentSize = segmentSize.toBytes();
+        this.retentionMs = retention.toMillis();
+        this.maxSize = maxSize.toBytes();
+        this.maxPerRequest = Math.max(maxPerRequest, 1);
+        this.maxBodySize = maxBodySize.toBytes();
+        this.queueSize = queueSize.toBytes();
+        this.maintenanceIntervalNanos = maintenanceInterval.toNanos();
+
+        boolean loaded = false;
+        if (enabled) {
+            try {
+                load();
+                loaded = true;
+                logger.info("Execution history in {}: {} entries in {} segments", directory, index.live(), segments.size());
+            } catch (IOException e) {
+                logger.error("Execution history disabled, cannot use {}: {}", directory, e.getMessage());
+            }
+        }
+        this.enabled = loaded;
+        this.writer = new Thread(this::drain, "execution-history");
+        this.writer.setDaemon(true);
+        if (loaded) {
+            writer.start();
+        }
+    }
+
+    /**
+     * Queues a result for the log; returns at once. Nothing is recorded when history is
+     * off, or when too much is already waiting.
+     */
+    public void record(ExecuteRequestDto request, ApiResponseDto response) {
+        if (!enabled || request == null || response == null) return;
+        long cost = Math.min(bodySize(response), maxBodySize) + RECORD_OVERHEAD;
+        if (pendingBytes.addAndGet(cost) > queueSize) {
+            pendingBytes.addAndGet(-cost);
+            dropped.increment();
+            return;
+        }
+        queue.add(new Pending(request, response, cost, 0, null));
+    }
+
+    /**
+     * Newest first, up to {@code limit} entries of one request name or of all, with ids
+     * below {@code before} and recorded (epoch milliseconds) within {@code [from, to]}.
+     */
+    public List<HistoryEntryDto> list(String requestName, Long before, Long from, Long to, int limit) {
+        List<HistoryEntryDto> page = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (HistoryIndex.Entry entry : index.page(requestName, before, from, to, limit)) {
+                page.add(toDto(entry));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return page;
+    }
+
+    /**
+     * The recorded request and response of entry {@code id}, or null if there is none.
+     */
+    public HistoryRecordDto get(long id) throws IOException {
+        HistoryEntryDto entry;
+        ByteBuffer record;
+        lock.readLock().lock();
+        try {
+            HistoryIndex.Entry found = index.find(id);
+            if (found == null || found.dead) return null;
+            entry = toDto(found);
+            record = segments.get(found.segment).read(found.offset, found.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        record.position(HistorySegment.PREFIX + HistorySegment.EXECUTION_FIELDS);
+        HistorySegment.readString(record);
+        String charset = HistorySegment.readString(record);
+        ExecuteRequestDto request = objectMapper.readValue(HistorySegment.readBytes(record), ExecuteRequestDto.class);
+        ApiResponseDto response = objectMapper.readValue(HistorySegment.readBytes(record), ApiResponseDto.class);
+        byte[] body = HistorySegment.readBytes(record);
+        if (body.length > 0) {
+            BufferedBody restored = BufferedBody.of(inflate(body, entry.getBodyBytes()), Charset.forName(charset));
+            response.setResponseBody(restored);
+            response.setRawResponse(restored.asFallback());
+        }
+        return new HistoryRecordDto(entry, request, response);
+    }
+
+    /**
+     * Deletes one entry; false if there is none.
+     */
+    public boolean delete(long id) {
+        if (!enabled) return false;
+        lock.writeLock().lock();
+        try {
+            HistoryIndex.Entry entry = index.find(id);
+            if (entry == null || entry.dead) return false;
+            kill(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        queue.add(new Pending(null, null, 0, id, null));
+        return true;
+    }
+
+    /**
+     * Deletes every entry of a request name; returns how many there were.
+     */
+    public int deleteRequest(String requestName) {
+        if (!enabled) return 0;
+        List<HistoryIndex.Entry> entries;
+        lock.writeLock().lock();
+        try {
+            entries = index.liveEntries(requestName, Long.MAX_VALUE);
+            for (HistoryIndex.Entry entry : entries) {
+                kill(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!entries.isEmpty()) {
+            queue.add(new Pending(null, null, 0, entries.get(entries.size() - 1).id, requestName));
+        }
+        return entries.size();
+    }
+
+    private void kill(HistoryIndex.Entry entry) {
+        index.kill(entry);
+        HistorySegment segment = segments.get(entry.segment);
+        if (segment != null) segment.removeLive(entry.length);
+    }
+
+    private static HistoryEntryDto toDto(HistoryIndex.Entry entry) {
+        HistoryEntryDto dto = new HistoryEntryDto();
+        dto.setId(entry.id);
+        dto.setRequestName(entry.requestName);
+        dto.setRecordedAt(entry.recordedAt);
+        dto.setStatusCode(entry.statusCode);
+        dto.setExecutionTimeMs(entry.executionTimeMs);
+        dto.setBodyBytes(entry.bodyBytes);
+        dto.setBodyStored(entry.bodyStored);
+        dto.setStoredBytes(entry.length);
+        return dto;
+    }
+
+    // Writer thread
+
+    private void drain() {
+        long nextMaintenance = System.nanoTime() + maintenanceIntervalNanos;
+        while (true) {
+            Pending pending;
+            try {
+                pending = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (pending == STOP) return;
+            try {
+                if (pending != null) {
+                    write(pending);
+                }
+                if (System.nanoTime() - nextMaintenance >= 0) {
+                    maintain();
+                    nextMaintenance = System.nanoTime() + maintenanceIntervalNanos;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Execution history write failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void write(Pending pending) throws IOException {
+        if (pending.response == null) {
+            ByteBuffer record = HistorySegment.encodeDeletion(pending.id, pending.name);
+            int length = record.remaining();
+            rollIfFull();
+            active.append(record);
+            lock.writeLock().lock();
+            try {
+                active.addDeletion(length);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        pendingBytes.addAndGet(-pending.cost);
+        ApiResponseDto response = pending.response;
+        String name = pending.request.getRequestName() != null ? pending.request.getRequestName() : "";
+        long recordedAt = Math.max(System.currentTimeMillis(), lastRecordedAt);
+        lastRecordedAt = recordedAt;
+
+        Charset charset = StandardCharsets.UTF_8;
+        InputStream source = null;
+        long bodySize = 0;
+        Object body = response.getResponseBody();
+        if (body instanceof BufferedBody buffered) {
+            charset = buffered.getCharset();
+            source = buffered.openStream();
+            bodySize = buffered.size();
+        } else {
+            byte[] bytes = null;
+            if (response.getRawResponse() instanceof String raw) {
+                bytes = raw.getBytes(StandardCharsets.UTF_8);
+            } else if (body instanceof String text) {
+                bytes = text.getBytes(StandardCharsets.UTF_8);
+            } else if (body instanceof JsonNode node) {
+                bytes = recordWriter.writeValueAsBytes(node);
+            }
+            if (bytes != null) {
+                source = new ByteArrayInputStream(bytes);
+                bodySize = bytes.length;
+            }
+        }
+        boolean omitted = source != null && bodySize > maxBodySize;
+        byte[] compressed = source != null && !omitted ? deflate(source) : new byte[0];
+
+        ByteBuffer record = HistorySegment.encodeExecution(
+            nextId, recordedAt, response.getStatusCode(), (int) Math.min(response.getExecutionTimeMs(), Integer.MAX_VALUE),
+            (int) Math.min(bodySize, Integer.MAX_VALUE), omitted ? HistorySegment.BODY_OMITTED : 0,
+            name, charset.name(), recordWriter.writeValueAsBytes(pending.request),
+            recordWriter.writeValueAsBytes(withoutBody(response)), compressed, compressed.length);
+        int length = record.remaining();
+        rollIfFull();
+        long offset = active.append(record);
+
+        lock.writeLock().lock();
+        try {
+            active.addLive(length, recordedAt);
+            HistoryIndex.Entry entry = new HistoryIndex.Entry(nextId, recordedAt, name, response.getStatusCode(),
+                response.getExecutionTimeMs(), (int) Math.min(bodySize, Integer.MAX_VALUE), !omitted,
+                active.getNumber(), offset, length);
+            nextId++;
+            HistoryIndex.Entry evicted = index.add(entry, maxPerRequest);
+            if (evicted != null) segments.get(evicted.segment).removeLive(evicted.length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private byte[] deflate(InputStream source) throws IOException {
+        deflater.reset();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // A supplied deflater is finished but not ended on close, so it can be reused
+        try (InputStream in = source; DeflaterOutputStream zip = new DeflaterOutputStream(out, deflater, 64 * 1024)) {
+            in.transferTo(zip);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] compressed, int size) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] bytes = new byte[size];
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                int n = inflater.inflate(bytes, length, size - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += n;
+            }
+            if (length != size) {
+                throw new IOException("History body is damaged: " + length + " of " + size + " bytes");
+            }
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new IOException("History body is damaged: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Body size for the queue budget; character counts stand in for bytes.
+     */
+    private static long bodySize(ApiResponseDto response) {
+        Object body = response.getResponseBody();
+        if (body instanceof BufferedBody buffered) return buffered.size();
+        if (response.getRawResponse() instanceof String raw) return raw.length();
+        if (body instanceof String text) return text.length();
+        return 0;
+    }
+
+    /**
+     * A copy of the response's metadata; the body is stored separately, compressed.
+     */
+    private static ApiResponseDto withoutBody(ApiResponseDto response) {
+        ApiResponseDto copy = new ApiResponseDto();
+        copy.setStatusCode(response.getStatusCode());
+        copy.setHeaders(response.getHeaders());
+        copy.setExecutionTimeMs(response.getExecutionTimeMs());
+        copy.setTimestamp(response.getTimestamp());
+        copy.setError(response.getError());
+        copy.setCacheStatus(response.getCacheStatus());
+        copy.setCoalesced(response.getCoalesced());
+        copy.setTimings(response.getTimings());
+        copy.setConnectionReused(response.getConnectionReused());
+        return copy;
+    }
+
+    private void rollIfFull() throws IOException {
+        if (active.size() >= segmentSize) {
+            roll();
+        }
+    }
+
+    private void roll() throws IOException {
+        active.force();
+        HistorySegment next = HistorySegment.open(directory, active.getNumber() + 1);
+        lock.writeLock().lock();
+        try {
+            segments.put(next.getNumber(), next);
+            active = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retention, then compaction. The active segment is rolled once it spans a tenth of
+     * the retention period, so retention is kept to within about that much.
+     */
+    private void maintain() throws IOException {
+        long now = System.currentTimeMillis();
+        if (active.size() > 0 && active.getOldestAt() < now - retentionMs / 10) {
+            roll();
+        }
+
+        while (true) {
+            HistorySegment oldest;
+            lock.readLock().lock();
+            try {
+                if (segments.size() < 2) break;
+                oldest = segments.firstEntry().getValue();
+                long total = segments.values().stream().mapToLong(HistorySegment::size).sum();
+                if (oldest.getNewestAt() >= now - retentionMs && total <= maxSize) break;
+            } finally {
+                lock.readLock().unlock();
+            }
+            lock.writeLock().lock();
+            try {
+                segments.remove(oldest.getNumber());
+                index.dropThrough(oldest.getNumber());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            oldest.close();
+            Files.deleteIfExists(oldest.getPath());
+            logger.info("Dropped execution history segment {} ({} bytes)", oldest.getPath().getFileName(), oldest.size());
+        }
+
+        List<HistorySegment> sparse = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (HistorySegment segment : segments.values()) {
+                if (segment != active && segment.getLiveBytes() * 2 < segment.size()) sparse.add(segment);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (HistorySegment segment : sparse) {
+            compact(segment);
+        }
+    }
+
+    /**
+     * Rewrites a sealed segment without its deleted entries, then swaps it in. Deletion
+     * records are kept while older segments, which they may refer to, remain.
+     */
+    private void compact(HistorySegment segment) throws IOException {
+        int number = segment.getNumber();
+        Map<Long, HistoryIndex.Entry> live = new HashMap<>();
+        boolean olderSegments;
+        lock.readLock().lock();
+        try {
+            for (HistoryIndex.Entry entry : index.segmentEntries(number)) {
+                if (!entry.dead) live.put(entry.offset, entry);
+            }
+            olderSegments = segments.firstKey() < number;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Path temp = segment.getPath().resolveSibling(segment.getPath().getFileName() + ".compact");
+        FileChannel out = HistorySegment.create(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Map<HistoryIndex.Entry, Long> moved = new HashMap<>();
+        long written = 0;
+        long kept = 0;
+        try {
+            long before = segment.size();
+            for (long position = 0; position < segment.size(); ) {
+                int length = segment.read(position, 4).getInt() + 4;
+                ByteBuffer record = segment.read(position, length);
+                byte type = record.get(4);
+                HistoryIndex.Entry entry = live.get(position);
+                boolean keep = type == HistorySegment.EXECUTION ? entry != null : olderSegments;
+                if (keep) {
+                    if (entry != null) moved.put(entry, written);
+                    else kept += length;
+                    while (record.hasRemaining()) {
+                        written += out.write(record, written);
+                    }
+                }
+                position += length;
+            }
+            out.force(true);
+            Files.move(temp, segment.getPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            lock.writeLock().lock();
+            try {
+                for (Map.Entry<HistoryIndex.Entry, Long> move : moved.entrySet()) {
+                    HistoryIndex.Entry entry = move.getKey();
+                    entry.offset = move.getValue();
+                    // Deleted while the copy was made: kept on disk, no longer counted
+                    if (!entry.dead) kept += entry.length;
+                }
+                segment.replace(out, written, kept);
+                index.purge(number);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Compacted execution history segment {}: {} -> {} bytes",
+                        segment.getPath().getFileName(), before, written);
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // Startup
+
+    private void load() throws IOException {
+        HistorySegment.createDirectory(directory);
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(".compact")) {
+                    // Interrupted compaction; the original is intact
+                    Files.deleteIfExists(file);
+                } else if (fileName.matches("\\d{8}\\.log")) {
+                    numbers.add(Integer.parseInt(fileName.substring(0, 8)));
+                }
+            }
+        }
+        numbers.sort(null);
+        for (int i = 0; i < numbers.size(); i++) {
+            HistorySegment segment = HistorySegment.open(directory, numbers.get(i));
+            segments.put(segment.getNumber(), segment);
+            scan(segment, i == numbers.size() - 1);
+        }
+        if (segments.isEmpty()) {
+            HistorySegment first = HistorySegment.open(directory, 1);
+            segments.put(first.getNumber(), first);
+        }
+        active = segments.lastEntry().getValue();
+    }
+
+    /**
+     * Indexes the records of a segment. Records of the last segment are checked in full,
+     * since a crash may have cut its final write short; of sealed segments only the
+     * fields the index needs are read, unless the record is small.
+     */
+    private void scan(HistorySegment segment, boolean last) throws IOException {
+        long size = segment.size();
+        long position = 0;
+        while (position + 4 <= size) {
+            int length = segment.read(position, 4).getInt();
+            if (length < 1 + 8 + 4 || position + 4 + length > size) break;
+            boolean whole = last || length + 4 <= HEADER_READ;
+            ByteBuffer record = segment.read(position, whole ? length + 4 : HEADER_READ);
+            if (whole && !HistorySegment.isIntact(record)) break;
+            if (!whole && record.get(4) == HistorySegment.EXECUTION
+                    && (record.getShort(HistorySegment.PREFIX + HistorySegment.EXECUTION_FIELDS) & 0xFFFF)
+                       > HEADER_READ - HistorySegment.PREFIX - HistorySegment.EXECUTION_FIELDS - 2) {
+                record = segment.read(position, length + 4);
+            }
+            apply(segment, record, position, length + 4);
+            position += length + 4;
+        }
+        if (position < size) {
+            logger.warn("Dropping {} damaged bytes at the end of execution history segment {}",
+                        size - position, segment.getPath().getFileName());
+            segment.truncate(position);
+        }
+    }
+
+    private void apply(HistorySegment segment, ByteBuffer record, long offset, int length) {
+        record.position(4);
+        byte type = record.get();
+        long id = record.getLong();
+        if (type == HistorySegment.EXECUTION) {
+            long recordedAt = Math.max(record.getLong(), lastRecordedAt);
+            lastRecordedAt = recordedAt;
+            int status = record.getInt();
+            int timeMs = record.getInt();
+            int bodyBytes = record.getInt();
+            byte flags = record.get();
+            String name = HistorySegment.readString(record);
+            segment.addLive(length, recordedAt);
+            HistoryIndex.Entry evicted = index.add(new HistoryIndex.Entry(id, recordedAt, name, status, timeMs, bodyBytes,
+                (flags & HistorySegment.BODY_OMITTED) == 0, segment.getNumber(), offset, length), maxPerRequest);
+            if (evicted != null) segments.get(evicted.segment).removeLive(evicted.length);
+            nextId = Math.max(nextId, id + 1);
+        } else {
+            segment.addDeletion(length);
+            if (type == HistorySegment.DELETION) {
+                HistoryIndex.Entry entry = index.find(id);
+                if (entry != null) kill(entry);
+            } else if (type == HistorySegment.NAME_DELETION) {
+                for (HistoryIndex.Entry entry : index.liveEntries(HistorySegment.readString(record), id)) {
+                    kill(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes out what is queued, then closes the segments.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!enabled) return;
+        queue.add(STOP);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            // Close the files anyway; whatever the writer had not appended is lost
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            for (HistorySegment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getDiskBytes() {
+        lock.readLock().lock();
+        try {
+            return segments.values().stream().mapToLong(HistorySegment::size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getEntryCount() {
+        lock.readLock().lock();
+        try {
+            return index.live();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("history.entries", this, ExecutionHistory::getEntryCount)
+            .description("Executions in the history")
+            .register(registry);
+        Gauge.builder("history.disk.bytes", this, ExecutionHistory::getDiskBytes)
+            .description("Size of the history segments on disk")
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("history.queued.bytes", pendingBytes, AtomicLong::get)
+            .description("Estimated size of results waiting to be written")
+            .baseUnit("bytes")
+            .register(registry);
+        FunctionCounter.builder("history.dropped", dropped, LongAdder::sum)
+            .description("Results not recorded because too many were waiting")
+            .register(registry);
+    }
+}
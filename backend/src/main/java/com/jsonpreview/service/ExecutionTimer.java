@@ -0,0 +1,164 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.ExecutionTimingsDto;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+/**
+ * Phase timestamps of one execution, taken with {@link System#nanoTime}, so a slow
+ * execution can be put down to the upstream or to our own work.
+ *
+ * The timer rides in the exchange's {@link HttpClientContext}, where the client hooks
+ * installed by {@code HttpClientConfig} find it: one marks when the connection is ready,
+ * and the connection managers report the connections they open, so an exchange that
+ * opened none went over a reused connection. The classic engine's socket factories time
+ * the TCP connect and TLS handshake apart, and its DNS resolver, which sees no context,
+ * finds the timer through {@link #current()} while the exchange runs on the calling
+ * thread. The async engine opens connections on I/O reactor threads and only reports
+ * the whole of it as connect time.
+ */
+public final class ExecutionTimer {
+
+    private static final String CONTEXT_ATTRIBUTE = "jsonpreview.execution-timer";
+    private static final ThreadLocal<ExecutionTimer> CURRENT = new ThreadLocal<>();
+
+    private final HttpClientContext context = HttpClientContext.create();
+    private final long started;
+    private final long prepared;
+    private long sent;
+    // Whether DNS and TLS are reported apart from connect (classic engine)
+    private boolean connectPhases;
+    // Written by client hooks, possibly on an I/O reactor thread; read once the exchange completed
+    private volatile long connectionReady;
+    private volatile long responded;
+    private long received;
+    // Summed over every connection opened for the exchange (retries, redirects)
+    private volatile long dnsNanos;
+    private volatile long connectNanos;
+    private volatile long tlsNanos;
+    private volatile boolean opened;
+
+    private ExecutionTimer(long started) {
+        this.started = started;
+        this.prepared = System.nanoTime();
+        context.setAttribute(CONTEXT_ATTRIBUTE, this);
+    }
+
+    /**
+     * A timer for an execution that began at {@code started} and has just been prepared.
+     */
+    static ExecutionTimer preparedSince(long started) {
+        return new ExecutionTimer(started);
+    }
+
+    /**
+     * The timer of the exchange using {@code context}, or null if it isn't timed.
+     */
+    public static ExecutionTimer of(HttpContext context) {
+        Object timer = context != null ? context.getAttribute(CONTEXT_ATTRIBUTE) : null;
+        return timer instanceof ExecutionTimer ? (ExecutionTimer) timer : null;
+    }
+
+    /**
+     * The timer of the classic-engine exchange running on this thread, or null.
+     */
+    public static ExecutionTimer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Context to execute the exchange with.
+     */
+    HttpClientContext getContext() {
+        return context;
+    }
+
+    /**
+     * Marks the request as handed to the client. With {@code onThisThread} the whole
+     * exchange runs on the calling thread (classic engine), which must {@link #detach()}
+     * once it is over.
+     */
+    void sending(boolean onThisThread) {
+        sent = System.nanoTime();
+        connectPhases = onThisThread;
+        if (onThisThread) CURRENT.set(this);
+    }
+
+    public void connectionReady() {
+        connectionReady = System.nanoTime();
+    }
+
+    public void addDns(long nanos) {
+        dnsNanos += nanos;
+    }
+
+    /**
+     * Adds the time taken to open a connection for the exchange.
+     */
+    public void addConnect(long nanos) {
+        connectNanos += nanos;
+        opened = true;
+    }
+
+    public void addTls(long nanos) {
+        tlsNanos += nanos;
+    }
+
+    public long getTlsNanos() {
+        return tlsNanos;
+    }
+
+    /**
+     * Marks the arrival of the response head.
+     */
+    void responded() {
+        responded = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of the response body (or of a failed exchange).
+     */
+    void received() {
+        received = System.nanoTime();
+        if (responded == 0) responded = received;
+    }
+
+    void detach() {
+        if (CURRENT.get() == this) CURRENT.remove();
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - started;
+    }
+
+    /**
+     * Puts the breakdown on {@code response}, which has just been built; a response
+     * answered without an exchange (a cache hit) only gets preparation and total.
+     */
+    ApiResponseDto finish(ApiResponseDto response) {
+        long processed = System.nanoTime();
+        ExecutionTimingsDto timings = new ExecutionTimingsDto();
+        timings.setPrepareMs(millis(prepared - started));
+        timings.setTotalMs(millis(processed - started));
+        if (sent != 0 && received != 0) {
+            long ready = connectionReady != 0 ? connectionReady : sent;
+            timings.setConnectionMs(millis(ready - sent));
+            timings.setConnectMs(millis(connectNanos));
+            if (connectPhases) {
+                timings.setDnsMs(millis(dnsNanos));
+                timings.setTlsMs(millis(tlsNanos));
+            }
+            timings.setTtfbMs(millis(responded - ready));
+            timings.setDownloadMs(millis(received - responded));
+            timings.setProcessMs(millis(processed - received));
+            response.setConnectionReused(!opened);
+        }
+        response.setTimings(timings);
+        return response;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(Math.max(nanos, 0) / 1e3) / 1e3;
+    }
+}
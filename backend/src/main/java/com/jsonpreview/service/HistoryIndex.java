@@ -0,0 +1,235 @@
+package com.jsonpreview.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the execution history: every entry in append order, and the entries
+ * of each request name in append order. Ids and recording times only grow along a list,
+ * so a page is found by binary search and then read off in order, skipping entries that
+ * were deleted but not yet compacted away. Not thread-safe; {@link ExecutionHistory}
+ * guards it.
+ */
+final class HistoryIndex {
+
+    static final class Entry {
+        final long id;
+        final long recordedAt;
+        final String requestName;
+        final int statusCode;
+        final long executionTimeMs;
+        final int bodyBytes;
+        final boolean bodyStored;
+        // Where the record is; changed when its segment is compacted
+        int segment;
+        long offset;
+        int length;
+        boolean dead;
+
+        Entry(long id, long recordedAt, String requestName, int statusCode, long executionTimeMs,
+              int bodyBytes, boolean bodyStored, int segment, long offset, int length) {
+            this.id = id;
+            this.recordedAt = recordedAt;
+            this.requestName = requestName;
+            this.statusCode = statusCode;
+            this.executionTimeMs = executionTimeMs;
+            this.bodyBytes = bodyBytes;
+            this.bodyStored = bodyStored;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Entries in append order in an array used as a queue, so whole segments are dropped
+     * from the front without shifting.
+     */
+    static final class EntryList {
+        private Entry[] entries = new Entry[16];
+        private int head;
+        private int tail;
+        private int live;
+        // No live entry before this one
+        private int firstLive;
+
+        void add(Entry entry) {
+            if (tail == entries.length) {
+                int size = tail - head;
+                Entry[] next = size * 2 > entries.length ? new Entry[entries.length * 2] : entries;
+                System.arraycopy(entries, head, next, 0, size);
+                if (next == entries) Arrays.fill(entries, size, tail, null);
+                entries = next;
+                firstLive = Math.max(firstLive - head, 0);
+                tail = size;
+                head = 0;
+            }
+            entries[tail++] = entry;
+            if (!entry.dead) live++;
+        }
+
+        int size() { return tail - head; }
+
+        Entry get(int i) { return entries[head + i]; }
+
+        int live() { return live; }
+
+        void killed() { live--; }
+
+        Entry oldestLive() {
+            firstLive = Math.max(firstLive, head);
+            while (firstLive < tail && entries[firstLive].dead) firstLive++;
+            return firstLive < tail ? entries[firstLive] : null;
+        }
+
+        /**
+         * Drops the entries of segments up to {@code segment}, which lead the list.
+         */
+        void dropThrough(int segment) {
+            while (head < tail && entries[head].segment <= segment) {
+                if (!entries[head].dead) live--;
+                entries[head++] = null;
+            }
+        }
+
+        /**
+         * Forgets the deleted entries of {@code segment}, once it no longer holds them.
+         */
+        void purge(int segment) {
+            int kept = head;
+            for (int i = head; i < tail; i++) {
+                Entry entry = entries[i];
+                if (!(entry.dead && entry.segment == segment)) entries[kept++] = entry;
+            }
+            Arrays.fill(entries, kept, tail, null);
+            tail = kept;
+            firstLive = head;
+        }
+
+        /**
+         * Position of the first entry with an id of at least {@code id}.
+         */
+        int indexOfId(long id) {
+            int low = 0, high = size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (get(mid).id < id) low = mid + 1; else high = mid;
+            }
+            return low;
+        }
+
+        /**
+         * Position of the first entry recorded after {@code time}.
+         */
+        int indexAfter(long time) {
+            int low = 0, high = size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (get(mid).recordedAt <= time) low = mid + 1; else high = mid;
+            }
+            return low;
+        }
+    }
+
+    private final EntryList all = new EntryList();
+    private final Map<String, EntryList> byName = new HashMap<>();
+
+    /**
+     * Adds an entry; when its request name then has more than {@code maxPerRequest} live
+     * entries, the oldest one is deleted and returned.
+     */
+    Entry add(Entry entry, int maxPerRequest) {
+        all.add(entry);
+        EntryList named = byName.computeIfAbsent(entry.requestName, n -> new EntryList());
+        named.add(entry);
+        if (named.live() > maxPerRequest) {
+            Entry oldest = named.oldestLive();
+            kill(oldest);
+            return oldest;
+        }
+        return null;
+    }
+
+    Entry find(long id) {
+        int i = all.indexOfId(id);
+        return i < all.size() && all.get(i).id == id ? all.get(i) : null;
+    }
+
+    void kill(Entry entry) {
+        if (entry.dead) return;
+        entry.dead = true;
+        all.killed();
+        byName.get(entry.requestName).killed();
+    }
+
+    /**
+     * Live entries of {@code requestName} with an id up to {@code throughId}.
+     */
+    List<Entry> liveEntries(String requestName, long throughId) {
+        EntryList list = byName.get(requestName);
+        List<Entry> entries = new ArrayList<>();
+        if (list == null) return entries;
+        int end = throughId == Long.MAX_VALUE ? list.size() : list.indexOfId(throughId + 1);
+        for (int i = 0; i < end; i++) {
+            if (!list.get(i).dead) entries.add(list.get(i));
+        }
+        return entries;
+    }
+
+    /**
+     * All entries of {@code segment}, live or not, in order.
+     */
+    List<Entry> segmentEntries(int segment) {
+        List<Entry> entries = new ArrayList<>();
+        int low = 0, high = all.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (all.get(mid).segment < segment) low = mid + 1; else high = mid;
+        }
+        for (int i = low; i < all.size() && all.get(i).segment == segment; i++) {
+            entries.add(all.get(i));
+        }
+        return entries;
+    }
+
+    void dropThrough(int segment) {
+        all.dropThrough(segment);
+        byName.values().removeIf(list -> {
+            list.dropThrough(segment);
+            return list.size() == 0;
+        });
+    }
+
+    void purge(int segment) {
+        all.purge(segment);
+        byName.values().removeIf(list -> {
+            list.purge(segment);
+            return list.size() == 0;
+        });
+    }
+
+    /**
+     * Newest first: up to {@code limit} live entries, of one request name or of all,
+     * with ids below {@code before} and recorded within {@code [from, to]} (each bound
+     * optional).
+     */
+    List<Entry> page(String requestName, Long before, Long from, Long to, int limit) {
+        EntryList list = requestName != null ? byName.get(requestName) : all;
+        List<Entry> page = new ArrayList<>(Math.min(limit, 256));
+        if (list == null) return page;
+        int end = list.size();
+        if (before != null) end = Math.min(end, list.indexOfId(before));
+        if (to != null) end = Math.min(end, list.indexAfter(to));
+        for (int i = end - 1; i >= 0 && page.size() < limit; i--) {
+            Entry entry = list.get(i);
+            if (from != null && entry.recordedAt < from) break;
+            if (!entry.dead) page.add(entry);
+        }
+        return page;
+    }
+
+    int live() { return all.live(); }
+}
@@ -0,0 +1,251 @@
+package com.jsonpreview.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * One file of the execution history log: records appended back to back, never changed in
+ * place. A segment is replaced as a whole when compacted and deleted as a whole when
+ * retention drops it.
+ *
+ * Record layout (big-endian), the length covering everything after it:
+ * <pre>
+ * int length | byte type | long id | ...type fields... | int crc32
+ * execution: long recordedAt | int status | int timeMs | int bodyBytes | byte flags | str name
+ *            | str charset | int n, request JSON | int n, response JSON without body
+ *            | int n, deflated body
+ * deletion:  (id of the deleted entry)
+ * deletion by request name: str name (entries up to id)
+ * </pre>
+ * Strings ({@code str}) are a short length and UTF-8 bytes. A record is read back with a
+ * single positioned read of its full length.
+ */
+final class HistorySegment {
+
+    static final byte EXECUTION = 1;
+    static final byte DELETION = 2;
+    static final byte NAME_DELETION = 3;
+
+    // Length, type and id
+    static final int PREFIX = 4 + 1 + 8;
+    // Fixed execution fields after the prefix
+    static final int EXECUTION_FIELDS = 8 + 4 + 4 + 4 + 1;
+    // Flag: the body was larger than the stored size limit and is not in the record
+    static final byte BODY_OMITTED = 1;
+
+    private static final Set<PosixFilePermission> OWNER_FILE = PosixFilePermissions.fromString("rw-------");
+    private static final Set<PosixFilePermission> OWNER_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    private final int number;
+    private final Path path;
+    private FileChannel channel;
+    private long size;
+    // Bytes of records still referenced, to decide when compaction pays
+    private long liveBytes;
+    private long newestAt;
+    private long oldestAt = Long.MAX_VALUE;
+
+    private HistorySegment(int number, Path path, FileChannel channel, long size) {
+        this.number = number;
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    static Path pathOf(Path directory, int number) {
+        return directory.resolve(String.format("%08d.log", number));
+    }
+
+    static HistorySegment open(Path directory, int number) throws IOException {
+        Path path = pathOf(directory, number);
+        FileChannel channel = create(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new HistorySegment(number, path, channel, channel.size());
+    }
+
+    /**
+     * Opens a log file, created readable by its owner only: records hold request
+     * parameters, response headers and bodies, tokens included.
+     */
+    static FileChannel create(Path path, OpenOption... options) throws IOException {
+        Set<OpenOption> optionSet = new HashSet<>(Arrays.asList(options));
+        if (!isPosix(path)) {
+            return FileChannel.open(path, optionSet);
+        }
+        return FileChannel.open(path, optionSet, PosixFilePermissions.asFileAttribute(OWNER_FILE));
+    }
+
+    /**
+     * Creates the log directory, accessible by its owner only, if it does not exist.
+     */
+    static void createDirectory(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) return;
+        Path parent = directory.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        if (isPosix(parent != null ? parent : directory)) {
+            Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_DIRECTORY));
+        } else {
+            Files.createDirectory(directory);
+        }
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    int getNumber() { return number; }
+
+    Path getPath() { return path; }
+
+    long size() { return size; }
+
+    long getLiveBytes() { return liveBytes; }
+
+    long getNewestAt() { return newestAt; }
+
+    long getOldestAt() { return oldestAt; }
+
+    void addLive(int length, long recordedAt) {
+        liveBytes += length;
+        newestAt = Math.max(newestAt, recordedAt);
+        oldestAt = Math.min(oldestAt, recordedAt);
+    }
+
+    void addDeletion(int length) {
+        liveBytes += length;
+    }
+
+    void removeLive(int length) {
+        liveBytes -= length;
+    }
+
+    /**
+     * Appends a complete record; returns its offset.
+     */
+    long append(ByteBuffer record) throws IOException {
+        long offset = size;
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        size = position;
+        return offset;
+    }
+
+    /**
+     * The record at {@code offset}, of total {@code length} bytes.
+     */
+    ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("History record truncated in " + path.getFileName());
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Stops appending after {@code validSize} bytes, dropping a partly written record.
+     */
+    void truncate(long validSize) throws IOException {
+        channel.truncate(validSize);
+        size = validSize;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Takes over the file and channel of a rewritten copy of this segment, which has
+     * already been moved over this one's path.
+     */
+    void replace(FileChannel rewritten, long rewrittenSize, long rewrittenLive) throws IOException {
+        FileChannel old = channel;
+        channel = rewritten;
+        size = rewrittenSize;
+        liveBytes = rewrittenLive;
+        old.close();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    static ByteBuffer encodeExecution(long id, long recordedAt, int status, int timeMs, int bodyBytes, byte flags,
+                                      String name, String charset, byte[] request, byte[] response,
+                                      byte[] body, int bodyLength) {
+        byte[] nameBytes = utf8(name);
+        byte[] charsetBytes = utf8(charset);
+        int length = 1 + 8 + EXECUTION_FIELDS + 2 + nameBytes.length + 2 + charsetBytes.length
+            + 4 + request.length + 4 + response.length + 4 + bodyLength + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length).put(EXECUTION).putLong(id)
+              .putLong(recordedAt).putInt(status).putInt(timeMs).putInt(bodyBytes).put(flags);
+        buffer.putShort((short) nameBytes.length).put(nameBytes);
+        buffer.putShort((short) charsetBytes.length).put(charsetBytes);
+        buffer.putInt(request.length).put(request);
+        buffer.putInt(response.length).put(response);
+        buffer.putInt(bodyLength).put(body, 0, bodyLength);
+        return seal(buffer);
+    }
+
+    static ByteBuffer encodeDeletion(long id, String name) {
+        byte[] nameBytes = name != null ? utf8(name) : null;
+        int length = 1 + 8 + (nameBytes != null ? 2 + nameBytes.length : 0) + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length).put(nameBytes != null ? NAME_DELETION : DELETION).putLong(id);
+        if (nameBytes != null) {
+            buffer.putShort((short) nameBytes.length).put(nameBytes);
+        }
+        return seal(buffer);
+    }
+
+    private static ByteBuffer seal(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, buffer.position() - 4);
+        buffer.putInt((int) crc.getValue());
+        return buffer.flip();
+    }
+
+    /**
+     * Whether a whole record read back (from its length field on) is intact.
+     */
+    static boolean isIntact(ByteBuffer record) {
+        int end = record.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, end - 4);
+        return (int) crc.getValue() == record.getInt(end);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // Names longer than a short can say are cut; they only label the entry
+        return bytes.length <= 0xFFFF ? bytes : Arrays.copyOf(bytes, 0xFFFF);
+    }
+}
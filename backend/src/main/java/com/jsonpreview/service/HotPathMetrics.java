@@ -0,0 +1,156 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Timers and byte counters on the parse and execute hot paths.
+ *
+ * <ul>
+ *   <li>{@code upload.parse} ({@code type} = collection, environment, json-response,
+ *       document) and {@code upload.bytes}: uploads parsed and their size</li>
+ *   <li>{@code execution.requests} ({@code request}, {@code outcome}): whole executions,
+ *       preparation included</li>
+ *   <li>{@code execution.render} and {@code execution.process}: variable substitution into
+ *       the request, and turning the upstream response into an {@link ApiResponseDto}</li>
+ *   <li>{@code execution.bytes} ({@code direction} = sent, received): request and
+ *       response bodies exchanged with upstreams</li>
+ * </ul>
+ *
+ * Meters are looked up once and kept, so recording costs no tag or id allocation.
+ * Execution timers are per request name; past {@code metrics.max-request-names} distinct
+ * names, further ones are recorded as {@code other}. Histograms are switched on per meter
+ * through {@code management.metrics.distribution.percentiles-histogram.*}.
+ */
+@Service
+public class HotPathMetrics {
+
+    public static final String UPLOAD_COLLECTION = "collection";
+    public static final String UPLOAD_ENVIRONMENT = "environment";
+    public static final String UPLOAD_JSON_RESPONSE = "json-response";
+    public static final String UPLOAD_DOCUMENT = "document";
+
+    private static final String OTHER_REQUESTS = "other";
+
+    // Outcome tag values, indexing each request name's timers
+    private static final String[] OUTCOMES = { "SUCCESS", "REDIRECTION", "CLIENT_ERROR", "SERVER_ERROR", "ERROR" };
+
+    private final MeterRegistry registry;
+    private final int maxRequestNames;
+    private final Map<String, NamedTimers> executionTimers = new ConcurrentHashMap<>();
+    // Request names given their own timers, never more than maxRequestNames
+    private final AtomicInteger requestNames = new AtomicInteger();
+    private final Map<String, Timer> uploadTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> uploadBytes = new ConcurrentHashMap<>();
+    private final Timer render;
+    private final Timer process;
+    private final Counter bytesSent;
+    private final Counter bytesReceived;
+
+    public HotPathMetrics(MeterRegistry registry,
+                          @Value("${metrics.max-request-names:500}") int maxRequestNames) {
+        this.registry = registry;
+        this.maxRequestNames = maxRequestNames;
+        this.render = Timer.builder("execution.render")
+            .description("Rendering a collection request with its variables")
+            .register(registry);
+        this.process = Timer.builder("execution.process")
+            .description("Turning an upstream response into the execution result")
+            .register(registry);
+        this.bytesSent = bytesCounter("sent");
+        this.bytesReceived = bytesCounter("received");
+    }
+
+    private Counter bytesCounter(String direction) {
+        return Counter.builder("execution.bytes")
+            .tag("direction", direction)
+            .baseUnit("bytes")
+            .description("Body bytes exchanged with upstreams")
+            .register(registry);
+    }
+
+    public void recordUpload(String type, long bytes, long nanos) {
+        uploadTimers.computeIfAbsent(type, t -> Timer.builder("upload.parse")
+            .tag("type", t)
+            .description("Parsing an upload")
+            .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+        uploadBytes.computeIfAbsent(type, t -> Counter.builder("upload.bytes")
+            .tag("type", t)
+            .baseUnit("bytes")
+            .description("Bytes uploaded")
+            .register(registry)).increment(bytes);
+    }
+
+    public void recordExecution(String requestName, ApiResponseDto response, long nanos) {
+        NamedTimers timers = timersFor(requestName != null ? requestName : OTHER_REQUESTS);
+        int outcome = outcome(response);
+        Timer timer = timers.byOutcome.get(outcome);
+        if (timer == null) {
+            // Registering the same id twice returns the same timer, so a race is harmless
+            timer = Timer.builder("execution.requests")
+                .tag("request", timers.requestName)
+                .tag("outcome", OUTCOMES[outcome])
+                .description("Executions of collection requests")
+                .register(registry);
+            timers.byOutcome.set(outcome, timer);
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private NamedTimers timersFor(String requestName) {
+        NamedTimers timers = executionTimers.get(requestName);
+        if (timers != null) return timers;
+        // A slot is only taken when the name is actually added, so racing callers can't
+        // push the count past the limit
+        timers = executionTimers.computeIfAbsent(requestName, name ->
+            requestNames.getAndUpdate(n -> n < maxRequestNames ? n + 1 : n) < maxRequestNames
+                ? new NamedTimers(name) : null);
+        return timers != null ? timers : executionTimers.computeIfAbsent(OTHER_REQUESTS, NamedTimers::new);
+    }
+
+    private static int outcome(ApiResponseDto response) {
+        if (response.getError() != null) return 4;
+        int status = response.getStatusCode();
+        if (status < 300) return 0;
+        if (status < 400) return 1;
+        return status < 500 ? 2 : 3;
+    }
+
+    public void recordRender(long nanos) {
+        render.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordProcess(long nanos) {
+        process.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void countSent(long bytes) {
+        if (bytes > 0) bytesSent.increment(bytes);
+    }
+
+    public void countReceived(long bytes) {
+        if (bytes > 0) bytesReceived.increment(bytes);
+    }
+
+    /**
+     * One request name's execution timers, by outcome, created on first use.
+     */
+    private static final class NamedTimers {
+        final String requestName;
+        final AtomicReferenceArray<Timer> byOutcome = new AtomicReferenceArray<>(OUTCOMES.length);
+
+        NamedTimers(String requestName) {
+            this.requestName = requestName;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import com.jsonpreview.dto.IterationRequestDto;
+import com.jsonpreview.dto.IterationResultDto;
+import com.jsonpreview.dto.IterationRowDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One iteration of a collection request over a parameter file, driven by its own
+ * scheduler thread, which is the only one reading the input and writing the output.
+ *
+ * Rows are read only while fewer than {@code parallelism} executions are in flight and
+ * fewer than {@code 4 * parallelism} rows await writing, so a slow upstream stops the
+ * reading instead of filling the heap. Results are written in file order, a row waiting
+ * for the slower ones before it, which keeps the results file a prefix of the input: the
+ * checkpoint is just the next row, the input offset to read it from and the results file
+ * length, and resuming truncates the results to that length and reads on from there.
+ * A checkpoint is taken about once a second, after flushing and syncing the results.
+ */
+final class IterationRun implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IterationRun.class);
+
+    static final String DEFINITION_FILE = "iteration.json";
+    static final String INPUT_FILE = "input";
+    static final String RESULTS_FILE = "results.ndjson";
+    static final String CHECKPOINT_FILE = "checkpoint.json";
+
+    private static final long CHECKPOINT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long POLL_MILLIS = 100;
+    private static final int WINDOW_FACTOR = 4;
+
+    enum State { RUNNING, COMPLETED, STOPPED, FAILED }
+
+    /**
+     * Progress that is safely on disk.
+     */
+    static final class Checkpoint {
+        final long nextRow;
+        final long inputOffset;
+        final long outputOffset;
+        final long succeeded;
+        final long failed;
+        final boolean complete;
+
+        Checkpoint(long nextRow, long inputOffset, long outputOffset, long succeeded, long failed, boolean complete) {
+            this.nextRow = nextRow;
+            this.inputOffset = inputOffset;
+            this.outputOffset = outputOffset;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.complete = complete;
+        }
+
+        static final Checkpoint START = new Checkpoint(0, 0, 0, 0, 0, false);
+
+        static Checkpoint read(Path directory, ObjectMapper objectMapper) throws IOException {
+            Path file = directory.resolve(CHECKPOINT_FILE);
+            if (!Files.exists(file)) {
+                return START;
+            }
+            JsonNode node = objectMapper.readTree(file.toFile());
+            return new Checkpoint(node.path("nextRow").asLong(), node.path("inputOffset").asLong(),
+                                  node.path("outputOffset").asLong(), node.path("succeeded").asLong(),
+                                  node.path("failed").asLong(), node.path("complete").asBoolean());
+        }
+
+        void write(Path directory, ObjectMapper objectMapper) throws IOException {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("nextRow", nextRow);
+            fields.put("inputOffset", inputOffset);
+            fields.put("outputOffset", outputOffset);
+            fields.put("succeeded", succeeded);
+            fields.put("failed", failed);
+            fields.put("complete", complete);
+            // Written aside and moved over, so a crash leaves the old checkpoint or the new one
+            Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            objectMapper.writeValue(temp.toFile(), fields);
+            Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static final class Completion {
+        final long row;
+        final ParameterRows.Row input;
+        final ApiResponseDto response;
+        final String error;
+
+        Completion(long row, ParameterRows.Row input, ApiResponseDto response, String error) {
+            this.row = row;
+            this.input = input;
+            this.response = response;
+            this.error = error;
+        }
+    }
+
+    private final String id;
+    private final Path directory;
+    private final IterationRequestDto request;
+    private final ParameterRows.Format format;
+    private final ApiExecutionService executionService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter lineWriter;
+    private final int parallelism;
+    private final Checkpoint resumeFrom;
+    private final long inputBytes;
+    private final BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    // Written by the scheduler thread only
+    private volatile State state = State.RUNNING;
+    private volatile String error;
+    private volatile boolean stopRequested;
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile long bytesRead;
+    private volatile long rowsRead;
+    private volatile long rowsDone;
+    private volatile long succeeded;
+    private volatile long failed;
+    private volatile int inFlight;
+    private volatile long outputBytes;
+
+    IterationRun(String id, Path directory, IterationRequestDto request, ApiExecutionService executionService,
+                 ObjectMapper objectMapper, ObjectWriter lineWriter, int parallelism, Checkpoint resumeFrom) throws IOException {
+        this.id = id;
+        this.directory = directory;
+        this.request = request;
+        this.format = ParameterRows.Format.of(request.getFormat(), request.getFileName());
+        this.executionService = executionService;
+        this.objectMapper = objectMapper;
+        this.lineWriter = lineWriter;
+        this.parallelism = parallelism;
+        this.resumeFrom = resumeFrom;
+        this.inputBytes = Files.size(directory.resolve(INPUT_FILE));
+        this.bytesRead = resumeFrom.inputOffset;
+        this.rowsRead = resumeFrom.nextRow;
+        this.rowsDone = resumeFrom.nextRow;
+        this.succeeded = resumeFrom.succeeded;
+        this.failed = resumeFrom.failed;
+        this.outputBytes = resumeFrom.outputOffset;
+    }
+
+    String getId() { return id; }
+
+    State getState() { return state; }
+
+    void start(Thread thread) {
+        startNanos = System.nanoTime();
+        thread.start();
+    }
+
+    /**
+     * Asks the scheduler to stop reading rows; executions in flight are abandoned and the
+     * rows already written are checkpointed. The thread is not interrupted, since that
+     * would close the results file under it.
+     */
+    void stop() {
+        stopRequested = true;
+    }
+
+    boolean awaitFinish(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    @Override
+    public void run() {
+        State outcome = State.FAILED;
+        try {
+            outcome = iterate();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Iteration {} failed: {}", id, e.getMessage(), e);
+            error = e.getMessage();
+        } finally {
+            endNanos = System.nanoTime();
+            state = outcome;
+            finished.countDown();
+            logger.info("Iteration {} {}: {} rows done ({} succeeded, {} failed)", id, outcome.name().toLowerCase(),
+                        rowsDone, succeeded, failed);
+        }
+    }
+
+    private State iterate() throws IOException {
+        long nextRow = resumeFrom.nextRow;
+        long nextToWrite = resumeFrom.nextRow;
+        long inputOffset = resumeFrom.inputOffset;
+        long lastCheckpoint = System.nanoTime();
+        long window = (long) parallelism * WINDOW_FACTOR;
+        boolean exhausted = false;
+        Map<Long, Completion> done = new HashMap<>();
+
+        try (ParameterRows rows = ParameterRows.open(directory.resolve(INPUT_FILE), format, resumeFrom.inputOffset, objectMapper);
+             FileChannel channel = FileChannel.open(directory.resolve(RESULTS_FILE),
+                                                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Anything past the checkpoint was written after it and is written again
+            channel.truncate(resumeFrom.outputOffset);
+            channel.position(resumeFrom.outputOffset);
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+
+            while (!stopRequested) {
+                while (!exhausted && inFlight < parallelism && nextRow - nextToWrite < window) {
+                    ParameterRows.Row row = rows.next();
+                    if (row == null) {
+                        exhausted = true;
+                        break;
+                    }
+                    long number = nextRow++;
+                    rowsRead = nextRow;
+                    bytesRead = rows.position();
+                    if (row.error != null) {
+                        done.put(number, new Completion(number, row, null, row.error));
+                    } else {
+                        send(number, row);
+                    }
+                }
+                if (exhausted && nextToWrite == nextRow) break;
+
+                Completion completion = poll();
+                while (completion != null) {
+                    inFlight--;
+                    done.put(completion.row, completion);
+                    completion = completions.poll();
+                }
+                for (Completion next; (next = done.remove(nextToWrite)) != null; nextToWrite++) {
+                    write(out, next);
+                    inputOffset = next.input.end;
+                }
+                rowsDone = nextToWrite;
+
+                if (System.nanoTime() - lastCheckpoint >= CHECKPOINT_INTERVAL_NANOS) {
+                    checkpoint(out, channel, nextToWrite, inputOffset, false);
+                    lastCheckpoint = System.nanoTime();
+                }
+            }
+            checkpoint(out, channel, nextToWrite, inputOffset, !stopRequested);
+        }
+        return stopRequested ? State.STOPPED : State.COMPLETED;
+    }
+
+    private Completion poll() {
+        try {
+            return completions.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            stopRequested = true;
+            return null;
+        }
+    }
+
+    private void send(long number, ParameterRows.Row row) {
+        ExecuteRequestDto dto = new ExecuteRequestDto();
+        dto.setCollectionId(request.getCollectionId());
+        dto.setRequestName(request.getRequestName());
+        dto.setEnvironment(request.getEnvironment());
+        dto.setParameters(row.parameters);
+        // Every row renders a different request; nothing to share
+        dto.setCache(Boolean.FALSE);
+        dto.setCoalesce(Boolean.FALSE);
+        inFlight++;
+        try {
+            executionService.executeAsync(executionService.prepareRequest(dto), System.currentTimeMillis())
+                .whenComplete((response, e) -> completions.add(
+                    new Completion(number, row, response, e != null ? "Execution error: " + e.getMessage() : null)));
+        } catch (RuntimeException e) {
+            completions.add(new Completion(number, row, null, "Execution error: " + e.getMessage()));
+        }
+    }
+
+    private void write(OutputStream out, Completion completion) throws IOException {
+        ApiResponseDto response = completion.response;
+        boolean ok = completion.error == null && response != null
+            && response.getError() == null && response.getStatusCode() < 400;
+        if (ok) {
+            succeeded++;
+        } else {
+            failed++;
+        }
+        out.write(lineWriter.writeValueAsBytes(new IterationRowDto(completion.row, completion.input.parameters,
+                                                                   completion.error, response)));
+        out.write('\n');
+    }
+
+    private void checkpoint(OutputStream out, FileChannel channel, long nextRow, long inputOffset,
+                            boolean complete) throws IOException {
+        out.flush();
+        channel.force(false);
+        long length = channel.position();
+        new Checkpoint(nextRow, inputOffset, length, succeeded, failed, complete).write(directory, objectMapper);
+        outputBytes = length;
+    }
+
+    IterationResultDto snapshot() {
+        long now = state == State.RUNNING ? System.nanoTime() : endNanos;
+        double elapsed = (now - startNanos) / 1e9;
+        IterationResultDto dto = new IterationResultDto();
+        dto.setId(id);
+        dto.setRequestName(request.getRequestName());
+        dto.setState(state.name());
+        dto.setError(error);
+        dto.setFormat(format.name().toLowerCase());
+        dto.setParallelism(parallelism);
+        dto.setElapsedSeconds(elapsed);
+        dto.setInputBytes(inputBytes);
+        dto.setBytesRead(bytesRead);
+        dto.setResumedFromRow(resumeFrom.nextRow);
+        dto.setRowsRead(rowsRead);
+        long rows = rowsDone;
+        dto.setRowsDone(rows);
+        dto.setSucceeded(succeeded);
+        dto.setFailed(failed);
+        dto.setInFlight(state == State.RUNNING ? inFlight : 0);
+        dto.setThroughput(elapsed > 0 ? (rows - resumeFrom.nextRow) / elapsed : 0);
+        dto.setOutputBytes(outputBytes);
+        return dto;
+    }
+
+    /**
+     * Length of the results file up to the last checkpoint, all complete lines.
+     */
+    long getOutputBytes() { return outputBytes; }
+}
@@ -0,0 +1,256 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jsonpreview.dto.IterationRequestDto;
+import com.jsonpreview.dto.IterationResultDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one collection request for every row of an uploaded CSV or NDJSON parameter file,
+ * writing one result line per row to a results file.
+ *
+ * Each iteration lives in its own directory under {@code iterations.directory}: the
+ * uploaded file, the request definition, the results and a checkpoint (see
+ * {@link IterationRun}). An iteration that was stopped, failed or was cut short by a
+ * restart can be resumed from its checkpoint by id; its results are kept until deleted.
+ */
+@Service
+public class IterationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IterationService.class);
+
+    private final ApiExecutionService apiExecutionService;
+    private final PostmanParserService postmanParserService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter lineWriter;
+    private final Path directory;
+    private final int maxRunning;
+    private final int maxParallelism;
+    private final Map<String, IterationRun> runs = new LinkedHashMap<>();
+
+    public IterationService(ApiExecutionService apiExecutionService,
+                            PostmanParserService postmanParserService,
+                            ObjectMapper objectMapper,
+                            @Value("${iterations.directory:${java.io.tmpdir}/json-preview-iterations}") Path directory,
+                            @Value("${iterations.max-running:4}") int maxRunning,
+                            @Value("${batch.max-parallelism:64}") int maxParallelism) {
+        this.apiExecutionService = apiExecutionService;
+        this.postmanParserService = postmanParserService;
+        this.objectMapper = objectMapper;
+        this.lineWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.directory = directory;
+        this.maxRunning = maxRunning;
+        this.maxParallelism = maxParallelism;
+    }
+
+    /**
+     * Stores the parameter file and starts iterating over it in the background.
+     *
+     * @throws IllegalArgumentException if the request is malformed or names an unknown collection, request or environment
+     * @throws IllegalStateException if {@code iterations.max-running} iterations are already running
+     */
+    public IterationResultDto start(MultipartFile file, IterationRequestDto request) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Parameter file is empty");
+        }
+        if (request.getRequestName() == null || request.getRequestName().isBlank()) {
+            throw new IllegalArgumentException("requestName is required");
+        }
+        request.setFileName(file.getOriginalFilename());
+        request.setFormat(ParameterRows.Format.of(request.getFormat(), request.getFileName()).name().toLowerCase());
+        // Fail fast on an unknown collection, request or environment; rendering needs a row
+        CollectionSnapshot collection = postmanParserService.findCollection(request.getCollectionId());
+        if (collection == null) {
+            throw new IllegalArgumentException("Collection not found: "
+                + (request.getCollectionId() != null ? request.getCollectionId() : "no collection uploaded"));
+        }
+        if (collection.getIndex().find(request.getRequestName()) == null) {
+            throw new IllegalArgumentException("Request not found: " + request.getRequestName());
+        }
+        if (!CollectionRegistry.isDefaultEnvironment(request.getEnvironment())
+                && postmanParserService.findEnvironment(request.getEnvironment()) == null) {
+            throw new IllegalArgumentException("Environment not found: " + request.getEnvironment());
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path runDirectory = directory.resolve(id);
+        Files.createDirectories(runDirectory);
+        try {
+            // Straight to disk; large uploads are already spooled by the multipart resolver
+            file.transferTo(runDirectory.resolve(IterationRun.INPUT_FILE));
+            objectMapper.writeValue(runDirectory.resolve(IterationRun.DEFINITION_FILE).toFile(), request);
+            return launch(id, runDirectory, request, IterationRun.Checkpoint.START);
+        } catch (IOException | RuntimeException e) {
+            FileSystemUtils.deleteRecursively(runDirectory);
+            throw e;
+        }
+    }
+
+    /**
+     * Continues an iteration from its last checkpoint; the results after it are discarded
+     * and produced again.
+     *
+     * @throws IllegalArgumentException if the iteration is unknown or already completed
+     * @throws IllegalStateException if it is running, or too many iterations are
+     */
+    public IterationResultDto resume(String id) throws IOException {
+        Path runDirectory = runDirectory(id);
+        if (runDirectory == null || !Files.exists(runDirectory.resolve(IterationRun.DEFINITION_FILE))) {
+            throw new IllegalArgumentException("Iteration not found: " + id);
+        }
+        IterationRun.Checkpoint checkpoint = IterationRun.Checkpoint.read(runDirectory, objectMapper);
+        if (checkpoint.complete) {
+            throw new IllegalArgumentException("Iteration already completed: " + id);
+        }
+        IterationRequestDto request = objectMapper.readValue(
+            runDirectory.resolve(IterationRun.DEFINITION_FILE).toFile(), IterationRequestDto.class);
+        logger.info("Resuming iteration {} from row {}", id, checkpoint.nextRow);
+        return launch(id, runDirectory, request, checkpoint);
+    }
+
+    private IterationResultDto launch(String id, Path runDirectory, IterationRequestDto request,
+                                      IterationRun.Checkpoint checkpoint) throws IOException {
+        Integer requested = request.getParallelism();
+        int parallelism = requested != null && requested > 0 ? Math.min(requested, maxParallelism) : maxParallelism;
+        IterationRun run = new IterationRun(id, runDirectory, request, apiExecutionService,
+                                            objectMapper, lineWriter, parallelism, checkpoint);
+        synchronized (runs) {
+            IterationRun current = runs.get(id);
+            if (current != null && current.getState() == IterationRun.State.RUNNING) {
+                throw new IllegalStateException("Iteration is running: " + id);
+            }
+            long running = runs.values().stream().filter(r -> r.getState() == IterationRun.State.RUNNING).count();
+            if (running >= maxRunning) {
+                throw new IllegalStateException(running + " iterations are already running");
+            }
+            runs.put(id, run);
+        }
+        Thread thread = new Thread(run, "iteration-" + id.substring(0, 8));
+        thread.setDaemon(true);
+        run.start(thread);
+        logger.info("Started iteration {} of {} over {} (parallelism {})", id, request.getRequestName(),
+                    request.getFileName(), parallelism);
+        return run.snapshot();
+    }
+
+    /**
+     * The directory of iteration {@code id}, or null if the id is not one this service issues.
+     */
+    private Path runDirectory(String id) {
+        try {
+            return directory.resolve(UUID.fromString(id).toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private IterationRun find(String id) {
+        synchronized (runs) {
+            return runs.get(id);
+        }
+    }
+
+    /**
+     * Current figures of an iteration started or resumed since startup, or null.
+     */
+    public IterationResultDto snapshot(String id) {
+        IterationRun run = find(id);
+        return run != null ? run.snapshot() : null;
+    }
+
+    public List<IterationResultDto> getIterations() {
+        List<IterationRun> current;
+        synchronized (runs) {
+            current = new ArrayList<>(runs.values());
+        }
+        List<IterationResultDto> snapshots = new ArrayList<>(current.size());
+        for (IterationRun run : current) {
+            snapshots.add(run.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Waits up to {@code millis} for an iteration to finish; true once it has (or is unknown).
+     */
+    public boolean awaitFinish(String id, long millis) throws InterruptedException {
+        IterationRun run = find(id);
+        return run == null || run.awaitFinish(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean hasResults(String id) {
+        Path results = resultsFile(id);
+        return results != null && Files.exists(results);
+    }
+
+    /**
+     * Copies the results written up to the last checkpoint to {@code out}: complete lines
+     * only, also while the iteration runs.
+     */
+    public void writeResults(String id, OutputStream out) throws IOException {
+        Path results = resultsFile(id);
+        if (results == null || !Files.exists(results)) {
+            return;
+        }
+        IterationRun run = find(id);
+        long length = run != null ? run.getOutputBytes()
+            : IterationRun.Checkpoint.read(results.getParent(), objectMapper).outputOffset;
+        try (FileChannel channel = FileChannel.open(results, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (long position = 0; position < length; ) {
+                long sent = channel.transferTo(position, length - position, target);
+                if (sent <= 0) break;
+                position += sent;
+            }
+        }
+    }
+
+    private Path resultsFile(String id) {
+        Path runDirectory = runDirectory(id);
+        return runDirectory != null ? runDirectory.resolve(IterationRun.RESULTS_FILE) : null;
+    }
+
+    /**
+     * Stops a running iteration, or deletes a finished one with its files; false if it is unknown.
+     */
+    public boolean stopOrRemove(String id) {
+        Path runDirectory = runDirectory(id);
+        if (runDirectory == null) return false;
+        synchronized (runs) {
+            IterationRun run = runs.get(id);
+            if (run != null && run.getState() == IterationRun.State.RUNNING) {
+                run.stop();
+                return true;
+            }
+            runs.remove(id);
+        }
+        try {
+            return FileSystemUtils.deleteRecursively(runDirectory);
+        } catch (IOException e) {
+            logger.warn("Could not delete iteration {}: {}", id, e.getMessage());
+            return true;
+        }
+    }
+}
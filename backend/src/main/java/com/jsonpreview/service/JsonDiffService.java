@@ -0,0 +1,344 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.jsonpreview.dto.DiffEntryDto;
+import com.jsonpreview.dto.DiffResultDto;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structural diff of two stored documents, e.g. the same request captured against two
+ * environments.
+ *
+ * Both structural indexes are walked together, depth first, so the walk holds one frame
+ * per level of nesting. A subtree whose bytes are identical on both sides is skipped
+ * without descending into it. Object members are paired in document order until the
+ * orders diverge; only then are the remaining members of that one object put in a map by
+ * name. Arrays pair elements by position, or by the value of a key member when one is
+ * given, with the same merge-then-map fallback; keyed matching reads the keys of the
+ * array being compared up front, so that array costs memory in proportion to its length.
+ */
+@Service
+public class JsonDiffService {
+
+    private final JsonDocumentService documentService;
+
+    public JsonDiffService(JsonDocumentService documentService) {
+        this.documentService = documentService;
+    }
+
+    /**
+     * Returns the first {@code limit} differences between {@code left} and {@code right}.
+     * The walk stops after one difference past the limit unless {@code countAll} asks for
+     * the totals.
+     *
+     * @param arrayKey member name matching array elements between the two sides, or null
+     *                 to match them by position; arrays whose elements don't all carry a
+     *                 unique scalar key are matched by position
+     */
+    public DiffResultDto diff(JsonDocument left, JsonDocument right, String arrayKey, int limit,
+                              int maxStringLength, boolean countAll) throws IOException {
+        long start = System.currentTimeMillis();
+        Walk walk = new Walk(left, right, arrayKey != null && !arrayKey.isEmpty() ? arrayKey : null,
+                             Math.max(limit, 0), maxStringLength, countAll);
+        walk.compare(0, 0);
+
+        DiffResultDto result = new DiffResultDto();
+        result.setLeftId(left.getId());
+        result.setRightId(right.getId());
+        result.setArrayKey(walk.key);
+        result.setLimit(walk.limit);
+        result.setDifferences(walk.entries);
+        result.setIdentical(walk.seen == 0);
+        result.setTruncated(walk.seen > walk.entries.size());
+        if (!walk.stopped) {
+            result.setAdded(walk.added);
+            result.setRemoved(walk.removed);
+            result.setChanged(walk.changed);
+        }
+        result.setComparedNodes(walk.compared);
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private final class Walk {
+        final JsonDocument left;
+        final JsonDocument right;
+        final JsonStructureIndex leftIndex;
+        final JsonStructureIndex rightIndex;
+        final String key;
+        final byte[] keyBytes;
+        final int limit;
+        final int maxStringLength;
+        final boolean countAll;
+        final Path leftPath = new Path();
+        final Path rightPath = new Path();
+        final List<DiffEntryDto> entries = new ArrayList<>();
+        long seen;
+        long added;
+        long removed;
+        long changed;
+        long compared;
+        boolean stopped;
+
+        Walk(JsonDocument left, JsonDocument right, String key, int limit, int maxStringLength, boolean countAll) {
+            this.left = left;
+            this.right = right;
+            this.leftIndex = left.getIndex();
+            this.rightIndex = right.getIndex();
+            this.key = key;
+            this.keyBytes = key != null ? key.getBytes(StandardCharsets.UTF_8) : null;
+            this.limit = limit;
+            this.maxStringLength = maxStringLength;
+            this.countAll = countAll;
+        }
+
+        void compare(int a, int b) throws IOException {
+            compared++;
+            if (left.valueSpan(a).equals(right.valueSpan(b))) return;
+
+            JsonStructureIndex.NodeType type = leftIndex.type(a);
+            if (type != rightIndex.type(b)) {
+                emit("changed", a, b);
+                return;
+            }
+            switch (type) {
+                case OBJECT:
+                    compareObjects(a, b);
+                    break;
+                case ARRAY:
+                    if (key == null || !compareByKey(a, b)) compareByPosition(a, b);
+                    break;
+                case STRING:
+                    // Escapes may differ, or just the brackets after the value
+                    if (!scalarText(left, a).equals(scalarText(right, b))) emit("changed", a, b);
+                    break;
+                case NUMBER:
+                    if (!sameNumber(a, b)) emit("changed", a, b);
+                    break;
+                case BOOLEAN:
+                    if (!scalarText(left, a).equals(scalarText(right, b))) emit("changed", a, b);
+                    break;
+                default:
+                    // Both null; the spans only differed in what follows the value
+                    break;
+            }
+        }
+
+        void compareObjects(int a, int b) throws IOException {
+            JsonStructureIndex.ChildCursor as = leftIndex.children(a);
+            JsonStructureIndex.ChildCursor bs = rightIndex.children(b);
+            while (!stopped && as.hasNext() && bs.hasNext() && sameName(as.peek(), bs.peek())) {
+                compareChildren(as.next(), -1, bs.next(), -1);
+            }
+            if (stopped || (!as.hasNext() && !bs.hasNext())) return;
+
+            // Member orders diverge: pair the rest of this object by name
+            Map<String, Integer> rest = new LinkedHashMap<>();
+            for (int member; (member = bs.next()) >= 0; ) {
+                rest.putIfAbsent(right.name(member), member);
+            }
+            for (int member; !stopped && (member = as.next()) >= 0; ) {
+                Integer match = rest.remove(left.name(member));
+                if (match != null) {
+                    compareChildren(member, -1, match, -1);
+                } else {
+                    leftPath.push(member, -1);
+                    emit("removed", member, -1);
+                    leftPath.pop();
+                }
+            }
+            for (int member : rest.values()) {
+                if (stopped) return;
+                rightPath.push(member, -1);
+                emit("added", -1, member);
+                rightPath.pop();
+            }
+        }
+
+        void compareByPosition(int a, int b) throws IOException {
+            JsonStructureIndex.ChildCursor as = leftIndex.children(a);
+            JsonStructureIndex.ChildCursor bs = rightIndex.children(b);
+            int position = 0;
+            for (; !stopped && as.hasNext() && bs.hasNext(); position++) {
+                compareChildren(as.next(), position, bs.next(), position);
+            }
+            for (int element, i = position; !stopped && (element = as.next()) >= 0; i++) {
+                leftPath.push(element, i);
+                emit("removed", element, -1);
+                leftPath.pop();
+            }
+            for (int element, i = position; !stopped && (element = bs.next()) >= 0; i++) {
+                rightPath.push(element, i);
+                emit("added", -1, element);
+                rightPath.pop();
+            }
+        }
+
+        /**
+         * Pairs elements by their key member; false, without comparing anything, if some
+         * element lacks a scalar key or a key repeats within one side.
+         */
+        boolean compareByKey(int a, int b) throws IOException {
+            String[] leftKeys = keys(left, a);
+            String[] rightKeys = leftKeys != null ? keys(right, b) : null;
+            if (rightKeys == null) return false;
+
+            JsonStructureIndex.ChildCursor as = leftIndex.children(a);
+            JsonStructureIndex.ChildCursor bs = rightIndex.children(b);
+            int i = 0;
+            int j = 0;
+            while (!stopped && i < leftKeys.length && j < rightKeys.length && leftKeys[i].equals(rightKeys[j])) {
+                compareChildren(as.next(), i++, bs.next(), j++);
+            }
+            if (stopped || (i == leftKeys.length && j == rightKeys.length)) return true;
+
+            // Orders diverge: pair the rest of this array through its keys
+            Map<String, int[]> rest = new LinkedHashMap<>();
+            for (; j < rightKeys.length; j++) {
+                rest.put(rightKeys[j], new int[] { bs.next(), j });
+            }
+            for (; !stopped && i < leftKeys.length; i++) {
+                int element = as.next();
+                int[] match = rest.remove(leftKeys[i]);
+                if (match != null) {
+                    compareChildren(element, i, match[0], match[1]);
+                } else {
+                    leftPath.push(element, i);
+                    emit("removed", element, -1);
+                    leftPath.pop();
+                }
+            }
+            for (int[] match : rest.values()) {
+                if (stopped) break;
+                rightPath.push(match[0], match[1]);
+                emit("added", -1, match[0]);
+                rightPath.pop();
+            }
+            return true;
+        }
+
+        String[] keys(JsonDocument document, int array) throws IOException {
+            JsonStructureIndex index = document.getIndex();
+            String[] keys = new String[index.childCount(array)];
+            Map<String, Boolean> distinct = new HashMap<>();
+            JsonStructureIndex.ChildCursor elements = index.children(array);
+            for (int n = 0; n < keys.length; n++) {
+                int element = elements.next();
+                if (index.type(element) != JsonStructureIndex.NodeType.OBJECT) return null;
+                int member = document.findMember(element, key, keyBytes);
+                if (member < 0 || index.isContainer(member)) return null;
+                // Tagged with the type, so "1" and 1 are different keys
+                keys[n] = index.type(member).ordinal() + scalarText(document, member);
+                if (distinct.put(keys[n], Boolean.TRUE) != null) return null;
+            }
+            return keys;
+        }
+
+        void compareChildren(int a, int aIndex, int b, int bIndex) throws IOException {
+            leftPath.push(a, aIndex);
+            rightPath.push(b, bIndex);
+            compare(a, b);
+            rightPath.pop();
+            leftPath.pop();
+        }
+
+        boolean sameName(int a, int b) throws IOException {
+            ByteBuffer leftName = left.rawName(a);
+            ByteBuffer rightName = right.rawName(b);
+            if (leftName.equals(rightName)) return true;
+            // The same name may be escaped differently
+            return (hasEscape(leftName) || hasEscape(rightName)) && left.name(a).equals(right.name(b));
+        }
+
+        boolean sameNumber(int a, int b) throws IOException {
+            try (JsonParser leftParser = left.valueParser(a); JsonParser rightParser = right.valueParser(b)) {
+                return leftParser.getDecimalValue().compareTo(rightParser.getDecimalValue()) == 0;
+            }
+        }
+
+        void emit(String op, int a, int b) throws IOException {
+            long position = seen++;
+            switch (op) {
+                case "added": added++; break;
+                case "removed": removed++; break;
+                default: changed++; break;
+            }
+            if (position < limit) {
+                DiffEntryDto entry = new DiffEntryDto();
+                entry.setOp(op);
+                if (a >= 0) {
+                    entry.setLeft(documentService.describe(left, a, leftPath.toPointer(left), maxStringLength));
+                }
+                if (b >= 0) {
+                    entry.setRight(documentService.describe(right, b, rightPath.toPointer(right), maxStringLength));
+                }
+                entry.setPath(a >= 0 ? entry.getLeft().getPointer() : entry.getRight().getPointer());
+                entries.add(entry);
+            } else if (!countAll) {
+                // One difference past the limit tells the result is truncated
+                stopped = true;
+            }
+        }
+    }
+
+    private static String scalarText(JsonDocument document, int node) throws IOException {
+        try (JsonParser parser = document.valueParser(node)) {
+            return parser.getText();
+        }
+    }
+
+    private static boolean hasEscape(ByteBuffer name) {
+        for (int i = 0; i < name.limit(); i++) {
+            if (name.get(i) == '\\') return true;
+        }
+        return false;
+    }
+
+    /**
+     * The nodes leading from the root to the node being compared, turned into a JSON
+     * Pointer only when a difference is reported.
+     */
+    private static final class Path {
+        private int[] nodes = new int[16];
+        // Array position, or -1 for an object member
+        private int[] positions = new int[16];
+        private int depth;
+
+        void push(int node, int position) {
+            if (depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                positions = Arrays.copyOf(positions, depth * 2);
+            }
+            nodes[depth] = node;
+            positions[depth] = position;
+            depth++;
+        }
+
+        void pop() {
+            depth--;
+        }
+
+        String toPointer(JsonDocument document) throws IOException {
+            StringBuilder pointer = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                pointer.append('/');
+                if (positions[i] >= 0) {
+                    pointer.append(positions[i]);
+                } else {
+                    pointer.append(document.name(nodes[i]).replace("~", "~0").replace("/", "~1"));
+                }
+            }
+            return pointer.toString();
+        }
+    }
+}
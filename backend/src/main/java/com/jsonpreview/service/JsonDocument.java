@@ -0,0 +1,394 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stored JSON document: its raw bytes plus a {@link JsonStructureIndex}. Nothing else
+ * is kept; names and values are parsed from the bytes at the indexed offsets when asked for.
+ *
+ * The bytes are either a heap array or a mapped {@link DocumentFile}. A mapped document
+ * is reference-counted through its file: readers {@link #retain()} it and {@link #close()}
+ * it when done, and the store closes its own reference on eviction.
+ */
+public final class JsonDocument implements Closeable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int BYTES_PER_NODE = 10;
+    private static final int MAX_INITIAL_NODES = 1 << 20;
+    // Heap per node while indexing: structure (offset, type, container share) and, with
+    // words, about one occurrence of two ints plus its posting
+    private static final int STRUCTURE_BYTES_PER_NODE = 7;
+    private static final int SEARCH_BYTES_PER_NODE = 12;
+
+    private final String id;
+    private final String name;
+    private final ByteBuffer content;
+    private final JsonStructureIndex index;
+    private final JsonSearchIndex searchIndex;
+    private final long indexTimeMs;
+    private final DocumentFile file;
+    private volatile long lastAccess;
+
+    private JsonDocument(String id, String name, ByteBuffer content, JsonStructureIndex index,
+                         JsonSearchIndex searchIndex, long indexTimeMs, DocumentFile file) {
+        this.id = id;
+        this.name = name;
+        this.content = content;
+        this.index = index;
+        this.searchIndex = searchIndex;
+        this.indexTimeMs = indexTimeMs;
+        this.file = file;
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Indexes {@code content} (positioned at 0, limit = document size), with a
+     * {@link JsonSearchIndex} built in the same pass when {@code searchable}.
+     *
+     * @throws IOException if the content is not a single well-formed UTF-8 JSON value
+     */
+    public static JsonDocument index(String id, String name, ByteBuffer content, boolean searchable) throws IOException {
+        return create(id, name, content, searchable, null);
+    }
+
+    /**
+     * Indexes a mapped document; the document takes over the caller's reference to {@code file}.
+     */
+    public static JsonDocument index(String id, String name, DocumentFile file, boolean searchable) throws IOException {
+        boolean indexed = false;
+        try {
+            JsonDocument document = create(id, name, file.getContent(), searchable, file);
+            indexed = true;
+            return document;
+        } finally {
+            if (!indexed) file.release();
+        }
+    }
+
+    private static JsonDocument create(String id, String name, ByteBuffer content, boolean searchable,
+                                       DocumentFile file) throws IOException {
+        if (!isUtf8(content)) {
+            // Nodes are parsed starting mid-document, where other encodings can't be detected
+            throw new IOException("Only UTF-8 documents are supported");
+        }
+        long start = System.currentTimeMillis();
+        // Dense JSON averages about 10 bytes per value; a close guess avoids regrowing the
+        // arrays, but large documents start smaller so sparse ones don't reserve heap for nothing
+        int expectedNodes = Math.min(content.limit() / BYTES_PER_NODE, MAX_INITIAL_NODES);
+        JsonSearchIndex.Builder words = searchable ? new JsonSearchIndex.Builder(expectedNodes) : null;
+        JsonStructureIndex index;
+        try (JsonParser parser = parserAt(content, 0, content.limit())) {
+            index = JsonStructureIndex.build(parser, expectedNodes, words);
+        }
+        JsonSearchIndex searchIndex = words != null ? words.build() : null;
+        return new JsonDocument(id, name, content, index, searchIndex, System.currentTimeMillis() - start, file);
+    }
+
+    /**
+     * Heap likely needed to index a document of {@code size} bytes, counting the bytes
+     * themselves unless they are mapped; a guess from the average value density.
+     */
+    public static long estimateHeapBytes(long size, boolean mapped, boolean searchable) {
+        long nodes = size / BYTES_PER_NODE;
+        return (mapped ? 0 : size) + nodes * STRUCTURE_BYTES_PER_NODE
+            + (searchable ? nodes * SEARCH_BYTES_PER_NODE : 0);
+    }
+
+    public String getId() { return id; }
+
+    public String getName() { return name; }
+
+    public long getSize() { return content.limit(); }
+
+    public JsonStructureIndex getIndex() { return index; }
+
+    /**
+     * Word index of the document, or null if it was stored without one.
+     */
+    public JsonSearchIndex getSearchIndex() { return searchIndex; }
+
+    /**
+     * Time taken to parse the document and build its indexes.
+     */
+    public long getIndexTimeMs() { return indexTimeMs; }
+
+    public boolean isMapped() { return file != null; }
+
+    /**
+     * Heap held by the document; the bytes of a mapped document are not counted.
+     */
+    public long getEstimatedBytes() {
+        return (file != null ? 0 : content.limit()) + index.memoryBytes()
+            + (searchIndex != null ? searchIndex.memoryBytes() : 0);
+    }
+
+    public long getMappedBytes() { return file != null ? content.limit() : 0; }
+
+    public long getLastAccess() { return lastAccess; }
+
+    void touch() { lastAccess = System.currentTimeMillis(); }
+
+    /**
+     * Takes a reader reference, to be released with {@link #close()}; false once the
+     * document's file has been released for good.
+     */
+    public boolean retain() {
+        return file == null || file.retain();
+    }
+
+    /**
+     * Releases one reference.
+     */
+    @Override
+    public void close() {
+        if (file != null) file.release();
+    }
+
+    /**
+     * Node addressed by an RFC 6901 pointer, or -1 if there is none.
+     */
+    public int resolve(JsonPointer pointer) throws IOException {
+        int node = 0;
+        for (JsonPointer step = pointer; !step.matches(); step = step.tail()) {
+            switch (index.type(node)) {
+                case ARRAY:
+                    node = index.child(node, step.getMatchingIndex());
+                    break;
+                case OBJECT:
+                    node = findMember(node, step.getMatchingProperty());
+                    break;
+                default:
+                    return -1;
+            }
+            if (node < 0) return -1;
+        }
+        return node;
+    }
+
+    /**
+     * Finds the JSON Pointers of nodes given in ascending order, descending from the
+     * root only once: each lookup continues from the path of the previous one.
+     */
+    public PointerFinder pointerFinder() {
+        return new PointerFinder();
+    }
+
+    public final class PointerFinder {
+        private final List<Frame> path = new ArrayList<>();
+
+        private PointerFinder() {
+            path.add(new Frame(0));
+        }
+
+        /**
+         * @throws IllegalArgumentException if {@code node} precedes the previous lookup
+         */
+        public String pointerOf(int node) throws IOException {
+            // Back up to the deepest container still enclosing the node
+            while (path.size() > 1 && node >= index.end(path.get(path.size() - 1).container)) {
+                path.remove(path.size() - 1);
+            }
+            Frame frame = path.get(path.size() - 1);
+            while (frame.container != node) {
+                if (frame.child > node) {
+                    throw new IllegalArgumentException("Nodes must be looked up in ascending order");
+                }
+                // Advance to the child whose subtree holds the node
+                while (frame.child < 0 || (frame.children.peek() >= 0 && frame.children.peek() <= node)) {
+                    frame.child = frame.children.next();
+                    frame.position++;
+                }
+                if (frame.child == node) break;
+                frame = new Frame(frame.child);
+                path.add(frame);
+            }
+
+            StringBuilder pointer = new StringBuilder();
+            for (Frame step : path) {
+                if (step.child < 0 || step.container == node) break;
+                pointer.append('/');
+                if (index.type(step.container) == JsonStructureIndex.NodeType.ARRAY) {
+                    pointer.append(step.position);
+                } else {
+                    pointer.append(name(step.child).replace("~", "~0").replace("/", "~1"));
+                }
+                if (step.child == node) break;
+            }
+            return pointer.toString();
+        }
+    }
+
+    private final class Frame {
+        final int container;
+        final JsonStructureIndex.ChildCursor children;
+        int child = -1;
+        int position = -1;
+
+        Frame(int container) {
+            this.container = container;
+            this.children = index.children(container);
+        }
+    }
+
+    /**
+     * Parser positioned on the value token of {@code node} (after the member name, if any).
+     */
+    public JsonParser valueParser(int node) throws IOException {
+        int offset = index.offset(node);
+        if (index.isMember(node)) offset = skipName(offset);
+        // A root-level number must be followed by whitespace, so the parser only sees the number
+        int end = index.type(node) == JsonStructureIndex.NodeType.NUMBER ? numberEnd(offset) : content.limit();
+        JsonParser parser = parserAt(content, offset, end);
+        parser.nextToken();
+        return parser;
+    }
+
+    /**
+     * Offset of the value following the member name that starts at {@code offset}. A
+     * parser started on the name would reject the colon, so the name is skipped here;
+     * in UTF-8 no byte of a multi-byte character can be mistaken for a quote or backslash.
+     */
+    private int skipName(int offset) {
+        int i = offset + 1;
+        for (byte b; (b = content.get(i)) != '"'; i++) {
+            if (b == '\\') i++;
+        }
+        for (i++; ; i++) {
+            byte b = content.get(i);
+            if (b != ':' && b != ' ' && b != '\t' && b != '\n' && b != '\r') return i;
+        }
+    }
+
+    private int numberEnd(int offset) {
+        int i = offset;
+        while (i < content.limit()) {
+            byte b = content.get(i);
+            if ((b < '0' || b > '9') && b != '-' && b != '+' && b != '.' && b != 'e' && b != 'E') break;
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Bytes from the start of {@code node}'s value to the start of the next node, less
+     * trailing whitespace and commas: the value followed by the closing brackets of any
+     * containers it is last in. A JSON value ends where its bytes say it does, so two nodes
+     * with equal spans hold equal values.
+     */
+    ByteBuffer valueSpan(int node) {
+        int start = index.offset(node);
+        if (index.isMember(node)) start = skipName(start);
+        int next = index.end(node);
+        int end = next < index.size() ? index.offset(next) : content.limit();
+        while (end > start) {
+            byte b = content.get(end - 1);
+            if (b != ',' && b != ' ' && b != '\t' && b != '\n' && b != '\r') break;
+            end--;
+        }
+        return content.slice(start, end - start);
+    }
+
+    /**
+     * Raw UTF-8 bytes of a member name between its quotes, escapes left as written.
+     */
+    ByteBuffer rawName(int node) {
+        int start = index.offset(node) + 1;
+        int i = start;
+        for (byte b; (b = content.get(i)) != '"'; i++) {
+            if (b == '\\') i++;
+        }
+        return content.slice(start, i - start);
+    }
+
+    /**
+     * Member name of an object member node.
+     */
+    public String name(int node) throws IOException {
+        // Parsed on its own, the name reads as a root-level string
+        try (JsonParser parser = parserAt(content, index.offset(node), content.limit())) {
+            parser.nextToken();
+            return parser.getText();
+        }
+    }
+
+    /**
+     * Member of an object node with the given name, or -1.
+     */
+    int findMember(int object, String name) throws IOException {
+        return findMember(object, name, name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Same, with the name's UTF-8 bytes computed once by the caller.
+     */
+    int findMember(int object, String name, byte[] expected) throws IOException {
+        boolean plain = isPlain(expected);
+        JsonStructureIndex.ChildCursor children = index.children(object);
+        for (int child; (child = children.next()) >= 0; ) {
+            if (plain ? rawNameEquals(child, expected) : name.equals(name(child))) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares a member name against UTF-8 bytes without decoding it. Only valid for
+     * names with nothing that needs escaping; a raw name containing escapes is decoded.
+     */
+    private boolean rawNameEquals(int node, byte[] expected) throws IOException {
+        int start = index.offset(node) + 1;
+        int closing = start + expected.length;
+        if (closing < content.limit() && content.get(closing) == '"') {
+            boolean same = true;
+            for (int i = 0; i < expected.length; i++) {
+                if (content.get(start + i) != expected[i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) return true;
+        }
+        for (int i = start; i < content.limit(); i++) {
+            byte b = content.get(i);
+            if (b == '"') return false;
+            if (b == '\\') return new String(expected, StandardCharsets.UTF_8).equals(name(node));
+        }
+        return false;
+    }
+
+    private static boolean isPlain(byte[] name) {
+        for (byte b : name) {
+            if (b == '"' || b == '\\' || (b >= 0 && b < 0x20)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isUtf8(ByteBuffer content) {
+        if (content.limit() < 2) return true;
+        byte first = content.get(0);
+        byte second = content.get(1);
+        // UTF-16/32 either start with a BOM or have a zero byte next to the first ASCII char
+        return first != 0 && second != 0 && first != (byte) 0xFE && first != (byte) 0xFF;
+    }
+
+    static JsonParser parserAt(ByteBuffer content, int offset, int end) throws IOException {
+        if (content.hasArray()) {
+            return JSON_FACTORY.createParser(content.array(), content.arrayOffset() + offset, end - offset);
+        }
+        ByteBuffer view = content.duplicate();
+        view.limit(end).position(offset);
+        return JSON_FACTORY.createParser(new ByteBufferBackedInputStream(view));
+    }
+}
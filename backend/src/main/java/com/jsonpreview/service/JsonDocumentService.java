@@ -0,0 +1,351 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.jsonpreview.dto.DocumentNodeDto;
+import com.jsonpreview.dto.QueryResultDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads JSON documents into the {@link DocumentStore} and serves them a page of
+ * children at a time, so a client can expand a large document lazily.
+ */
+@Service
+public class JsonDocumentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonDocumentService.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int MAX_HIGHLIGHTS = 100;
+
+    private final DocumentStore store;
+    private final HotPathMetrics metrics;
+    private final long spillThreshold;
+    private final boolean searchableByDefault;
+
+    public JsonDocumentService(DocumentStore store,
+                               HotPathMetrics metrics,
+                               @Value("${documents.spill-threshold:64MB}") DataSize spillThreshold,
+                               @Value("${documents.search-index:true}") boolean searchableByDefault) {
+        this.store = store;
+        this.metrics = metrics;
+        this.spillThreshold = spillThreshold.toBytes();
+        this.searchableByDefault = searchableByDefault;
+    }
+
+    /**
+     * Indexes an uploaded JSON file and stores it, replacing any document with the same
+     * id; a new id is generated when {@code documentId} is null. Files larger than
+     * {@code documents.spill-threshold} are spooled to disk and mapped, so only their
+     * index is held on the heap. {@code searchable} also builds the word index used by
+     * {@link #search}; it defaults to {@code documents.search-index} for documents kept on
+     * the heap and to off for mapped ones.
+     *
+     * @throws IOException if the file is not a single well-formed JSON value
+     * @throws IllegalStateException if its indexes would not fit {@code documents.memory-budget}
+     */
+    public JsonDocument upload(MultipartFile file, String documentId, Boolean searchable) throws IOException {
+        if (file.getSize() > Integer.MAX_VALUE) {
+            throw new IOException("Documents larger than 2GB are not supported");
+        }
+        boolean mapped = file.getSize() > spillThreshold;
+        boolean words = searchable(searchable, mapped);
+        store.requireCapacity(JsonDocument.estimateHeapBytes(file.getSize(), mapped, words));
+        String id = documentId != null && !documentId.isBlank() ? documentId : UUID.randomUUID().toString();
+        long start = System.nanoTime();
+
+        JsonDocument document;
+        if (mapped) {
+            document = JsonDocument.index(id, file.getOriginalFilename(), DocumentFile.spool(file), words);
+        } else {
+            byte[] content = new byte[(int) file.getSize()];
+            try (InputStream in = file.getInputStream()) {
+                if (in.readNBytes(content, 0, content.length) != content.length) {
+                    throw new IOException("Upload ended early");
+                }
+            }
+            document = JsonDocument.index(id, file.getOriginalFilename(), ByteBuffer.wrap(content), words);
+        }
+        long nanos = System.nanoTime() - start;
+        metrics.recordUpload(HotPathMetrics.UPLOAD_DOCUMENT, file.getSize(), nanos);
+        logIndexed(document, TimeUnit.NANOSECONDS.toMillis(nanos));
+        store.publish(document);
+        return document;
+    }
+
+    /**
+     * Stores the body of an executed request as a document, so it can be browsed and
+     * queried like an upload. The body is spooled to a temp file while it arrives and kept
+     * mapped when it is larger than {@code documents.spill-threshold}.
+     *
+     * @throws IOException if the body is not a single well-formed UTF-8 JSON value
+     * @throws IllegalStateException if its indexes would not fit {@code documents.memory-budget}
+     */
+    public JsonDocument capture(UpstreamStream upstream, String documentId, Boolean searchable) throws IOException {
+        String id = documentId != null && !documentId.isBlank() ? documentId : UUID.randomUUID().toString();
+        long start = System.currentTimeMillis();
+
+        Path path = Files.createTempFile("document-", ".json");
+        JsonDocument document;
+        try {
+            try (OutputStream out = Files.newOutputStream(path)) {
+                upstream.writeTo(out, false);
+            }
+            long size = Files.size(path);
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Documents larger than 2GB are not supported");
+            }
+            boolean mapped = size > spillThreshold;
+            boolean words = searchable(searchable, mapped);
+            store.requireCapacity(JsonDocument.estimateHeapBytes(size, mapped, words));
+            if (mapped) {
+                document = JsonDocument.index(id, upstream.getRequestName(), DocumentFile.map(path), words);
+            } else {
+                byte[] content = Files.readAllBytes(path);
+                Files.deleteIfExists(path);
+                document = JsonDocument.index(id, upstream.getRequestName(), ByteBuffer.wrap(content), words);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        logIndexed(document, System.currentTimeMillis() - start);
+        store.publish(document);
+        return document;
+    }
+
+    /**
+     * Whether to build the word index: as asked, else by default only for heap documents,
+     * since the index of a mapped one would be held on the heap in full.
+     */
+    private boolean searchable(Boolean requested, boolean mapped) {
+        return requested != null ? requested : searchableByDefault && !mapped;
+    }
+
+    private static void logIndexed(JsonDocument document, long elapsedMs) {
+        JsonSearchIndex words = document.getSearchIndex();
+        logger.info("Stored {} document {} of {} bytes in {} ms: {} nodes ({} index bytes), {} words ({} search index bytes), indexed in {} ms",
+                    document.isMapped() ? "mapped" : "heap", document.getId(), document.getSize(), elapsedMs,
+                    document.getIndex().size(), document.getIndex().memoryBytes(),
+                    words != null ? words.termCount() : 0, words != null ? words.memoryBytes() : 0,
+                    document.getIndexTimeMs());
+    }
+
+    /**
+     * The document with a reader reference taken, or null; close it when done.
+     */
+    public JsonDocument openDocument(String id) {
+        return store.acquire(id);
+    }
+
+    public List<JsonDocument> getDocuments() {
+        return new ArrayList<>(store.getDocuments());
+    }
+
+    public boolean removeDocument(String id) {
+        return store.remove(id);
+    }
+
+    /**
+     * Resolves an RFC 6901 pointer ("" is the root) to a node, or -1 if nothing is there.
+     *
+     * @throws IllegalArgumentException if the pointer is malformed
+     */
+    public int resolve(JsonDocument document, String pointer) throws IOException {
+        return document.resolve(JsonPointer.compile(pointer != null ? pointer : ""));
+    }
+
+    /**
+     * Describes {@code node} and, for a container, children {@code offset} to
+     * {@code offset + limit - 1}. Children are described one level deep: containers by
+     * type and child count, scalars by value, with strings cut at {@code maxStringLength}.
+     */
+    public DocumentNodeDto describe(JsonDocument document, int node, String pointer,
+                                    int offset, int limit, int maxStringLength) throws IOException {
+        JsonStructureIndex index = document.getIndex();
+        DocumentNodeDto dto = describe(document, node, pointer, maxStringLength);
+        if (!index.isContainer(node)) return dto;
+
+        int count = index.childCount(node);
+        int from = Math.min(Math.max(offset, 0), count);
+        int to = (int) Math.min(count, (long) from + Math.max(limit, 0));
+        boolean array = index.type(node) == JsonStructureIndex.NodeType.ARRAY;
+
+        List<DocumentNodeDto> children = new ArrayList<>(to - from);
+        JsonStructureIndex.ChildCursor cursor = index.children(node);
+        cursor.skip(from);
+        for (int i = from; i < to; i++) {
+            int child = cursor.next();
+            String segment = array ? Integer.toString(i) : document.name(child);
+            DocumentNodeDto childDto = describe(document, child, pointer + "/" + escape(segment), maxStringLength);
+            if (array) {
+                childDto.setIndex(i);
+            } else {
+                childDto.setName(segment);
+            }
+            children.add(childDto);
+        }
+        dto.setChildren(children);
+        return dto;
+    }
+
+    /**
+     * Describes a single node: containers by type and child count, scalars by value.
+     */
+    public DocumentNodeDto describe(JsonDocument document, int node, String pointer,
+                                    int maxStringLength) throws IOException {
+        JsonStructureIndex index = document.getIndex();
+        DocumentNodeDto dto = new DocumentNodeDto();
+        dto.setPointer(pointer);
+        dto.setType(index.type(node).name().toLowerCase());
+        if (index.isContainer(node)) {
+            dto.setChildCount(index.childCount(node));
+            return dto;
+        }
+        try (JsonParser parser = document.valueParser(node)) {
+            switch (index.type(node)) {
+                case STRING:
+                    String text = parser.getText();
+                    if (text.length() > maxStringLength) {
+                        dto.setValue(text.substring(0, maxStringLength));
+                        dto.setTruncated(true);
+                    } else {
+                        dto.setValue(text);
+                    }
+                    break;
+                case NUMBER:
+                    dto.setValue(parser.getNumberValue());
+                    break;
+                case BOOLEAN:
+                    dto.setValue(parser.getBooleanValue());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return dto;
+    }
+
+    /**
+     * Finds nodes whose member name ({@code keys}) and/or scalar value ({@code values})
+     * contains {@code text}, ignoring case, and returns matches {@code offset} to
+     * {@code offset + limit - 1} in document order with the character ranges that matched.
+     * Candidates come from the word index, so a query must contain whole words; each
+     * candidate is then checked against the actual text.
+     *
+     * @throws IllegalArgumentException if the text has no letters or digits
+     * @throws IllegalStateException if the document was stored without a word index
+     */
+    public QueryResultDto search(JsonDocument document, String text, boolean keys, boolean values,
+                                 int offset, int limit, int maxStringLength, boolean countAll) throws IOException {
+        long start = System.currentTimeMillis();
+        JsonSearchIndex words = document.getSearchIndex();
+        if (words == null) {
+            throw new IllegalStateException("Document " + document.getId() + " was stored without a search index");
+        }
+        int[] candidates = text != null ? words.candidates(text) : null;
+        if (candidates == null) {
+            throw new IllegalArgumentException("Search text must contain letters or digits");
+        }
+
+        int from = Math.max(offset, 0);
+        int pageSize = Math.max(limit, 0);
+        JsonStructureIndex index = document.getIndex();
+        JsonDocument.PointerFinder pointers = document.pointerFinder();
+        List<DocumentNodeDto> matches = new ArrayList<>(Math.min(pageSize, 1024));
+        long seen = 0;
+        for (int node : candidates) {
+            List<int[]> nameHighlights = null;
+            List<int[]> valueHighlights = null;
+            String name = null;
+            if (keys && index.isMember(node)) {
+                name = document.name(node);
+                nameHighlights = highlights(name, text);
+            }
+            if (values && isText(index.type(node))) {
+                try (JsonParser parser = document.valueParser(node)) {
+                    valueHighlights = highlights(parser.getText(), text);
+                }
+            }
+            if (nameHighlights == null && valueHighlights == null) continue;
+
+            long position = seen++;
+            if (position >= from && position - from < pageSize) {
+                DocumentNodeDto match = describe(document, node, pointers.pointerOf(node), maxStringLength);
+                match.setName(name != null || !index.isMember(node) ? name : document.name(node));
+                match.setNameHighlights(nameHighlights);
+                match.setValueHighlights(valueHighlights);
+                matches.add(match);
+            } else if (!countAll && position >= (long) from + pageSize) {
+                break;
+            }
+        }
+
+        QueryResultDto result = new QueryResultDto();
+        result.setDocumentId(document.getId());
+        result.setExpression(text);
+        result.setOffset(from);
+        result.setLimit(pageSize);
+        result.setMatches(matches);
+        result.setHasMore(seen > (long) from + pageSize);
+        if (countAll) result.setTotal(seen);
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private static boolean isText(JsonStructureIndex.NodeType type) {
+        return type == JsonStructureIndex.NodeType.STRING || type == JsonStructureIndex.NodeType.NUMBER;
+    }
+
+    /**
+     * [start, end) character ranges where {@code text} occurs in {@code value} ignoring
+     * case, or null if it doesn't.
+     */
+    private static List<int[]> highlights(String value, String text) {
+        List<int[]> ranges = null;
+        int length = text.length();
+        for (int i = 0; i + length <= value.length() && (ranges == null || ranges.size() < MAX_HIGHLIGHTS); i++) {
+            if (value.regionMatches(true, i, text, 0, length)) {
+                if (ranges == null) ranges = new ArrayList<>();
+                ranges.add(new int[] { i, i + length });
+                i += Math.max(length, 1) - 1;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Writes the JSON of one node, re-serialized from the stored bytes.
+     */
+    public void writeValue(JsonDocument document, int node, OutputStream out, boolean pretty) throws IOException {
+        try (JsonParser parser = document.valueParser(node);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (pretty) generator.useDefaultPrettyPrinter();
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    private static String escape(String segment) {
+        return segment.replace("~", "~0").replace("/", "~1");
+    }
+}
@@ -0,0 +1,696 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.jsonpreview.service.JsonStructureIndex.NodeType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled JSONPath or JSON Pointer expression, evaluated over a {@link JsonDocument}.
+ *
+ * An expression starting with {@code /} (or the empty string) is an RFC 6901 pointer.
+ * Otherwise it is JSONPath: {@code $} followed by {@code .name}, {@code ['name']},
+ * {@code [n]} (negative counts from the end), {@code [a,b]} unions, {@code [start:end:step]}
+ * slices, {@code *} wildcards, {@code ..} recursive descent and {@code [?(...)]} filters
+ * comparing {@code @}-relative paths with literals ({@code == != < <= > >=},
+ * {@code &&}, {@code ||}; a bare path tests existence).
+ *
+ * Evaluation walks the structural index: unmatched subtrees are skipped by jumping to the
+ * next sibling, member names are compared against the raw bytes, and only values a filter
+ * compares are parsed. No objects are built for the document. Matches are reported in
+ * document order per step, and the sink can stop the walk at any point, so paging through
+ * the first results of a query over a huge document only visits what it needs.
+ */
+public final class JsonQuery {
+
+    /**
+     * Receives matches; returning false stops the evaluation.
+     */
+    public interface MatchSink {
+        boolean accept(int node, Location location) throws IOException;
+    }
+
+    private final String source;
+    private final JsonPointer pointer;
+    private final Step[] steps;
+
+    private JsonQuery(String source, JsonPointer pointer, Step[] steps) {
+        this.source = source;
+        this.pointer = pointer;
+        this.steps = steps;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static JsonQuery compile(String expression) {
+        if (expression == null) expression = "";
+        String trimmed = expression.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("/")) {
+            return new JsonQuery(expression, JsonPointer.compile(trimmed), null);
+        }
+        return new JsonQuery(expression, null, new PathParser(trimmed).parsePath());
+    }
+
+    public String getSource() { return source; }
+
+    /**
+     * Whether the expression is a JSON Pointer, matching at most one node.
+     */
+    public boolean isPointer() { return pointer != null; }
+
+    public void evaluate(JsonDocument document, MatchSink sink) throws IOException {
+        if (pointer != null) {
+            int node = document.resolve(pointer);
+            if (node >= 0) sink.accept(node, new Location(document, pointer.toString()));
+            return;
+        }
+        new Evaluation(document, sink).walk(0, 0, new Location(document, ""));
+    }
+
+    /**
+     * Path of a match, turned into a JSON Pointer only when asked for; member names are
+     * read from the document at that point.
+     */
+    public static final class Location {
+        private final JsonDocument document;
+        private final Location parent;
+        private final int node;
+        private final int index;
+        private String name;
+        private String pointer;
+
+        private Location(JsonDocument document, String pointer) {
+            this(document, null, 0, -1, null);
+            this.pointer = pointer;
+        }
+
+        private Location(JsonDocument document, Location parent, int node, int index, String name) {
+            this.document = document;
+            this.parent = parent;
+            this.node = node;
+            this.index = index;
+            this.name = name;
+        }
+
+        Location element(int node, int index) {
+            return new Location(document, this, node, index, null);
+        }
+
+        Location member(int node, String name) {
+            return new Location(document, this, node, -1, name);
+        }
+
+        public String toPointer() throws IOException {
+            if (pointer == null) {
+                String segment = index >= 0 ? Integer.toString(index) : escape(getName());
+                pointer = parent.toPointer() + "/" + segment;
+            }
+            return pointer;
+        }
+
+        /**
+         * Member name, or null for array elements and the root.
+         */
+        public String getName() throws IOException {
+            if (name == null && index < 0 && parent != null) {
+                name = document.name(node);
+            }
+            return name;
+        }
+
+        /**
+         * Array index, or -1 for object members and the root.
+         */
+        public int getIndex() { return index; }
+
+        private static String escape(String segment) {
+            return segment.replace("~", "~0").replace("/", "~1");
+        }
+    }
+
+    private final class Evaluation {
+        final JsonDocument document;
+        final JsonStructureIndex index;
+        final MatchSink sink;
+
+        Evaluation(JsonDocument document, MatchSink sink) {
+            this.document = document;
+            this.index = document.getIndex();
+            this.sink = sink;
+        }
+
+        boolean walk(int step, int node, Location location) throws IOException {
+            if (step == steps.length) return sink.accept(node, location);
+            return steps[step].apply(this, node, location, step + 1);
+        }
+
+        /**
+         * Visits the children of a container in order; {@code visitor} returning false stops.
+         */
+        boolean forEachChild(int node, Location location, ChildVisitor visitor) throws IOException {
+            if (!index.isContainer(node)) return true;
+            boolean array = index.type(node) == NodeType.ARRAY;
+            JsonStructureIndex.ChildCursor children = index.children(node);
+            for (int i = 0, child; (child = children.next()) >= 0; i++) {
+                Location childLocation = array ? location.element(child, i) : location.member(child, null);
+                if (!visitor.visit(child, childLocation)) return false;
+            }
+            return true;
+        }
+    }
+
+    private interface ChildVisitor {
+        boolean visit(int child, Location location) throws IOException;
+    }
+
+    private abstract static class Step {
+        /**
+         * Applies the step to {@code node} and continues the walk at {@code next} for
+         * every node it selects; false once the sink asked to stop.
+         */
+        abstract boolean apply(Evaluation evaluation, int node, Location location, int next) throws IOException;
+    }
+
+    private static final class NameStep extends Step {
+        private final String[] names;
+        private final byte[][] utf8Names;
+
+        NameStep(String[] names) {
+            this.names = names;
+            this.utf8Names = new byte[names.length][];
+            for (int i = 0; i < names.length; i++) {
+                utf8Names[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        boolean apply(Evaluation evaluation, int node, Location location, int next) throws IOException {
+            if (evaluation.index.type(node) != NodeType.OBJECT) return true;
+            for (int i = 0; i < names.length; i++) {
+                int member = evaluation.document.findMember(node, names[i], utf8Names[i]);
+                if (member >= 0 && !evaluation.walk(next, member, location.member(member, names[i]))) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class IndexStep extends Step {
+        private final int[] indices;
+
+        IndexStep(int[] indices) {
+            this.indices = indices;
+        }
+
+        @Override
+        boolean apply(Evaluation evaluation, int node, Location location, int next) throws IOException {
+            JsonStructureIndex index = evaluation.index;
+            if (index.type(node) != NodeType.ARRAY) return true;
+            int count = index.childCount(node);
+            for (int i : indices) {
+                int position = i < 0 ? count + i : i;
+                int element = index.child(node, position);
+                if (element >= 0 && !evaluation.walk(next, element, location.element(element, position))) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class SliceStep extends Step {
+        private final Integer start;
+        private final Integer end;
+        private final int step;
+
+        SliceStep(Integer start, Integer end, int step) {
+            this.start = start;
+            this.end = end;
+            this.step = step;
+        }
+
+        @Override
+        boolean apply(Evaluation evaluation, int node, Location location, int next) throws IOException {
+            JsonStructureIndex index = evaluation.index;
+            if (index.type(node) != NodeType.ARRAY || step == 0) return true;
+            int count = index.childCount(node);
+            if (step > 0) {
+                int from = bound(start, 0, count);
+                int to = bound(end, count, count);
+                JsonStructureIndex.ChildCursor elements = index.children(node);
+                elements.skip(from);
+                for (int i = from; i < to; i++) {
+                    int element = elements.next();
+                    if ((i - from) % step == 0 && !evaluation.walk(next, element, location.element(element, i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            // Backwards: collect the selected elements first, sibling links only go forward
+            int from = Math.min(bound(start, count - 1, count), count - 1);
+            int to = end == null ? -1 : Math.max(normalize(end, count), -1);
+            List<int[]> selected = new ArrayList<>();
+            JsonStructureIndex.ChildCursor elements = index.children(node);
+            for (int i = 0; i <= from; i++) {
+                int element = elements.next();
+                if (i > to && (from - i) % -step == 0) selected.add(new int[] { element, i });
+            }
+            for (int k = selected.size() - 1; k >= 0; k--) {
+                int[] entry = selected.get(k);
+                if (!evaluation.walk(next, entry[0], location.element(entry[0], entry[1]))) return false;
+            }
+            return true;
+        }
+
+        private static int bound(Integer value, int fallback, int count) {
+            if (value == null) return fallback;
+            return Math.max(0, Math.min(normalize(value, count), count));
+        }
+
+        private static int normalize(int value, int count) {
+            return value < 0 ? count + value : value;
+        }
+    }
+
+    private static final class WildcardStep extends Step {
+        @Override
+        boolean apply(Evaluation evaluation, int node, Location location, int next) throws IOException {
+            return evaluation.forEachChild(node, location, (child, childLocation) ->
+                evaluation.walk(next, child, childLocation));
+        }
+    }
+
+    private static final class DescendantStep extends Step {
+        private final Step selector;
+
+        DescendantStep(Step selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        boolean apply(Evaluation evaluation, int node, Location location, int next) throws IOException {
+            if (!selector.apply(evaluation, node, location, next)) return false;
+            return evaluation.forEachChild(node, location, (child, childLocation) ->
+                !evaluation.index.isContainer(child) || apply(evaluation, child, childLocation, next));
+        }
+    }
+
+    private static final class FilterStep extends Step {
+        private final Filter filter;
+
+        FilterStep(Filter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        boolean apply(Evaluation evaluation, int node, Location location, int next) throws IOException {
+            return evaluation.forEachChild(node, location, (child, childLocation) ->
+                !filter.test(evaluation, child) || evaluation.walk(next, child, childLocation));
+        }
+    }
+
+    // ---- Filters ----
+
+    private interface Filter {
+        boolean test(Evaluation evaluation, int node) throws IOException;
+    }
+
+    private static final Object MISSING = new Object();
+    private static final Object NULL = new Object();
+    private static final Object CONTAINER = new Object();
+
+    private static final class Operand {
+        // Relative path from @ (names as String, indices as Integer), or a literal
+        private final Object[] path;
+        private final Object literal;
+
+        Operand(Object[] path, Object literal) {
+            this.path = path;
+            this.literal = literal;
+        }
+
+        Object value(Evaluation evaluation, int node) throws IOException {
+            if (path == null) return literal;
+            int target = resolve(evaluation, node);
+            if (target < 0) return MISSING;
+            JsonStructureIndex index = evaluation.index;
+            NodeType type = index.type(target);
+            if (type == NodeType.OBJECT || type == NodeType.ARRAY) return CONTAINER;
+            if (type == NodeType.NULL) return NULL;
+            try (JsonParser parser = evaluation.document.valueParser(target)) {
+                switch (type) {
+                    case STRING: return parser.getText();
+                    case NUMBER: return parser.getDecimalValue();
+                    default: return parser.getBooleanValue();
+                }
+            }
+        }
+
+        int resolve(Evaluation evaluation, int node) throws IOException {
+            JsonStructureIndex index = evaluation.index;
+            for (Object segment : path) {
+                if (segment instanceof String) {
+                    if (index.type(node) != NodeType.OBJECT) return -1;
+                    node = evaluation.document.findMember(node, (String) segment);
+                } else {
+                    if (index.type(node) != NodeType.ARRAY) return -1;
+                    int i = (Integer) segment;
+                    node = index.child(node, i < 0 ? index.childCount(node) + i : i);
+                }
+                if (node < 0) return -1;
+            }
+            return node;
+        }
+    }
+
+    private static final class Comparison implements Filter {
+        private final Operand left;
+        private final String operator;
+        private final Operand right;
+
+        Comparison(Operand left, String operator, Operand right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Evaluation evaluation, int node) throws IOException {
+            Object a = left.value(evaluation, node);
+            if (operator == null) {
+                return a != MISSING && (left.path != null || (a != NULL && !Boolean.FALSE.equals(a)));
+            }
+            Object b = right.value(evaluation, node);
+            if (a == MISSING || b == MISSING || a == CONTAINER || b == CONTAINER) {
+                return "!=".equals(operator) && a != b;
+            }
+            Integer order = compare(a, b);
+            switch (operator) {
+                case "==": return order != null && order == 0;
+                case "!=": return order == null || order != 0;
+                case "<": return order != null && order < 0 && comparable(a);
+                case "<=": return order != null && order <= 0 && comparable(a);
+                case ">": return order != null && order > 0 && comparable(a);
+                default: return order != null && order >= 0 && comparable(a);
+            }
+        }
+
+        private static boolean comparable(Object value) {
+            return value instanceof BigDecimal || value instanceof String;
+        }
+
+        private static Integer compare(Object a, Object b) {
+            if (a instanceof BigDecimal && b instanceof BigDecimal) return ((BigDecimal) a).compareTo((BigDecimal) b);
+            if (a instanceof String && b instanceof String) return ((String) a).compareTo((String) b);
+            if (a instanceof Boolean && b instanceof Boolean) return a.equals(b) ? 0 : 1;
+            if (a == NULL && b == NULL) return 0;
+            return null;
+        }
+    }
+
+    private static final class Junction implements Filter {
+        private final Filter[] parts;
+        private final boolean all;
+
+        Junction(List<Filter> parts, boolean all) {
+            this.parts = parts.toArray(new Filter[0]);
+            this.all = all;
+        }
+
+        @Override
+        public boolean test(Evaluation evaluation, int node) throws IOException {
+            for (Filter part : parts) {
+                if (part.test(evaluation, node) != all) return !all;
+            }
+            return all;
+        }
+    }
+
+    // ---- Parsing ----
+
+    private static final class PathParser {
+        private final String input;
+        private int pos;
+
+        PathParser(String input) {
+            this.input = input;
+        }
+
+        Step[] parsePath() {
+            expect('$');
+            List<Step> steps = new ArrayList<>();
+            while (!atEnd()) {
+                steps.add(parseSegment());
+            }
+            return steps.toArray(new Step[0]);
+        }
+
+        private Step parseSegment() {
+            if (input.startsWith("..", pos)) {
+                pos += 2;
+                return new DescendantStep(peek() == '[' ? parseBracket() : parseDotName());
+            }
+            if (peek() == '.') {
+                pos++;
+                return parseDotName();
+            }
+            if (peek() == '[') return parseBracket();
+            throw error("Expected '.' or '['");
+        }
+
+        private Step parseDotName() {
+            if (!atEnd() && peek() == '*') {
+                pos++;
+                return new WildcardStep();
+            }
+            return new NameStep(new String[] { parseIdentifier() });
+        }
+
+        private String parseIdentifier() {
+            int start = pos;
+            while (!atEnd() && (Character.isLetterOrDigit(peek()) || peek() == '_' || peek() == '-' || peek() == '$')) {
+                pos++;
+            }
+            if (start == pos) throw error("Expected a member name");
+            return input.substring(start, pos);
+        }
+
+        private Step parseBracket() {
+            expect('[');
+            skipSpaces();
+            Step step;
+            if (peek() == '*') {
+                pos++;
+                step = new WildcardStep();
+            } else if (peek() == '?') {
+                pos++;
+                skipSpaces();
+                expect('(');
+                Filter filter = parseOr();
+                skipSpaces();
+                expect(')');
+                step = new FilterStep(filter);
+            } else if (peek() == '\'' || peek() == '"') {
+                List<String> names = new ArrayList<>();
+                do {
+                    skipSpaces();
+                    names.add(parseQuoted());
+                    skipSpaces();
+                } while (consume(','));
+                step = new NameStep(names.toArray(new String[0]));
+            } else {
+                step = parseIndexOrSlice();
+            }
+            skipSpaces();
+            expect(']');
+            return step;
+        }
+
+        private Step parseIndexOrSlice() {
+            Integer first = parseOptionalInt();
+            skipSpaces();
+            if (consume(':')) {
+                skipSpaces();
+                Integer end = parseOptionalInt();
+                skipSpaces();
+                int stride = 1;
+                if (consume(':')) {
+                    skipSpaces();
+                    Integer parsed = parseOptionalInt();
+                    stride = parsed != null ? parsed : 1;
+                }
+                return new SliceStep(first, end, stride);
+            }
+            if (first == null) throw error("Expected an index");
+            List<Integer> indices = new ArrayList<>();
+            indices.add(first);
+            while (consume(',')) {
+                skipSpaces();
+                Integer next = parseOptionalInt();
+                if (next == null) throw error("Expected an index");
+                indices.add(next);
+                skipSpaces();
+            }
+            return new IndexStep(indices.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        private Filter parseOr() {
+            List<Filter> parts = new ArrayList<>();
+            parts.add(parseAnd());
+            while (consumeToken("||")) {
+                parts.add(parseAnd());
+            }
+            return parts.size() == 1 ? parts.get(0) : new Junction(parts, false);
+        }
+
+        private Filter parseAnd() {
+            List<Filter> parts = new ArrayList<>();
+            parts.add(parseComparison());
+            while (consumeToken("&&")) {
+                parts.add(parseComparison());
+            }
+            return parts.size() == 1 ? parts.get(0) : new Junction(parts, true);
+        }
+
+        private Filter parseComparison() {
+            skipSpaces();
+            if (consume('(')) {
+                Filter inner = parseOr();
+                skipSpaces();
+                expect(')');
+                return inner;
+            }
+            Operand left = parseOperand();
+            skipSpaces();
+            for (String operator : new String[] { "==", "!=", "<=", ">=", "<", ">" }) {
+                if (input.startsWith(operator, pos)) {
+                    pos += operator.length();
+                    skipSpaces();
+                    return new Comparison(left, operator, parseOperand());
+                }
+            }
+            return new Comparison(left, null, null);
+        }
+
+        private Operand parseOperand() {
+            char c = peek();
+            if (c == '@') {
+                pos++;
+                List<Object> path = new ArrayList<>();
+                while (!atEnd()) {
+                    if (peek() == '.' && !input.startsWith("..", pos)) {
+                        pos++;
+                        path.add(parseIdentifier());
+                    } else if (peek() == '[') {
+                        pos++;
+                        skipSpaces();
+                        if (peek() == '\'' || peek() == '"') {
+                            path.add(parseQuoted());
+                        } else {
+                            Integer i = parseOptionalInt();
+                            if (i == null) throw error("Expected an index or quoted name");
+                            path.add(i);
+                        }
+                        skipSpaces();
+                        expect(']');
+                    } else {
+                        break;
+                    }
+                }
+                return new Operand(path.toArray(), null);
+            }
+            if (c == '\'' || c == '"') return new Operand(null, parseQuoted());
+            if (input.startsWith("true", pos)) {
+                pos += 4;
+                return new Operand(null, Boolean.TRUE);
+            }
+            if (input.startsWith("false", pos)) {
+                pos += 5;
+                return new Operand(null, Boolean.FALSE);
+            }
+            if (input.startsWith("null", pos)) {
+                pos += 4;
+                return new Operand(null, NULL);
+            }
+            int start = pos;
+            while (!atEnd() && "+-.eE0123456789".indexOf(peek()) >= 0) pos++;
+            if (start == pos) throw error("Expected '@' path or literal");
+            try {
+                return new Operand(null, new BigDecimal(input.substring(start, pos)));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number");
+            }
+        }
+
+        private String parseQuoted() {
+            char quote = peek();
+            if (quote != '\'' && quote != '"') throw error("Expected a quoted name");
+            pos++;
+            StringBuilder out = new StringBuilder();
+            while (!atEnd() && peek() != quote) {
+                char c = input.charAt(pos++);
+                if (c == '\\' && !atEnd()) c = input.charAt(pos++);
+                out.append(c);
+            }
+            expect(quote);
+            return out.toString();
+        }
+
+        private Integer parseOptionalInt() {
+            int start = pos;
+            if (!atEnd() && peek() == '-') pos++;
+            while (!atEnd() && Character.isDigit(peek())) pos++;
+            if (pos == start || (pos == start + 1 && input.charAt(start) == '-')) {
+                pos = start;
+                return null;
+            }
+            try {
+                return Integer.parseInt(input.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("Index out of range");
+            }
+        }
+
+        private boolean consumeToken(String token) {
+            skipSpaces();
+            if (input.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean consume(char c) {
+            if (!atEnd() && peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) throw error("Expected '" + c + "'");
+        }
+
+        private void skipSpaces() {
+            while (!atEnd() && peek() == ' ') pos++;
+        }
+
+        private char peek() {
+            if (atEnd()) throw error("Unexpected end of expression");
+            return input.charAt(pos);
+        }
+
+        private boolean atEnd() {
+            return pos >= input.length();
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " in " + input);
+        }
+    }
+}
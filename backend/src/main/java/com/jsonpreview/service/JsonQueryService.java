@@ -0,0 +1,86 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.DocumentNodeDto;
+import com.jsonpreview.dto.QueryResultDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs JSONPath / JSON Pointer queries against stored documents, one page of matches at
+ * a time. Compiled expressions are kept in a small LRU cache, so a client paging
+ * through the results of one expression parses it once.
+ */
+@Service
+public class JsonQueryService {
+
+    private final JsonDocumentService documentService;
+    private final Map<String, JsonQuery> compiled;
+
+    public JsonQueryService(JsonDocumentService documentService,
+                            @Value("${query.expression-cache-size:512}") int cacheSize) {
+        this.documentService = documentService;
+        this.compiled = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JsonQuery> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public JsonQuery compile(String expression) {
+        String key = expression != null ? expression : "";
+        JsonQuery query = compiled.get(key);
+        if (query == null) {
+            query = JsonQuery.compile(key);
+            compiled.put(key, query);
+        }
+        return query;
+    }
+
+    /**
+     * Matches {@code offset} to {@code offset + limit - 1} of {@code expression}. The walk
+     * stops right after the page unless {@code countAll} asks for the total.
+     */
+    public QueryResultDto query(JsonDocument document, String expression, int offset, int limit,
+                                int maxStringLength, boolean countAll) throws IOException {
+        long start = System.currentTimeMillis();
+        JsonQuery query = compile(expression);
+        int from = Math.max(offset, 0);
+        int pageSize = Math.max(limit, 0);
+
+        List<DocumentNodeDto> matches = new ArrayList<>(Math.min(pageSize, 1024));
+        long[] seen = new long[1];
+        query.evaluate(document, (node, location) -> {
+            long position = seen[0]++;
+            if (position >= from && position - from < pageSize) {
+                DocumentNodeDto match = documentService.describe(document, node, location.toPointer(), maxStringLength);
+                match.setName(location.getName());
+                if (location.getIndex() >= 0) match.setIndex(location.getIndex());
+                matches.add(match);
+            }
+            // One match past the page tells whether there are more
+            return countAll || position < (long) from + pageSize;
+        });
+
+        QueryResultDto result = new QueryResultDto();
+        result.setDocumentId(document.getId());
+        result.setExpression(query.getSource());
+        result.setOffset(from);
+        result.setLimit(pageSize);
+        result.setMatches(matches);
+        result.setHasMore(seen[0] > (long) from + pageSize);
+        if (countAll) result.setTotal(seen[0]);
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        return result;
+    }
+}
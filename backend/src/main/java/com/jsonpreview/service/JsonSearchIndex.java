@@ -0,0 +1,267 @@
+package com.jsonpreview.service;
+
+import java.util.Arrays;
+
+/**
+ * Inverted index from words to the nodes of one JSON document whose member name or
+ * scalar value contains them.
+ *
+ * Words are maximal runs of letters and digits, lower-cased. Terms are stored as 32-bit
+ * hashes only, in an open-addressing table pointing into one postings array (node ids in
+ * document order, one entry per node and term). Hash collisions merely add candidates:
+ * every candidate is checked against the document text before it is returned. Memory is
+ * 4 bytes per posting plus 12 bytes per table slot.
+ *
+ * Built by a {@link Builder} fed from the same parse that builds the
+ * {@link JsonStructureIndex}, so indexing reads the document once.
+ */
+public final class JsonSearchIndex {
+
+    private static final int[] NO_POSTINGS = new int[0];
+
+    private final int[] slotHashes;
+    private final int[] slotStarts;
+    private final int[] slotCounts;
+    private final int[] postings;
+    private final int termCount;
+
+    private JsonSearchIndex(int[] slotHashes, int[] slotStarts, int[] slotCounts, int[] postings, int termCount) {
+        this.slotHashes = slotHashes;
+        this.slotStarts = slotStarts;
+        this.slotCounts = slotCounts;
+        this.postings = postings;
+        this.termCount = termCount;
+    }
+
+    public int termCount() { return termCount; }
+
+    public int postingCount() { return postings.length; }
+
+    public long memoryBytes() {
+        return 12L * slotHashes.length + 4L * postings.length;
+    }
+
+    /**
+     * Nodes containing every word of {@code text}, in document order; null if the text
+     * has no words. A superset of the real matches (see class comment).
+     */
+    public int[] candidates(String text) {
+        int[][] lists = new int[16][];
+        int[] count = new int[1];
+        forEachWord(text, hash -> {
+            int[] list = postings(hash);
+            if (count[0] == lists.length) return;
+            lists[count[0]++] = list;
+        });
+        if (count[0] == 0) return null;
+
+        int[][] terms = Arrays.copyOf(lists, count[0]);
+        // Intersect starting from the rarest word
+        Arrays.sort(terms, (a, b) -> Integer.compare(a.length, b.length));
+        int[] result = terms[0];
+        for (int i = 1; i < terms.length && result.length > 0; i++) {
+            result = intersect(result, terms[i]);
+        }
+        return result;
+    }
+
+    private int[] postings(int hash) {
+        int mask = slotHashes.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int stored = slotHashes[slot];
+            if (stored == 0) return NO_POSTINGS;
+            if (stored == hash) {
+                return Arrays.copyOfRange(postings, slotStarts[slot], slotStarts[slot] + slotCounts[slot]);
+            }
+        }
+    }
+
+    private static int[] intersect(int[] small, int[] large) {
+        int[] out = new int[small.length];
+        int n = 0;
+        int j = 0;
+        for (int value : small) {
+            // Gallop through the larger list
+            int step = 1;
+            int high = j;
+            while (high < large.length && large[high] < value) {
+                j = high + 1;
+                high = j + step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(large, j, Math.min(high + 1, large.length), value);
+            if (found >= 0) {
+                out[n++] = value;
+                j = found + 1;
+            } else {
+                j = -found - 1;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    interface WordConsumer {
+        void accept(int hash);
+    }
+
+    static void forEachWord(CharSequence text, WordConsumer consumer) {
+        int hash = 0;
+        boolean inWord = false;
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = inWord ? mix(hash, c) : mix(FNV_OFFSET, c);
+                inWord = true;
+            } else if (inWord) {
+                consumer.accept(finish(hash));
+                inWord = false;
+            }
+        }
+    }
+
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private static int mix(int hash, char c) {
+        return (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+    }
+
+    private static int finish(int hash) {
+        // 0 marks an empty slot
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Collects (word, node) occurrences while a document is parsed. Nodes must be added
+     * in ascending order; repeats of a word within one node are dropped when the index
+     * is built.
+     */
+    public static final class Builder {
+        private int[] hashes;
+        private int[] nodes;
+        private int size;
+
+        /**
+         * @param expectedWords capacity hint; the occurrence log grows as needed
+         */
+        public Builder(int expectedWords) {
+            hashes = new int[Math.max(1024, expectedWords)];
+            nodes = new int[hashes.length];
+        }
+
+        /**
+         * Adds the words of {@code length} chars at {@code offset} of {@code chars}.
+         */
+        public void add(int node, char[] chars, int offset, int length) {
+            int hash = 0;
+            boolean inWord = false;
+            for (int i = offset, end = offset + length; i <= end; i++) {
+                char c = i < end ? chars[i] : ' ';
+                if (Character.isLetterOrDigit(c)) {
+                    hash = inWord ? mix(hash, c) : mix(FNV_OFFSET, c);
+                    inWord = true;
+                } else if (inWord) {
+                    append(finish(hash), node);
+                    inWord = false;
+                }
+            }
+        }
+
+        private void append(int hash, int node) {
+            if (size == hashes.length) {
+                int capacity = size + (size >> 1);
+                hashes = Arrays.copyOf(hashes, capacity);
+                nodes = Arrays.copyOf(nodes, capacity);
+            }
+            hashes[size] = hash;
+            nodes[size] = node;
+            size++;
+        }
+
+        public JsonSearchIndex build() {
+            Table table = new Table(1024);
+
+            // Pass 1: count distinct (word, node) pairs per word, dropping repeats within a node
+            int postingCount = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = table.slot(hashes[i]);
+                if (table.lastNodes[slot] == nodes[i] + 1) {
+                    hashes[i] = 0;
+                    continue;
+                }
+                table.lastNodes[slot] = nodes[i] + 1;
+                table.counts[slot]++;
+                postingCount++;
+            }
+
+            int[] starts = table.lastNodes;
+            int start = 0;
+            for (int slot = 0; slot < table.hashes.length; slot++) {
+                starts[slot] = start;
+                start += table.counts[slot];
+            }
+
+            // Pass 2: occurrences arrive in node order, so each postings list ends up sorted
+            int[] postings = new int[postingCount];
+            int[] fill = new int[table.hashes.length];
+            for (int i = 0; i < size; i++) {
+                if (hashes[i] == 0) continue;
+                int slot = table.slot(hashes[i]);
+                postings[starts[slot] + fill[slot]++] = nodes[i];
+            }
+            hashes = null;
+            nodes = null;
+            return new JsonSearchIndex(table.hashes, starts, table.counts, postings, table.terms);
+        }
+    }
+
+    /**
+     * Open-addressing table from word hash to slot, doubled to keep the load at most 0.5.
+     */
+    private static final class Table {
+        int[] hashes;
+        int[] counts;
+        int[] lastNodes;
+        int terms;
+
+        Table(int capacity) {
+            hashes = new int[capacity];
+            counts = new int[capacity];
+            lastNodes = new int[capacity];
+        }
+
+        int slot(int hash) {
+            int mask = hashes.length - 1;
+            int slot = hash & mask;
+            while (hashes[slot] != 0) {
+                if (hashes[slot] == hash) return slot;
+                slot = (slot + 1) & mask;
+            }
+            if (2 * (terms + 1) > hashes.length) {
+                grow();
+                return slot(hash);
+            }
+            hashes[slot] = hash;
+            terms++;
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldHashes = hashes;
+            int[] oldCounts = counts;
+            int[] oldLastNodes = lastNodes;
+            hashes = new int[oldHashes.length * 2];
+            counts = new int[hashes.length];
+            lastNodes = new int[hashes.length];
+            int mask = hashes.length - 1;
+            for (int old = 0; old < oldHashes.length; old++) {
+                if (oldHashes[old] == 0) continue;
+                int slot = oldHashes[old] & mask;
+                while (hashes[slot] != 0) slot = (slot + 1) & mask;
+                hashes[slot] = oldHashes[old];
+                counts[slot] = oldCounts[old];
+                lastNodes[slot] = oldLastNodes[old];
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Structural index of one JSON document, held in primitive arrays.
+ *
+ * Nodes are numbered in document (pre-)order, so a node's descendants are the range
+ * {@code (node, end(node))} and its next sibling is {@code end(node)}. For each node the
+ * index keeps the byte offset of its first token - the member name for object members,
+ * the value otherwise - and its type (5 bytes). Containers additionally record their end
+ * and number of children in arrays ordered by node (12 bytes per container); a scalar
+ * always ends at {@code node + 1}. Names and scalar values are not copied; they are read
+ * back from the document bytes on demand. Offsets are ints, so documents are limited to 2GB.
+ */
+public final class JsonStructureIndex {
+
+    public enum NodeType { OBJECT, ARRAY, STRING, NUMBER, BOOLEAN, NULL }
+
+    private static final NodeType[] TYPES = NodeType.values();
+    private static final byte MEMBER = (byte) 0x80;
+
+    private final int size;
+    private final int[] offsets;
+    private final byte[] types;
+    private final int containerCount;
+    private final int[] containers;
+    private final int[] ends;
+    private final int[] childCounts;
+
+    private JsonStructureIndex(Builder builder) {
+        this.size = builder.size;
+        this.offsets = builder.offsets;
+        this.types = builder.types;
+        this.containerCount = builder.containerCount;
+        this.containers = builder.containers;
+        this.ends = builder.ends;
+        this.childCounts = builder.childCounts;
+    }
+
+    /**
+     * Indexes the single JSON value read by {@code parser}, which must report byte
+     * offsets from the start of the document.
+     *
+     * @param expectedNodes capacity hint; arrays grow as needed and are trimmed at the end
+     * @param words if not null, receives the words of every member name and scalar value
+     * @throws IOException if the document is not well-formed JSON
+     */
+    public static JsonStructureIndex build(JsonParser parser, int expectedNodes,
+                                           JsonSearchIndex.Builder words) throws IOException {
+        Builder builder = new Builder(Math.max(16, expectedNodes));
+        // Container ranks (positions in the container arrays) of the open containers
+        int[] stack = new int[64];
+        int depth = 0;
+        int pendingMember = -1;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token == JsonToken.FIELD_NAME) {
+                pendingMember = offsetOf(parser);
+                if (words != null) {
+                    // The member's node is the next one added
+                    words.add(builder.size, parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                }
+                continue;
+            }
+            if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                builder.ends[stack[--depth]] = builder.size;
+                if (depth == 0) requireEnd(parser);
+                continue;
+            }
+
+            boolean member = pendingMember >= 0;
+            int node = builder.add(member ? pendingMember : offsetOf(parser), typeOf(token), member);
+            pendingMember = -1;
+            if (words != null && (token == JsonToken.VALUE_STRING || token.isNumeric())) {
+                words.add(node, parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            }
+            if (depth > 0) {
+                builder.childCounts[stack[depth - 1]]++;
+            }
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = builder.addContainer(node);
+            }
+            if (depth == 0) requireEnd(parser);
+        }
+        if (builder.size == 0 || depth != 0) {
+            throw new IOException("Document is empty or truncated");
+        }
+        return builder.build();
+    }
+
+    private static void requireEnd(JsonParser parser) throws IOException {
+        if (parser.nextToken() != null) {
+            throw new IOException("Unexpected content after the root value at byte " + offsetOf(parser));
+        }
+    }
+
+    private static int offsetOf(JsonParser parser) throws IOException {
+        long offset = parser.getTokenLocation().getByteOffset();
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Documents larger than 2GB are not supported");
+        }
+        return (int) offset;
+    }
+
+    private static NodeType typeOf(JsonToken token) {
+        switch (token) {
+            case START_OBJECT: return NodeType.OBJECT;
+            case START_ARRAY: return NodeType.ARRAY;
+            case VALUE_STRING: return NodeType.STRING;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT: return NodeType.NUMBER;
+            case VALUE_TRUE:
+            case VALUE_FALSE: return NodeType.BOOLEAN;
+            case VALUE_NULL: return NodeType.NULL;
+            default: throw new IllegalStateException("Unexpected token " + token);
+        }
+    }
+
+    public int size() { return size; }
+
+    public NodeType type(int node) { return TYPES[types[node] & ~MEMBER]; }
+
+    public boolean isContainer(int node) {
+        NodeType type = type(node);
+        return type == NodeType.OBJECT || type == NodeType.ARRAY;
+    }
+
+    /**
+     * Whether the node is an object member, i.e. its offset points at the member name.
+     */
+    public boolean isMember(int node) { return (types[node] & MEMBER) != 0; }
+
+    public int offset(int node) { return offsets[node]; }
+
+    public int childCount(int node) {
+        int rank = rank(node);
+        return rank >= 0 ? childCounts[rank] : 0;
+    }
+
+    /**
+     * One past the node's last descendant, which is also its next sibling (if any).
+     */
+    public int end(int node) {
+        int rank = rank(node);
+        return rank >= 0 ? ends[rank] : node + 1;
+    }
+
+    /**
+     * The {@code n}-th child of a container, found by hopping over siblings, or -1.
+     */
+    public int child(int node, int n) {
+        if (n < 0 || n >= childCount(node)) return -1;
+        ChildCursor cursor = children(node);
+        cursor.skip(n);
+        return cursor.next();
+    }
+
+    /**
+     * Cursor over the children of {@code node} (none for a scalar).
+     */
+    public ChildCursor children(int node) {
+        int rank = rank(node);
+        return rank >= 0 ? new ChildCursor(node + 1, childCounts[rank], rank + 1) : new ChildCursor(node + 1, 0, 0);
+    }
+
+    /**
+     * Iterates the children of one container in order. Hopping over a child container
+     * needs its rank; since ranks only grow along the way, each one is found by galloping
+     * forward from the previous rank rather than searching all containers.
+     */
+    public final class ChildCursor {
+        private int next;
+        private int remaining;
+        private int rankHint;
+
+        private ChildCursor(int next, int remaining, int rankHint) {
+            this.next = next;
+            this.remaining = remaining;
+            this.rankHint = rankHint;
+        }
+
+        public boolean hasNext() { return remaining > 0; }
+
+        /**
+         * The child {@link #next()} would return, or -1.
+         */
+        public int peek() { return remaining > 0 ? next : -1; }
+
+        /**
+         * The next child, or -1 when all have been visited.
+         */
+        public int next() {
+            if (remaining == 0) return -1;
+            int child = next;
+            if (--remaining > 0) {
+                if (isContainer(child)) {
+                    int rank = seek(child, rankHint);
+                    next = ends[rank];
+                    rankHint = rank + 1;
+                } else {
+                    next = child + 1;
+                }
+            }
+            return child;
+        }
+
+        public void skip(int n) {
+            for (int i = 0; i < n && remaining > 0; i++) next();
+        }
+    }
+
+    private int seek(int node, int from) {
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < containerCount && containers[high] < node) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        return Arrays.binarySearch(containers, low, Math.min(high + 1, containerCount), node);
+    }
+
+    public long memoryBytes() {
+        return (long) offsets.length * 5 + (long) containers.length * 12;
+    }
+
+    private int rank(int node) {
+        if (!isContainer(node)) return -1;
+        return Arrays.binarySearch(containers, 0, containerCount, node);
+    }
+
+    private static final class Builder {
+        int size;
+        int[] offsets;
+        byte[] types;
+        int containerCount;
+        int[] containers;
+        int[] ends;
+        int[] childCounts;
+
+        Builder(int capacity) {
+            offsets = new int[capacity];
+            types = new byte[capacity];
+            containers = new int[Math.max(16, capacity >> 3)];
+            ends = new int[containers.length];
+            childCounts = new int[containers.length];
+        }
+
+        int add(int offset, NodeType type, boolean member) {
+            if (size == offsets.length) {
+                int capacity = grow(size);
+                offsets = Arrays.copyOf(offsets, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+            offsets[size] = offset;
+            types[size] = (byte) (type.ordinal() | (member ? MEMBER : 0));
+            return size++;
+        }
+
+        int addContainer(int node) {
+            if (containerCount == containers.length) {
+                int capacity = grow(containerCount);
+                containers = Arrays.copyOf(containers, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                childCounts = Arrays.copyOf(childCounts, capacity);
+            }
+            containers[containerCount] = node;
+            return containerCount++;
+        }
+
+        private static int grow(int length) {
+            return (int) Math.min(Integer.MAX_VALUE - 8, length + (long) (length >> 1));
+        }
+
+        JsonStructureIndex build() {
+            // Trim only when it saves much; trimming briefly needs a second copy of the arrays
+            if (offsets.length - size > size >> 3) {
+                offsets = Arrays.copyOf(offsets, size);
+                types = Arrays.copyOf(types, size);
+            }
+            if (containers.length - containerCount > containerCount >> 3) {
+                containers = Arrays.copyOf(containers, containerCount);
+                ends = Arrays.copyOf(ends, containerCount);
+                childCounts = Arrays.copyOf(childCounts, containerCount);
+            }
+            return new JsonStructureIndex(this);
+        }
+    }
+}
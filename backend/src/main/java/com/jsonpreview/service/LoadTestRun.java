@@ -0,0 +1,273 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import com.jsonpreview.dto.LatencySummaryDto;
+import com.jsonpreview.dto.LoadTestRequestDto;
+import com.jsonpreview.dto.LoadTestResultDto;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One load test, driven by its own scheduler thread.
+ *
+ * Open loop ({@code rps}): execution {@code i} is due at {@code start + i / rps} whatever
+ * happened to earlier ones, and its latency is measured from that due time rather than
+ * from when it was actually sent. A slow upstream therefore shows up as latency instead
+ * of silently lowering the send rate (coordinated omission). Closed loop
+ * ({@code concurrency}): a fixed number of executions are kept in flight, each measured
+ * from its send.
+ *
+ * Latencies are recorded in nanoseconds into HdrHistogram {@link Recorder}s, which take
+ * values from many completing threads without locking; snapshots drain them into
+ * running totals.
+ */
+final class LoadTestRun implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestRun.class);
+
+    // Highest trackable latency (1 hour), at 3 significant digits
+    private static final long HIGHEST_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final int DIGITS = 3;
+
+    enum State { RUNNING, COMPLETED, STOPPED, FAILED }
+
+    private final String id;
+    private final LoadTestRequestDto request;
+    private final ApiExecutionService executionService;
+    // Runs the blocking calls of the classic engine
+    private final Executor executor;
+    private final long durationNanos;
+    private final long periodNanos;
+    private final int slotCount;
+    private final Semaphore slots;
+
+    private final Recorder latencyRecorder = new Recorder(HIGHEST_NANOS, DIGITS);
+    private final Recorder serviceRecorder = new Recorder(HIGHEST_NANOS, DIGITS);
+    private final Histogram latency = new Histogram(HIGHEST_NANOS, DIGITS);
+    private final Histogram serviceTime = new Histogram(HIGHEST_NANOS, DIGITS);
+    private Histogram latencyInterval;
+    private Histogram serviceInterval;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final AtomicLong scheduleLag = new AtomicLong();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile State state = State.RUNNING;
+    private volatile String error;
+    private volatile boolean stopRequested;
+    private volatile Thread thread;
+    private volatile long startNanos;
+    private volatile long endNanos;
+    // Previous snapshot, for the recent* figures
+    private long lastSnapshotNanos;
+    private long lastSnapshotCompleted;
+
+    LoadTestRun(String id, LoadTestRequestDto request, ApiExecutionService executionService, Executor executor,
+                int maxInFlight) {
+        this.id = id;
+        this.request = request;
+        this.executionService = executionService;
+        this.executor = executor;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(request.getDurationSeconds());
+        boolean openLoop = request.getRps() != null;
+        this.periodNanos = openLoop ? Math.max(1, Math.round(1e9 / request.getRps())) : 0;
+        this.slotCount = openLoop
+            ? (request.getMaxInFlight() != null ? Math.min(request.getMaxInFlight(), maxInFlight) : maxInFlight)
+            : request.getConcurrency();
+        this.slots = new Semaphore(slotCount);
+    }
+
+    String getId() { return id; }
+
+    State getState() { return state; }
+
+    void start(Thread thread) {
+        this.thread = thread;
+        startNanos = System.nanoTime();
+        lastSnapshotNanos = startNanos;
+        thread.start();
+    }
+
+    void stop() {
+        stopRequested = true;
+        Thread current = thread;
+        if (current != null) current.interrupt();
+    }
+
+    boolean awaitFinish(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    @Override
+    public void run() {
+        long deadline = startNanos + durationNanos;
+        State outcome = State.STOPPED;
+        try {
+            for (long i = 0; !stopRequested; i++) {
+                long due;
+                if (periodNanos > 0) {
+                    due = startNanos + i * periodNanos;
+                    if (due >= deadline) break;
+                    parkUntil(due);
+                    slots.acquire();
+                    scheduleLag.accumulateAndGet(System.nanoTime() - due, Math::max);
+                } else {
+                    slots.acquire();
+                    due = System.nanoTime();
+                    if (due >= deadline) {
+                        slots.release();
+                        break;
+                    }
+                }
+                send(i, due);
+            }
+            // Let executions in flight finish; a stop abandons them
+            if (!stopRequested) slots.acquire(slotCount);
+            if (!stopRequested) outcome = State.COMPLETED;
+        } catch (InterruptedException e) {
+            // Stopped
+        } catch (RuntimeException e) {
+            logger.error("Load test {} failed: {}", id, e.getMessage(), e);
+            error = e.getMessage();
+            outcome = State.FAILED;
+        } finally {
+            // End time first: snapshots read it once the state is no longer RUNNING
+            endNanos = System.nanoTime();
+            state = outcome;
+            finished.countDown();
+            logger.info("Load test {} {}: {} sent, {} completed, {} errors", id, state.name().toLowerCase(),
+                        sent.sum(), completed.sum(), errors.sum());
+        }
+    }
+
+    private void parkUntil(long due) throws InterruptedException {
+        for (long wait; (wait = due - System.nanoTime()) > 0; ) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    private void send(long sequence, long due) {
+        long sendNanos = System.nanoTime();
+        sent.increment();
+        try {
+            executionService.executeAsync(executionService.prepareRequest(requestFor(request, sequence)),
+                                          System.currentTimeMillis(), executor)
+                .whenComplete((response, e) -> complete(due, sendNanos, response, e));
+        } catch (RuntimeException e) {
+            complete(due, sendNanos, null, e);
+        }
+    }
+
+    private void complete(long due, long sendNanos, ApiResponseDto response, Throwable failure) {
+        long done = System.nanoTime();
+        latencyRecorder.recordValue(Math.min(done - due, HIGHEST_NANOS));
+        serviceRecorder.recordValue(Math.min(done - sendNanos, HIGHEST_NANOS));
+        // Failed executions are counted under "error" rather than their synthetic status 500
+        boolean failed = failure != null || response == null || response.getError() != null;
+        if (failed || response.getStatusCode() >= 400) errors.increment();
+        statusCounts.computeIfAbsent(failed ? 0 : response.getStatusCode(), s -> new LongAdder()).increment();
+        completed.increment();
+        slots.release();
+    }
+
+    /**
+     * The execution with sequence number {@code sequence}, taking parameter sets in turn.
+     */
+    static ExecuteRequestDto requestFor(LoadTestRequestDto request, long sequence) {
+        ExecuteRequestDto dto = new ExecuteRequestDto();
+        dto.setCollectionId(request.getCollectionId());
+        dto.setRequestName(request.getRequestName());
+        dto.setEnvironment(request.getEnvironment());
+        List<Map<String, String>> sets = request.getParameterSets();
+        dto.setParameters(sets != null && !sets.isEmpty()
+            ? sets.get((int) (sequence % sets.size()))
+            : request.getParameters());
+        dto.setCache(request.getCache() != null ? request.getCache() : Boolean.FALSE);
+        dto.setCoalesce(request.getCoalesce() != null ? request.getCoalesce() : Boolean.FALSE);
+        return dto;
+    }
+
+    /**
+     * Drains the recorders into the totals; the drained interval becomes the recent figures.
+     */
+    synchronized LoadTestResultDto snapshot() {
+        latencyInterval = latencyRecorder.getIntervalHistogram(latencyInterval);
+        serviceInterval = serviceRecorder.getIntervalHistogram(serviceInterval);
+        latency.add(latencyInterval);
+        serviceTime.add(serviceInterval);
+
+        long now = state == State.RUNNING ? System.nanoTime() : endNanos;
+        long completedCount = completed.sum();
+        long sentCount = sent.sum();
+        double elapsed = (now - startNanos) / 1e9;
+        double sinceLast = (now - lastSnapshotNanos) / 1e9;
+
+        LoadTestResultDto dto = new LoadTestResultDto();
+        dto.setId(id);
+        dto.setRequestName(request.getRequestName());
+        dto.setState(state.name());
+        dto.setError(error);
+        dto.setMode(periodNanos > 0 ? "rps" : "concurrency");
+        dto.setTargetRps(request.getRps());
+        dto.setConcurrency(request.getConcurrency());
+        dto.setDurationSeconds(request.getDurationSeconds());
+        dto.setElapsedSeconds(elapsed);
+        dto.setSent(sentCount);
+        dto.setCompleted(completedCount);
+        dto.setInFlight(sentCount - completedCount);
+        long errorCount = errors.sum();
+        dto.setErrors(errorCount);
+        dto.setErrorRate(completedCount > 0 ? (double) errorCount / completedCount : 0);
+        dto.setThroughput(elapsed > 0 ? completedCount / elapsed : 0);
+        dto.setRecentThroughput(sinceLast > 0 ? (completedCount - lastSnapshotCompleted) / sinceLast : 0);
+        dto.setScheduleLagMs(scheduleLag.get() / 1e6);
+        Map<String, Long> statuses = new TreeMap<>();
+        statusCounts.forEach((status, count) -> statuses.put(status == 0 ? "error" : status.toString(), count.sum()));
+        dto.setStatusCounts(statuses);
+        dto.setLatency(summarize(latency));
+        dto.setRecentLatency(summarize(latencyInterval));
+        dto.setServiceTime(summarize(serviceTime));
+
+        lastSnapshotNanos = now;
+        lastSnapshotCompleted = completedCount;
+        return dto;
+    }
+
+    private static LatencySummaryDto summarize(Histogram histogram) {
+        LatencySummaryDto summary = new LatencySummaryDto();
+        summary.setCount(histogram.getTotalCount());
+        if (histogram.getTotalCount() == 0) return summary;
+        summary.setMinMs(millis(histogram.getMinValue()));
+        summary.setMeanMs(histogram.getMean() / 1e6);
+        summary.setP50Ms(millis(histogram.getValueAtPercentile(50)));
+        summary.setP90Ms(millis(histogram.getValueAtPercentile(90)));
+        summary.setP99Ms(millis(histogram.getValueAtPercentile(99)));
+        summary.setP999Ms(millis(histogram.getValueAtPercentile(99.9)));
+        summary.setMaxMs(millis(histogram.getMaxValue()));
+        return summary;
+    }
+
+    private static double millis(long nanos) {
+        // Microsecond precision is all 3 significant digits can carry for typical latencies
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+}
@@ -0,0 +1,182 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.LoadTestRequestDto;
+import com.jsonpreview.dto.LoadTestResultDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts load tests of single collection requests and keeps their results for polling.
+ *
+ * Each test runs on its own scheduler thread (see {@link LoadTestRun}) and executes
+ * through {@link ApiExecutionService#executeAsync}, so requests are rendered exactly as
+ * for {@code /executeRequest} and run on the configured engine. On the classic engine the
+ * blocking calls run on {@code loadTestExecutor}, which has room for every test's
+ * {@code load-test.max-in-flight} calls and leaves the request executor to interactive
+ * and batch executions. The response cache and coalescing are off unless the test asks
+ * for them, so every execution reaches the upstream. The most recent finished tests are
+ * kept ({@code load-test.retained}).
+ */
+@Service
+public class LoadTestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestService.class);
+
+    private final ApiExecutionService apiExecutionService;
+    private final Executor loadTestExecutor;
+    private final int maxRunning;
+    private final int retained;
+    private final long maxDurationSeconds;
+    private final double maxRps;
+    private final int maxInFlight;
+    // Insertion order, so the oldest finished tests are dropped first
+    private final Map<String, LoadTestRun> runs = new LinkedHashMap<>();
+
+    public LoadTestService(ApiExecutionService apiExecutionService,
+                           @Qualifier("loadTestExecutor") Executor loadTestExecutor,
+                           @Value("${load-test.max-running:4}") int maxRunning,
+                           @Value("${load-test.retained:20}") int retained,
+                           @Value("${load-test.max-duration:1h}") Duration maxDuration,
+                           @Value("${load-test.max-rps:20000}") double maxRps,
+                           @Value("${load-test.max-in-flight:1000}") int maxInFlight) {
+        this.apiExecutionService = apiExecutionService;
+        this.loadTestExecutor = loadTestExecutor;
+        this.maxRunning = maxRunning;
+        this.retained = retained;
+        this.maxDurationSeconds = maxDuration.getSeconds();
+        this.maxRps = maxRps;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Starts a test in the background and returns its first snapshot.
+     *
+     * @throws IllegalArgumentException if the test is malformed or exceeds the configured limits
+     * @throws IllegalStateException if {@code load-test.max-running} tests are already running
+     */
+    public LoadTestResultDto start(LoadTestRequestDto request) {
+        validate(request);
+        // Fail fast on an unknown collection, request or environment
+        PreparedRequest probe = apiExecutionService.prepareRequest(LoadTestRun.requestFor(request, 0));
+        if (probe.isFailed()) {
+            throw new IllegalArgumentException(probe.getError());
+        }
+
+        String id = UUID.randomUUID().toString();
+        LoadTestRun run = new LoadTestRun(id, request, apiExecutionService, loadTestExecutor, maxInFlight);
+        synchronized (runs) {
+            long running = runs.values().stream().filter(r -> r.getState() == LoadTestRun.State.RUNNING).count();
+            if (running >= maxRunning) {
+                throw new IllegalStateException(running + " load tests are already running");
+            }
+            runs.put(id, run);
+            dropOldFinished();
+        }
+        Thread thread = new Thread(run, "load-test-" + id.substring(0, 8));
+        thread.setDaemon(true);
+        run.start(thread);
+        logger.info("Started load test {} of {}: {} for {} s", id, request.getRequestName(),
+                    request.getRps() != null ? request.getRps() + " rps" : request.getConcurrency() + " concurrent",
+                    request.getDurationSeconds());
+        return run.snapshot();
+    }
+
+    private void validate(LoadTestRequestDto request) {
+        if (request.getRequestName() == null || request.getRequestName().isBlank()) {
+            throw new IllegalArgumentException("requestName is required");
+        }
+        if ((request.getRps() == null) == (request.getConcurrency() == null)) {
+            throw new IllegalArgumentException("Exactly one of rps and concurrency is required");
+        }
+        if (request.getRps() != null && !(request.getRps() > 0 && request.getRps() <= maxRps)) {
+            throw new IllegalArgumentException("rps must be above 0 and at most " + maxRps);
+        }
+        if (request.getConcurrency() != null && (request.getConcurrency() < 1 || request.getConcurrency() > maxInFlight)) {
+            throw new IllegalArgumentException("concurrency must be between 1 and " + maxInFlight);
+        }
+        if (request.getMaxInFlight() != null && request.getMaxInFlight() < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        Integer duration = request.getDurationSeconds();
+        if (duration == null || duration < 1 || duration > maxDurationSeconds) {
+            throw new IllegalArgumentException("durationSeconds must be between 1 and " + maxDurationSeconds);
+        }
+    }
+
+    private void dropOldFinished() {
+        int finished = 0;
+        for (LoadTestRun run : runs.values()) {
+            if (run.getState() != LoadTestRun.State.RUNNING) finished++;
+        }
+        Iterator<LoadTestRun> oldest = runs.values().iterator();
+        while (finished > retained && oldest.hasNext()) {
+            if (oldest.next().getState() != LoadTestRun.State.RUNNING) {
+                oldest.remove();
+                finished--;
+            }
+        }
+    }
+
+    private LoadTestRun find(String id) {
+        synchronized (runs) {
+            return runs.get(id);
+        }
+    }
+
+    /**
+     * Current figures of a test, or null if it is unknown.
+     */
+    public LoadTestResultDto snapshot(String id) {
+        LoadTestRun run = find(id);
+        return run != null ? run.snapshot() : null;
+    }
+
+    public List<LoadTestResultDto> getLoadTests() {
+        List<LoadTestRun> current;
+        synchronized (runs) {
+            current = new ArrayList<>(runs.values());
+        }
+        List<LoadTestResultDto> snapshots = new ArrayList<>(current.size());
+        for (LoadTestRun run : current) {
+            snapshots.add(run.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Waits up to {@code millis} for a test to finish; true once it has (or is unknown).
+     */
+    public boolean awaitFinish(String id, long millis) throws InterruptedException {
+        LoadTestRun run = find(id);
+        return run == null || run.awaitFinish(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops a running test, or forgets a finished one; false if it is unknown.
+     */
+    public boolean stopOrRemove(String id) {
+        synchronized (runs) {
+            LoadTestRun run = runs.get(id);
+            if (run == null) return false;
+            if (run.getState() == LoadTestRun.State.RUNNING) {
+                run.stop();
+            } else {
+                runs.remove(id);
+            }
+            return true;
+        }
+    }
+}
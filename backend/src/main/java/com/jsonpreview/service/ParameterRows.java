@@ -0,0 +1,246 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads parameter rows one at a time from a CSV file (the first record names the columns)
+ * or an NDJSON file (one JSON object per line), through a small fixed buffer, so files of
+ * any size are read without holding more than one row.
+ *
+ * Every row carries the byte offset just past it; opening at such an offset continues
+ * with the row after, which is what makes an iteration resumable. A row that cannot be
+ * parsed is returned with an error rather than ending the file.
+ */
+final class ParameterRows implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // A file without line breaks is not read into memory whole
+    private static final int MAX_RECORD = 16 * 1024 * 1024;
+
+    enum Format {
+        CSV, NDJSON;
+
+        /**
+         * The explicit format if given, otherwise the one the file name's extension implies.
+         *
+         * @throws IllegalArgumentException if neither names a supported format
+         */
+        static Format of(String format, String fileName) {
+            String name = format;
+            if (name == null || name.isBlank()) {
+                String lower = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+                name = lower.endsWith(".csv") ? "csv"
+                    : lower.endsWith(".ndjson") || lower.endsWith(".jsonl") ? "ndjson" : "";
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Parameter file format must be csv or ndjson");
+            }
+        }
+    }
+
+    static final class Row {
+        final Map<String, String> parameters;
+        final String error;
+        // Offset just past this row
+        final long end;
+
+        Row(Map<String, String> parameters, String error, long end) {
+            this.parameters = parameters;
+            this.error = error;
+            this.end = end;
+        }
+    }
+
+    private final Format format;
+    private final FileChannel channel;
+    private final ObjectMapper objectMapper;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+    // Offset of the next byte to be taken from the buffer
+    private long position;
+    private byte[] record = new byte[1024];
+    private int recordLength;
+    private List<String> columns;
+
+    private ParameterRows(Format format, FileChannel channel, ObjectMapper objectMapper) {
+        this.format = format;
+        this.channel = channel;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Opens {@code path} to read the rows after byte {@code offset}; 0 reads them all. A CSV
+     * header is always read from the start of the file.
+     *
+     * @throws IOException if the file cannot be read, or a CSV file has no header
+     */
+    static ParameterRows open(Path path, Format format, long offset, ObjectMapper objectMapper) throws IOException {
+        ParameterRows rows = new ParameterRows(format, FileChannel.open(path, StandardOpenOption.READ), objectMapper);
+        try {
+            if (format == Format.CSV) {
+                if (!rows.readRecord()) {
+                    throw new IOException("CSV file has no header");
+                }
+                String header = new String(rows.record, 0, rows.recordLength, StandardCharsets.UTF_8);
+                if (header.startsWith("\uFEFF")) {
+                    header = header.substring(1);
+                }
+                rows.columns = splitCsv(header);
+            }
+            if (offset > rows.position) {
+                rows.channel.position(offset);
+                rows.position = offset;
+                rows.buffer.clear().flip();
+            }
+            return rows;
+        } catch (IOException | RuntimeException e) {
+            rows.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Offset just past the last row read.
+     */
+    long position() { return position; }
+
+    /**
+     * The next row, or null at the end of the file.
+     */
+    Row next() throws IOException {
+        if (!readRecord()) {
+            return null;
+        }
+        String text = new String(record, 0, recordLength, StandardCharsets.UTF_8);
+        try {
+            return new Row(format == Format.CSV ? csvRow(text) : ndjsonRow(text), null, position);
+        } catch (IOException | IllegalArgumentException e) {
+            return new Row(null, "Invalid row: " + e.getMessage(), position);
+        }
+    }
+
+    private Map<String, String> csvRow(String text) {
+        List<String> values = splitCsv(text);
+        if (values.size() > columns.size()) {
+            throw new IllegalArgumentException(values.size() + " fields for " + columns.size() + " columns");
+        }
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            parameters.put(columns.get(i), values.get(i));
+        }
+        return parameters;
+    }
+
+    private Map<String, String> ndjsonRow(String text) throws IOException {
+        JsonNode node = objectMapper.readTree(text);
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("not a JSON object");
+        }
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (!value.isNull()) {
+                parameters.put(field.getKey(), value.isValueNode() ? value.asText() : value.toString());
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Reads up to the next line break (outside quotes, for CSV) into {@code record},
+     * skipping blank lines; false at the end of the file.
+     */
+    private boolean readRecord() throws IOException {
+        boolean csv = format == Format.CSV;
+        while (true) {
+            recordLength = 0;
+            boolean quoted = false;
+            boolean any = false;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int read = channel.read(buffer);
+                    buffer.flip();
+                    if (read < 0) break;
+                }
+                byte b = buffer.get();
+                position++;
+                any = true;
+                if (b == '\n' && !quoted) break;
+                if (csv && b == '"') quoted = !quoted;
+                if (recordLength == record.length) {
+                    if (recordLength >= MAX_RECORD) {
+                        throw new IOException("Row at offset " + (position - recordLength) + " exceeds " + MAX_RECORD + " bytes");
+                    }
+                    record = Arrays.copyOf(record, Math.min(record.length * 2, MAX_RECORD + 1));
+                }
+                record[recordLength++] = b;
+            }
+            if (recordLength > 0 && record[recordLength - 1] == '\r') {
+                recordLength--;
+            }
+            if (recordLength > 0) return true;
+            if (!any) return false;
+        }
+    }
+
+    /**
+     * Splits one CSV record (RFC 4180: quoted fields may hold commas, line breaks and
+     * doubled quotes).
+     */
+    static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,69 +1,140 @@
 package com.jsonpreview.service;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.jsonpreview.dto.RequestSummaryDto;
 import com.jsonpreview.model.PostmanCollection;
 import com.jsonpreview.model.PostmanEnvironment;
 import com.jsonpreview.model.PostmanItem;
 import com.jsonpreview.model.PostmanVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class PostmanParserService {
     
+    private static final Logger logger = LoggerFactory.getLogger(PostmanParserService.class);
+    
+    // Heap retained by a mapped collection relative to its JSON size (strings, lists, templates)
+    private static final int MAPPED_OVERHEAD_FACTOR = 3;
+    
     private final ObjectMapper objectMapper;
-    private PostmanCollection currentCollection;
-    private PostmanEnvironment currentEnvironment;
+    private final ObjectWriter summaryWriter;
+    private final StreamingCollectionParser streamingParser;
+    private final CollectionRegistry registry;
+    private final HotPathMetrics metrics;
+    private final long streamingThreshold;
     
-    public PostmanParserService() {
+    public PostmanParserService(CollectionRegistry registry,
+                                HotPathMetrics metrics,
+                                @Value("${collection.streaming-threshold:16MB}") DataSize streamingThreshold) {
         this.objectMapper = new ObjectMapper();
+        this.streamingParser = new StreamingCollectionParser(objectMapper);
+        this.registry = registry;
+        this.metrics = metrics;
+        this.streamingThreshold = streamingThreshold.toBytes();
+        // Same inclusion rule as the web layer (spring.jackson.default-property-inclusion)
+        this.summaryWriter = objectMapper.copy()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, RequestSummaryDto.class));
     }
     
-    public PostmanCollection parseCollection(MultipartFile file) throws IOException {
-        this.currentCollection = objectMapper.readValue(file.getInputStream(), PostmanCollection.class);
-        return this.currentCollection;
+    /**
+     * Parses an uploaded collection and publishes it to the registry, replacing any
+     * collection with the same id; a new id is generated when {@code collectionId} is null.
+     * Uploads larger than {@code collection.streaming-threshold} are ingested by
+     * {@link StreamingCollectionParser}: the file is spooled to disk and requests are
+     * inflated from it on execution instead of being held in memory.
+     */
+    public CollectionSnapshot parseCollection(MultipartFile file, String collectionId) throws IOException {
+        String id = collectionId != null && !collectionId.isBlank() ? collectionId : newId();
+        long start = System.nanoTime();
+        CollectionSnapshot snapshot = file.getSize() > streamingThreshold
+            ? parseCollectionStreaming(file, id)
+            : parseCollectionMapped(file, id);
+        metrics.recordUpload(HotPathMetrics.UPLOAD_COLLECTION, file.getSize(), System.nanoTime() - start);
+        registry.publishCollection(snapshot);
+        return snapshot;
     }
     
-    public PostmanEnvironment parseEnvironment(MultipartFile file) throws IOException {
-        this.currentEnvironment = objectMapper.readValue(file.getInputStream(), PostmanEnvironment.class);
-        return this.currentEnvironment;
+    private CollectionSnapshot parseCollectionMapped(MultipartFile file, String id) throws IOException {
+        PostmanCollection collection = objectMapper.readValue(file.getInputStream(), PostmanCollection.class);
+        CollectionIndex index = CollectionIndex.build(collection);
+        RequestListing listing = buildListing(index);
+        long estimate = MAPPED_OVERHEAD_FACTOR * (file.getSize() + listing.getJson().length);
+        return new CollectionSnapshot(id, collection, index, listing, null, estimate);
     }
     
-    public List<RequestSummaryDto> getAllRequests() {
-        if (currentCollection == null) {
-            return Collections.emptyList();
+    private CollectionSnapshot parseCollectionStreaming(MultipartFile file, String id) throws IOException {
+        long start = System.currentTimeMillis();
+        CollectionSource source = CollectionSource.spool(file);
+        try {
+            StreamingCollectionParser.Result result = streamingParser.parse(source);
+            CollectionIndex index = result.getIndex();
+            RequestListing listing = buildListing(index);
+            logger.info("Streamed collection of {} bytes: {} requests indexed in {} ms",
+                        source.size(), index.size(), System.currentTimeMillis() - start);
+            // Only summary metadata stays on the heap; bodies remain in the spooled file
+            long estimate = MAPPED_OVERHEAD_FACTOR * (long) listing.getJson().length;
+            return new CollectionSnapshot(id, result.getCollection(), index, listing, source, estimate);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
         }
-        
-        List<RequestSummaryDto> requests = new ArrayList<>();
-        extractRequestsFromItems(currentCollection.getItems(), requests);
-        return requests;
     }
     
-    private void extractRequestsFromItems(List<PostmanItem> items, List<RequestSummaryDto> requests) {
-        if (items == null) return;
-        
-        for (PostmanItem item : items) {
-            if (item.getRequest() != null) {
-                // This is a request
-                RequestSummaryDto dto = createRequestSummary(item);
-                requests.add(dto);
-            } else if (item.getItem() != null) {
-                // This is a folder, recurse
-                extractRequestsFromItems(item.getItem(), requests);
-            }
+    public EnvironmentSnapshot parseEnvironment(MultipartFile file, String environmentId) throws IOException {
+        long start = System.nanoTime();
+        PostmanEnvironment environment = objectMapper.readValue(file.getInputStream(), PostmanEnvironment.class);
+        String id = environmentId != null && !environmentId.isBlank() ? environmentId : newId();
+        EnvironmentSnapshot snapshot = new EnvironmentSnapshot(id, environment.getName(), toVariableMap(environment));
+        metrics.recordUpload(HotPathMetrics.UPLOAD_ENVIRONMENT, file.getSize(), System.nanoTime() - start);
+        registry.publishEnvironment(snapshot);
+        return snapshot;
+    }
+    
+    private static String newId() {
+        return UUID.randomUUID().toString();
+    }
+    
+    public List<RequestSummaryDto> getAllRequests() {
+        return getRequestListing(null).getSummaries();
+    }
+    
+    /**
+     * Summaries of a collection (the default one when {@code collectionId} is null) with
+     * their pre-serialized JSON and ETag.
+     */
+    public RequestListing getRequestListing(String collectionId) {
+        CollectionSnapshot snapshot = registry.getCollection(collectionId);
+        return snapshot != null ? snapshot.getListing() : RequestListing.EMPTY;
+    }
+    
+    private RequestListing buildListing(CollectionIndex index) throws IOException {
+        List<CollectionIndex.Entry> entries = index.getEntries();
+        List<RequestSummaryDto> requests = new ArrayList<>(entries.size());
+        for (CollectionIndex.Entry entry : entries) {
+            requests.add(createRequestSummary(entry));
         }
+        return new RequestListing(requests, summaryWriter.writeValueAsBytes(requests));
     }
     
-    private RequestSummaryDto createRequestSummary(PostmanItem item) {
+    private RequestSummaryDto createRequestSummary(CollectionIndex.Entry entry) {
+        PostmanItem item = entry.getItem();
         PostmanItem.PostmanRequest request = item.getRequest();
         RequestSummaryDto dto = new RequestSummaryDto();
         
         dto.setName(item.getName());
+        dto.setPath(entry.getPath());
         dto.setDescription(item.getDescription());
         dto.setMethod(request.getMethod());
         
@@ -77,6 +148,7 @@ public class PostmanParserService {
         // Query parameters
         if (request.getUrl() != null && request.getUrl().getQuery() != null) {
             for (PostmanItem.PostmanQuery query : request.getUrl().getQuery()) {
+                if (query.isDisabled()) continue;
                 parameters.add(new RequestSummaryDto.ParameterDto(
                     query.getKey(), query.getValue(), "query", query.getDescription()
                 ));
@@ -86,7 +158,7 @@ public class PostmanParserService {
         // Headers
         if (request.getHeader() != null) {
             for (PostmanItem.PostmanHeader header : request.getHeader()) {
-                if (isParameterizable(header.getValue())) {
+                if (!header.isDisabled() && isParameterizable(header.getValue())) {
                     parameters.add(new RequestSummaryDto.ParameterDto(
                         header.getKey(), header.getValue(), "header", header.getDescription()
                     ));
@@ -103,57 +175,73 @@ public class PostmanParserService {
     }
     
     public PostmanItem findRequestByName(String requestName) {
-        if (currentCollection == null) return null;
-        return findRequestInItems(currentCollection.getItems(), requestName);
+        CollectionIndex.Entry entry = findRequestEntry(null, requestName);
+        return entry != null ? entry.getItem() : null;
     }
     
-    private PostmanItem findRequestInItems(List<PostmanItem> items, String requestName) {
-        if (items == null) return null;
-        
-        for (PostmanItem item : items) {
-            if (item.getName().equals(requestName) && item.getRequest() != null) {
-                return item;
-            } else if (item.getItem() != null) {
-                PostmanItem found = findRequestInItems(item.getItem(), requestName);
-                if (found != null) return found;
-            }
-        }
-        return null;
+    /**
+     * Looks up a request by name or folder path, together with its compiled templates, in
+     * the given collection (the default one when {@code collectionId} is null).
+     */
+    public CollectionIndex.Entry findRequestEntry(String collectionId, String requestName) {
+        CollectionSnapshot snapshot = registry.getCollection(collectionId);
+        return snapshot != null ? snapshot.getIndex().find(requestName) : null;
     }
     
     public Map<String, String> getEnvironmentVariables() {
-        if (currentEnvironment == null || currentEnvironment.getValues() == null) {
+        return getEnvironmentVariables(null);
+    }
+    
+    public CollectionSnapshot findCollection(String collectionId) {
+        return registry.getCollection(collectionId);
+    }
+    
+    public EnvironmentSnapshot findEnvironment(String environment) {
+        return registry.getEnvironment(environment);
+    }
+    
+    /**
+     * Variables of the environment with the given id or name, or of the default
+     * environment when {@code environment} is null or "default"; empty when there is no such
+     * environment.
+     */
+    public Map<String, String> getEnvironmentVariables(String environment) {
+        EnvironmentSnapshot snapshot = registry.getEnvironment(environment);
+        return snapshot != null ? snapshot.getVariables() : Collections.emptyMap();
+    }
+    
+    private Map<String, String> toVariableMap(PostmanEnvironment environment) {
+        if (environment == null || environment.getValues() == null) {
             return Collections.emptyMap();
         }
         
-        return currentEnvironment.getValues().stream()
-            .collect(Collectors.toMap(
-                PostmanVariable::getKey,
-                PostmanVariable::getValue,
-                (existing, replacement) -> replacement
-            ));
+        // Later duplicates win; variables without a value are left unresolved
+        Map<String, String> variables = new HashMap<>();
+        for (PostmanVariable variable : environment.getValues()) {
+            if (variable.getKey() != null && variable.getValue() != null) {
+                variables.put(variable.getKey(), variable.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(variables);
     }
     
+    /**
+     * Fills {@code input} from the default environment and {@code parameters}. Callers with
+     * a selected environment render a {@link VariableTemplate} with its variables instead.
+     */
     public String replaceVariables(String input, Map<String, String> parameters) {
         if (input == null) return null;
-        
-        String result = input;
-        
-        // Replace environment variables
-        Map<String, String> envVars = getEnvironmentVariables();
-        for (Map.Entry<String, String> entry : envVars.entrySet()) {
-            result = result.replace("{{" + entry.getKey() + "}}", entry.getValue());
-        }
-        
-        // Replace parameters
-        if (parameters != null) {
-            for (Map.Entry<String, String> entry : parameters.entrySet()) {
-                result = result.replace("{{" + entry.getKey() + "}}", entry.getValue());
-                result = result.replace("${" + entry.getKey() + "}", entry.getValue());
-            }
-        }
-        
-        return result;
+        return VariableTemplate.compile(input).render(getEnvironmentVariables(), parameters);
+    }
+    
+    /**
+     * Parses an uploaded JSON response file, decoded as UTF-8.
+     */
+    public Object parseJsonResponse(MultipartFile file) throws IOException {
+        long start = System.nanoTime();
+        Object parsed = parseJsonResponse(new String(file.getBytes(), StandardCharsets.UTF_8));
+        metrics.recordUpload(HotPathMetrics.UPLOAD_JSON_RESPONSE, file.getSize(), System.nanoTime() - start);
+        return parsed;
     }
     
     public Object parseJsonResponse(String jsonContent) throws IOException {
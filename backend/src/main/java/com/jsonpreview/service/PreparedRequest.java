@@ -0,0 +1,63 @@
+package com.jsonpreview.service;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.core5.net.URIAuthority;
+
+/**
+ * A collection request resolved and rendered for one execution, or the reason it could
+ * not be. Splitting preparation from execution lets callers inspect the target (for
+ * per-host limits and the like) before the request goes out.
+ */
+public final class PreparedRequest {
+
+    private final String requestName;
+    private final HttpUriRequestBase httpRequest;
+    private final String error;
+    // Whether the execution may be answered from, and stored in, the ResponseCache
+    private final boolean cached;
+    // Whether the execution may share an identical one in flight (RequestCoalescer)
+    private final boolean coalesced;
+    private final ExecutionTimer timer;
+
+    private PreparedRequest(String requestName, HttpUriRequestBase httpRequest, String error,
+                            boolean cached, boolean coalesced, ExecutionTimer timer) {
+        this.requestName = requestName;
+        this.httpRequest = httpRequest;
+        this.error = error;
+        this.cached = cached;
+        this.coalesced = coalesced;
+        this.timer = timer;
+    }
+
+    static PreparedRequest of(String requestName, HttpUriRequestBase httpRequest, boolean cached, boolean coalesced,
+                              ExecutionTimer timer) {
+        return new PreparedRequest(requestName, httpRequest, null, cached, coalesced, timer);
+    }
+
+    static PreparedRequest failed(String requestName, String error) {
+        return new PreparedRequest(requestName, null, error, false, false, null);
+    }
+
+    public String getRequestName() { return requestName; }
+
+    public HttpUriRequestBase getHttpRequest() { return httpRequest; }
+
+    public String getError() { return error; }
+
+    public boolean isFailed() { return error != null; }
+
+    public boolean isCached() { return cached; }
+
+    public boolean isCoalesced() { return coalesced; }
+
+    ExecutionTimer getTimer() { return timer; }
+
+    /**
+     * {@code host[:port]} of the rendered URL, or null when preparation failed.
+     */
+    public String getAuthority() {
+        if (httpRequest == null) return null;
+        URIAuthority authority = httpRequest.getAuthority();
+        return authority != null ? authority.toString() : null;
+    }
+}
@@ -0,0 +1,148 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution: concurrent executions of the same rendered request share one
+ * upstream call and the one {@link ApiResponseDto} it produces.
+ *
+ * The first caller for a key (the leader) starts the call; callers arriving while it is
+ * in flight (followers) wait on it and get a shallow copy of its response flagged
+ * {@code coalesced}, with the body itself shared. A caller that gives up cancels only its
+ * own wait; the upstream call is cancelled once every waiter has. Keys are released as
+ * soon as the call completes, so later executions go upstream again.
+ *
+ * Metrics: {@code execution.coalescing.requests} ({@code role} = leader, follower) and
+ * {@code execution.coalescing.inflight}.
+ */
+@Service
+public class RequestCoalescer implements MeterBinder {
+
+    private final Map<String, Flight> inflight = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+
+    /**
+     * Joins the call in flight for {@code key}, or starts one with {@code call}. A leader's
+     * {@code call} runs on the calling thread, so a blocking call has completed by the time
+     * this returns.
+     */
+    public CompletableFuture<ApiResponseDto> execute(String key, Supplier<CompletableFuture<ApiResponseDto>> call) {
+        while (true) {
+            Flight current = inflight.get(key);
+            if (current != null) {
+                if (current.join()) {
+                    followers.increment();
+                    return current.follow(true);
+                }
+                // Every waiter gave up; that call is being cancelled
+                inflight.remove(key, current);
+                continue;
+            }
+            Flight flight = new Flight(key);
+            if (inflight.putIfAbsent(key, flight) != null) continue;
+
+            leaders.increment();
+            CompletableFuture<ApiResponseDto> upstream;
+            try {
+                upstream = call.get();
+            } catch (RuntimeException | Error e) {
+                upstream = CompletableFuture.failedFuture(e);
+            }
+            flight.start(upstream);
+            return flight.follow(false);
+        }
+    }
+
+    public long getLeaders() { return leaders.sum(); }
+
+    public long getFollowers() { return followers.sum(); }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("execution.coalescing.requests", leaders, LongAdder::sum)
+            .tag("role", "leader")
+            .description("Executions that went upstream on behalf of identical concurrent ones")
+            .register(registry);
+        FunctionCounter.builder("execution.coalescing.requests", followers, LongAdder::sum)
+            .tag("role", "follower")
+            .description("Executions answered by an identical call already in flight")
+            .register(registry);
+        Gauge.builder("execution.coalescing.inflight", inflight, Map::size)
+            .description("Distinct coalescable requests in flight")
+            .register(registry);
+    }
+
+    private final class Flight {
+        final String key;
+        final CompletableFuture<ApiResponseDto> shared = new CompletableFuture<>();
+        // Callers still waiting; 0 once all have cancelled, after which nobody may join
+        final AtomicInteger waiters = new AtomicInteger(1);
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        boolean join() {
+            int current;
+            do {
+                current = waiters.get();
+                if (current <= 0 || shared.isDone()) return false;
+            } while (!waiters.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void start(CompletableFuture<ApiResponseDto> upstream) {
+            upstream.whenComplete((response, e) -> {
+                inflight.remove(key, this);
+                if (e != null) {
+                    shared.completeExceptionally(e);
+                } else {
+                    shared.complete(response);
+                }
+            });
+            shared.whenComplete((response, e) -> {
+                if (shared.isCancelled()) upstream.cancel(true);
+            });
+        }
+
+        CompletableFuture<ApiResponseDto> follow(boolean coalesced) {
+            CompletableFuture<ApiResponseDto> own = shared.thenApply(response -> coalesced ? copy(response) : response);
+            own.whenComplete((response, e) -> {
+                if (own.isCancelled() && waiters.decrementAndGet() == 0) {
+                    inflight.remove(key, this);
+                    shared.cancel(true);
+                }
+            });
+            return own;
+        }
+    }
+
+    private static ApiResponseDto copy(ApiResponseDto response) {
+        ApiResponseDto copy = new ApiResponseDto();
+        copy.setStatusCode(response.getStatusCode());
+        copy.setHeaders(response.getHeaders());
+        copy.setResponseBody(response.getResponseBody());
+        copy.setRawResponse(response.getRawResponse());
+        copy.setExecutionTimeMs(response.getExecutionTimeMs());
+        copy.setTimestamp(response.getTimestamp());
+        copy.setError(response.getError());
+        copy.setCacheStatus(response.getCacheStatus());
+        copy.setTimings(response.getTimings());
+        copy.setConnectionReused(response.getConnectionReused());
+        copy.setCoalesced(true);
+        return copy;
+    }
+}
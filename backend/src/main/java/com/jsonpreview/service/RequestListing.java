@@ -0,0 +1,36 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.RequestSummaryDto;
+import org.springframework.util.DigestUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Request summaries of one collection upload, materialized once together with their
+ * serialized JSON and a strong ETag derived from those bytes. Served as-is by
+ * {@code GET /requests} so repeat polls neither rebuild nor re-serialize anything.
+ */
+public final class RequestListing {
+
+    public static final RequestListing EMPTY = new RequestListing(Collections.emptyList(), "[]".getBytes());
+
+    private final List<RequestSummaryDto> summaries;
+    private final byte[] json;
+    private final String etag;
+
+    public RequestListing(List<RequestSummaryDto> summaries, byte[] json) {
+        this.summaries = Collections.unmodifiableList(summaries);
+        this.json = json;
+        this.etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+    }
+
+    public List<RequestSummaryDto> getSummaries() { return summaries; }
+
+    /**
+     * Shared buffer; callers must not modify it.
+     */
+    public byte[] getJson() { return json; }
+
+    public String getEtag() { return etag; }
+}
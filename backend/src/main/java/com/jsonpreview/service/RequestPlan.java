@@ -0,0 +1,369 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.model.PostmanItem;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A collection request compiled for execution, so that executing it only fills in the
+ * variable slots.
+ *
+ * Everything that doesn't depend on variables is settled once: the method, the URL split
+ * into a base template and query parameters (taken from {@code url.query} when present,
+ * disabled ones dropped), header templates, the body as UTF-8 byte chunks around its
+ * slots, and the request's {@code auth} (bearer, basic or API key) turned into one more
+ * header or query parameter. A URL without slots is parsed once, and slot-free headers
+ * and bodies are built once and shared by every execution.
+ *
+ * Rendered URLs are percent-encoded leniently: characters a URI can't carry are encoded,
+ * existing {@code %XX} escapes are kept, and query parameters from {@code url.query}
+ * additionally get {@code &}, {@code =}, {@code +} and {@code #} encoded in their keys
+ * and values.
+ */
+public final class RequestPlan {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestPlan.class);
+
+    private static final Set<String> METHODS = Set.of("GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS");
+    private static final Set<String> BODY_METHODS = Set.of("POST", "PUT", "PATCH");
+
+    // ASCII characters sent as they are in a whole URL, and in a query parameter key or value
+    private static final boolean[] URL_CHARS = allowed("-._~!$&'()*+,;=:/?#[]@");
+    private static final boolean[] QUERY_CHARS = allowed("-._~!$'()*,;:/?@");
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final PostmanItem.PostmanRequest request;
+    private final String method;
+    // Up to the query when it comes from url.query, else the whole raw URL; null without a URL
+    private final VariableTemplate base;
+    private final List<QueryParam> query;
+    // Parsed once when neither the base nor the query has slots
+    private final URI fixedUri;
+    private final List<HeaderPart> headers;
+    private final BodyTemplate body;
+    // Names of every slot, in the order they first appear
+    private final Set<String> variables;
+
+    private RequestPlan(PostmanItem.PostmanRequest request, String method, VariableTemplate base,
+                        List<QueryParam> query, List<HeaderPart> headers, BodyTemplate body, Set<String> variables) {
+        this.request = request;
+        this.method = method;
+        this.base = base;
+        this.query = query;
+        this.headers = headers;
+        this.body = body;
+        this.variables = variables;
+        this.fixedUri = fixedUri();
+    }
+
+    /**
+     * Compiles {@code request}; fails on a method that can't be sent.
+     */
+    public static RequestPlan compile(PostmanItem.PostmanRequest request) {
+        String method = request.getMethod() != null ? request.getMethod().toUpperCase(Locale.ROOT) : "GET";
+        if (!METHODS.contains(method)) {
+            throw new IllegalArgumentException("Unsupported HTTP method: " + method);
+        }
+
+        Set<String> variables = new LinkedHashSet<>();
+        VariableTemplate base = null;
+        List<QueryParam> query = new ArrayList<>();
+        PostmanItem.PostmanUrl url = request.getUrl();
+        if (url != null && url.getRaw() != null) {
+            String raw = url.getRaw();
+            if (url.getQuery() != null && !url.getQuery().isEmpty()) {
+                int queryStart = raw.indexOf('?');
+                base = compile(queryStart >= 0 ? raw.substring(0, queryStart) : raw, variables);
+                for (PostmanItem.PostmanQuery param : url.getQuery()) {
+                    if (param.isDisabled() || param.getKey() == null) continue;
+                    query.add(new QueryParam(compile(param.getKey(), variables), compile(param.getValue(), variables)));
+                }
+            } else {
+                base = compile(raw, variables);
+            }
+        }
+
+        List<HeaderPart> headers = new ArrayList<>();
+        if (request.getHeader() != null) {
+            for (PostmanItem.PostmanHeader header : request.getHeader()) {
+                if (header.isDisabled() || header.getKey() == null) continue;
+                headers.add(HeaderPart.of(header.getKey(), compile(header.getValue(), variables)));
+            }
+        }
+        addAuth(request.getAuth(), headers, query, variables);
+
+        BodyTemplate body = null;
+        if (request.getBody() != null && request.getBody().getRaw() != null && BODY_METHODS.contains(method)) {
+            body = new BodyTemplate(compile(request.getBody().getRaw(), variables));
+        }
+
+        return new RequestPlan(request, method, base, Collections.unmodifiableList(query),
+                               Collections.unmodifiableList(headers), body, Collections.unmodifiableSet(variables));
+    }
+
+    private static VariableTemplate compile(String source, Set<String> variables) {
+        VariableTemplate template = VariableTemplate.compile(source);
+        if (template != null) variables.addAll(template.getSlotNames());
+        return template;
+    }
+
+    private static void addAuth(PostmanItem.PostmanAuth auth, List<HeaderPart> headers, List<QueryParam> query,
+                                Set<String> variables) {
+        if (auth == null || auth.getType() == null) return;
+        String type = auth.getType().toLowerCase(Locale.ROOT);
+        switch (type) {
+            case "noauth":
+            case "inherit":
+                return;
+            case "bearer": {
+                String token = attribute(auth.getBearer(), "token");
+                if (token != null) {
+                    addAuthHeader(headers, HeaderPart.of(HttpHeaders.AUTHORIZATION, compile("Bearer " + token, variables)));
+                }
+                return;
+            }
+            case "basic": {
+                VariableTemplate username = compile(orEmpty(attribute(auth.getBasic(), "username")), variables);
+                VariableTemplate password = compile(orEmpty(attribute(auth.getBasic(), "password")), variables);
+                addAuthHeader(headers, username.hasSlots() || password.hasSlots()
+                    ? new HeaderPart(HttpHeaders.AUTHORIZATION, null,
+                                     (env, params) -> basic(username.render(env, params), password.render(env, params)))
+                    : HeaderPart.fixed(HttpHeaders.AUTHORIZATION, basic(username.getSource(), password.getSource())));
+                return;
+            }
+            case "apikey": {
+                String key = attribute(auth.getApikey(), "key");
+                if (key == null || key.isEmpty()) return;
+                VariableTemplate value = compile(orEmpty(attribute(auth.getApikey(), "value")), variables);
+                if ("query".equalsIgnoreCase(attribute(auth.getApikey(), "in"))) {
+                    query.add(new QueryParam(compile(key, variables), value));
+                } else {
+                    addAuthHeader(headers, HeaderPart.of(key, value));
+                }
+                return;
+            }
+            default:
+                logger.warn("Auth type '{}' is not supported; the request is sent without it", type);
+        }
+    }
+
+    /**
+     * Adds the header auth produces, unless the request sets that header itself.
+     */
+    private static void addAuthHeader(List<HeaderPart> headers, HeaderPart auth) {
+        for (HeaderPart header : headers) {
+            if (header.name.equalsIgnoreCase(auth.name)) return;
+        }
+        headers.add(auth);
+    }
+
+    private static String attribute(Map<String, Object> attributes, String name) {
+        Object value = attributes != null ? attributes.get(name) : null;
+        return value != null ? value.toString() : null;
+    }
+
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String basic(String username, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public PostmanItem.PostmanRequest getRequest() { return request; }
+
+    public String getMethod() { return method; }
+
+    /**
+     * Every variable the request refers to, wherever it appears (URL, query, headers,
+     * auth or body).
+     */
+    public Set<String> getVariableNames() { return variables; }
+
+    /**
+     * Fills the slots in from the environment and request parameters (see
+     * {@link VariableTemplate} for the resolution rules).
+     */
+    public HttpUriRequestBase render(Map<String, String> environment, Map<String, String> parameters)
+            throws URISyntaxException {
+        Map<String, String> env = environment != null ? environment : Collections.emptyMap();
+        Map<String, String> params = parameters != null ? parameters : Collections.emptyMap();
+
+        HttpUriRequestBase httpRequest = new HttpUriRequestBase(method, fixedUri != null ? fixedUri : renderUri(env, params));
+        for (HeaderPart header : headers) {
+            httpRequest.addHeader(header.render(env, params));
+        }
+        if (body != null) {
+            httpRequest.setEntity(new ByteArrayEntity(body.render(env, params), ContentType.APPLICATION_JSON));
+        }
+        return httpRequest;
+    }
+
+    private URI fixedUri() {
+        if (base == null || base.hasSlots()) return null;
+        for (QueryParam param : query) {
+            if (param.key.hasSlots() || (param.value != null && param.value.hasSlots())) return null;
+        }
+        try {
+            return renderUri(Collections.emptyMap(), Collections.emptyMap());
+        } catch (URISyntaxException e) {
+            // Reported on execution
+            return null;
+        }
+    }
+
+    private URI renderUri(Map<String, String> env, Map<String, String> params) throws URISyntaxException {
+        if (base == null) throw new IllegalArgumentException("Request has no URL");
+        StringBuilder url = new StringBuilder(base.getSource().length() + query.size() * 24);
+        encode(url, base.render(env, params), URL_CHARS);
+        char separator = url.indexOf("?") >= 0 ? '&' : '?';
+        for (QueryParam param : query) {
+            url.append(separator);
+            separator = '&';
+            encode(url, param.key.render(env, params), QUERY_CHARS);
+            if (param.value != null) {
+                url.append('=');
+                encode(url, param.value.render(env, params), QUERY_CHARS);
+            }
+        }
+        return new URI(url.toString());
+    }
+
+    private static boolean[] allowed(String punctuation) {
+        boolean[] allowed = new boolean[128];
+        for (char c = 'a'; c <= 'z'; c++) allowed[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) allowed[c] = true;
+        for (char c = '0'; c <= '9'; c++) allowed[c] = true;
+        for (char c : punctuation.toCharArray()) allowed[c] = true;
+        return allowed;
+    }
+
+    private static void encode(StringBuilder out, String value, boolean[] allowed) {
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c < 128 && allowed[c]) {
+                out.append(c);
+                i++;
+            } else if (c == '%' && i + 2 < length && isHex(value.charAt(i + 1)) && isHex(value.charAt(i + 2))) {
+                out.append(value, i, i + 3);
+                i += 3;
+            } else {
+                int end = i + Character.charCount(value.codePointAt(i));
+                for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+                }
+                i = end;
+            }
+        }
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static final class QueryParam {
+        final VariableTemplate key;
+        // Null for a bare key ("?flag")
+        final VariableTemplate value;
+
+        QueryParam(VariableTemplate key, VariableTemplate value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    @FunctionalInterface
+    private interface HeaderValue {
+        String render(Map<String, String> environment, Map<String, String> parameters);
+    }
+
+    private static final class HeaderPart {
+        final String name;
+        // Built once when the value has no slots
+        final Header fixed;
+        final HeaderValue value;
+
+        HeaderPart(String name, Header fixed, HeaderValue value) {
+            this.name = name;
+            this.fixed = fixed;
+            this.value = value;
+        }
+
+        static HeaderPart of(String name, VariableTemplate value) {
+            return value != null && value.hasSlots()
+                ? new HeaderPart(name, null, value::render)
+                : fixed(name, value != null ? value.getSource() : null);
+        }
+
+        static HeaderPart fixed(String name, String value) {
+            return new HeaderPart(name, new BasicHeader(name, value), null);
+        }
+
+        Header render(Map<String, String> env, Map<String, String> params) {
+            return fixed != null ? fixed : new BasicHeader(name, value.render(env, params));
+        }
+    }
+
+    /**
+     * Body template with its literals pre-encoded, rendered straight to bytes. Slots are
+     * delimited by ASCII, so encoding literals and values apart gives the same bytes as
+     * encoding the rendered text.
+     */
+    private static final class BodyTemplate {
+        private final VariableTemplate template;
+        // literals[i] precedes slot i
+        private final byte[][] literals;
+        private final byte[] fixed;
+
+        BodyTemplate(VariableTemplate template) {
+            this.template = template;
+            int slots = template.slotCount();
+            this.literals = new byte[slots + 1][];
+            for (int i = 0; i <= slots; i++) {
+                literals[i] = template.literal(i).getBytes(StandardCharsets.UTF_8);
+            }
+            this.fixed = slots == 0 ? literals[0] : null;
+        }
+
+        byte[] render(Map<String, String> env, Map<String, String> params) {
+            if (fixed != null) return fixed;
+            int slots = template.slotCount();
+            byte[][] values = new byte[slots][];
+            int length = literals[slots].length;
+            for (int s = 0; s < slots; s++) {
+                values[s] = template.slotText(s, env, params).getBytes(StandardCharsets.UTF_8);
+                length += literals[s].length + values[s].length;
+            }
+            byte[] out = new byte[length];
+            int position = 0;
+            for (int s = 0; s < slots; s++) {
+                System.arraycopy(literals[s], 0, out, position, literals[s].length);
+                position += literals[s].length;
+                System.arraycopy(values[s], 0, out, position, values[s].length);
+                position += values[s].length;
+            }
+            System.arraycopy(literals[slots], 0, out, position, literals[slots].length);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.BufferedBody;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Responses of GET executions, keyed by the rendered request (method, URL after variable
+ * substitution and every request header), so repeated executions with the same
+ * parameters can skip the upstream.
+ *
+ * Entries hold the response as already processed for {@link ApiResponseDto}: the
+ * {@link BufferedBody} in bytes mode, the parsed tree in tree mode. A hit therefore costs
+ * neither a round trip nor a re-parse. Freshness follows the upstream's
+ * {@code Cache-Control: max-age} / {@code Expires} ({@code no-store} is never cached,
+ * {@code no-cache} always revalidates); a stale entry with an {@code ETag} or
+ * {@code Last-Modified} is revalidated with a conditional request, and a 304 answers
+ * from the cache. Least recently used entries are evicted to keep the total estimated
+ * size under {@code execution.cache.max-size}.
+ *
+ * Metrics: {@code execution.cache.requests} ({@code result} = hit, revalidated, miss),
+ * {@code execution.cache.evictions}, {@code execution.cache.entries},
+ * {@code execution.cache.bytes}.
+ */
+@Service
+public class ResponseCache implements MeterBinder {
+
+    public static final String HIT = "HIT";
+    public static final String REVALIDATED = "REVALIDATED";
+    public static final String MISS = "MISS";
+
+    // Estimated heap of an entry besides its body
+    private static final long ENTRY_OVERHEAD = 512;
+
+    private final boolean enabledByDefault;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long defaultTtlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResponseCache(@Value("${execution.cache.enabled:false}") boolean enabledByDefault,
+                         @Value("${execution.cache.max-size:64MB}") DataSize maxSize,
+                         @Value("${execution.cache.max-entry-size:4MB}") DataSize maxEntrySize,
+                         @Value("${execution.cache.default-ttl:0s}") Duration defaultTtl) {
+        this.enabledByDefault = enabledByDefault;
+        this.maxBytes = maxSize.toBytes();
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), maxBytes);
+        this.defaultTtlMillis = defaultTtl.toMillis();
+    }
+
+    /**
+     * Whether an execution uses the cache, given its own opt-in / opt-out (may be null).
+     */
+    public boolean isEnabled(Boolean requested) {
+        return requested != null ? requested : enabledByDefault;
+    }
+
+    /**
+     * Looks up a request about to be sent; null if its method is not cacheable. A stale
+     * entry with validators adds the matching conditional headers to {@code request}.
+     */
+    public Lookup lookup(HttpUriRequestBase request) {
+        if (!"GET".equals(request.getMethod())) return null;
+        String key = keyOf(request);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && !entry.isFresh(System.currentTimeMillis())) {
+            if (entry.etag == null && entry.lastModified == null) {
+                entry = null;
+            } else {
+                if (entry.etag != null) request.setHeader(HttpHeaders.IF_NONE_MATCH, entry.etag);
+                if (entry.lastModified != null) request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified);
+            }
+        }
+        return new Lookup(key, entry);
+    }
+
+    /**
+     * Outcome of {@link #lookup}: the cache key and any stored entry, fresh or not.
+     */
+    public final class Lookup {
+        private final String key;
+        private final Entry entry;
+
+        private Lookup(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        /**
+         * The stored response if it can be served without asking the upstream.
+         */
+        public ApiResponseDto fresh(long startTime) {
+            if (entry == null || !entry.isFresh(System.currentTimeMillis())) return null;
+            hits.increment();
+            return entry.toResponse(startTime, HIT);
+        }
+
+        /**
+         * Completes an execution that went to the upstream: a 304 to a conditional request
+         * is answered from the entry it revalidated, anything else is the new response,
+         * stored if cacheable.
+         */
+        public ApiResponseDto complete(int statusCode, Header[] headers, ApiResponseDto response,
+                                       BufferedBody body, long startTime) {
+            if (statusCode == 304 && entry != null) {
+                revalidations.increment();
+                Entry refreshed = entry.revalidated(headers, System.currentTimeMillis());
+                put(key, refreshed);
+                return refreshed.toResponse(startTime, REVALIDATED);
+            }
+            misses.increment();
+            response.setCacheStatus(MISS);
+            if (statusCode != 200 || response.getError() != null) return response;
+
+            long ttl = freshnessMillis(headers);
+            String etag = first(headers, HttpHeaders.ETAG);
+            String lastModified = first(headers, HttpHeaders.LAST_MODIFIED);
+            if (ttl < 0 || (ttl == 0 && etag == null && lastModified == null) || "*".equals(first(headers, HttpHeaders.VARY))) {
+                return response;
+            }
+            long weight = ENTRY_OVERHEAD + weightOf(response, body);
+            if (weight > maxEntryBytes || (body != null && body.isMapped())) return response;
+            put(key, new Entry(response, etag, lastModified, ttl, System.currentTimeMillis(), weight));
+            return response;
+        }
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) bytes -= previous.weight;
+        bytes += entry.weight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Entry victim = eldest.next();
+            eldest.remove();
+            bytes -= victim.weight;
+            evictions.increment();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized long getBytes() { return bytes; }
+
+    public long getHits() { return hits.sum(); }
+
+    public long getRevalidations() { return revalidations.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    public long getEvictions() { return evictions.sum(); }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        requestCounter(registry, "hit", hits);
+        requestCounter(registry, "revalidated", revalidations);
+        requestCounter(registry, "miss", misses);
+        FunctionCounter.builder("execution.cache.evictions", evictions, LongAdder::sum)
+            .description("Responses evicted to stay within the size budget")
+            .register(registry);
+        Gauge.builder("execution.cache.entries", this, ResponseCache::size)
+            .description("Responses currently cached")
+            .register(registry);
+        Gauge.builder("execution.cache.bytes", this, ResponseCache::getBytes)
+            .description("Estimated heap held by cached responses")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    private static void requestCounter(MeterRegistry registry, String result, LongAdder count) {
+        FunctionCounter.builder("execution.cache.requests", count, LongAdder::sum)
+            .tag("result", result)
+            .description("Cacheable executions by outcome")
+            .register(registry);
+    }
+
+    /**
+     * Method, URL and headers in a canonical order; header names are case-insensitive.
+     */
+    static String keyOf(HttpUriRequestBase request) {
+        List<String> headers = new ArrayList<>();
+        for (Header header : request.getHeaders()) {
+            headers.add(header.getName().toLowerCase(Locale.ROOT) + ':' + header.getValue());
+        }
+        Collections.sort(headers);
+        StringBuilder key = new StringBuilder(request.getMethod()).append(' ');
+        try {
+            key.append(request.getUri());
+        } catch (URISyntaxException e) {
+            key.append(request.getRequestUri());
+        }
+        for (String header : headers) {
+            key.append('\n').append(header);
+        }
+        return key.toString();
+    }
+
+    /**
+     * How long a response stays fresh: 0 to always revalidate, -1 if it must not be stored.
+     */
+    private long freshnessMillis(Header[] headers) {
+        boolean sawCacheControl = false;
+        long maxAge = -1;
+        for (Header header : headers) {
+            if (!HttpHeaders.CACHE_CONTROL.equalsIgnoreCase(header.getName())) continue;
+            sawCacheControl = true;
+            for (String directive : header.getValue().split(",")) {
+                String d = directive.trim().toLowerCase(Locale.ROOT);
+                if (d.equals("no-store")) return -1;
+                if (d.equals("no-cache")) return 0;
+                if (d.startsWith("max-age=")) {
+                    try {
+                        maxAge = Math.max(0, Long.parseLong(d.substring(8).replace("\"", ""))) * 1000;
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        if (maxAge >= 0) return maxAge;
+        String expires = first(headers, HttpHeaders.EXPIRES);
+        if (expires != null) {
+            Instant expiry = DateUtils.parseStandardDate(expires);
+            if (expiry == null) return 0;
+            String date = first(headers, HttpHeaders.DATE);
+            Instant now = date != null && DateUtils.parseStandardDate(date) != null
+                ? DateUtils.parseStandardDate(date) : Instant.now();
+            return Math.max(0, expiry.toEpochMilli() - now.toEpochMilli());
+        }
+        return sawCacheControl ? 0 : defaultTtlMillis;
+    }
+
+    private static long weightOf(ApiResponseDto response, BufferedBody body) {
+        long weight = 0;
+        if (response.getHeaders() != null) {
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                weight += 2L * (header.getKey().length() + header.getValue().length()) + 64;
+            }
+        }
+        if (body != null && response.getResponseBody() == body) {
+            return weight + body.size();
+        }
+        // Tree mode: the raw String plus a parsed tree of several times the text
+        Object raw = response.getRawResponse();
+        return weight + (raw instanceof String ? 6L * ((String) raw).length() : 0);
+    }
+
+    private static String first(Header[] headers, String name) {
+        for (Header header : headers) {
+            if (name.equalsIgnoreCase(header.getName())) return header.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * A stored response. Immutable; revalidation replaces it with a copy fresh again.
+     */
+    private final class Entry {
+        final int statusCode;
+        final Map<String, String> headers;
+        final Object responseBody;
+        final Object rawResponse;
+        final String etag;
+        final String lastModified;
+        final long ttlMillis;
+        final long storedAt;
+        final long weight;
+
+        Entry(ApiResponseDto response, String etag, String lastModified, long ttlMillis, long storedAt, long weight) {
+            this(response.getStatusCode(), Collections.unmodifiableMap(response.getHeaders()), response.getResponseBody(),
+                 response.getRawResponse(), etag, lastModified, ttlMillis, storedAt, weight);
+        }
+
+        private Entry(int statusCode, Map<String, String> headers, Object responseBody, Object rawResponse,
+                      String etag, String lastModified, long ttlMillis, long storedAt, long weight) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.responseBody = responseBody;
+            this.rawResponse = rawResponse;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.ttlMillis = ttlMillis;
+            this.storedAt = storedAt;
+            this.weight = weight;
+        }
+
+        boolean isFresh(long now) {
+            return now - storedAt < ttlMillis;
+        }
+
+        /**
+         * The entry after a 304, which may carry new freshness and validators.
+         */
+        Entry revalidated(Header[] notModified, long now) {
+            boolean hasFreshness = first(notModified, HttpHeaders.CACHE_CONTROL) != null
+                || first(notModified, HttpHeaders.EXPIRES) != null;
+            long ttl = hasFreshness ? Math.max(0, freshnessMillis(notModified)) : ttlMillis;
+            String newEtag = first(notModified, HttpHeaders.ETAG);
+            return new Entry(statusCode, headers, responseBody, rawResponse, newEtag != null ? newEtag : etag,
+                             lastModified, ttl, now, weight);
+        }
+
+        ApiResponseDto toResponse(long startTime, String cacheStatus) {
+            ApiResponseDto dto = new ApiResponseDto();
+            dto.setStatusCode(statusCode);
+            dto.setHeaders(headers);
+            dto.setResponseBody(responseBody);
+            dto.setRawResponse(rawResponse);
+            dto.setCacheStatus(cacheStatus);
+            dto.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.jsonpreview.dto.CollectionRunRequestDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The requests of one collection run and the dependencies between them, as resolved by
+ * {@link CollectionRunService#resolve}.
+ *
+ * A request depends on another when it refers to a variable the other extracts. With
+ * several producers of a variable, a request takes it from the closest one before it in
+ * document order, so dependencies always point backwards and the graph has no cycles.
+ * Variables no earlier request produces come from the environment and run parameters.
+ */
+public final class RunGraph {
+
+    private final CollectionRunRequestDto request;
+    private final String collectionId;
+    private final List<Step> steps;
+
+    RunGraph(CollectionRunRequestDto request, String collectionId, List<Step> steps) {
+        this.request = request;
+        this.collectionId = collectionId;
+        this.steps = steps;
+        for (Step step : steps) {
+            for (int dependency : step.dependencies) {
+                steps.get(dependency).dependents.add(step.index);
+            }
+        }
+    }
+
+    CollectionRunRequestDto getRequest() { return request; }
+
+    String getCollectionId() { return collectionId; }
+
+    List<Step> getSteps() { return steps; }
+
+    public int size() { return steps.size(); }
+
+    static final class Step {
+        final int index;
+        final String path;
+        // Variable -> index of the step it is taken from
+        final Map<String, Integer> inputs;
+        // Variable -> where to find it in this step's response
+        final Map<String, Extraction> extract;
+        final int[] dependencies;
+        final List<Integer> dependents = new ArrayList<>();
+
+        Step(int index, String path, Map<String, Integer> inputs, Map<String, Extraction> extract) {
+            this.index = index;
+            this.path = path;
+            this.inputs = inputs;
+            this.extract = extract;
+            this.dependencies = inputs.values().stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        }
+    }
+
+    /**
+     * A response header, or a JSON Pointer into the response body.
+     */
+    static final class Extraction {
+        final String source;
+        final String header;
+        final JsonPointer pointer;
+
+        Extraction(String source, String header, JsonPointer pointer) {
+            this.source = source;
+            this.header = header;
+            this.pointer = pointer;
+        }
+    }
+}
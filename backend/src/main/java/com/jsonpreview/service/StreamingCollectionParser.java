@@ -0,0 +1,196 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsonpreview.model.PostmanCollection;
+import com.jsonpreview.model.PostmanItem;
+import com.jsonpreview.model.PostmanVariable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token-stream ingestion of Postman collections too large to map into a full object graph.
+ *
+ * One pass over {@link JsonParser} tokens builds the {@link CollectionIndex} directly.
+ * For every request only what the summary listing needs is materialized (method, URL,
+ * headers); the body, auth, scripts ({@code event}) and saved example responses are
+ * skipped token by token and never become {@code String}s. Each request instead records
+ * the byte range of its {@code request} object in the spooled {@link CollectionSource},
+ * and is inflated into a full {@link PostmanItem.PostmanRequest} only when executed.
+ *
+ * Peak heap during ingestion is therefore independent of body and example sizes: the
+ * parser's fixed read buffers (~64 KB) plus the retained per-request metadata - one
+ * summary-only item, one {@code RequestSummaryDto} and its share of the serialized
+ * listing, typically 2-3x the JSON size of the request's name, URL and headers. For a
+ * 200 MB export whose bulk is bodies and examples, that is a few MB per 10,000 requests.
+ */
+public class StreamingCollectionParser {
+
+    private static final TypeReference<List<PostmanItem.PostmanHeader>> HEADER_LIST = new TypeReference<>() {};
+    private static final TypeReference<List<PostmanVariable>> VARIABLE_LIST = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+
+    public StreamingCollectionParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public static final class Result {
+        private final PostmanCollection collection;
+        private final CollectionIndex index;
+
+        private Result(PostmanCollection collection, CollectionIndex index) {
+            this.collection = collection;
+            this.index = index;
+        }
+
+        /**
+         * Collection tree whose requests carry summary fields only.
+         */
+        public PostmanCollection getCollection() { return collection; }
+
+        public CollectionIndex getIndex() { return index; }
+    }
+
+    public Result parse(CollectionSource source) throws IOException {
+        PostmanCollection collection = new PostmanCollection();
+        CollectionIndex.Builder builder = new CollectionIndex.Builder();
+
+        try (InputStream in = source.openStream(); JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Collection must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "info":
+                        collection.setInfo(token == JsonToken.START_OBJECT
+                            ? parser.readValueAs(PostmanCollection.CollectionInfo.class) : null);
+                        break;
+                    case "item":
+                        collection.setItems(token == JsonToken.START_ARRAY
+                            ? parseItems(parser, builder, source) : null);
+                        break;
+                    case "variable":
+                        collection.setVariables(token == JsonToken.START_ARRAY
+                            ? parser.readValueAs(VARIABLE_LIST) : null);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        if (collection.getItems() == null) {
+            collection.setItems(new ArrayList<>());
+        }
+        return new Result(collection, builder.build());
+    }
+
+    private List<PostmanItem> parseItems(JsonParser parser, CollectionIndex.Builder builder, CollectionSource source)
+            throws IOException {
+        List<PostmanItem> items = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                items.add(parseItem(parser, builder, source));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return items;
+    }
+
+    private PostmanItem parseItem(JsonParser parser, CollectionIndex.Builder builder, CollectionSource source)
+            throws IOException {
+        PostmanItem item = new PostmanItem();
+        CollectionIndex.Folder folder = null;
+        long requestStart = -1;
+        long requestEnd = -1;
+
+        // Fields may come in any order, so the item is only indexed once it is closed
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "name":
+                    item.setName(parser.getValueAsString());
+                    if (folder != null) folder.setName(item.getName());
+                    break;
+                case "description":
+                    if (token == JsonToken.VALUE_STRING) {
+                        item.setDescription(parser.getText());
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "request":
+                    if (token == JsonToken.START_OBJECT) {
+                        requestStart = parser.getTokenLocation().getByteOffset();
+                        item.setRequest(parseRequestSummary(parser));
+                        requestEnd = parser.getCurrentLocation().getByteOffset();
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "item":
+                    if (token == JsonToken.START_ARRAY) {
+                        folder = builder.enterFolder();
+                        folder.setName(item.getName());
+                        item.setItem(parseItems(parser, builder, source));
+                        builder.exitFolder();
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        if (item.getRequest() != null) {
+            long offset = requestStart;
+            int length = Math.toIntExact(requestEnd - requestStart);
+            builder.addRequest(item, () ->
+                objectMapper.readValue(source.read(offset, length), PostmanItem.PostmanRequest.class));
+        }
+        return item;
+    }
+
+    private PostmanItem.PostmanRequest parseRequestSummary(JsonParser parser) throws IOException {
+        PostmanItem.PostmanRequest request = new PostmanItem.PostmanRequest();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "method":
+                    request.setMethod(parser.getValueAsString());
+                    break;
+                case "url":
+                    if (token == JsonToken.START_OBJECT || token == JsonToken.VALUE_STRING) {
+                        request.setUrl(parser.readValueAs(PostmanItem.PostmanUrl.class));
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "header":
+                    if (token == JsonToken.START_ARRAY) {
+                        request.setHeader(parser.readValueAs(HEADER_LIST));
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    // body, auth and anything else are read from the source on execution
+                    parser.skipChildren();
+            }
+        }
+        return request;
+    }
+}
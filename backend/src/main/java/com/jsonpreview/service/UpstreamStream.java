@@ -0,0 +1,147 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An upstream response whose headers have arrived but whose entity has not been read,
+ * or the reason the request could not be sent. The entity is copied to the client with
+ * {@link #writeTo}; the stream must be closed to return the connection to the pool.
+ */
+public final class UpstreamStream implements Closeable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String requestName;
+    private final CloseableHttpResponse response;
+    private final String error;
+    private final long startTime;
+    private final long headersTimeMs;
+
+    private UpstreamStream(String requestName, CloseableHttpResponse response, String error, long startTime) {
+        this.requestName = requestName;
+        this.response = response;
+        this.error = error;
+        this.startTime = startTime;
+        this.headersTimeMs = System.currentTimeMillis() - startTime;
+    }
+
+    static UpstreamStream of(String requestName, CloseableHttpResponse response, long startTime) {
+        return new UpstreamStream(requestName, response, null, startTime);
+    }
+
+    static UpstreamStream failed(String requestName, String error, long startTime) {
+        return new UpstreamStream(requestName, null, error, startTime);
+    }
+
+    public boolean isFailed() { return error != null; }
+
+    public String getRequestName() { return requestName; }
+
+    public String getError() { return error; }
+
+    public int getStatusCode() { return response.getCode(); }
+
+    public Header[] getHeaders() { return response.getHeaders(); }
+
+    /**
+     * Time from the start of the execution until the response headers arrived.
+     */
+    public long getHeadersTimeMs() { return headersTimeMs; }
+
+    public long getElapsedMs() { return System.currentTimeMillis() - startTime; }
+
+    public ContentType getContentType() {
+        HttpEntity entity = response.getEntity();
+        return entity != null ? ContentType.parseLenient(entity.getContentType()) : null;
+    }
+
+    public boolean isJson() {
+        ContentType contentType = getContentType();
+        return contentType != null && contentType.getMimeType() != null
+            && contentType.getMimeType().toLowerCase().contains("json");
+    }
+
+    /**
+     * Copies the entity to {@code out} through a fixed buffer, so memory use does not
+     * depend on the body size. With {@code pretty}, a JSON entity is re-indented token by
+     * token (written as UTF-8); a body that turns out not to be JSON fails mid-stream.
+     *
+     * @return bytes read from upstream
+     */
+    public long writeTo(OutputStream out, boolean pretty) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) return 0;
+
+        try (CountingInputStream in = new CountingInputStream(entity.getContent())) {
+            if (!pretty) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } else {
+                Charset charset = BufferedBodyConsumer.charsetOf(getContentType());
+                try (JsonParser parser = isUnicode(charset)
+                         ? JSON_FACTORY.createParser(in)
+                         : JSON_FACTORY.createParser(new InputStreamReader(in, charset));
+                     JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                    generator.useDefaultPrettyPrinter();
+                    while (parser.nextToken() != null) {
+                        generator.copyCurrentEvent(parser);
+                    }
+                }
+            }
+            out.flush();
+            return in.count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (response != null) response.close();
+    }
+
+    private static boolean isUnicode(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)
+            || charset.name().startsWith("UTF-");
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.jsonpreview.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsonpreview.service.ApiExecutionService;
+import com.jsonpreview.service.BatchExecutionService;
+import com.jsonpreview.service.CollectionRegistry;
+import com.jsonpreview.service.CollectionRunService;
+import com.jsonpreview.service.ExecutionHistory;
+import com.jsonpreview.service.HotPathMetrics;
+import com.jsonpreview.service.IterationService;
+import com.jsonpreview.service.JsonDiffService;
+import com.jsonpreview.service.JsonDocumentService;
+import com.jsonpreview.service.JsonQueryService;
+import com.jsonpreview.service.LoadTestService;
+import com.jsonpreview.service.PostmanParserService;
+import com.jsonpreview.service.RequestListing;
+import com.jsonpreview.service.ResponseCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * {@code GET /requests}: cached summary JSON served with a strong ETag and 304 revalidation.
+ */
+class ApiControllerRequestsTest {
+
+    private static final String COLLECTION = """
+        {"info": {"name": "Sample"}, "item": [
+          {"name": "Users", "item": [
+            {"name": "List", "request": {"method": "GET", "url": {"raw": "{{base}}/users",
+              "query": [{"key": "page", "value": "1"}]}}}
+          ]},
+          {"name": "Health", "request": {"method": "GET", "url": "{{base}}/health"}}
+        ]}
+        """;
+
+    private PostmanParserService parserService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        CollectionRegistry registry = new CollectionRegistry(DataSize.ofMegabytes(64));
+        parserService = new PostmanParserService(registry, new HotPathMetrics(new SimpleMeterRegistry(), 500),
+                                                 DataSize.ofMegabytes(16));
+        ApiController controller = new ApiController(parserService, mock(ApiExecutionService.class), registry,
+            mock(BatchExecutionService.class), mock(JsonDocumentService.class), mock(JsonQueryService.class),
+            mock(JsonDiffService.class), mock(ResponseCache.class), mock(LoadTestService.class),
+            mock(CollectionRunService.class), mock(IterationService.class), mock(ExecutionHistory.class),
+            new ObjectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        upload("sample", COLLECTION);
+    }
+
+    @Test
+    void servesTheCachedListingWithAStrongEtag() throws Exception {
+        RequestListing listing = parserService.getRequestListing("sample");
+
+        MvcResult result = mockMvc.perform(get("/api/requests").param("collectionId", "sample"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, listing.getEtag()))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+            .andExpect(content().contentType("application/json"))
+            .andReturn();
+
+        assertThat(listing.getEtag()).matches("\"[0-9a-f]{32}\"");
+        assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(listing.getJson());
+        assertThat(result.getResponse().getContentAsString(StandardCharsets.UTF_8))
+            .contains("\"path\":\"Users/List\"", "\"url\":\"{{base}}/health\"");
+    }
+
+    @Test
+    void listingIsBuiltOncePerUpload() throws Exception {
+        RequestListing first = parserService.getRequestListing("sample");
+
+        assertThat(parserService.getRequestListing("sample")).isSameAs(first);
+        assertThat(parserService.getRequestListing(null)).isSameAs(first);
+        assertThat(parserService.getRequestListing("unknown")).isSameAs(RequestListing.EMPTY);
+    }
+
+    @Test
+    void matchingIfNoneMatchIsAnsweredWithNotModified() throws Exception {
+        String etag = parserService.getRequestListing("sample").getEtag();
+
+        MvcResult result = mockMvc.perform(get("/api/requests").param("collectionId", "sample")
+                                               .header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, etag))
+            .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void reuploadChangesTheEtag() throws Exception {
+        String before = parserService.getRequestListing("sample").getEtag();
+        upload("sample", COLLECTION.replace("/health", "/status"));
+        String after = parserService.getRequestListing("sample").getEtag();
+
+        assertThat(after).isNotEqualTo(before);
+        mockMvc.perform(get("/api/requests").param("collectionId", "sample")
+                            .header(HttpHeaders.IF_NONE_MATCH, before))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, after));
+
+        // Same content, same tag
+        upload("sample", COLLECTION.replace("/health", "/status"));
+        assertThat(parserService.getRequestListing("sample").getEtag()).isEqualTo(after);
+    }
+
+    @Test
+    void unknownCollectionListsNothing() throws Exception {
+        mockMvc.perform(get("/api/requests").param("collectionId", "unknown"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, RequestListing.EMPTY.getEtag()))
+            .andExpect(content().string("[]"));
+    }
+
+    private void upload(String id, String json) throws Exception {
+        parserService.parseCollection(new MockMultipartFile("file", "collection.json", "application/json",
+                                                            json.getBytes(StandardCharsets.UTF_8)), id);
+    }
+}
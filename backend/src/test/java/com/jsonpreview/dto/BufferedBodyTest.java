@@ -0,0 +1,232 @@
+package com.jsonpreview.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * One-pass serialization of {@link BufferedBody}, its fallback and truncation views, and
+ * the chunked and spilled ways of holding it.
+ */
+class BufferedBodyTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void jsonBodiesAreCopiedAsJson() throws Exception {
+        BufferedBody body = body("{\"id\": 7, \"tags\": [\"a\", null, true], \"price\": 1.5e3}");
+
+        JsonNode written = objectMapper.readTree(objectMapper.writeValueAsString(body));
+        assertThat(written.path("id").asInt()).isEqualTo(7);
+        assertThat(written.path("tags")).hasSize(3);
+        assertThat(written.path("price").asDouble()).isEqualTo(1500.0);
+        assertThat(body.isJson()).isTrue();
+
+        // Indentation follows the writer, not the received bytes
+        assertThat(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(body("[1,2]")))
+            .isEqualTo("[ 1, 2 ]");
+        assertThat(objectMapper.writeValueAsString(body("  {\n \"a\" : 1 }\n"))).isEqualTo("{\"a\":1}");
+    }
+
+    @Test
+    void otherBodiesAreWrittenAsText() throws Exception {
+        assertThat(objectMapper.writeValueAsString(body("<html>hi</html>"))).isEqualTo("\"<html>hi</html>\"");
+        // Starts like JSON but fails on its first token: nothing was written yet
+        BufferedBody almost = body("nope, plain text");
+        assertThat(objectMapper.writeValueAsString(almost)).isEqualTo("\"nope, plain text\"");
+        assertThat(almost.isJson()).isFalse();
+        assertThat(objectMapper.writeValueAsString(body(""))).isEqualTo("\"\"");
+
+        BufferedBody latin = BufferedBody.of("café".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+        assertThat(objectMapper.readValue(objectMapper.writeValueAsString(latin), String.class)).isEqualTo("café");
+    }
+
+    @Test
+    void wellFormedBodiesOmitTheFallbackAndTruncation() throws Exception {
+        JsonNode response = objectMapper.readTree(objectMapper.writeValueAsString(response(body("{\"ok\": true}"))));
+
+        assertThat(response.path("responseBody").path("ok").asBoolean()).isTrue();
+        assertThat(response.has("responseTruncated")).isFalse();
+        assertThat(response.has("rawResponse")).isFalse();
+    }
+
+    @Test
+    void aBodyThatBreaksPartWayIsClosedOffAndFlagged() throws Exception {
+        String text = "{\"items\": [{\"id\": 1}, {\"id\": 2, \"name\": ";
+        BufferedBody body = body(text + "oops}]}");
+
+        JsonNode response = objectMapper.readTree(objectMapper.writeValueAsString(response(body)));
+        JsonNode items = response.path("responseBody").path("items");
+        assertThat(items).hasSize(2);
+        assertThat(items.get(1).path("id").asInt()).isEqualTo(2);
+        assertThat(response.path("responseTruncated").asBoolean()).isTrue();
+        assertThat(response.path("rawResponse").asText()).isEqualTo(text + "oops}]}");
+        assertThat(body.isJson()).isFalse();
+
+        // Text properties come after the body they describe
+        assertThat(fieldNames(response)).containsSubsequence("responseBody", "responseTruncated", "rawResponse");
+    }
+
+    @Test
+    void aBodyCutOffMidStreamIsFlaggedToo() throws Exception {
+        JsonNode response = objectMapper.readTree(objectMapper.writeValueAsString(response(body("[1, 2, {\"a\": [3"))));
+
+        assertThat(response.path("responseBody").toString()).isEqualTo("[1,2,{\"a\":[3]}]");
+        assertThat(response.path("responseTruncated").asBoolean()).isTrue();
+        assertThat(response.path("rawResponse").asText()).isEqualTo("[1, 2, {\"a\": [3");
+    }
+
+    @Test
+    void fallbackIsOnlyWrittenForTheBodyThatBroke() throws Exception {
+        BufferedBody broken = body("{\"a\": 1,");
+        BufferedBody fine = body("{\"a\": 1}");
+        ApiResponseDto first = response(broken);
+        ApiResponseDto second = response(fine);
+
+        JsonNode written = objectMapper.readTree(objectMapper.writeValueAsString(new ApiResponseDto[] {first, second}));
+        assertThat(written.get(0).path("responseTruncated").asBoolean()).isTrue();
+        assertThat(written.get(1).has("responseTruncated")).isFalse();
+        assertThat(written.get(1).has("rawResponse")).isFalse();
+
+        // Views of another body say nothing about this one
+        ApiResponseDto mixed = response(fine);
+        mixed.setRawResponse(broken.asFallback());
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(mixed)).has("rawResponse")).isFalse();
+    }
+
+    @Test
+    void trailingContentIsNotOneJsonValue() throws Exception {
+        BufferedBody body = body("{\"a\": 1} {\"b\": 2}");
+
+        JsonNode response = objectMapper.readTree(objectMapper.writeValueAsString(response(body)));
+        assertThat(response.path("responseBody").path("a").asInt()).isEqualTo(1);
+        assertThat(response.path("rawResponse").asText()).isEqualTo("{\"a\": 1} {\"b\": 2}");
+        assertThat(body("{\"a\": 1} {\"b\": 2}").isJson()).isFalse();
+    }
+
+    @Test
+    void bodiesOfUnknownLengthAreKeptInChunks() throws Exception {
+        byte[] bytes = jsonArray(300_000);
+        BufferedBody body = BufferedBody.read(trickle(bytes, 5000), -1, StandardCharsets.UTF_8);
+
+        assertThat(body.size()).isEqualTo(bytes.length);
+        assertThat(body.isMapped()).isFalse();
+        assertThat(body.toByteArray()).isEqualTo(bytes);
+        assertThat(body.openStream().readAllBytes()).isEqualTo(bytes);
+        assertThat(body.isJson()).isTrue();
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(body))).isEqualTo(objectMapper.readTree(bytes));
+
+        BufferedBody sized = BufferedBody.read(new ByteArrayInputStream(bytes), bytes.length, StandardCharsets.UTF_8);
+        assertThat(sized.toByteArray()).isEqualTo(bytes);
+    }
+
+    @Test
+    void largeBodiesSpillToAMappedFileThatIsNotLeft() throws Exception {
+        Set<Path> before = spillFiles();
+        byte[] bytes = jsonArray(200_000);
+
+        BufferedBody body = BufferedBody.read(trickle(bytes, 4096), -1, StandardCharsets.UTF_8, 64 * 1024);
+        assertThat(body.isMapped()).isTrue();
+        assertThat(body.size()).isEqualTo(bytes.length);
+        assertThat(body.toByteArray()).isEqualTo(bytes);
+        assertThat(body.openStream().readAllBytes()).isEqualTo(bytes);
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(body))).isEqualTo(objectMapper.readTree(bytes));
+        // Unlinked once mapped; the mapping keeps serving the bytes
+        assertThat(spillFiles()).isEqualTo(before);
+
+        JsonNode response = objectMapper.readTree(objectMapper.writeValueAsString(response(body)));
+        assertThat(response.path("responseBody")).hasSize(objectMapper.readTree(bytes).size());
+        assertThat(response.has("responseTruncated")).isFalse();
+    }
+
+    @Test
+    void aSpilledBodyThatFailsToArriveIsDeleted() {
+        Set<Path> before = spillFiles();
+        InputStream broken = new SequenceInputStream(trickle(jsonArray(100_000), 4096), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+
+        assertThatThrownBy(() -> BufferedBody.read(broken, -1, StandardCharsets.UTF_8, 16 * 1024))
+            .hasMessage("connection reset");
+        assertThat(spillFiles()).isEqualTo(before);
+    }
+
+    @Test
+    void buildersSpillOncePastTheThreshold() throws Exception {
+        BufferedBody.Builder builder = new BufferedBody.Builder(StandardCharsets.UTF_8, 10, 16);
+        builder.append("0123456789".getBytes(StandardCharsets.UTF_8), 0, 10);
+        builder.append(ByteBuffer.wrap("abcdefghij".getBytes(StandardCharsets.UTF_8)));
+        BufferedBody body = builder.build();
+
+        assertThat(body.isMapped()).isTrue();
+        assertThat(new String(body.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("0123456789abcdefghij");
+    }
+
+    private static BufferedBody body(String text) {
+        return BufferedBody.of(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static ApiResponseDto response(BufferedBody body) {
+        ApiResponseDto response = new ApiResponseDto();
+        response.setStatusCode(200);
+        response.setResponseBody(body);
+        response.setRawResponse(body.asFallback());
+        return response;
+    }
+
+    private static byte[] jsonArray(int length) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; json.length() < length - 12; i++) {
+            if (i > 0) json.append(',');
+            json.append('"').append(String.format("%07d", i)).append('"');
+        }
+        json.append(']');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A stream that hands out at most {@code step} bytes per read, like a socket.
+     */
+    private static InputStream trickle(byte[] bytes, int step) {
+        return new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, step));
+            }
+        };
+    }
+
+    private static Set<Path> spillFiles() {
+        Set<Path> files = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Path.of(System.getProperty("java.io.tmpdir")),
+                                                                     "body-*.tmp")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return files;
+    }
+
+    private static Iterable<String> fieldNames(JsonNode node) {
+        return node::fieldNames;
+    }
+}
@@ -0,0 +1,252 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.BatchExecuteRequestDto;
+import com.jsonpreview.dto.BatchResultDto;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batch scheduling: the global and per-host limits, reporting every request once in
+ * completion order, and failures; executions are stubbed on {@link ApiExecutionService}.
+ * Request names are {@code host/n}, and the stub prepares a GET to that host.
+ */
+class BatchExecutionServiceTest {
+
+    private static final int MAX_PARALLELISM = 8;
+    private static final int PER_HOST_LIMIT = 2;
+
+    // As many threads as a batch may use, like the shared request executor
+    private final ExecutorService executor = Executors.newFixedThreadPool(MAX_PARALLELISM);
+    private final ApiExecutionService apiExecutionService = mock(ApiExecutionService.class);
+    private final Map<String, AtomicInteger> runningPerHost = new ConcurrentHashMap<>();
+    private final Map<String, Integer> maxPerHost = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private volatile Function<String, ApiResponseDto> behaviour = name -> {
+        sleep(20);
+        return ok(name);
+    };
+    private BatchExecutionService service;
+
+    @BeforeEach
+    void setUp() {
+        when(apiExecutionService.prepareRequest(any(ExecuteRequestDto.class))).thenAnswer(invocation -> {
+            String name = invocation.<ExecuteRequestDto>getArgument(0).getRequestName();
+            if (name.startsWith("broken")) {
+                return PreparedRequest.failed(name, "Request not found: " + name);
+            }
+            String host = name.substring(0, name.indexOf('/'));
+            return PreparedRequest.of(name, new HttpGet("http://" + host + ".example.com/" + name), false, false, null);
+        });
+        when(apiExecutionService.execute(any(PreparedRequest.class), anyLong())).thenAnswer(invocation -> {
+            PreparedRequest prepared = invocation.getArgument(0);
+            String name = prepared.getRequestName();
+            String host = prepared.isFailed() ? "none" : prepared.getAuthority();
+            AtomicInteger hostRunning = runningPerHost.computeIfAbsent(host, h -> new AtomicInteger());
+            maxPerHost.merge(host, hostRunning.incrementAndGet(), Math::max);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                if (prepared.isFailed()) {
+                    ApiResponseDto failed = new ApiResponseDto();
+                    failed.setError(prepared.getError());
+                    failed.setStatusCode(500);
+                    return failed;
+                }
+                return behaviour.apply(name);
+            } finally {
+                running.decrementAndGet();
+                hostRunning.decrementAndGet();
+            }
+        });
+        service = new BatchExecutionService(apiExecutionService, mock(PostmanParserService.class), executor,
+                                            MAX_PARALLELISM, PER_HOST_LIMIT, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void hostAndGlobalLimitsHold() throws Exception {
+        // Mostly one host, which must not take every slot from the others
+        List<ExecuteRequestDto> requests = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            requests.add(request("busy/" + i));
+        }
+        for (String host : List.of("b", "c", "d", "e")) {
+            for (int i = 0; i < 4; i++) {
+                requests.add(request(host + "/" + i));
+            }
+        }
+
+        List<BatchResultDto> results = run(requests, 50);
+
+        assertThat(results).hasSize(requests.size());
+        assertThat(maxPerHost.values()).allSatisfy(max -> assertThat(max).isLessThanOrEqualTo(PER_HOST_LIMIT));
+        assertThat(maxPerHost.get("busy.example.com")).isEqualTo(PER_HOST_LIMIT);
+        // Other hosts ran next to the busy one, up to the global cap and no further
+        assertThat(maxRunning.get()).isGreaterThan(PER_HOST_LIMIT).isLessThanOrEqualTo(MAX_PARALLELISM);
+    }
+
+    @Test
+    void requestsQueuedForABusyHostLeaveExecutorThreadsFree() throws Exception {
+        // Each execution completes only once other work gets an executor thread, which
+        // would never happen if queued requests parked on the executor's threads
+        behaviour = name -> {
+            CountDownLatch other = new CountDownLatch(1);
+            executor.execute(other::countDown);
+            await(other);
+            return ok(name);
+        };
+        List<ExecuteRequestDto> requests = new ArrayList<>();
+        for (int i = 0; i < 3 * MAX_PARALLELISM; i++) {
+            requests.add(request("busy/" + i));
+        }
+
+        assertThat(run(requests, null)).hasSize(requests.size());
+        assertThat(maxPerHost.get("busy.example.com")).isEqualTo(PER_HOST_LIMIT);
+    }
+
+    @Test
+    void theCallersParallelismLowersTheCap() throws Exception {
+        List<ExecuteRequestDto> requests = new ArrayList<>();
+        for (String host : List.of("a", "b", "c", "d", "e", "f")) {
+            for (int i = 0; i < 3; i++) {
+                requests.add(request(host + "/" + i));
+            }
+        }
+
+        assertThat(run(requests, 3)).hasSize(requests.size());
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void resultsArriveInCompletionOrderWithTheirIndex() throws Exception {
+        CountDownLatch fastReported = new CountDownLatch(1);
+        behaviour = name -> {
+            if (name.equals("slow/0")) {
+                await(fastReported);
+            }
+            return ok(name);
+        };
+        List<ExecuteRequestDto> requests = List.of(request("slow/0"), request("fast/1"), request("fast/2"));
+
+        List<BatchResultDto> results = new ArrayList<>();
+        service.execute(requests, null, result -> {
+            results.add(result);
+            if (result.getIndex() != 0 && results.size() == 2) {
+                fastReported.countDown();
+            }
+        });
+
+        assertThat(results).extracting(BatchResultDto::getIndex).containsExactlyInAnyOrder(0, 1, 2).endsWith(0);
+        for (BatchResultDto result : results) {
+            assertThat(result.getRequestName()).isEqualTo(requests.get(result.getIndex()).getRequestName());
+            assertThat(result.getResponse().getResponseBody()).isEqualTo(result.getRequestName());
+        }
+    }
+
+    @Test
+    void failuresAreReportedLikeResults() throws Exception {
+        behaviour = name -> {
+            if (name.startsWith("boom")) throw new IllegalStateException("upstream exploded");
+            return ok(name);
+        };
+        List<ExecuteRequestDto> requests = List.of(request("a/0"), request("broken/1"), request("boom/2"),
+                                                   request("a/3"));
+
+        List<BatchResultDto> results = run(requests, null);
+
+        assertThat(results).extracting(BatchResultDto::getIndex).containsExactlyInAnyOrder(0, 1, 2, 3);
+        ApiResponseDto broken = byIndex(results, 1).getResponse();
+        assertThat(broken.getStatusCode()).isEqualTo(500);
+        assertThat(broken.getError()).isEqualTo("Request not found: broken/1");
+        ApiResponseDto boom = byIndex(results, 2).getResponse();
+        assertThat(boom.getStatusCode()).isEqualTo(500);
+        assertThat(boom.getError()).isEqualTo("Execution error: upstream exploded");
+        assertThat(byIndex(results, 3).getResponse().getStatusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void batchesThatCannotRunAreRejected() {
+        assertThatThrownBy(() -> service.resolve(new BatchExecuteRequestDto()))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("Either requests or folder is required");
+
+        BatchExecuteRequestDto tooLarge = new BatchExecuteRequestDto();
+        List<ExecuteRequestDto> requests = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            requests.add(request("a/" + i));
+        }
+        tooLarge.setRequests(requests);
+        assertThatThrownBy(() -> service.resolve(tooLarge)).hasMessageContaining("exceeds the limit of 100");
+
+        BatchExecuteRequestDto unknown = new BatchExecuteRequestDto();
+        unknown.setFolder("Users");
+        unknown.setCollectionId("missing");
+        assertThatThrownBy(() -> service.resolve(unknown)).hasMessage("Collection not found: missing");
+    }
+
+    private List<BatchResultDto> run(List<ExecuteRequestDto> requests, Integer parallelism) throws Exception {
+        List<BatchResultDto> results = new ArrayList<>();
+        service.execute(requests, parallelism, results::add);
+        return results;
+    }
+
+    private static BatchResultDto byIndex(List<BatchResultDto> results, int index) {
+        return results.stream().filter(result -> result.getIndex() == index).findFirst().orElseThrow();
+    }
+
+    private static ExecuteRequestDto request(String name) {
+        ExecuteRequestDto request = new ExecuteRequestDto();
+        request.setRequestName(name);
+        return request;
+    }
+
+    private static ApiResponseDto ok(String name) {
+        ApiResponseDto response = new ApiResponseDto();
+        response.setStatusCode(200);
+        response.setResponseBody(name);
+        return response;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).as("latch within 10 s").isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+}
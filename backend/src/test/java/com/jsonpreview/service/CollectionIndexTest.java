@@ -0,0 +1,170 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.model.PostmanCollection;
+import com.jsonpreview.model.PostmanItem;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CollectionIndexTest {
+
+    @Test
+    void bareNameResolvesToTheFirstRequestInDocumentOrder() {
+        CollectionIndex index = CollectionIndex.build(collection(
+            folder("Users", request("List", "GET"), request("Create", "POST")),
+            folder("Orders", request("List", "GET"), folder("Archive", request("List", "DELETE"))),
+            request("Health", "GET")));
+
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.getDuplicateNames()).isEqualTo(2);
+        assertThat(index.find("List").getPath()).isEqualTo("Users/List");
+        assertThat(index.find("Orders/List").getItem().getRequest().getMethod()).isEqualTo("GET");
+        assertThat(index.find("Orders/Archive/List").getItem().getRequest().getMethod()).isEqualTo("DELETE");
+        assertThat(index.find("Health").getPath()).isEqualTo("Health");
+        assertThat(index.find("Missing")).isNull();
+        assertThat(index.find(null)).isNull();
+    }
+
+    @Test
+    void collidingPathsGetNumberedSuffixes() {
+        CollectionIndex index = CollectionIndex.build(collection(
+            folder("Users", request("List", "GET"), request("List", "HEAD"), request("List", "OPTIONS")),
+            folder("Users", request("List", "DELETE"))));
+
+        assertThat(index.getEntries()).extracting(CollectionIndex.Entry::getPath)
+            .containsExactly("Users/List", "Users/List #2", "Users/List #3", "Users/List #4");
+        assertThat(index.find("Users/List #3").getItem().getRequest().getMethod()).isEqualTo("OPTIONS");
+        assertThat(index.getDuplicateNames()).isEqualTo(3);
+    }
+
+    @Test
+    void numberedSuffixSkipsPathsAlreadyTaken() {
+        CollectionIndex index = CollectionIndex.build(collection(
+            request("Ping #2", "GET"), request("Ping", "GET"), request("Ping", "POST")));
+
+        assertThat(index.getEntries()).extracting(CollectionIndex.Entry::getPath)
+            .containsExactly("Ping #2", "Ping", "Ping #3");
+        assertThat(index.find("Ping #2").getItem().getRequest().getMethod()).isEqualTo("GET");
+    }
+
+    @Test
+    void unnamedItemsAreIndexedUnderAnEmptyName() {
+        CollectionIndex index = CollectionIndex.build(collection(request(null, "GET"), folder(null, request(null, "POST"))));
+
+        assertThat(index.getEntries()).extracting(CollectionIndex.Entry::getPath).containsExactly("", "/");
+        assertThat(index.find("").getItem().getRequest().getMethod()).isEqualTo("GET");
+    }
+
+    @Test
+    void entriesUnderAFolderIncludeSubFolders() {
+        CollectionIndex index = CollectionIndex.build(collection(
+            folder("Users", request("List", "GET"), folder("Admin", request("Ban", "POST"))),
+            folder("Users 2", request("List", "GET"))));
+
+        assertThat(index.getEntriesUnder("Users")).extracting(CollectionIndex.Entry::getPath)
+            .containsExactly("Users/List", "Users/Admin/Ban");
+        assertThat(index.getEntriesUnder("Users/")).hasSize(2);
+        assertThat(index.getEntriesUnder(" ")).hasSize(3);
+    }
+
+    @Test
+    void deeplyNestedFoldersDoNotOverflowTheStack() {
+        PostmanItem innermost = request("Deep", "GET");
+        for (int depth = 0; depth < 20_000; depth++) {
+            innermost = folder("f", innermost);
+        }
+        CollectionIndex index = CollectionIndex.build(collection(innermost));
+
+        assertThat(index.find("Deep").getPath()).startsWith("f/f/").endsWith("/Deep");
+    }
+
+    @Test
+    void builderResolvesFolderNamesSetAfterTheirRequests() {
+        CollectionIndex.Builder builder = new CollectionIndex.Builder();
+        CollectionIndex.Folder folder = builder.enterFolder();
+        builder.addRequest(request("List", "GET"));
+        folder.setName("Users");
+        builder.exitFolder();
+
+        assertThat(builder.build().find("Users/List")).isNotNull();
+    }
+
+    @Test
+    void lazyEntriesLoadOnceWhileTheirPlanIsCached() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        CollectionIndex.Builder builder = new CollectionIndex.Builder();
+        builder.addRequest(summary("Lazy"), () -> {
+            loads.incrementAndGet();
+            return request("Lazy", "PUT").getRequest();
+        });
+        CollectionIndex.Entry entry = builder.build().find("Lazy");
+
+        assertThat(entry.isLazy()).isTrue();
+        assertThat(entry.getPlan().getRequest().getMethod()).isEqualTo("PUT");
+        assertThat(entry.getPlan()).isSameAs(entry.getPlan());
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void lazyPlansAreBoundedByCountAndSize() throws IOException {
+        CollectionIndex.LazyPlans plans = new CollectionIndex.LazyPlans(2, 64 * 1024);
+        CollectionIndex.Builder builder = new CollectionIndex.Builder();
+        for (String name : List.of("a", "b", "c")) {
+            builder.addRequest(summary(name), () -> request(name, "GET").getRequest());
+        }
+        List<CollectionIndex.Entry> entries = builder.build().getEntries();
+        for (CollectionIndex.Entry entry : entries) {
+            plans.put(entry, entry.getPlan());
+        }
+        assertThat(plans.size()).isEqualTo(2);
+        assertThat(plans.get(entries.get(0))).isNull();
+        assertThat(plans.get(entries.get(2))).isNotNull();
+
+        // Too heavy to keep: about 3 bytes per body character against a quarter of the budget
+        PostmanItem heavy = request("heavy", "POST");
+        PostmanItem.PostmanBody body = new PostmanItem.PostmanBody();
+        body.setMode("raw");
+        body.setRaw("x".repeat(16 * 1024));
+        heavy.getRequest().setBody(body);
+        CollectionIndex.Builder heavyBuilder = new CollectionIndex.Builder();
+        heavyBuilder.addRequest(heavy);
+        CollectionIndex.Entry heavyEntry = heavyBuilder.build().find("heavy");
+        plans.put(heavyEntry, heavyEntry.getPlan());
+        assertThat(plans.get(heavyEntry)).isNull();
+        assertThat(plans.size()).isEqualTo(2);
+    }
+
+    private static PostmanCollection collection(PostmanItem... items) {
+        PostmanCollection collection = new PostmanCollection();
+        collection.setItems(new ArrayList<>(List.of(items)));
+        return collection;
+    }
+
+    private static PostmanItem folder(String name, PostmanItem... children) {
+        PostmanItem folder = new PostmanItem();
+        folder.setName(name);
+        folder.setItem(new ArrayList<>(List.of(children)));
+        return folder;
+    }
+
+    private static PostmanItem request(String name, String method) {
+        PostmanItem.PostmanRequest request = new PostmanItem.PostmanRequest();
+        request.setMethod(method);
+        request.setUrl(new PostmanItem.PostmanUrl("https://api.example.com/" + name));
+        PostmanItem item = new PostmanItem();
+        item.setName(name);
+        item.setRequest(request);
+        return item;
+    }
+
+    private static PostmanItem summary(String name) {
+        PostmanItem item = request(name, "GET");
+        item.getRequest().setUrl(null);
+        return item;
+    }
+}
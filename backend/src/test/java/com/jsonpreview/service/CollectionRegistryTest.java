@@ -0,0 +1,94 @@
+package com.jsonpreview.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Environment lookup: by id, by name, and the default only where clients ask for it.
+ */
+class CollectionRegistryTest {
+
+    private final CollectionRegistry registry = new CollectionRegistry(DataSize.ofMegabytes(64));
+
+    @Test
+    void noEnvironmentNamedMeansTheDefault() {
+        assertThat(registry.getEnvironment(null)).isNull();
+        assertThat(registry.getEnvironment("default")).isNull();
+
+        registry.publishEnvironment(environment("e1", "Staging"));
+        registry.publishEnvironment(environment("e2", "Production"));
+
+        for (String idOrName : new String[] {null, "", "  ", "default"}) {
+            assertThat(registry.getEnvironment(idOrName)).as("[%s]", idOrName)
+                .extracting(EnvironmentSnapshot::getId).isEqualTo("e2");
+        }
+    }
+
+    @Test
+    void environmentsResolveByIdThenByName() {
+        registry.publishEnvironment(environment("e1", "Staging"));
+        registry.publishEnvironment(environment("e2", "Production"));
+        registry.publishEnvironment(environment("e3", "Staging"));
+
+        assertThat(registry.getEnvironment("e1").getName()).isEqualTo("Staging");
+        assertThat(registry.getEnvironment("Production").getId()).isEqualTo("e2");
+        // The newest upload wins among environments sharing a name
+        assertThat(registry.getEnvironment("Staging").getId()).isEqualTo("e3");
+    }
+
+    @Test
+    void anEnvironmentCalledDefaultIsTakenByName() {
+        registry.publishEnvironment(environment("e1", "default"));
+        registry.publishEnvironment(environment("e2", "Production"));
+
+        assertThat(registry.getEnvironment("default").getId()).isEqualTo("e1");
+    }
+
+    @Test
+    void unknownNamesDoNotFallBackToTheDefault() {
+        registry.publishEnvironment(environment("e1", "Staging"));
+
+        assertThat(registry.getEnvironment("Stagign")).isNull();
+        assertThat(registry.getEnvironment("Default")).isNull();
+        assertThat(registry.getEnvironment("e2")).isNull();
+    }
+
+    @Test
+    void evictedEnvironmentsAreNotFound() {
+        CollectionRegistry small = new CollectionRegistry(DataSize.ofBytes(1500));
+        small.publishEnvironment(environment("e1", "Staging", "x".repeat(400)));
+        small.publishEnvironment(environment("e2", "Production", "y".repeat(400)));
+
+        assertThat(small.getEnvironments()).extracting(EnvironmentSnapshot::getId).containsExactly("e2");
+        assertThat(small.getEnvironment("e1")).isNull();
+        assertThat(small.getEnvironment("Staging")).isNull();
+        assertThat(small.getEnvironment(null).getId()).isEqualTo("e2");
+    }
+
+    @Test
+    void removingTheDefaultMakesThePreviousUploadTheDefault() {
+        registry.publishEnvironment(environment("e1", "Staging"));
+        registry.publishEnvironment(environment("e2", "Production"));
+
+        assertThat(registry.removeEnvironment("e2")).isTrue();
+        assertThat(registry.removeEnvironment("e2")).isFalse();
+        assertThat(registry.getDefaultEnvironmentId()).isEqualTo("e1");
+        assertThat(registry.getEnvironment("default").getId()).isEqualTo("e1");
+        assertThat(registry.getEnvironment("Production")).isNull();
+
+        registry.removeEnvironment("e1");
+        assertThat(registry.getEnvironment(null)).isNull();
+    }
+
+    private static EnvironmentSnapshot environment(String id, String name) {
+        return environment(id, name, "https://api.example.com");
+    }
+
+    private static EnvironmentSnapshot environment(String id, String name, String base) {
+        return new EnvironmentSnapshot(id, name, Map.of("base", base));
+    }
+}
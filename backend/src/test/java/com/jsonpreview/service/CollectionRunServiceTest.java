@@ -0,0 +1,211 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.CollectionRunRequestDto;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import com.jsonpreview.dto.RunStepResultDto;
+import com.jsonpreview.dto.RunSummaryDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Dependency resolution and scheduling of collection runs; upstream calls are answered
+ * by a stubbed {@link ApiExecutionService}.
+ */
+class CollectionRunServiceTest {
+
+    private static final String COLLECTION = """
+        {"info": {"name": "Flow"}, "item": [
+          {"name": "Flow", "item": [
+            {"name": "Login", "request": {"method": "POST", "url": "{{base}}/login"}},
+            {"name": "Profile", "request": {"method": "GET", "url": "{{base}}/me?t={{token}}"}},
+            {"name": "Orders", "request": {"method": "GET", "url": "{{base}}/users/{{userId}}/orders"}},
+            {"name": "Health", "request": {"method": "GET", "url": "{{base}}/health"}},
+            {"name": "Refresh", "request": {"method": "POST", "url": "{{base}}/refresh?t={{token}}"}},
+            {"name": "Audit", "request": {"method": "GET", "url": "{{base}}/audit?t={{token}}"}}
+          ]},
+          {"name": "Other", "request": {"method": "GET", "url": "{{base}}/other"}}
+        ]}
+        """;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final Map<String, ApiResponseDto> responses = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> inputs = new ConcurrentHashMap<>();
+    private CollectionRunService runService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        PostmanParserService parserService = new PostmanParserService(
+            new CollectionRegistry(DataSize.ofMegabytes(64)), new HotPathMetrics(new SimpleMeterRegistry(), 500),
+            DataSize.ofMegabytes(16));
+        parserService.parseCollection(new MockMultipartFile("file", "flow.json", "application/json",
+                                                            COLLECTION.getBytes(StandardCharsets.UTF_8)), "flow");
+
+        ApiExecutionService apiExecutionService = mock(ApiExecutionService.class);
+        when(apiExecutionService.prepareRequest(any(ExecuteRequestDto.class), any())).thenAnswer(invocation -> {
+            ExecuteRequestDto request = invocation.getArgument(0);
+            inputs.put(request.getRequestName(), invocation.getArgument(1));
+            return PreparedRequest.of(request.getRequestName(), null, false, false, null);
+        });
+        when(apiExecutionService.execute(any(PreparedRequest.class), anyLong())).thenAnswer(invocation -> {
+            String path = invocation.<PreparedRequest>getArgument(0).getRequestName();
+            return responses.getOrDefault(path.substring(path.indexOf('/') + 1), response(200, "{}"));
+        });
+        runService = new CollectionRunService(apiExecutionService, parserService, executor, 64, 100);
+
+        responses.put("Login", response(200, "{\"token\": \"t1\"}"));
+        ApiResponseDto profile = response(200, "{\"name\": \"Ada\"}");
+        profile.setHeaders(Map.of("X-User", "u7"));
+        responses.put("Profile", profile);
+        responses.put("Refresh", response(200, "{\"token\": \"t2\"}"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void requestsDependOnTheClosestEarlierProducer() {
+        RunGraph graph = runService.resolve(run(null));
+
+        assertThat(graph.size()).isEqualTo(6);
+        assertThat(dependencies(graph)).containsExactly("[]", "[0]", "[1]", "[]", "[0]", "[4]");
+        assertThat(graph.getSteps().get(5).inputs).containsExactly(Map.entry("token", 4));
+        assertThat(graph.getSteps().get(0).dependents).containsExactly(1, 4);
+    }
+
+    @Test
+    void resolveRejectsRunsItCannotSchedule() {
+        CollectionRunRequestDto unknown = run(null);
+        unknown.setCollectionId("missing");
+        assertThatThrownBy(() -> runService.resolve(unknown)).hasMessageContaining("Collection not found");
+
+        CollectionRunRequestDto emptyFolder = run(null);
+        emptyFolder.setFolder("Nope");
+        assertThatThrownBy(() -> runService.resolve(emptyFolder)).hasMessageContaining("No requests found");
+
+        CollectionRunRequestDto outside = run(null);
+        outside.getExtract().put("Other", Map.of("x", "/x"));
+        assertThatThrownBy(() -> runService.resolve(outside)).hasMessageContaining("outside the run: Other");
+
+        CollectionRunRequestDto badPointer = run(null);
+        badPointer.getExtract().put("Health", Map.of("status", "status"));
+        assertThatThrownBy(() -> runService.resolve(badPointer)).isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Invalid JSON Pointer");
+    }
+
+    @Test
+    void extractedValuesFlowIntoDependentRequests() throws Exception {
+        List<RunStepResultDto> results = new ArrayList<>();
+        RunSummaryDto summary = runService.execute(runService.resolve(run(null)), results::add);
+
+        assertThat(results).extracting(RunStepResultDto::getState).containsOnly("SUCCEEDED");
+        assertThat(inputs.get("Flow/Profile")).containsExactly(Map.entry("token", "t1"));
+        assertThat(inputs.get("Flow/Orders")).containsExactly(Map.entry("userId", "u7"));
+        assertThat(inputs.get("Flow/Audit")).containsExactly(Map.entry("token", "t2"));
+        assertThat(inputs.get("Flow/Health")).isEmpty();
+        assertThat(byName(results).get("Flow/Orders").getDependsOn()).containsExactly("Flow/Profile");
+        assertThat(byName(results).get("Flow/Login").getExtracted()).containsExactly(Map.entry("token", "t1"));
+
+        assertThat(summary.getRequests()).isEqualTo(6);
+        assertThat(summary.getSucceeded()).isEqualTo(6);
+        assertThat(summary.getDepth()).isEqualTo(3);
+    }
+
+    @Test
+    void aFailedRequestSkipsEverythingDependingOnIt() throws Exception {
+        responses.put("Login", response(500, "{}"));
+
+        List<RunStepResultDto> results = new ArrayList<>();
+        RunSummaryDto summary = runService.execute(runService.resolve(run(null)), results::add);
+
+        Map<String, RunStepResultDto> byName = byName(results);
+        assertThat(byName.get("Flow/Login").getState()).isEqualTo("FAILED");
+        assertThat(byName.get("Flow/Login").getError()).isEqualTo("Status 500");
+        assertThat(byName.get("Flow/Health").getState()).isEqualTo("SUCCEEDED");
+        for (String skipped : List.of("Flow/Profile", "Flow/Orders", "Flow/Refresh", "Flow/Audit")) {
+            assertThat(byName.get(skipped).getState()).as(skipped).isEqualTo("SKIPPED");
+        }
+        assertThat(byName.get("Flow/Orders").getError()).isEqualTo("Dependency did not succeed: Flow/Profile");
+        assertThat(inputs).containsOnlyKeys("Flow/Login", "Flow/Health");
+
+        assertThat(results).hasSize(6);
+        assertThat(summary.getFailed()).isEqualTo(1);
+        assertThat(summary.getSkipped()).isEqualTo(4);
+        assertThat(summary.getSucceeded()).isEqualTo(1);
+    }
+
+    @Test
+    void nothingToExtractFailsTheStep() throws Exception {
+        responses.put("Refresh", response(200, "{\"expires\": 60}"));
+
+        List<RunStepResultDto> results = new ArrayList<>();
+        runService.execute(runService.resolve(run(null)), results::add);
+
+        Map<String, RunStepResultDto> byName = byName(results);
+        assertThat(byName.get("Flow/Refresh").getState()).isEqualTo("FAILED");
+        assertThat(byName.get("Flow/Refresh").getError()).isEqualTo("Nothing to extract for token at /token");
+        assertThat(byName.get("Flow/Audit").getState()).isEqualTo("SKIPPED");
+        assertThat(byName.get("Flow/Orders").getState()).isEqualTo("SUCCEEDED");
+    }
+
+    @Test
+    void oneAtATimeKeepsDocumentOrder() throws Exception {
+        List<RunStepResultDto> results = new ArrayList<>();
+        runService.execute(runService.resolve(run(1)), results::add);
+
+        assertThat(results).extracting(RunStepResultDto::getIndex).containsExactly(0, 1, 2, 3, 4, 5);
+    }
+
+    private static CollectionRunRequestDto run(Integer parallelism) {
+        CollectionRunRequestDto run = new CollectionRunRequestDto();
+        run.setCollectionId("flow");
+        run.setFolder("Flow");
+        run.setParallelism(parallelism);
+        Map<String, Map<String, String>> extract = new HashMap<>();
+        extract.put("Login", Map.of("token", "/token"));
+        extract.put("Profile", Map.of("userId", "header:X-User"));
+        extract.put("Refresh", Map.of("token", "/token"));
+        run.setExtract(extract);
+        return run;
+    }
+
+    private static ApiResponseDto response(int status, String body) {
+        ApiResponseDto response = new ApiResponseDto();
+        response.setStatusCode(status);
+        response.setResponseBody(body);
+        return response;
+    }
+
+    private static List<String> dependencies(RunGraph graph) {
+        return graph.getSteps().stream().map(step -> Arrays.toString(step.dependencies)).toList();
+    }
+
+    private static Map<String, RunStepResultDto> byName(List<RunStepResultDto> results) {
+        Map<String, RunStepResultDto> byName = new HashMap<>();
+        results.forEach(result -> byName.put(result.getRequestName(), result));
+        return byName;
+    }
+}
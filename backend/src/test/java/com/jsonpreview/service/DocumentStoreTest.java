@@ -0,0 +1,134 @@
+package com.jsonpreview.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Reference counting of mapped documents: a file outlives eviction while readers hold it
+ * and is deleted with the last reference.
+ */
+class DocumentStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fileIsDeletedWithItsLastReference() throws IOException {
+        DocumentFile file = DocumentFile.map(write("a.json", "{\"a\": 1}"));
+        assertThat(StandardCharsets.UTF_8.decode(file.getContent().duplicate()).toString()).isEqualTo("{\"a\": 1}");
+
+        assertThat(file.retain()).isTrue();
+        file.release();
+        assertThat(file.getPath()).exists();
+
+        file.release();
+        assertThat(file.getPath()).doesNotExist();
+        assertThat(file.retain()).isFalse();
+    }
+
+    @Test
+    void aDocumentThatFailsToIndexReleasesItsFile() throws IOException {
+        DocumentFile file = DocumentFile.map(write("broken.json", "{\"a\": [1, 2"));
+
+        assertThatThrownBy(() -> JsonDocument.index("broken", "broken.json", file, false))
+            .isInstanceOf(IOException.class);
+        assertThat(file.getPath()).doesNotExist();
+    }
+
+    @Test
+    void evictionWaitsForReadersBeforeDeletingTheFile() throws IOException {
+        DocumentStore store = new DocumentStore(DataSize.ofMegabytes(64), DataSize.ofBytes(50));
+        DocumentFile first = DocumentFile.map(write("first.json", "{\"items\": [1, 2, 3, 4, 5, 6, 7, 8]}"));
+        store.publish(JsonDocument.index("first", "first.json", first, false));
+
+        JsonDocument reader = store.acquire("first");
+        assertThat(reader).isNotNull();
+        assertThat(reader.isMapped()).isTrue();
+
+        // Two mapped documents don't fit the budget; the older one goes
+        String second = "{\"items\": [9, 10, 11, 12, 13, 14, 15, 16]}";
+        store.publish(mapped("second", second));
+        assertThat(store.acquire("first")).isNull();
+        assertThat(store.getDocuments()).extracting(JsonDocument::getId).containsExactly("second");
+        assertThat(store.getMappedBytes()).isEqualTo(second.length());
+
+        // The reader still sees the bytes of the evicted document
+        assertThat(first.getPath()).exists();
+        assertThat(reader.getIndex().size()).isPositive();
+        reader.close();
+        assertThat(first.getPath()).doesNotExist();
+        assertThat(reader.retain()).isFalse();
+    }
+
+    @Test
+    void replacingOrRemovingADocumentReleasesTheStoresReference() throws IOException {
+        DocumentStore store = new DocumentStore(DataSize.ofMegabytes(64), DataSize.ofMegabytes(64));
+        DocumentFile original = DocumentFile.map(write("v1.json", "[1]"));
+        store.publish(JsonDocument.index("doc", "v1.json", original, false));
+
+        DocumentFile replacement = DocumentFile.map(write("v2.json", "[2]"));
+        store.publish(JsonDocument.index("doc", "v2.json", replacement, false));
+        assertThat(original.getPath()).doesNotExist();
+        assertThat(store.getDocuments()).hasSize(1);
+
+        JsonDocument reader = store.acquire("doc");
+        assertThat(store.remove("doc")).isTrue();
+        assertThat(store.remove("doc")).isFalse();
+        assertThat(replacement.getPath()).exists();
+        reader.close();
+        assertThat(replacement.getPath()).doesNotExist();
+    }
+
+    @Test
+    void heapDocumentsAreEvictedLeastRecentlyUsedFirst() throws Exception {
+        JsonDocument probe = heap("probe", "[1, 2, 3]");
+        DocumentStore store = new DocumentStore(DataSize.ofBytes(2 * probe.getEstimatedBytes() + 1),
+                                                DataSize.ofMegabytes(64));
+        store.publish(heap("a", "[1, 2, 3]"));
+        Thread.sleep(5);
+        store.publish(heap("b", "[4, 5, 6]"));
+        Thread.sleep(5);
+        // Reading a makes b the least recently used
+        store.acquire("a").close();
+        Thread.sleep(5);
+        store.publish(heap("c", "[7, 8, 9]"));
+
+        assertThat(store.getDocuments()).extracting(JsonDocument::getId).containsExactlyInAnyOrder("a", "c");
+        assertThat(store.acquire("b")).isNull();
+        // Heap documents need no references
+        assertThat(store.acquire("a").retain()).isTrue();
+    }
+
+    @Test
+    void theDocumentJustStoredIsNeverEvicted() throws IOException {
+        DocumentStore store = new DocumentStore(DataSize.ofBytes(1), DataSize.ofMegabytes(64));
+        store.publish(heap("a", "[1]"));
+        store.publish(heap("b", "[2]"));
+
+        assertThat(store.getDocuments()).extracting(JsonDocument::getId).containsExactly("b");
+        assertThatThrownBy(() -> store.requireCapacity(2)).isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("documents.memory-budget");
+    }
+
+    private JsonDocument mapped(String id, String json) throws IOException {
+        return JsonDocument.index(id, id + ".json", DocumentFile.map(write(id + ".json", json)), false);
+    }
+
+    private static JsonDocument heap(String id, String json) throws IOException {
+        return JsonDocument.index(id, id + ".json", ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+}
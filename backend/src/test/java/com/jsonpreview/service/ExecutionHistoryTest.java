@@ -0,0 +1,258 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.BufferedBody;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import com.jsonpreview.dto.HistoryEntryDto;
+import com.jsonpreview.dto.HistoryRecordDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutionHistoryTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @TempDir
+    Path directory;
+
+    private ExecutionHistory history;
+
+    @AfterEach
+    void closeHistory() throws IOException {
+        if (history != null) history.close();
+    }
+
+    @Test
+    void rollsToNewSegmentsAndReadsThemBackAfterRestart() throws IOException {
+        history = open(1, Duration.ofMinutes(1));
+        record("users", 200, "{\"id\":1}");
+        record("users", 404, "{\"error\":\"none\"}");
+        record("orders", 200, "[1,2,3]");
+        reopen(1, Duration.ofMinutes(1));
+
+        assertThat(segmentFiles()).hasSize(3);
+        List<HistoryEntryDto> entries = history.list(null, null, null, null, 10);
+        assertThat(entries).extracting(HistoryEntryDto::getRequestName).containsExactly("orders", "users", "users");
+        assertThat(entries).extracting(HistoryEntryDto::getStatusCode).containsExactly(200, 404, 200);
+        assertThat(body(entries.get(1).getId())).isEqualTo("{\"error\":\"none\"}");
+
+        // Ids carry on from the rebuilt index
+        record("orders", 201, "{}");
+        awaitEntries(4);
+        assertThat(history.list("orders", null, null, null, 1).get(0).getId()).isEqualTo(4);
+    }
+
+    @Test
+    void dropsTornRecordAtTheEndOfTheLastSegment() throws IOException {
+        history = open(DataSize.ofMegabytes(1).toBytes(), Duration.ofMinutes(1));
+        record("users", 200, "{\"id\":1}");
+        record("users", 200, "{\"id\":2}");
+        history.close();
+
+        Path segment = segmentFiles().get(0);
+        long intact = Files.size(segment);
+        // A crash halfway through appending: a length promising more than was written
+        Files.write(segment, new byte[] { 0, 0, 1, 0, HistorySegment.EXECUTION, 9, 9 }, StandardOpenOption.APPEND);
+
+        reopen(DataSize.ofMegabytes(1).toBytes(), Duration.ofMinutes(1));
+        assertThat(history.getEntryCount()).isEqualTo(2);
+        assertThat(Files.size(segment)).isEqualTo(intact);
+
+        record("users", 200, "{\"id\":3}");
+        reopen(DataSize.ofMegabytes(1).toBytes(), Duration.ofMinutes(1));
+        List<HistoryEntryDto> entries = history.list("users", null, null, null, 10);
+        assertThat(entries).hasSize(3);
+        assertThat(body(entries.get(0).getId())).isEqualTo("{\"id\":3}");
+    }
+
+    @Test
+    void dropsRecordWithDamagedChecksum() throws IOException {
+        history = open(DataSize.ofMegabytes(1).toBytes(), Duration.ofMinutes(1));
+        record("users", 200, "{\"id\":1}");
+        record("users", 200, "{\"id\":2}");
+        history.close();
+
+        Path segment = segmentFiles().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(segment, bytes);
+
+        reopen(DataSize.ofMegabytes(1).toBytes(), Duration.ofMinutes(1));
+        List<HistoryEntryDto> entries = history.list(null, null, null, null, 10);
+        assertThat(entries).extracting(HistoryEntryDto::getId).containsExactly(1L);
+    }
+
+    @Test
+    void deletionsSurviveRestart() throws IOException {
+        history = open(DataSize.ofMegabytes(1).toBytes(), Duration.ofMinutes(1));
+        record("users", 200, "{\"id\":1}");
+        record("users", 200, "{\"id\":2}");
+        record("orders", 200, "{\"id\":3}");
+        record("orders", 200, "{\"id\":4}");
+        awaitEntries(4);
+
+        assertThat(history.delete(3)).isTrue();
+        assertThat(history.delete(3)).isFalse();
+        assertThat(history.deleteRequest("users")).isEqualTo(2);
+        assertThat(history.get(1)).isNull();
+
+        reopen(DataSize.ofMegabytes(1).toBytes(), Duration.ofMinutes(1));
+        assertThat(history.list(null, null, null, null, 10))
+            .extracting(HistoryEntryDto::getId).containsExactly(4L);
+        assertThat(history.get(3)).isNull();
+    }
+
+    @Test
+    void nameDeletionOnlyCoversEntriesRecordedBeforeIt() throws IOException {
+        history = open(DataSize.ofMegabytes(1).toBytes(), Duration.ofMinutes(1));
+        record("users", 200, "{\"id\":1}");
+        awaitEntries(1);
+        assertThat(history.deleteRequest("users")).isEqualTo(1);
+        record("users", 200, "{\"id\":2}");
+
+        reopen(DataSize.ofMegabytes(1).toBytes(), Duration.ofMinutes(1));
+        assertThat(history.list("users", null, null, null, 10))
+            .extracting(HistoryEntryDto::getId).containsExactly(2L);
+    }
+
+    @Test
+    void compactsSealedSegmentsOfDeletedEntries() throws IOException {
+        // One record per segment, maintenance after every write
+        history = open(1, Duration.ZERO);
+        record("users", 200, "{\"id\":1}");
+        record("users", 200, "{\"id\":2}");
+        record("users", 200, "{\"id\":3}");
+        awaitEntries(3);
+        Path second = HistorySegment.pathOf(directory, 2);
+        assertThat(Files.size(second)).isPositive();
+
+        assertThat(history.delete(2)).isTrue();
+        // The deletion record rolls a segment and the writer's maintenance rewrites the second one
+        await(() -> sizeOf(second) == 0);
+
+        assertThat(body(1)).isEqualTo("{\"id\":1}");
+        assertThat(body(3)).isEqualTo("{\"id\":3}");
+
+        // A compaction cut short leaves its copy behind; the original is used on startup
+        Path leftover = second.resolveSibling(second.getFileName() + ".compact");
+        Files.write(leftover, new byte[] { 1, 2, 3 });
+        reopen(1, Duration.ofMinutes(1));
+        assertThat(leftover).doesNotExist();
+        assertThat(history.list(null, null, null, null, 10))
+            .extracting(HistoryEntryDto::getId).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void keepsAtMostMaxPerRequestEntries() throws IOException {
+        history = new ExecutionHistory(objectMapper, true, directory, DataSize.ofMegabytes(1), Duration.ofDays(7),
+                                       DataSize.ofGigabytes(1), 2, DataSize.ofMegabytes(8), DataSize.ofMegabytes(64),
+                                       Duration.ofMinutes(1));
+        record("users", 200, "{\"id\":1}");
+        record("users", 200, "{\"id\":2}");
+        record("users", 200, "{\"id\":3}");
+        awaitEntries(2);
+        await(() -> history.list("users", null, null, null, 10).get(0).getId() == 3);
+
+        assertThat(history.list("users", null, null, null, 10))
+            .extracting(HistoryEntryDto::getId).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void recordsNothingWhenDisabled() throws IOException {
+        history = new ExecutionHistory(objectMapper, false, directory.resolve("off"), DataSize.ofMegabytes(1),
+                                       Duration.ofDays(7), DataSize.ofGigabytes(1), 1000, DataSize.ofMegabytes(8),
+                                       DataSize.ofMegabytes(64), Duration.ofMinutes(1));
+        history.record(request("users"), response(200, "{}"));
+
+        assertThat(history.getEntryCount()).isZero();
+        assertThat(directory.resolve("off")).doesNotExist();
+    }
+
+    private ExecutionHistory open(long segmentSize, Duration maintenanceInterval) {
+        return new ExecutionHistory(objectMapper, true, directory, DataSize.ofBytes(segmentSize), Duration.ofDays(7),
+                                    DataSize.ofGigabytes(1), 1000, DataSize.ofMegabytes(8), DataSize.ofMegabytes(64),
+                                    maintenanceInterval);
+    }
+
+    /**
+     * Closes the history, which writes out everything queued, and loads it again.
+     */
+    private void reopen(long segmentSize, Duration maintenanceInterval) throws IOException {
+        history.close();
+        history = open(segmentSize, maintenanceInterval);
+    }
+
+    private void record(String requestName, int status, String body) {
+        history.record(request(requestName), response(status, body));
+    }
+
+    private static ExecuteRequestDto request(String requestName) {
+        ExecuteRequestDto request = new ExecuteRequestDto();
+        request.setCollectionId("collection");
+        request.setRequestName(requestName);
+        request.setParameters(Map.of("id", "1"));
+        return request;
+    }
+
+    private static ApiResponseDto response(int status, String body) {
+        ApiResponseDto response = new ApiResponseDto();
+        response.setStatusCode(status);
+        response.setExecutionTimeMs(5);
+        response.setResponseBody(BufferedBody.of(body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        return response;
+    }
+
+    private String body(long id) throws IOException {
+        HistoryRecordDto record = history.get(id);
+        assertThat(record).isNotNull();
+        BufferedBody body = (BufferedBody) record.getResponse().getResponseBody();
+        return new String(body.toByteArray(), body.getCharset());
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void awaitEntries(int count) {
+        await(() -> history.getEntryCount() >= count);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() - deadline).as("condition within 10 s").isNegative();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import com.jsonpreview.dto.IterationRequestDto;
+import com.jsonpreview.dto.IterationResultDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Iterations over parameter files: results in file order, checkpoints, and resuming;
+ * executions are answered asynchronously by a stubbed {@link ApiExecutionService}.
+ */
+class IterationServiceTest {
+
+    private static final String COLLECTION = """
+        {"info": {"name": "Items"}, "item": [
+          {"name": "Lookup", "request": {"method": "GET", "url": "{{base}}/items/{{id}}"}}
+        ]}
+        """;
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final Map<PreparedRequest, Map<String, String>> prepared = new ConcurrentHashMap<>();
+    private final AtomicInteger executions = new AtomicInteger();
+    // Rows from this id on wait for the gate
+    private volatile int blockFrom = Integer.MAX_VALUE;
+    private final CompletableFuture<Void> gate = new CompletableFuture<>();
+    private IterationService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        PostmanParserService parserService = new PostmanParserService(
+            new CollectionRegistry(DataSize.ofMegabytes(64)), new HotPathMetrics(new SimpleMeterRegistry(), 500),
+            DataSize.ofMegabytes(16));
+        parserService.parseCollection(new MockMultipartFile("file", "items.json", "application/json",
+                                                            COLLECTION.getBytes(StandardCharsets.UTF_8)), "items");
+
+        ApiExecutionService apiExecutionService = mock(ApiExecutionService.class);
+        when(apiExecutionService.prepareRequest(any(ExecuteRequestDto.class))).thenAnswer(invocation -> {
+            ExecuteRequestDto request = invocation.getArgument(0);
+            PreparedRequest prepared = PreparedRequest.of(request.getRequestName(), null, false, false, null);
+            this.prepared.put(prepared, request.getParameters());
+            return prepared;
+        });
+        when(apiExecutionService.executeAsync(any(PreparedRequest.class), anyLong())).thenAnswer(invocation -> {
+            executions.incrementAndGet();
+            Map<String, String> parameters = prepared.remove(invocation.<PreparedRequest>getArgument(0));
+            int id = Integer.parseInt(parameters.get("id"));
+            ApiResponseDto response = new ApiResponseDto();
+            response.setStatusCode(Integer.parseInt(parameters.getOrDefault("status", "200")));
+            response.setResponseBody("{\"id\": " + id + "}");
+            if (id >= blockFrom) {
+                return gate.thenApply(ignored -> response);
+            }
+            // Later rows answer first, so results arrive out of file order
+            return CompletableFuture.supplyAsync(() -> response,
+                CompletableFuture.delayedExecutor(10 - id % 10, TimeUnit.MILLISECONDS));
+        });
+        service = new IterationService(apiExecutionService, parserService, objectMapper, directory, 4, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gate.complete(null);
+    }
+
+    @Test
+    void resultsAreWrittenInFileOrder() throws Exception {
+        StringBuilder csv = new StringBuilder("id,status\n");
+        for (int id = 0; id < 40; id++) {
+            csv.append(id).append(',').append(id % 10 == 3 ? 404 : 200).append('\n');
+        }
+        String id = start("rows.csv", csv.toString(), 8);
+        assertThat(service.awaitFinish(id, 10_000)).isTrue();
+
+        IterationResultDto result = service.snapshot(id);
+        assertThat(result.getState()).isEqualTo("COMPLETED");
+        assertThat(result.getFormat()).isEqualTo("csv");
+        assertThat(result.getRowsDone()).isEqualTo(40);
+        assertThat(result.getSucceeded()).isEqualTo(36);
+        assertThat(result.getFailed()).isEqualTo(4);
+
+        List<JsonNode> rows = results(id);
+        assertThat(rows).extracting(row -> row.path("row").asInt()).containsExactlyElementsOf(range(0, 40));
+        assertThat(rows.get(3).path("response").path("statusCode").asInt()).isEqualTo(404);
+        assertThat(rows.get(5).path("parameters").path("id").asText()).isEqualTo("5");
+
+        IterationRun.Checkpoint checkpoint = IterationRun.Checkpoint.read(directory.resolve(id), objectMapper);
+        assertThat(checkpoint.complete).isTrue();
+        assertThat(checkpoint.nextRow).isEqualTo(40);
+        assertThatThrownBy(() -> service.resume(id)).isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("already completed");
+    }
+
+    @Test
+    void invalidRowsAreRecordedWithoutExecuting() throws Exception {
+        String id = start("rows.ndjson", "{\"id\": \"0\"}\nnot json\n{\"id\": \"2\"}\n", 2);
+        assertThat(service.awaitFinish(id, 10_000)).isTrue();
+
+        List<JsonNode> rows = results(id);
+        assertThat(rows).hasSize(3);
+        assertThat(rows.get(1).path("error").asText()).startsWith("Invalid row");
+        assertThat(rows.get(1).path("response").isObject()).isFalse();
+        assertThat(executions).hasValue(2);
+        assertThat(service.snapshot(id).getFailed()).isEqualTo(1);
+    }
+
+    @Test
+    void stoppedIterationResumesFromItsCheckpoint() throws Exception {
+        blockFrom = 5;
+        StringBuilder csv = new StringBuilder("id\n");
+        for (int id = 0; id < 12; id++) {
+            csv.append(id).append('\n');
+        }
+        String id = start("rows.csv", csv.toString(), 2);
+        await(() -> service.snapshot(id).getRowsDone() == 5);
+
+        assertThat(service.stopOrRemove(id)).isTrue();
+        assertThat(service.awaitFinish(id, 10_000)).isTrue();
+        assertThat(service.snapshot(id).getState()).isEqualTo("STOPPED");
+        IterationRun.Checkpoint checkpoint = IterationRun.Checkpoint.read(directory.resolve(id), objectMapper);
+        assertThat(checkpoint.nextRow).isEqualTo(5);
+        assertThat(checkpoint.complete).isFalse();
+        assertThat(results(id)).hasSize(5);
+
+        // A line torn by a crash after the checkpoint is written again
+        Files.writeString(directory.resolve(id).resolve(IterationRun.RESULTS_FILE), "{\"row\": 5, \"par",
+                          StandardOpenOption.APPEND);
+        gate.complete(null);
+        IterationResultDto resumed = service.resume(id);
+        assertThat(resumed.getResumedFromRow()).isEqualTo(5);
+        assertThat(service.awaitFinish(id, 10_000)).isTrue();
+
+        IterationResultDto result = service.snapshot(id);
+        assertThat(result.getState()).isEqualTo("COMPLETED");
+        assertThat(result.getSucceeded()).isEqualTo(12);
+        assertThat(results(id)).extracting(row -> row.path("row").asInt()).containsExactlyElementsOf(range(0, 12));
+    }
+
+    @Test
+    void startRejectsWhatCannotRun() {
+        assertThatThrownBy(() -> start("rows.csv", "", 1)).hasMessageContaining("Parameter file is empty");
+        assertThatThrownBy(() -> start("rows.txt", "id\n1\n", 1)).hasMessageContaining("csv or ndjson");
+
+        IterationRequestDto unknown = request(1);
+        unknown.setRequestName("Missing");
+        assertThatThrownBy(() -> service.start(file("rows.csv", "id\n1\n"), unknown))
+            .hasMessageContaining("Request not found: Missing");
+        IterationRequestDto unknownEnvironment = request(1);
+        unknownEnvironment.setEnvironment("Stagign");
+        assertThatThrownBy(() -> service.start(file("rows.csv", "id\n1\n"), unknownEnvironment))
+            .hasMessageContaining("Environment not found: Stagign");
+        assertThatThrownBy(() -> service.resume("not-an-id")).hasMessageContaining("Iteration not found");
+    }
+
+    private String start(String fileName, String content, int parallelism) throws IOException {
+        return service.start(file(fileName, content), request(parallelism)).getId();
+    }
+
+    private static MockMultipartFile file(String fileName, String content) {
+        return new MockMultipartFile("file", fileName, "text/plain", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static IterationRequestDto request(int parallelism) {
+        IterationRequestDto request = new IterationRequestDto();
+        request.setCollectionId("items");
+        request.setRequestName("Lookup");
+        request.setParallelism(parallelism);
+        return request;
+    }
+
+    private List<JsonNode> results(String id) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeResults(id, out);
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                rows.add(objectMapper.readTree(line));
+            }
+        }
+        return rows;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> range = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            range.add(i);
+        }
+        return range;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() - deadline).as("condition within 10 s").isNegative();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.DiffEntryDto;
+import com.jsonpreview.dto.DiffResultDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonDiffServiceTest {
+
+    private final JsonDiffService diffService = new JsonDiffService(new JsonDocumentService(
+        new DocumentStore(DataSize.ofMegabytes(64), DataSize.ofMegabytes(64)),
+        new HotPathMetrics(new SimpleMeterRegistry(), 500), DataSize.ofMegabytes(64), false));
+
+    @Test
+    void formattingAndEscapesDoNotCount() throws IOException {
+        DiffResultDto result = diff("{\"a\": [1, 2], \"\\u0062\": \"\\u0041\", \"n\": 1.50}",
+                                    "{\n  \"a\": [1,2],\n  \"b\": \"A\",\n  \"n\": 1.5\n}", null);
+
+        assertThat(result.isIdentical()).isTrue();
+        assertThat(result.getDifferences()).isEmpty();
+        assertThat(result.getChanged()).isZero();
+    }
+
+    @Test
+    void identicalSubtreesAreNotDescended() throws IOException {
+        String big = "{\"same\": {\"x\": [1, 2, 3, {\"y\": [4, 5, 6]}]}, \"v\": 1}";
+        DiffResultDto result = diff(big, big.replace("\"v\": 1", "\"v\": 2"), null);
+
+        assertThat(ops(result)).containsExactly("changed /v");
+        // The root, then its two members; "same" is equal byte for byte
+        assertThat(result.getComparedNodes()).isEqualTo(3);
+    }
+
+    @Test
+    void scalarAndTypeChanges() throws IOException {
+        DiffResultDto result = diff("{\"s\": \"x\", \"n\": 1, \"b\": true, \"t\": 1, \"z\": null}",
+                                    "{\"s\": \"y\", \"n\": 2, \"b\": false, \"t\": \"1\", \"z\": null}", null);
+
+        assertThat(ops(result)).containsExactly("changed /s", "changed /n", "changed /b", "changed /t");
+        DiffEntryDto type = result.getDifferences().get(3);
+        assertThat(type.getLeft().getType()).isEqualTo("number");
+        assertThat(type.getRight().getType()).isEqualTo("string");
+    }
+
+    @Test
+    void reorderedMembersArePairedByName() throws IOException {
+        DiffResultDto result = diff("{\"a\": 1, \"b\": 2, \"c\": 3, \"z\": 0}",
+                                    "{\"a\": 1, \"c\": 3, \"b\": 5, \"d\": 4}", null);
+
+        assertThat(ops(result)).containsExactly("changed /b", "removed /z", "added /d");
+        assertThat(result.getAdded()).isEqualTo(1);
+        assertThat(result.getRemoved()).isEqualTo(1);
+        assertThat(result.getChanged()).isEqualTo(1);
+    }
+
+    @Test
+    void arraysArePairedByPosition() throws IOException {
+        assertThat(ops(diff("[1, 2, 3]", "[1, 5]", null))).containsExactly("changed /1", "removed /2");
+        assertThat(ops(diff("{\"l\": []}", "{\"l\": [{}]}", null))).containsExactly("added /l/0");
+    }
+
+    @Test
+    void arraysArePairedByKeyWhenGiven() throws IOException {
+        String left = "{\"items\": [{\"id\": 1, \"v\": \"a\"}, {\"id\": 2, \"v\": \"b\"}, {\"id\": 4}]}";
+        String right = "{\"items\": [{\"id\": 2, \"v\": \"b\"}, {\"id\": 1, \"v\": \"c\"}, {\"id\": 3}]}";
+
+        DiffResultDto byKey = diff(left, right, "id");
+        assertThat(byKey.getArrayKey()).isEqualTo("id");
+        assertThat(ops(byKey)).containsExactly("changed /items/0/v", "removed /items/2", "added /items/2");
+        DiffEntryDto changed = byKey.getDifferences().get(0);
+        assertThat(changed.getRight().getPointer()).isEqualTo("/items/1/v");
+
+        assertThat(ops(diff(left, right, null)))
+            .containsExactly("changed /items/0/id", "changed /items/0/v", "changed /items/1/id",
+                             "changed /items/1/v", "changed /items/2/id");
+    }
+
+    @Test
+    void arraysWithoutUsableKeysFallBackToPosition() throws IOException {
+        // A missing key, a repeated key, and keys of different types
+        assertThat(ops(diff("[{\"id\": 1}, {\"x\": 2}]", "[{\"x\": 2}, {\"id\": 1}]", "id")))
+            .containsExactly("removed /0/id", "added /0/x", "removed /1/x", "added /1/id");
+        assertThat(ops(diff("[{\"id\": 1, \"v\": 1}, {\"id\": 1}]", "[{\"id\": 1}, {\"id\": 1, \"v\": 1}]", "id")))
+            .containsExactly("removed /0/v", "added /1/v");
+        assertThat(ops(diff("[{\"id\": 1}]", "[{\"id\": \"1\"}]", "id")))
+            .containsExactly("removed /0", "added /0");
+    }
+
+    @Test
+    void pointersEscapeMemberNames() throws IOException {
+        assertThat(ops(diff("{\"a/b\": {\"m~n\": 1}}", "{\"a/b\": {\"m~n\": 2}}", null)))
+            .containsExactly("changed /a~1b/m~0n");
+    }
+
+    @Test
+    void limitStopsTheWalkUnlessTotalsAreAsked() throws IOException {
+        String left = "[1, 2, 3, 4, 5]";
+        String right = "[9, 9, 9, 9, 9, 6]";
+
+        DiffResultDto first = diffService.diff(document("l", left), document("r", right), null, 2, 100, false);
+        assertThat(ops(first)).containsExactly("changed /0", "changed /1");
+        assertThat(first.isTruncated()).isTrue();
+        assertThat(first.getChanged()).isNull();
+
+        DiffResultDto counted = diffService.diff(document("l", left), document("r", right), null, 2, 100, true);
+        assertThat(counted.getDifferences()).hasSize(2);
+        assertThat(counted.isTruncated()).isTrue();
+        assertThat(counted.getChanged()).isEqualTo(5);
+        assertThat(counted.getAdded()).isEqualTo(1);
+    }
+
+    private DiffResultDto diff(String left, String right, String arrayKey) throws IOException {
+        return diffService.diff(document("left", left), document("right", right), arrayKey, 100, 100, true);
+    }
+
+    private static JsonDocument document(String id, String json) throws IOException {
+        return JsonDocument.index(id, id + ".json", ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    private static List<String> ops(DiffResultDto result) {
+        return result.getDifferences().stream().map(entry -> entry.getOp() + " " + entry.getPath()).toList();
+    }
+}
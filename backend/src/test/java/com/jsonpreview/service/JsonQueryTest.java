@@ -0,0 +1,180 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonQueryTest {
+
+    private static final String STORE = """
+        {
+          "store": {
+            "book": [
+              {"category": "reference", "author": "Nigel Rees", "title": "Sayings", "price": 8.95},
+              {"category": "fiction", "author": "Evelyn Waugh", "title": "Sword", "price": 12.99},
+              {"category": "fiction", "author": "Herman Melville", "title": "Moby Dick", "isbn": "0-553", "price": 8.99},
+              {"category": "fiction", "author": "J. R. R. Tolkien", "title": "LOTR", "isbn": "0-395", "price": 22.99}
+            ],
+            "bicycle": {"color": "red", "price": 19.95}
+          },
+          "a/b": {"m~n": 1},
+          "flags": [true, false, null, 0]
+        }
+        """;
+
+    private static JsonDocument document;
+
+    @BeforeAll
+    static void indexDocument() throws IOException {
+        document = JsonDocument.index("store", "store.json",
+                                      ByteBuffer.wrap(STORE.getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    @Test
+    void jsonPointers() throws IOException {
+        assertThat(JsonQuery.compile("/store/bicycle/color").isPointer()).isTrue();
+        assertThat(values("/store/bicycle/color")).containsExactly("red");
+        assertThat(pointers("/store/book/3/title")).containsExactly("/store/book/3/title");
+        assertThat(pointers("/store/nope")).isEmpty();
+        assertThat(pointers("")).containsExactly("");
+        assertThat(pointers("/a~1b/m~0n")).containsExactly("/a~1b/m~0n");
+    }
+
+    @Test
+    void memberAndIndexSteps() throws IOException {
+        assertThat(JsonQuery.compile("$.store").isPointer()).isFalse();
+        assertThat(values("$.store.book[0].title")).containsExactly("Sayings");
+        assertThat(values("$.store.book[-1].title")).containsExactly("LOTR");
+        assertThat(values("$['store']['book'][1]['title']")).containsExactly("Sword");
+        assertThat(pointers("$.store.book[0,2].author")).containsExactly("/store/book/0/author", "/store/book/2/author");
+        assertThat(pointers("$.store['bicycle','missing'].color")).containsExactly("/store/bicycle/color");
+        assertThat(pointers("$.store.book[9]")).isEmpty();
+        assertThat(pointers("$.store.bicycle[0]")).isEmpty();
+        assertThat(pointers("$")).containsExactly("");
+    }
+
+    @Test
+    void specialCharactersInNamesAreEscapedInPointers() throws IOException {
+        assertThat(pointers("$['a/b']['m~n']")).containsExactly("/a~1b/m~0n");
+        assertThat(pointers("$['a/b'].*")).containsExactly("/a~1b/m~0n");
+    }
+
+    @Test
+    void slices() throws IOException {
+        assertThat(indices("$.store.book[1:3]")).containsExactly(1, 2);
+        assertThat(indices("$.store.book[::2]")).containsExactly(0, 2);
+        assertThat(indices("$.store.book[-2:]")).containsExactly(2, 3);
+        assertThat(indices("$.store.book[:-3]")).containsExactly(0);
+        assertThat(indices("$.store.book[::-1]")).containsExactly(3, 2, 1, 0);
+        assertThat(indices("$.store.book[2:0:-1]")).containsExactly(2, 1);
+        assertThat(indices("$.store.book[5:9]")).isEmpty();
+        assertThat(indices("$.store.book[::0]")).isEmpty();
+    }
+
+    @Test
+    void wildcardsAndRecursiveDescent() throws IOException {
+        assertThat(pointers("$.store.*")).containsExactly("/store/book", "/store/bicycle");
+        assertThat(pointers("$.flags[*]")).hasSize(4);
+        assertThat(values("$..author")).containsExactly("Nigel Rees", "Evelyn Waugh", "Herman Melville", "J. R. R. Tolkien");
+        assertThat(pointers("$..price")).containsExactly("/store/book/0/price", "/store/book/1/price",
+            "/store/book/2/price", "/store/book/3/price", "/store/bicycle/price");
+        assertThat(pointers("$..book[-1].isbn")).containsExactly("/store/book/3/isbn");
+    }
+
+    @Test
+    void filters() throws IOException {
+        assertThat(values("$.store.book[?(@.price < 10)].title")).containsExactly("Sayings", "Moby Dick");
+        assertThat(values("$.store.book[?(@.isbn)].title")).containsExactly("Moby Dick", "LOTR");
+        assertThat(values("$.store.book[?(@.category == 'fiction' && @.price > 20)].title")).containsExactly("LOTR");
+        assertThat(values("$.store.book[?(@.category == \"reference\" || @.price >= 22.99)].title"))
+            .containsExactly("Sayings", "LOTR");
+        assertThat(values("$.store.book[?(@.price != 8.95)].title")).containsExactly("Sword", "Moby Dick", "LOTR");
+        assertThat(values("$.store.book[?((@.price < 9 || @.price > 20) && @.isbn)].title"))
+            .containsExactly("Moby Dick", "LOTR");
+        assertThat(values("$.store.book[?(@.author > 'I')].title")).containsExactly("Sayings", "LOTR");
+    }
+
+    @Test
+    void filterLiteralsAndMissingValues() throws IOException {
+        assertThat(indices("$.flags[?(@ == true)]")).containsExactly(0);
+        assertThat(indices("$.flags[?(@ == null)]")).containsExactly(2);
+        assertThat(indices("$.flags[?(@ == 0)]")).containsExactly(3);
+        // Booleans are equal or not but have no order
+        assertThat(indices("$.flags[?(@ < true)]")).isEmpty();
+        // A missing member only satisfies !=
+        assertThat(indices("$.store.book[?(@.isbn == 1)]")).isEmpty();
+        assertThat(indices("$.store.book[?(@.isbn != '0-553')]")).containsExactly(0, 1, 3);
+        assertThat(pointers("$.store[?(@.color)]")).containsExactly("/store/bicycle");
+    }
+
+    @Test
+    void locationsNameTheirMemberOrIndex() throws IOException {
+        List<String> names = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        JsonQuery.compile("$.store.book[1].*").evaluate(document, (node, location) -> {
+            names.add(location.getName());
+            return true;
+        });
+        JsonQuery.compile("$.store.book[2]").evaluate(document, (node, location) -> {
+            indices.add(location.getIndex());
+            assertThat(location.getName()).isNull();
+            return true;
+        });
+
+        assertThat(names).containsExactly("category", "author", "title", "price");
+        assertThat(indices).containsExactly(2);
+    }
+
+    @Test
+    void sinkCanStopTheWalk() throws IOException {
+        List<Integer> seen = new ArrayList<>();
+        JsonQuery.compile("$..price").evaluate(document, (node, location) -> {
+            seen.add(node);
+            return seen.size() < 2;
+        });
+
+        assertThat(seen).hasSize(2);
+    }
+
+    @Test
+    void malformedExpressionsAreRejected() {
+        for (String expression : List.of("store.book", "$.", "$.store[", "$.store.book[?(@.price <)]",
+                                         "$[abc]", "$.store.book[?(@.price < 1e)]", "$['open", "$.book[1,]")) {
+            assertThatThrownBy(() -> JsonQuery.compile(expression))
+                .as(expression)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(expression.trim());
+        }
+    }
+
+    private static List<String> pointers(String expression) throws IOException {
+        List<String> pointers = new ArrayList<>();
+        JsonQuery.compile(expression).evaluate(document, (node, location) -> pointers.add(location.toPointer()));
+        return pointers;
+    }
+
+    private static List<Integer> indices(String expression) throws IOException {
+        List<Integer> indices = new ArrayList<>();
+        JsonQuery.compile(expression).evaluate(document, (node, location) -> indices.add(location.getIndex()));
+        return indices;
+    }
+
+    private static List<String> values(String expression) throws IOException {
+        List<String> values = new ArrayList<>();
+        JsonQuery.compile(expression).evaluate(document, (node, location) -> {
+            try (JsonParser parser = document.valueParser(node)) {
+                return values.add(parser.getText());
+            }
+        });
+        return values;
+    }
+}
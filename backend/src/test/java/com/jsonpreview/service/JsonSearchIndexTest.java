@@ -0,0 +1,127 @@
+package com.jsonpreview.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The word index built alongside the structure index: tokenizing, postings per node,
+ * table growth and intersecting the postings of several words.
+ */
+class JsonSearchIndexTest {
+
+    @Test
+    void wordsOfNamesAndScalarsPointAtTheirNodes() throws IOException {
+        // Nodes: 0 root, 1 "title", 2 "tags", 3 "Hello", 4 "x-Ray", 5 "count", 6 "flag"
+        JsonSearchIndex index = index("""
+            {"title": "Hello, World!", "tags": ["HELLO", "x-Ray"], "count": 42, "flag": true}
+            """);
+
+        assertThat(index.candidates("hello")).containsExactly(1, 3);
+        assertThat(index.candidates("World")).containsExactly(1);
+        assertThat(index.candidates("tags")).containsExactly(2);
+        assertThat(index.candidates("ray")).containsExactly(4);
+        assertThat(index.candidates("42")).containsExactly(5);
+        // Booleans and nulls carry no words, but member names do
+        assertThat(index.candidates("true")).isEmpty();
+        assertThat(index.candidates("flag")).containsExactly(6);
+        assertThat(index.candidates("absent")).isEmpty();
+        assertThat(index.candidates(" -, ")).isNull();
+        assertThat(index.candidates("")).isNull();
+    }
+
+    @Test
+    void multiWordQueriesMatchNodesHavingEveryWord() throws IOException {
+        JsonSearchIndex index = index("""
+            ["red apple", "green apple", "red pepper", "apple red", "Äpfel und Birnen"]
+            """);
+
+        assertThat(index.candidates("red apple")).containsExactly(1, 4);
+        assertThat(index.candidates("APPLE, green")).containsExactly(2);
+        assertThat(index.candidates("red green")).isEmpty();
+        assertThat(index.candidates("äpfel birnen")).containsExactly(5);
+        // Words are whole runs of letters and digits, not prefixes
+        assertThat(index.candidates("app")).isEmpty();
+    }
+
+    @Test
+    void repeatedWordsWithinOneNodeArePostedOnce() throws IOException {
+        JsonSearchIndex index = index("""
+            {"echo": "echo Echo ECHO", "other": ["echo", "echo echo"]}
+            """);
+
+        assertThat(index.candidates("echo")).containsExactly(1, 3, 4);
+        assertThat(index.candidates("echo echo")).containsExactly(1, 3, 4);
+        assertThat(index.termCount()).isEqualTo(2);
+        assertThat(index.postingCount()).isEqualTo(4);
+    }
+
+    @Test
+    void theTableGrowsPastItsInitialSize() throws IOException {
+        int words = 5000;
+        StringJoiner json = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < words; i++) {
+            json.add("\"w" + i + " shared\"");
+        }
+        JsonSearchIndex index = index(json.toString());
+
+        assertThat(index.termCount()).isEqualTo(words + 1);
+        assertThat(index.postingCount()).isEqualTo(2 * words);
+        for (int i = 0; i < words; i += 97) {
+            assertThat(index.candidates("w" + i)).as("w" + i).containsExactly(i + 1);
+        }
+        assertThat(index.candidates("shared")).hasSize(words).startsWith(1, 2).endsWith(words);
+        assertThat(index.memoryBytes()).isGreaterThan(12L * 2 * words);
+    }
+
+    @Test
+    void rareWordsAreFoundInLongPostingsLists() throws IOException {
+        int length = 20_000;
+        List<Integer> rare = List.of(1, 2, 513, 4096, 4097, 12_345, length - 1, length);
+        StringJoiner json = new StringJoiner(", ", "[", "]");
+        for (int node = 1; node <= length; node++) {
+            json.add(rare.contains(node) ? "\"common rare\"" : node % 3 == 0 ? "\"uncommon\"" : "\"common\"");
+        }
+        JsonSearchIndex index = index(json.toString());
+
+        assertThat(index.candidates("rare common")).containsExactly(toArray(rare));
+        assertThat(index.candidates("common rare")).containsExactly(toArray(rare));
+        assertThat(index.candidates("uncommon rare")).isEmpty();
+
+        List<Integer> expected = new ArrayList<>();
+        for (int node = 1; node <= length; node++) {
+            if (node % 3 != 0 || rare.contains(node)) expected.add(node);
+        }
+        assertThat(index.candidates("common")).containsExactly(toArray(expected));
+    }
+
+    @Test
+    void onlyTheFirstSixteenWordsOfAQueryCount() throws IOException {
+        StringJoiner words = new StringJoiner(" ");
+        for (int i = 1; i <= 16; i++) {
+            words.add("word" + i);
+        }
+        JsonSearchIndex index = index("[\"" + words + "\", \"word1\"]");
+
+        assertThat(index.candidates(words.toString())).containsExactly(1);
+        // A 17th word is not checked, so candidates are a superset of the matches
+        assertThat(index.candidates(words + " missing")).containsExactly(1);
+        assertThat(index.candidates("missing " + words)).isEmpty();
+    }
+
+    private static int[] toArray(List<Integer> nodes) {
+        return nodes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static JsonSearchIndex index(String json) throws IOException {
+        return JsonDocument.index("doc", "doc.json", ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), true)
+            .getSearchIndex();
+    }
+}
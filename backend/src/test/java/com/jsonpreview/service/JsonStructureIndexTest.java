@@ -0,0 +1,194 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The structure index: node numbering, offsets and types, and navigating children
+ * across nested containers.
+ */
+class JsonStructureIndexTest {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    // Nodes: 0 root, 1 "a", 2 1, 3 {..}, 4 "b", 5 2, 6 3, 7 "c", 8 [4], 9 4, 10 "d", 11 "e", 12 "f"
+    private static final String NESTED = """
+        {"a": [1, {"b": [2, 3], "c": {}}, [4]], "d": "x", "e": {"f": null}}
+        """;
+
+    @Test
+    void nodesAreNumberedInDocumentOrder() throws IOException {
+        JsonStructureIndex index = index(NESTED);
+
+        assertThat(index.size()).isEqualTo(13);
+        assertThat(index.type(0)).isEqualTo(JsonStructureIndex.NodeType.OBJECT);
+        assertThat(index.type(1)).isEqualTo(JsonStructureIndex.NodeType.ARRAY);
+        assertThat(index.type(2)).isEqualTo(JsonStructureIndex.NodeType.NUMBER);
+        assertThat(index.type(10)).isEqualTo(JsonStructureIndex.NodeType.STRING);
+        assertThat(index.type(12)).isEqualTo(JsonStructureIndex.NodeType.NULL);
+        assertThat(index.isMember(1)).isTrue();
+        assertThat(index.isMember(2)).isFalse();
+        assertThat(index.isMember(7)).isTrue();
+        assertThat(index.isMember(8)).isFalse();
+
+        // Ends are next siblings; scalars end at the next node
+        assertThat(index.end(0)).isEqualTo(13);
+        assertThat(index.end(1)).isEqualTo(10);
+        assertThat(index.end(3)).isEqualTo(8);
+        assertThat(index.end(4)).isEqualTo(7);
+        assertThat(index.end(7)).isEqualTo(8);
+        assertThat(index.end(8)).isEqualTo(10);
+        assertThat(index.end(5)).isEqualTo(6);
+        assertThat(index.childCount(7)).isZero();
+        assertThat(index.childCount(5)).isZero();
+    }
+
+    @Test
+    void offsetsAreBytesOfTheNameOrValue() throws IOException {
+        String json = "{\"é\": \"ü€\", \"x\": [true, \"🚀\", -1.5]}";
+        JsonStructureIndex index = index(json);
+
+        // Members point at their name, other nodes at their value
+        assertThat(index.offset(1)).isEqualTo(byteOffset(json, "\"é\""));
+        assertThat(index.offset(2)).isEqualTo(byteOffset(json, "\"x\""));
+        assertThat(index.offset(3)).isEqualTo(byteOffset(json, "true"));
+        assertThat(index.offset(4)).isEqualTo(byteOffset(json, "\"🚀\""));
+        assertThat(index.offset(5)).isEqualTo(byteOffset(json, "-1.5"));
+    }
+
+    @Test
+    void childrenAreVisitedAcrossNestedContainers() throws IOException {
+        JsonStructureIndex index = index(NESTED);
+
+        assertThat(children(index, 0)).containsExactly(1, 10, 11);
+        assertThat(children(index, 1)).containsExactly(2, 3, 8);
+        assertThat(children(index, 3)).containsExactly(4, 7);
+        assertThat(children(index, 4)).containsExactly(5, 6);
+        assertThat(children(index, 11)).containsExactly(12);
+        assertThat(children(index, 7)).isEmpty();
+        assertThat(children(index, 2)).isEmpty();
+
+        JsonStructureIndex.ChildCursor cursor = index.children(1);
+        assertThat(cursor.peek()).isEqualTo(2);
+        cursor.skip(2);
+        assertThat(cursor.peek()).isEqualTo(8);
+        assertThat(cursor.next()).isEqualTo(8);
+        assertThat(cursor.hasNext()).isFalse();
+        assertThat(cursor.peek()).isEqualTo(-1);
+        assertThat(cursor.next()).isEqualTo(-1);
+
+        assertThat(index.child(1, 1)).isEqualTo(3);
+        assertThat(index.child(1, 2)).isEqualTo(8);
+        assertThat(index.child(1, 3)).isEqualTo(-1);
+        assertThat(index.child(1, -1)).isEqualTo(-1);
+        assertThat(index.child(2, 0)).isEqualTo(-1);
+    }
+
+    @Test
+    void navigationMatchesTheParsedTree() throws IOException {
+        // Wide and deep enough that the arrays grow and cursors hop over many containers
+        Random random = new Random(7);
+        String json = new ObjectMapper().writeValueAsString(randomValue(random, 0));
+        JsonNode tree = new ObjectMapper().readTree(json);
+        JsonStructureIndex index = index(json);
+
+        int[] next = {0};
+        check(index, tree, next);
+        assertThat(index.size()).isEqualTo(next[0]);
+    }
+
+    @Test
+    void malformedDocumentsAreRejected() {
+        assertThatThrownBy(() -> index("")).isInstanceOf(IOException.class).hasMessageContaining("empty or truncated");
+        assertThatThrownBy(() -> index("[1, [2]")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> index("{\"a\": 1} {\"b\": 2}")).isInstanceOf(IOException.class)
+            .hasMessageContaining("after the root value");
+        assertThatThrownBy(() -> index("[1, 2] 3")).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void aScalarIsADocumentToo() throws IOException {
+        JsonStructureIndex index = index("  \"just text\"  ");
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.type(0)).isEqualTo(JsonStructureIndex.NodeType.STRING);
+        assertThat(index.offset(0)).isEqualTo(2);
+        assertThat(index.end(0)).isEqualTo(1);
+        assertThat(children(index, 0)).isEmpty();
+    }
+
+    /**
+     * Walks {@code node} in pre-order alongside the index, numbering nodes as it goes.
+     */
+    private static void check(JsonStructureIndex index, JsonNode node, int[] next) {
+        int id = next[0]++;
+        assertThat(index.isContainer(id)).as("node %d", id).isEqualTo(node.isContainerNode());
+        assertThat(index.childCount(id)).as("node %d", id).isEqualTo(node.size());
+
+        List<Integer> expected = new ArrayList<>();
+        Iterator<JsonNode> elements = node.elements();
+        while (elements.hasNext()) {
+            expected.add(next[0]);
+            check(index, elements.next(), next);
+        }
+        assertThat(index.end(id)).as("node %d", id).isEqualTo(next[0]);
+        assertThat(children(index, id)).as("node %d", id).containsExactlyElementsOf(expected);
+        if (!expected.isEmpty()) {
+            assertThat(index.child(id, expected.size() - 1)).isEqualTo(expected.get(expected.size() - 1));
+        }
+    }
+
+    private static Object randomValue(Random random, int depth) {
+        int kind = depth == 0 ? random.nextInt(2) : depth < 4 ? random.nextInt(5) : 2 + random.nextInt(3);
+        int width = depth == 0 ? 400 : random.nextInt(12);
+        switch (kind) {
+            case 0: {
+                List<Object> array = new ArrayList<>();
+                for (int i = 0; i < width; i++) array.add(randomValue(random, depth + 1));
+                return array;
+            }
+            case 1: {
+                Map<String, Object> object = new LinkedHashMap<>();
+                for (int i = 0; i < width; i++) object.put("k" + i, randomValue(random, depth + 1));
+                return object;
+            }
+            case 2: return "s" + random.nextInt(100);
+            case 3: return random.nextInt(1000);
+            default: return random.nextBoolean() ? null : Boolean.TRUE;
+        }
+    }
+
+    private static List<Integer> children(JsonStructureIndex index, int node) {
+        List<Integer> children = new ArrayList<>();
+        JsonStructureIndex.ChildCursor cursor = index.children(node);
+        while (cursor.hasNext()) {
+            children.add(cursor.next());
+        }
+        return children;
+    }
+
+    private static int byteOffset(String json, String token) {
+        return json.substring(0, json.indexOf(token)).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static JsonStructureIndex index(String json) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json.getBytes(StandardCharsets.UTF_8))) {
+            return JsonStructureIndex.build(parser, 1, null);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.ExecuteRequestDto;
+import com.jsonpreview.dto.LoadTestRequestDto;
+import com.jsonpreview.dto.LoadTestResultDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Open- and closed-loop scheduling and the figures of {@link LoadTestRun}, against a
+ * stubbed execution that answers after a fixed delay.
+ */
+class LoadTestRunTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Test
+    void requestsTakeParameterSetsInTurn() {
+        LoadTestRequestDto request = request(10.0, null);
+        request.setParameters(Map.of("id", "fixed"));
+        assertThat(LoadTestRun.requestFor(request, 3).getParameters()).containsEntry("id", "fixed");
+
+        request.setParameterSets(List.of(Map.of("id", "a"), Map.of("id", "b"), Map.of("id", "c")));
+        assertThat(LoadTestRun.requestFor(request, 0).getParameters()).containsEntry("id", "a");
+        assertThat(LoadTestRun.requestFor(request, 4).getParameters()).containsEntry("id", "b");
+        assertThat(LoadTestRun.requestFor(request, 3_000_000_002L).getParameters()).containsEntry("id", "c");
+
+        ExecuteRequestDto dto = LoadTestRun.requestFor(request, 0);
+        assertThat(dto.getRequestName()).isEqualTo("Ping");
+        assertThat(dto.getCache()).isFalse();
+        assertThat(dto.getCoalesce()).isFalse();
+        request.setCache(true);
+        assertThat(LoadTestRun.requestFor(request, 0).getCache()).isTrue();
+    }
+
+    @Test
+    void openLoopKeepsItsScheduleAgainstAFastUpstream() throws Exception {
+        LoadTestRun run = start(request(50.0, null), 100, 5, status -> ok(200));
+        assertThat(run.awaitFinish(10, TimeUnit.SECONDS)).isTrue();
+
+        LoadTestResultDto result = run.snapshot();
+        assertThat(result.getState()).isEqualTo("COMPLETED");
+        assertThat(result.getMode()).isEqualTo("rps");
+        // Due times 0, 20 ms, ... 980 ms fall inside the one second
+        assertThat(result.getSent()).isEqualTo(50);
+        assertThat(result.getCompleted()).isEqualTo(50);
+        assertThat(result.getInFlight()).isZero();
+        assertThat(result.getLatency().getCount()).isEqualTo(50);
+        assertThat(result.getLatency().getP50Ms()).isLessThan(200);
+    }
+
+    @Test
+    void openLoopMeasuresFromTheDueTimeWhenTheUpstreamFallsBehind() throws Exception {
+        // 20 executions, one at a time, 100 ms each: two seconds for one second of schedule
+        LoadTestRequestDto request = request(20.0, null);
+        request.setMaxInFlight(1);
+        LoadTestRun run = start(request, 1000, 100, status -> ok(200));
+        assertThat(run.awaitFinish(10, TimeUnit.SECONDS)).isTrue();
+
+        LoadTestResultDto result = run.snapshot();
+        assertThat(result.getCompleted()).isEqualTo(20);
+        assertThat(maxInFlight).hasValue(1);
+        // The last one was due at 950 ms and answered at about 2 s
+        assertThat(result.getLatency().getMaxMs()).isGreaterThan(700);
+        assertThat(result.getServiceTime().getMaxMs()).isLessThan(500);
+        assertThat(result.getScheduleLagMs()).isGreaterThan(500);
+    }
+
+    @Test
+    void closedLoopKeepsTheConcurrencyInFlight() throws Exception {
+        LoadTestRun run = start(request(null, 3), 1000, 20, status -> ok(200));
+        assertThat(run.awaitFinish(10, TimeUnit.SECONDS)).isTrue();
+
+        LoadTestResultDto result = run.snapshot();
+        assertThat(result.getMode()).isEqualTo("concurrency");
+        assertThat(maxInFlight).hasValue(3);
+        // About 3 every 20 ms for a second
+        assertThat(result.getCompleted()).isBetween(60L, 160L);
+        assertThat(result.getSent()).isEqualTo(result.getCompleted());
+    }
+
+    @Test
+    void statusesErrorsAndRecentFigures() throws Exception {
+        LoadTestRun run = start(request(40.0, null), 100, 1, call -> switch (call % 4) {
+            case 1 -> ok(503);
+            case 2 -> {
+                ApiResponseDto failed = ok(500);
+                failed.setError("Execution error: connection refused");
+                yield failed;
+            }
+            default -> ok(200);
+        });
+        assertThat(run.awaitFinish(10, TimeUnit.SECONDS)).isTrue();
+
+        LoadTestResultDto result = run.snapshot();
+        assertThat(result.getCompleted()).isEqualTo(40);
+        assertThat(result.getStatusCounts()).containsExactly(Map.entry("200", 20L), Map.entry("503", 10L),
+                                                             Map.entry("error", 10L));
+        assertThat(result.getErrors()).isEqualTo(20);
+        assertThat(result.getErrorRate()).isEqualTo(0.5);
+        assertThat(result.getThroughput()).isCloseTo(40 / result.getElapsedSeconds(), within(1e-9));
+        assertThat(result.getRecentLatency().getCount()).isEqualTo(40);
+
+        // Nothing completed since: the totals stay, the recent figures are empty
+        LoadTestResultDto again = run.snapshot();
+        assertThat(again.getLatency().getCount()).isEqualTo(40);
+        assertThat(again.getRecentLatency().getCount()).isZero();
+        assertThat(again.getElapsedSeconds()).isEqualTo(result.getElapsedSeconds());
+    }
+
+    @Test
+    void stopEndsTheRunEarly() throws Exception {
+        LoadTestRequestDto request = request(10.0, null);
+        request.setDurationSeconds(60);
+        LoadTestRun run = start(request, 100, 1, status -> ok(200));
+        Thread.sleep(200);
+
+        run.stop();
+        assertThat(run.awaitFinish(5, TimeUnit.SECONDS)).isTrue();
+        LoadTestResultDto result = run.snapshot();
+        assertThat(result.getState()).isEqualTo("STOPPED");
+        assertThat(result.getSent()).isBetween(1L, 10L);
+    }
+
+    /**
+     * Starts a run whose executions answer {@code responses.apply(call number)} after
+     * {@code delayMillis}, on the executor handed to the run.
+     */
+    private LoadTestRun start(LoadTestRequestDto request, int maxInFlightLimit, long delayMillis,
+                              IntFunction<ApiResponseDto> responses) {
+        ApiExecutionService executionService = mock(ApiExecutionService.class);
+        when(executionService.prepareRequest(any(ExecuteRequestDto.class)))
+            .thenAnswer(invocation -> PreparedRequest.of("Ping", null, false, false, null));
+        Executor delayed = CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS);
+        when(executionService.executeAsync(any(PreparedRequest.class), anyLong(), any(Executor.class)))
+            .thenAnswer(invocation -> {
+                assertThat(invocation.<Executor>getArgument(2)).isSameAs(delayed);
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                ApiResponseDto response = responses.apply(calls.getAndIncrement());
+                return CompletableFuture.supplyAsync(() -> {
+                    inFlight.decrementAndGet();
+                    return response;
+                }, delayed);
+            });
+
+        LoadTestRun run = new LoadTestRun("test", request, executionService, delayed, maxInFlightLimit);
+        Thread thread = new Thread(run, "load-test-test");
+        thread.setDaemon(true);
+        run.start(thread);
+        return run;
+    }
+
+    private static LoadTestRequestDto request(Double rps, Integer concurrency) {
+        LoadTestRequestDto request = new LoadTestRequestDto();
+        request.setCollectionId("c");
+        request.setRequestName("Ping");
+        request.setRps(rps);
+        request.setConcurrency(concurrency);
+        request.setDurationSeconds(1);
+        return request;
+    }
+
+    private static ApiResponseDto ok(int status) {
+        ApiResponseDto response = new ApiResponseDto();
+        response.setStatusCode(status);
+        return response;
+    }
+}
@@ -0,0 +1,135 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final List<CompletableFuture<ApiResponseDto>> calls = new ArrayList<>();
+    private final Supplier<CompletableFuture<ApiResponseDto>> call = () -> {
+        CompletableFuture<ApiResponseDto> upstream = new CompletableFuture<>();
+        calls.add(upstream);
+        return upstream;
+    };
+
+    @Test
+    void followersShareTheLeadersCall() throws Exception {
+        CompletableFuture<ApiResponseDto> leader = coalescer.execute("GET /users", call);
+        CompletableFuture<ApiResponseDto> follower = coalescer.execute("GET /users", call);
+        assertThat(calls).hasSize(1);
+
+        ApiResponseDto response = response(200);
+        calls.get(0).complete(response);
+
+        assertThat(leader.get()).isSameAs(response);
+        assertThat(leader.get().getCoalesced()).isNull();
+        ApiResponseDto copy = follower.get();
+        assertThat(copy).isNotSameAs(response);
+        assertThat(copy.getCoalesced()).isTrue();
+        assertThat(copy.getStatusCode()).isEqualTo(200);
+        assertThat(copy.getResponseBody()).isSameAs(response.getResponseBody());
+        assertThat(coalescer.getLeaders()).isEqualTo(1);
+        assertThat(coalescer.getFollowers()).isEqualTo(1);
+    }
+
+    @Test
+    void keysAreReleasedOnceTheCallCompletes() {
+        coalescer.execute("GET /users", call);
+        coalescer.execute("GET /orders", call);
+        assertThat(calls).hasSize(2);
+
+        calls.get(0).complete(response(200));
+        coalescer.execute("GET /users", call);
+
+        assertThat(calls).hasSize(3);
+        assertThat(coalescer.getFollowers()).isZero();
+    }
+
+    @Test
+    void oneCallerGivingUpDoesNotCancelTheOthers() throws Exception {
+        CompletableFuture<ApiResponseDto> leader = coalescer.execute("GET /users", call);
+        CompletableFuture<ApiResponseDto> follower = coalescer.execute("GET /users", call);
+
+        leader.cancel(true);
+        assertThat(calls.get(0)).isNotDone();
+
+        calls.get(0).complete(response(200));
+        assertThat(follower.get().getStatusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void upstreamIsCancelledOnceEveryCallerHasGivenUp() {
+        CompletableFuture<ApiResponseDto> leader = coalescer.execute("GET /users", call);
+        CompletableFuture<ApiResponseDto> follower = coalescer.execute("GET /users", call);
+
+        follower.cancel(true);
+        leader.cancel(true);
+        assertThat(calls.get(0)).isCancelled();
+
+        // Nobody joins a cancelled call; the next execution goes upstream again
+        CompletableFuture<ApiResponseDto> next = coalescer.execute("GET /users", call);
+        assertThat(calls).hasSize(2);
+        calls.get(1).complete(response(201));
+        assertThat(next.join().getStatusCode()).isEqualTo(201);
+    }
+
+    @Test
+    void failuresReachEveryCallerAndReleaseTheKey() {
+        CompletableFuture<ApiResponseDto> leader = coalescer.execute("GET /users", call);
+        CompletableFuture<ApiResponseDto> follower = coalescer.execute("GET /users", call);
+
+        calls.get(0).completeExceptionally(new IllegalStateException("connection reset"));
+
+        for (CompletableFuture<ApiResponseDto> future : List.of(leader, follower)) {
+            assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("connection reset");
+        }
+        coalescer.execute("GET /users", call);
+        assertThat(calls).hasSize(2);
+    }
+
+    @Test
+    void aCallThatThrowsFailsItsFuture() {
+        CompletableFuture<ApiResponseDto> failed = coalescer.execute("GET /users", () -> {
+            throw new IllegalArgumentException("bad url");
+        });
+
+        assertThat(failed).isCompletedExceptionally();
+        coalescer.execute("GET /users", call);
+        assertThat(calls).hasSize(1);
+    }
+
+    @Test
+    void inflightGaugeCountsDistinctKeys() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        coalescer.bindTo(registry);
+        coalescer.execute("GET /users", call);
+        coalescer.execute("GET /users", call);
+        coalescer.execute("GET /orders", call);
+
+        assertThat(registry.get("execution.coalescing.inflight").gauge().value()).isEqualTo(2);
+        assertThat(registry.get("execution.coalescing.requests").tag("role", "follower").functionCounter().count())
+            .isEqualTo(1);
+
+        calls.forEach(upstream -> upstream.complete(response(200)));
+        assertThat(registry.get("execution.coalescing.inflight").gauge().value()).isZero();
+    }
+
+    private static ApiResponseDto response(int status) {
+        ApiResponseDto response = new ApiResponseDto();
+        response.setStatusCode(status);
+        response.setResponseBody("{\"ok\":true}");
+        return response;
+    }
+}
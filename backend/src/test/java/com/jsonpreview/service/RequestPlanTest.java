@@ -0,0 +1,246 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsonpreview.model.PostmanItem;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Compiling collection requests and rendering them: URLs and their encoding, methods,
+ * auth, headers and bodies.
+ */
+class RequestPlanTest {
+
+    private static final Map<String, String> ENVIRONMENT = Map.of("host", "api.example.com", "token", "env-token");
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void urlSlotsAreFilledIn() throws Exception {
+        RequestPlan plan = plan("""
+            {"url": "https://{{host}}/users/{{id}}?expand=${part}"}
+            """);
+
+        HttpUriRequestBase request = plan.render(ENVIRONMENT, Map.of("id", "42", "part", "orders"));
+        assertThat(request.getMethod()).isEqualTo("GET");
+        assertThat(request.getUri()).hasToString("https://api.example.com/users/42?expand=orders");
+        assertThat(plan.getVariableNames()).containsExactly("host", "id", "part");
+
+        // Unresolved slots are sent verbatim, encoded
+        assertThat(plan.render(ENVIRONMENT, Map.of()).getUri())
+            .hasToString("https://api.example.com/users/%7B%7Bid%7D%7D?expand=$%7Bpart%7D");
+    }
+
+    @Test
+    void aUrlWithoutSlotsNeedsNoVariables() throws Exception {
+        RequestPlan plan = plan("""
+            {"method": "delete", "url": "https://api.example.com/users/7"}
+            """);
+
+        HttpUriRequestBase first = plan.render(ENVIRONMENT, Map.of());
+        assertThat(first.getMethod()).isEqualTo("DELETE");
+        assertThat(first.getUri()).hasToString("https://api.example.com/users/7");
+        assertThat(plan.render(null, null).getUri()).isEqualTo(first.getUri());
+        assertThat(plan.getVariableNames()).isEmpty();
+    }
+
+    @Test
+    void renderedUrlsAreEncodedLeniently() throws Exception {
+        RequestPlan plan = plan("""
+            {"url": "https://{{host}}/search/{{term}}?q={{q}}"}
+            """);
+
+        HttpUriRequestBase request = plan.render(ENVIRONMENT, Map.of("term", "a b/ü", "q", "50%off %2F 100%"));
+        assertThat(request.getUri().toASCIIString())
+            .isEqualTo("https://api.example.com/search/a%20b/%C3%BC?q=50%25off%20%2F%20100%25");
+        // Characters a whole URL may carry are left alone
+        assertThat(plan.render(ENVIRONMENT, Map.of("term", "x", "q", "a=1&b=[2]")).getUri())
+            .hasToString("https://api.example.com/search/x?q=a=1&b=[2]");
+    }
+
+    @Test
+    void queryParametersComeFromUrlQueryWithDisabledOnesDropped() throws Exception {
+        RequestPlan plan = plan("""
+            {"url": {"raw": "https://{{host}}/items?ignored=1",
+                     "query": [{"key": "filter", "value": "{{filter}}"},
+                               {"key": "debug", "value": "true", "disabled": true},
+                               {"value": "keyless"},
+                               {"key": "flag"},
+                               {"key": "name", "value": "Zoë"}]}}
+            """);
+
+        HttpUriRequestBase request = plan.render(ENVIRONMENT, Map.of("filter", "a&b=c+d#e f"));
+        // Query keys and values also get &, =, + and # encoded
+        assertThat(request.getUri().toASCIIString())
+            .isEqualTo("https://api.example.com/items?filter=a%26b%3Dc%2Bd%23e%20f&flag&name=Zo%C3%AB");
+        assertThat(plan.getVariableNames()).containsExactly("host", "filter");
+    }
+
+    @Test
+    void onlyKnownMethodsCompile() {
+        for (String method : List.of("GET", "post", "Put", "DELETE", "PATCH", "HEAD", "OPTIONS")) {
+            PostmanItem.PostmanRequest request = new PostmanItem.PostmanRequest();
+            request.setMethod(method);
+            assertThat(RequestPlan.compile(request).getMethod()).isEqualTo(method.toUpperCase());
+        }
+        for (String method : List.of("TRACE", "CONNECT", "get /admin", "")) {
+            PostmanItem.PostmanRequest request = new PostmanItem.PostmanRequest();
+            request.setMethod(method);
+            assertThatThrownBy(() -> RequestPlan.compile(request)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Unsupported HTTP method");
+        }
+    }
+
+    @Test
+    void requestsWithoutAUsableUrlFailWhenRendered() throws Exception {
+        assertThatThrownBy(() -> plan("{\"method\": \"GET\"}").render(ENVIRONMENT, Map.of()))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("Request has no URL");
+        assertThatThrownBy(() -> plan("{\"url\": \"http://[::1/{{path}}\"}").render(ENVIRONMENT, Map.of("path", "x")))
+            .isInstanceOf(URISyntaxException.class);
+    }
+
+    @Test
+    void bearerAuthBecomesAnAuthorizationHeader() throws Exception {
+        RequestPlan plan = plan("""
+            {"url": "https://{{host}}/me",
+             "auth": {"type": "bearer", "bearer": [{"key": "token", "value": "{{token}}"}]}}
+            """);
+
+        assertThat(header(plan.render(ENVIRONMENT, Map.of()), HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer env-token");
+        assertThat(plan.getVariableNames()).containsExactly("host", "token");
+    }
+
+    @Test
+    void basicAuthIsEncodedOnceOrPerRender() throws Exception {
+        RequestPlan fixed = plan("""
+            {"url": "https://{{host}}/me",
+             "auth": {"type": "basic", "basic": {"username": "ada", "password": "p@ss:wörd"}}}
+            """);
+        assertThat(header(fixed.render(ENVIRONMENT, Map.of()), HttpHeaders.AUTHORIZATION))
+            .isEqualTo("Basic " + base64("ada:p@ss:wörd"));
+
+        RequestPlan templated = plan("""
+            {"url": "https://{{host}}/me",
+             "auth": {"type": "basic", "basic": [{"key": "username", "value": "{{user}}"},
+                                                 {"key": "password", "value": "${password}"}]}}
+            """);
+        assertThat(header(templated.render(ENVIRONMENT, Map.of("user", "bob", "password", "s3cret")),
+                          HttpHeaders.AUTHORIZATION))
+            .isEqualTo("Basic " + base64("bob:s3cret"));
+    }
+
+    @Test
+    void apiKeyAuthGoesToAHeaderOrTheQuery() throws Exception {
+        RequestPlan inHeader = plan("""
+            {"url": "https://{{host}}/items",
+             "auth": {"type": "apikey", "apikey": [{"key": "key", "value": "X-Api-Key"},
+                                                   {"key": "value", "value": "{{apiKey}}"}]}}
+            """);
+        assertThat(header(inHeader.render(ENVIRONMENT, Map.of("apiKey", "k1")), "X-Api-Key")).isEqualTo("k1");
+
+        RequestPlan inQuery = plan("""
+            {"url": "https://{{host}}/items?page=2",
+             "auth": {"type": "apikey", "apikey": {"key": "api key", "value": "{{apiKey}}", "in": "query"}}}
+            """);
+        HttpUriRequestBase request = inQuery.render(ENVIRONMENT, Map.of("apiKey", "a+b"));
+        assertThat(request.getUri().toASCIIString()).isEqualTo("https://api.example.com/items?page=2&api%20key=a%2Bb");
+        assertThat(request.getHeaders()).isEmpty();
+    }
+
+    @Test
+    void headersTheRequestSetsWinOverAuth() throws Exception {
+        RequestPlan plan = plan("""
+            {"url": "https://{{host}}/me",
+             "header": [{"key": "authorization", "value": "Custom {{token}}"}],
+             "auth": {"type": "bearer", "bearer": {"token": "ignored"}}}
+            """);
+
+        HttpUriRequestBase request = plan.render(ENVIRONMENT, Map.of());
+        assertThat(request.getHeaders(HttpHeaders.AUTHORIZATION)).extracting(Header::getValue)
+            .containsExactly("Custom env-token");
+    }
+
+    @Test
+    void unsupportedAndInheritedAuthAddNothing() throws Exception {
+        for (String type : List.of("noauth", "inherit", "digest")) {
+            RequestPlan plan = plan("{\"url\": \"https://{{host}}/\", \"auth\": {\"type\": \"" + type + "\"}}");
+            assertThat(plan.render(ENVIRONMENT, Map.of()).getHeaders()).as(type).isEmpty();
+        }
+    }
+
+    @Test
+    void disabledAndKeylessHeadersAreDropped() throws Exception {
+        RequestPlan plan = plan("""
+            {"url": "https://{{host}}/",
+             "header": [{"key": "Accept", "value": "application/json"},
+                        {"key": "X-Debug", "value": "{{debug}}", "disabled": true},
+                        {"value": "orphan"},
+                        {"key": "X-Request-Id", "value": "${requestId}"}]}
+            """);
+
+        HttpUriRequestBase request = plan.render(ENVIRONMENT, Map.of("requestId", "r-1", "debug", "1"));
+        assertThat(Arrays.stream(request.getHeaders()).map(h -> h.getName() + ": " + h.getValue()))
+            .containsExactly("Accept: application/json", "X-Request-Id: r-1");
+        assertThat(plan.getVariableNames()).containsExactly("host", "requestId");
+    }
+
+    @Test
+    void bodiesAreRenderedToUtf8AroundTheirSlots() throws Exception {
+        RequestPlan plan = plan("""
+            {"method": "POST", "url": "https://{{host}}/users",
+             "body": {"mode": "raw", "raw": "{\\"name\\": \\"{{name}}\\", \\"city\\": \\"Zürich\\", \\"id\\": ${id}}"}}
+            """);
+
+        HttpUriRequestBase request = plan.render(ENVIRONMENT, Map.of("name", "Łukasz", "id", "7"));
+        assertThat(new String(EntityUtils.toByteArray(request.getEntity()), StandardCharsets.UTF_8))
+            .isEqualTo("{\"name\": \"Łukasz\", \"city\": \"Zürich\", \"id\": 7}");
+        assertThat(request.getEntity().getContentType()).startsWith("application/json");
+        assertThat(plan.getVariableNames()).containsExactly("host", "name", "id");
+
+        // Unresolved slots stay as they were written
+        assertThat(EntityUtils.toString(plan.render(ENVIRONMENT, Map.of()).getEntity(), StandardCharsets.UTF_8))
+            .isEqualTo("{\"name\": \"{{name}}\", \"city\": \"Zürich\", \"id\": ${id}}");
+    }
+
+    @Test
+    void bodiesWithoutSlotsAndBodylessMethods() throws Exception {
+        RequestPlan fixed = plan("""
+            {"method": "PUT", "url": "https://{{host}}/flags", "body": {"mode": "raw", "raw": "[\\"ä\\"]"}}
+            """);
+        assertThat(EntityUtils.toByteArray(fixed.render(ENVIRONMENT, Map.of()).getEntity()))
+            .isEqualTo("[\"ä\"]".getBytes(StandardCharsets.UTF_8));
+
+        RequestPlan get = plan("""
+            {"method": "GET", "url": "https://{{host}}/flags", "body": {"mode": "raw", "raw": "{{ignored}}"}}
+            """);
+        assertThat(get.render(ENVIRONMENT, Map.of()).getEntity()).isNull();
+        assertThat(get.getVariableNames()).containsExactly("host");
+    }
+
+    private RequestPlan plan(String json) throws Exception {
+        return RequestPlan.compile(objectMapper.readValue(json, PostmanItem.PostmanRequest.class));
+    }
+
+    private static String header(HttpUriRequestBase request, String name) {
+        Header header = request.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    private static String base64(String text) {
+        return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,231 @@
+package com.jsonpreview.service;
+
+import com.jsonpreview.dto.ApiResponseDto;
+import com.jsonpreview.dto.BufferedBody;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheTest {
+
+    private static final String URL = "https://api.example.com/users?page=1";
+
+    private final ResponseCache cache = cache(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), Duration.ZERO);
+
+    @Test
+    void onlyGetRequestsAreLookedUp() {
+        assertThat(cache.lookup(new HttpPost(URL))).isNull();
+        assertThat(cache.lookup(new HttpGet(URL))).isNotNull();
+    }
+
+    @Test
+    void freshResponsesAreServedFromTheCache() {
+        BufferedBody body = body("{\"id\":1}");
+        ApiResponseDto first = miss(new HttpGet(URL), body, header(HttpHeaders.CACHE_CONTROL, "public, max-age=60"));
+        assertThat(first.getCacheStatus()).isEqualTo(ResponseCache.MISS);
+
+        HttpGet again = new HttpGet(URL);
+        ApiResponseDto hit = cache.lookup(again).fresh(System.currentTimeMillis());
+        assertThat(hit).isNotNull();
+        assertThat(hit.getCacheStatus()).isEqualTo(ResponseCache.HIT);
+        assertThat(hit.getResponseBody()).isSameAs(body);
+        assertThat(hit.getStatusCode()).isEqualTo(200);
+        assertThat(again.getFirstHeader(HttpHeaders.IF_NONE_MATCH)).isNull();
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void responsesWithoutFreshnessOrValidatorsAreNotStored() {
+        miss(new HttpGet(URL), body("{}"));
+        miss(new HttpGet(URL), body("{}"), header(HttpHeaders.CACHE_CONTROL, "no-store, max-age=60"));
+        miss(new HttpGet(URL), body("{}"), header(HttpHeaders.CACHE_CONTROL, "max-age=60"), header(HttpHeaders.VARY, "*"));
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.lookup(new HttpGet(URL)).fresh(0)).isNull();
+    }
+
+    @Test
+    void defaultTtlAppliesWhenTheUpstreamSaysNothing() {
+        ResponseCache withDefault = cache(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+        complete(withDefault, new HttpGet(URL), 200, body("{}"));
+        complete(withDefault, new HttpGet(URL + "&other"), 200, body("{}"), header(HttpHeaders.CACHE_CONTROL, "public"));
+
+        assertThat(withDefault.lookup(new HttpGet(URL)).fresh(0)).isNotNull();
+        // Cache-Control without max-age means no implicit freshness
+        assertThat(withDefault.size()).isEqualTo(1);
+    }
+
+    @Test
+    void onlySuccessfulResponsesAreStored() {
+        complete(cache, new HttpGet(URL), 404, body("{}"), header(HttpHeaders.CACHE_CONTROL, "max-age=60"));
+        ApiResponseDto failed = response(200, body("{}"), header(HttpHeaders.CACHE_CONTROL, "max-age=60"));
+        failed.setError("Upstream closed the connection");
+        HttpGet request = new HttpGet(URL);
+        cache.lookup(request).complete(200, headers(header(HttpHeaders.CACHE_CONTROL, "max-age=60")), failed,
+                                       (BufferedBody) failed.getResponseBody(), 0);
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void expiresIsMeasuredAgainstTheDateHeader() {
+        Instant date = Instant.parse("2024-01-01T00:00:00Z");
+        miss(new HttpGet(URL), body("{}"),
+             header(HttpHeaders.DATE, DateUtils.formatStandardDate(date)),
+             header(HttpHeaders.EXPIRES, DateUtils.formatStandardDate(date.plusSeconds(60))));
+        assertThat(cache.lookup(new HttpGet(URL)).fresh(0)).isNotNull();
+
+        miss(new HttpGet(URL + "&b"), body("{}"), header(HttpHeaders.EXPIRES, "0"), header(HttpHeaders.ETAG, "\"v1\""));
+        assertThat(cache.lookup(new HttpGet(URL + "&b")).fresh(0)).isNull();
+    }
+
+    @Test
+    void staleEntriesAreRevalidatedWithTheirValidators() {
+        String lastModified = DateUtils.formatStandardDate(Instant.parse("2024-01-01T00:00:00Z"));
+        BufferedBody body = body("{\"id\":1}");
+        miss(new HttpGet(URL), body, header(HttpHeaders.CACHE_CONTROL, "no-cache"),
+             header(HttpHeaders.ETAG, "\"v1\""), header(HttpHeaders.LAST_MODIFIED, lastModified));
+
+        HttpGet conditional = new HttpGet(URL);
+        ResponseCache.Lookup lookup = cache.lookup(conditional);
+        assertThat(lookup.fresh(0)).isNull();
+        assertThat(conditional.getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue()).isEqualTo("\"v1\"");
+        assertThat(conditional.getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE).getValue()).isEqualTo(lastModified);
+
+        ApiResponseDto revalidated = lookup.complete(304, headers(), response(304, null), null, 0);
+        assertThat(revalidated.getCacheStatus()).isEqualTo(ResponseCache.REVALIDATED);
+        assertThat(revalidated.getStatusCode()).isEqualTo(200);
+        assertThat(revalidated.getResponseBody()).isSameAs(body);
+        assertThat(cache.getRevalidations()).isEqualTo(1);
+        // Still no-cache: the next execution asks again
+        assertThat(cache.lookup(new HttpGet(URL)).fresh(0)).isNull();
+    }
+
+    @Test
+    void notModifiedCanRenewFreshnessAndValidators() {
+        miss(new HttpGet(URL), body("{}"), header(HttpHeaders.CACHE_CONTROL, "max-age=0"), header(HttpHeaders.ETAG, "\"v1\""));
+
+        cache.lookup(new HttpGet(URL)).complete(304, headers(header(HttpHeaders.CACHE_CONTROL, "max-age=0"),
+                                                             header(HttpHeaders.ETAG, "\"v2\"")), response(304, null), null, 0);
+        HttpGet conditional = new HttpGet(URL);
+        ResponseCache.Lookup lookup = cache.lookup(conditional);
+        assertThat(conditional.getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue()).isEqualTo("\"v2\"");
+
+        lookup.complete(304, headers(header(HttpHeaders.CACHE_CONTROL, "max-age=60")), response(304, null), null, 0);
+        assertThat(cache.lookup(new HttpGet(URL)).fresh(0)).isNotNull();
+    }
+
+    @Test
+    void staleEntryWithoutValidatorsIsAMiss() {
+        Instant date = Instant.parse("2024-01-01T00:00:00Z");
+        miss(new HttpGet(URL), body("{}"), header(HttpHeaders.DATE, DateUtils.formatStandardDate(date)),
+             header(HttpHeaders.EXPIRES, DateUtils.formatStandardDate(date.minusSeconds(1))),
+             header(HttpHeaders.LAST_MODIFIED, DateUtils.formatStandardDate(date.minusSeconds(60))));
+        assertThat(cache.size()).isEqualTo(1);
+
+        // A 304 to an unconditional request is not answered from the cache
+        HttpGet plain = new HttpGet(URL + "&x");
+        ResponseCache.Lookup lookup = cache.lookup(plain);
+        ApiResponseDto response = response(304, null);
+        assertThat(lookup.complete(304, headers(), response, null, 0)).isSameAs(response);
+        assertThat(plain.getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE)).isNull();
+    }
+
+    @Test
+    void keyIgnoresHeaderOrderAndNameCase() {
+        HttpGet stored = new HttpGet(URL);
+        stored.addHeader("Accept", "application/json");
+        stored.addHeader("X-Tenant", "a");
+        miss(stored, body("{}"), header(HttpHeaders.CACHE_CONTROL, "max-age=60"));
+
+        HttpGet reordered = new HttpGet(URL);
+        reordered.addHeader("x-tenant", "a");
+        reordered.addHeader("ACCEPT", "application/json");
+        assertThat(cache.lookup(reordered).fresh(0)).isNotNull();
+
+        HttpGet otherTenant = new HttpGet(URL);
+        otherTenant.addHeader("Accept", "application/json");
+        otherTenant.addHeader("X-Tenant", "b");
+        assertThat(cache.lookup(otherTenant).fresh(0)).isNull();
+        assertThat(ResponseCache.keyOf(reordered)).isEqualTo(ResponseCache.keyOf(stored));
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedPastTheBudget() {
+        // Room for two entries of about 1.5 KB each
+        ResponseCache small = cache(DataSize.ofBytes(3500), DataSize.ofBytes(3500), Duration.ofMinutes(1));
+        complete(small, new HttpGet(URL + "&a"), 200, body("a".repeat(1000)));
+        complete(small, new HttpGet(URL + "&b"), 200, body("b".repeat(1000)));
+        assertThat(small.lookup(new HttpGet(URL + "&a")).fresh(0)).isNotNull();
+        complete(small, new HttpGet(URL + "&c"), 200, body("c".repeat(1000)));
+
+        assertThat(small.size()).isEqualTo(2);
+        assertThat(small.getEvictions()).isEqualTo(1);
+        assertThat(small.lookup(new HttpGet(URL + "&b")).fresh(0)).isNull();
+        assertThat(small.lookup(new HttpGet(URL + "&a")).fresh(0)).isNotNull();
+
+        complete(small, new HttpGet(URL + "&big"), 200, body("x".repeat(4000)));
+        assertThat(small.lookup(new HttpGet(URL + "&big")).fresh(0)).isNull();
+        assertThat(small.size()).isEqualTo(2);
+    }
+
+    @Test
+    void perRequestOptInOverridesTheDefault() {
+        assertThat(cache.isEnabled(null)).isFalse();
+        assertThat(cache.isEnabled(true)).isTrue();
+        assertThat(new ResponseCache(true, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), Duration.ZERO)
+                       .isEnabled(false)).isFalse();
+    }
+
+    private static ResponseCache cache(DataSize maxSize, DataSize maxEntrySize, Duration defaultTtl) {
+        return new ResponseCache(false, maxSize, maxEntrySize, defaultTtl);
+    }
+
+    private ApiResponseDto miss(HttpGet request, BufferedBody body, Header... headers) {
+        ResponseCache.Lookup lookup = cache.lookup(request);
+        assertThat(lookup.fresh(0)).isNull();
+        return lookup.complete(200, headers, response(200, body, headers), body, 0);
+    }
+
+    private static void complete(ResponseCache cache, HttpGet request, int status, BufferedBody body, Header... headers) {
+        cache.lookup(request).complete(status, headers, response(status, body, headers), body, 0);
+    }
+
+    private static ApiResponseDto response(int status, BufferedBody body, Header... headers) {
+        ApiResponseDto response = new ApiResponseDto();
+        response.setStatusCode(status);
+        Map<String, String> map = new HashMap<>();
+        for (Header header : headers) {
+            map.put(header.getName(), header.getValue());
+        }
+        response.setHeaders(map);
+        response.setResponseBody(body);
+        return response;
+    }
+
+    private static BufferedBody body(String text) {
+        return BufferedBody.of(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static Header header(String name, String value) {
+        return new BasicHeader(name, value);
+    }
+
+    private static Header[] headers(Header... headers) {
+        return headers;
+    }
+}
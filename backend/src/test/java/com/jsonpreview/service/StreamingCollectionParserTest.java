@@ -0,0 +1,168 @@
+package com.jsonpreview.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The streaming ingestion path against the object-mapping one: the same collection must
+ * index the same requests, and requests inflated by byte range from the spooled source
+ * must equal the fully parsed ones.
+ */
+class StreamingCollectionParserTest {
+
+    // Multi-byte text before and inside requests, so character and byte offsets differ
+    private static final String COLLECTION = """
+        {"info": {"name": "Überblick ✓", "schema": "https://schema.getpostman.com/json/collection/v2.1.0/"},
+         "event": [{"listen": "prerequest", "script": {"exec": ["console.log('日本語 🚀')"]}}],
+         "item": [
+          {"name": "Users", "description": "Benutzer – ünd so", "item": [
+            {"request": {"method": "POST", "url": {"raw": "{{base}}/users?lang=ü",
+                                                   "host": ["{{base}}"], "path": ["users"],
+                                                   "query": [{"key": "lang", "value": "ü"},
+                                                             {"key": "debug", "value": "1", "disabled": true}]},
+                         "header": [{"key": "Content-Type", "value": "application/json"},
+                                    {"key": "X-Note", "value": "naïve", "disabled": true}],
+                         "body": {"mode": "raw", "raw": "{\\"name\\": \\"{{name}} 🚀\\", \\"quote\\": \\"\\\\\\"\\u00e9\\\\\\"\\"}"},
+                         "auth": {"type": "bearer", "bearer": [{"key": "token", "value": "{{token}}"}]}},
+             "name": "Créer",
+             "response": [{"name": "Beispiel", "body": "{\\"id\\": 1, \\"name\\": \\"Zoë\\"}"}]},
+            {"name": "Liste", "request": {"method": "GET", "url": "{{base}}/users"},
+             "event": [{"listen": "test", "script": {"exec": ["pm.test('ok', () => {})"]}}]},
+            {"name": "Nested", "item": [
+              {"name": "Lösche", "request": {"method": "DELETE", "url": "{{base}}/users/{{id}}",
+                                              "auth": {"type": "apikey", "apikey": {"key": "X-Key", "value": "€uro"}}}}
+            ]}
+          ]},
+          {"name": "Health ❤", "request": {"url": "{{base}}/health", "body": {"mode": "raw", "raw": ""}}},
+          {"name": "Liste", "request": {"method": "PUT", "url": "{{base}}/other",
+                                        "body": {"mode": "raw", "raw": "[\\"\\ud83d\\ude80\\", \\"x\\"]"}}}
+         ],
+         "variable": [{"key": "base", "value": "https://api.example.com"}]}
+        """;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void bothPathsIndexTheSameRequests() throws IOException {
+        CollectionSnapshot mapped = parse(DataSize.ofMegabytes(16));
+        CollectionSnapshot streamed = parse(DataSize.ofBytes(1));
+        try {
+            assertThat(mapped.isStreamed()).isFalse();
+            assertThat(streamed.isStreamed()).isTrue();
+
+            assertThat(paths(streamed)).containsExactlyElementsOf(paths(mapped))
+                .containsExactly("Users/Créer", "Users/Liste", "Users/Nested/Lösche", "Health ❤", "Liste");
+            assertThat(streamed.getIndex().getDuplicateNames()).isEqualTo(mapped.getIndex().getDuplicateNames());
+            assertThat(streamed.getName()).isEqualTo("Überblick ✓");
+            assertThat(streamed.getCollection().getVariables()).hasSize(1);
+            assertThat(new String(streamed.getListing().getJson(), StandardCharsets.UTF_8))
+                .isEqualTo(new String(mapped.getListing().getJson(), StandardCharsets.UTF_8));
+        } finally {
+            streamed.release();
+        }
+    }
+
+    @Test
+    void inflatedRequestsMatchTheMappedOnes() throws IOException {
+        CollectionSnapshot mapped = parse(DataSize.ofMegabytes(16));
+        CollectionSnapshot streamed = parse(DataSize.ofBytes(1));
+        try {
+            List<CollectionIndex.Entry> expected = mapped.getIndex().getEntries();
+            List<CollectionIndex.Entry> actual = streamed.getIndex().getEntries();
+            assertThat(actual).hasSameSizeAs(expected);
+            for (int i = 0; i < expected.size(); i++) {
+                CollectionIndex.Entry entry = actual.get(i);
+                assertThat(entry.isLazy()).isTrue();
+                // The summary item leaves the body and auth in the source
+                assertThat(entry.getItem().getRequest().getBody()).isNull();
+                assertThat(tree(entry.getPlan().getRequest())).as(entry.getPath())
+                    .isEqualTo(tree(expected.get(i).getPlan().getRequest()));
+            }
+
+            RequestPlan create = streamed.getIndex().find("Users/Créer").getPlan();
+            assertThat(create.getRequest().getBody().getRaw()).isEqualTo("{\"name\": \"{{name}} 🚀\", \"quote\": \"\\\"é\\\"\"}");
+            assertThat(create.getVariableNames()).containsExactly("base", "token", "name");
+            assertThat(streamed.getIndex().find("Lösche").getPlan().getRequest().getAuth().getApikey())
+                .containsEntry("value", "€uro");
+        } finally {
+            streamed.release();
+        }
+    }
+
+    @Test
+    void inflatedRequestsRenderLikeTheMappedOnes() throws Exception {
+        CollectionSnapshot mapped = parse(DataSize.ofMegabytes(16));
+        CollectionSnapshot streamed = parse(DataSize.ofBytes(1));
+        try {
+            Map<String, String> variables = Map.of("base", "https://api.example.com", "name", "Ada", "token", "t",
+                                                   "id", "7");
+            List<CollectionIndex.Entry> expected = mapped.getIndex().getEntries();
+            List<CollectionIndex.Entry> actual = streamed.getIndex().getEntries();
+            for (int i = 0; i < expected.size(); i++) {
+                HttpUriRequestBase want = expected.get(i).getPlan().render(variables, Map.of());
+                HttpUriRequestBase got = actual.get(i).getPlan().render(variables, Map.of());
+                assertThat(got.getMethod()).as(actual.get(i).getPath()).isEqualTo(want.getMethod());
+                assertThat(got.getUri()).as(actual.get(i).getPath()).isEqualTo(want.getUri());
+                assertThat(got.getHeaders()).extracting(Object::toString)
+                    .containsExactly(Arrays.stream(want.getHeaders()).map(Object::toString).toArray(String[]::new));
+            }
+        } finally {
+            streamed.release();
+        }
+    }
+
+    @Test
+    void sourcesThatAreNotCollectionsAreRefused() throws IOException {
+        StreamingCollectionParser parser = new StreamingCollectionParser(objectMapper);
+        CollectionSource source = CollectionSource.spool(file("[1, 2]"));
+        try {
+            assertThatThrownBy(() -> parser.parse(source)).hasMessage("Collection must be a JSON object");
+        } finally {
+            source.close();
+        }
+
+        CollectionSource empty = CollectionSource.spool(file("{\"info\": {\"name\": \"Empty\"}}"));
+        try {
+            StreamingCollectionParser.Result result = parser.parse(empty);
+            assertThat(result.getIndex().size()).isZero();
+            assertThat(result.getCollection().getItems()).isEmpty();
+        } finally {
+            empty.close();
+        }
+    }
+
+    private CollectionSnapshot parse(DataSize streamingThreshold) throws IOException {
+        PostmanParserService parserService = new PostmanParserService(
+            new CollectionRegistry(DataSize.ofMegabytes(64)), new HotPathMetrics(new SimpleMeterRegistry(), 500),
+            streamingThreshold);
+        return parserService.parseCollection(file(COLLECTION), "c");
+    }
+
+    private JsonNode tree(Object value) {
+        return objectMapper.valueToTree(value);
+    }
+
+    private static List<String> paths(CollectionSnapshot snapshot) {
+        return snapshot.getIndex().getEntries().stream().map(CollectionIndex.Entry::getPath).toList();
+    }
+
+    private static MockMultipartFile file(String content) {
+        return new MockMultipartFile("file", "collection.json", "application/json",
+                                     content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,98 @@
+package com.jsonpreview.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VariableTemplateTest {
+
+    private static final Map<String, String> ENVIRONMENT = Map.of("host", "api.example.com", "id", "env-id");
+    private static final Map<String, String> PARAMETERS = Map.of("id", "42", "token", "abc");
+
+    @Test
+    void nullAndEmptySources() {
+        assertThat(VariableTemplate.compile(null)).isNull();
+
+        VariableTemplate empty = VariableTemplate.compile("");
+        assertThat(empty.hasSlots()).isFalse();
+        assertThat(empty.render(ENVIRONMENT, PARAMETERS)).isEmpty();
+    }
+
+    @Test
+    void textWithoutReferencesRendersAsIs() {
+        String source = "https://api.example.com/users?sort={asc}";
+        VariableTemplate template = VariableTemplate.compile(source);
+
+        assertThat(template.hasSlots()).isFalse();
+        assertThat(template.render(ENVIRONMENT, PARAMETERS)).isSameAs(source);
+    }
+
+    @Test
+    void splitsIntoLiteralsAndSlots() {
+        VariableTemplate template = VariableTemplate.compile("https://{{host}}/users/${id}?t={{token}}");
+
+        assertThat(template.getSlotNames()).containsExactly("host", "id", "token");
+        assertThat(template.slotCount()).isEqualTo(3);
+        assertThat(template.literal(0)).isEqualTo("https://");
+        assertThat(template.literal(1)).isEqualTo("/users/");
+        assertThat(template.literal(2)).isEqualTo("?t=");
+        assertThat(template.literal(3)).isEmpty();
+    }
+
+    @Test
+    void mustacheSlotsPreferTheEnvironmentAndDollarSlotsOnlyReadParameters() {
+        VariableTemplate template = VariableTemplate.compile("{{id}}:${id}:{{token}}");
+
+        assertThat(template.render(ENVIRONMENT, PARAMETERS)).isEqualTo("env-id:42:abc");
+        assertThat(template.render(null, PARAMETERS)).isEqualTo("42:42:abc");
+    }
+
+    @Test
+    void unresolvedSlotsAreWrittenBackVerbatim() {
+        VariableTemplate template = VariableTemplate.compile("{{missing}} and ${missing} of {{host}}");
+
+        assertThat(template.render(ENVIRONMENT, null)).isEqualTo("{{missing}} and ${missing} of api.example.com");
+    }
+
+    @Test
+    void dollarBeforeMustacheIsLiteral() {
+        VariableTemplate template = VariableTemplate.compile("price: ${{id}}");
+
+        assertThat(template.getSlotNames()).containsExactly("id");
+        assertThat(template.render(Map.of(), PARAMETERS)).isEqualTo("price: $42");
+    }
+
+    @Test
+    void nestedOpenerMakesTheOuterOneLiteral() {
+        VariableTemplate template = VariableTemplate.compile("{{a {{token}} ${b ${id}");
+
+        assertThat(template.getSlotNames()).containsExactly("token", "id");
+        assertThat(template.render(Map.of(), PARAMETERS)).isEqualTo("{{a abc ${b 42");
+    }
+
+    @Test
+    void unterminatedReferencesAreLiteral() {
+        assertThat(VariableTemplate.compile("{{host").hasSlots()).isFalse();
+        assertThat(VariableTemplate.compile("${id").hasSlots()).isFalse();
+
+        VariableTemplate template = VariableTemplate.compile("{{host}}/{{path");
+        assertThat(template.render(ENVIRONMENT, PARAMETERS)).isEqualTo("api.example.com/{{path");
+    }
+
+    @Test
+    void adjacentSlotsAndSlotsAtTheEdges() {
+        VariableTemplate template = VariableTemplate.compile("{{host}}{{token}}${id}");
+
+        assertThat(template.literal(0)).isEmpty();
+        assertThat(template.render(ENVIRONMENT, PARAMETERS)).isEqualTo("api.example.comabc42");
+    }
+
+    @Test
+    void valuesAreNotRenderedAgain() {
+        VariableTemplate template = VariableTemplate.compile("{{a}}");
+
+        assertThat(template.render(Map.of("a", "{{b}}", "b", "no"), Map.of())).isEqualTo("{{b}}");
+    }
+}
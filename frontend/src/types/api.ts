@@ -23,6 +23,8 @@ export interface ApiResponse {
   statusCode: number;
   headers?: Record<string, string>;
   responseBody: any;
+  // Set when responseBody broke off part way through; rawResponse then holds the full text
+  responseTruncated?: boolean;
   rawResponse?: string;
   executionTimeMs: number;
   timestamp: string;